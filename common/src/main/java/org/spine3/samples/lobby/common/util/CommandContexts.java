@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.common.util;
+
+import com.google.protobuf.Duration;
+import org.spine3.base.CommandContext;
+import org.spine3.base.CommandId;
+import org.spine3.base.Commands;
+import org.spine3.time.ZoneOffset;
+import org.spine3.users.TenantId;
+import org.spine3.users.UserId;
+
+import java.util.UUID;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.protobuf.util.TimeUtil.getCurrentTime;
+
+/**
+ * The utility class for creating contexts of the commands posted by the application.
+ *
+ * <p>The tenant, the user and the zone offset of the commands are not known to the application yet,
+ * so the contexts are created with the default values of them.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings("UtilityClass")
+public class CommandContexts {
+
+    private CommandContexts() {
+    }
+
+    /**
+     * Creates a new context of a command posted right away.
+     */
+    public static CommandContext newCommandContext() {
+        final CommandContext result = Commands.createContext(TenantId.getDefaultInstance(),
+                                                             UserId.getDefaultInstance(),
+                                                             ZoneOffset.getDefaultInstance());
+        return result;
+    }
+
+    /**
+     * Creates a new context of a command delivered after the delay.
+     */
+    public static CommandContext newCommandContext(Duration delay) {
+        final CommandContext.Schedule schedule = CommandContext.Schedule.newBuilder()
+                                                                        .setDelay(delay)
+                                                                        .build();
+        final CommandContext result = newCommandContext().toBuilder()
+                                                         .setSchedule(schedule)
+                                                         .build();
+        return result;
+    }
+
+    /**
+     * Creates a context of a command posted right away while handling the parent command.
+     *
+     * <p>The command gets the tenant, the user and the zone offset of the parent command. Its ID is derived
+     * from the ID of the parent command and the given key, which is unique among the commands of the parent.
+     * So the command is traced to its parent by the ID, and a parent handled twice posts the commands
+     * with the same IDs.
+     *
+     * @param parent the context of the command being handled
+     * @param key    the key of the command among the commands posted while handling the parent
+     */
+    public static CommandContext newChildContext(CommandContext parent, String key) {
+        final String parentId = parent.getCommandId()
+                                      .getUuid();
+        final String uuid = UUID.nameUUIDFromBytes((parentId + '/' + key).getBytes(UTF_8))
+                                .toString();
+        final CommandId commandId = CommandId.newBuilder()
+                                             .setUuid(uuid)
+                                             .build();
+        final CommandContext result = parent.toBuilder()
+                                            .setCommandId(commandId)
+                                            .setTimestamp(getCurrentTime())
+                                            .clearSchedule()
+                                            .build();
+        return result;
+    }
+}
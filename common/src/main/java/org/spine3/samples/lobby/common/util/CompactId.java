@@ -0,0 +1,298 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.common.util;
+
+import com.google.common.io.BaseEncoding;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A 128-bit identifier stored as two {@code long} values.
+ *
+ * <p>Newly generated IDs are time-ordered: the upper 48 bits hold the Unix epoch milliseconds,
+ * followed by a per-JVM sequence and random bits (the UUID version 7 layout).
+ * Therefore, IDs created one after another are close to each other in storage indexes.
+ *
+ * <p>Two string forms are supported:
+ * <ul>
+ *     <li>the canonical 36-char UUID form, which is compatible with IDs created by
+ *     {@link org.spine3.base.Identifiers#newUuid()};
+ *     <li>the 22-char URL-safe Base64 compact form.
+ * </ul>
+ *
+ * <p>Where a string key is not required, prefer keying by the two {@code long} values,
+ * which avoids encoding the ID on each lookup.
+ *
+ * @author Alexander Litus
+ */
+public final class CompactId implements Comparable<CompactId>, Serializable {
+
+    private static final long serialVersionUID = 0L;
+
+    private static final int UUID_STRING_LENGTH = 36;
+    private static final int COMPACT_STRING_LENGTH = 22;
+    private static final int BYTES = 16;
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final long VERSION_7 = 0x7000L;
+    private static final long VARIANT_MASK = 0x3FFFFFFFFFFFFFFFL;
+    private static final long VARIANT_BITS = 0x8000000000000000L;
+
+    private static final BaseEncoding COMPACT_ENCODING = BaseEncoding.base64Url()
+                                                                     .omitPadding();
+
+    /**
+     * The last used {@code (millis << SEQUENCE_BITS) | sequence} value.
+     *
+     * <p>Guarantees that IDs created in the same JVM are strictly increasing.
+     */
+    private static final AtomicLong lastTimeAndSequence = new AtomicLong();
+
+    private final long mostSigBits;
+    private final long leastSigBits;
+
+    private CompactId(long mostSigBits, long leastSigBits) {
+        this.mostSigBits = mostSigBits;
+        this.leastSigBits = leastSigBits;
+    }
+
+    /**
+     * Creates a new instance from the given bits.
+     */
+    public static CompactId of(long mostSigBits, long leastSigBits) {
+        return new CompactId(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * Generates a new time-ordered ID.
+     */
+    public static CompactId newTimeOrdered() {
+        final long timeAndSequence = nextTimeAndSequence();
+        final long millis = timeAndSequence >>> SEQUENCE_BITS;
+        final long sequence = timeAndSequence & ((1L << SEQUENCE_BITS) - 1);
+        final long msb = (millis << 16) | VERSION_7 | sequence;
+        final long random = ThreadLocalRandom.current()
+                                             .nextLong();
+        final long lsb = (random & VARIANT_MASK) | VARIANT_BITS;
+        return new CompactId(msb, lsb);
+    }
+
+    private static long nextTimeAndSequence() {
+        final long now = System.currentTimeMillis() << SEQUENCE_BITS;
+        while (true) {
+            final long last = lastTimeAndSequence.get();
+            final long next = now > last ? now : last + 1;
+            if (lastTimeAndSequence.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Parses the canonical UUID string form (for example, {@code 123e4567-e89b-12d3-a456-426655440000}).
+     *
+     * @throws IllegalArgumentException if the string is not a valid UUID
+     */
+    public static CompactId fromUuidString(String value) {
+        final CompactId result = tryParse(value);
+        checkArgument(result != null, "Not a UUID string: %s", value);
+        return result;
+    }
+
+    /**
+     * Parses the canonical UUID string form.
+     *
+     * @return the parsed ID or {@code null} if the string is not a valid UUID
+     */
+    @Nullable
+    public static CompactId tryParse(String value) {
+        checkNotNull(value);
+        if (value.length() != UUID_STRING_LENGTH
+                || value.charAt(8) != '-'
+                || value.charAt(13) != '-'
+                || value.charAt(18) != '-'
+                || value.charAt(23) != '-') {
+            return null;
+        }
+        long msb = 0;
+        long lsb = 0;
+        int digits = 0;
+        for (int i = 0; i < UUID_STRING_LENGTH; i++) {
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                continue;
+            }
+            final int digit = hexDigit(value.charAt(i));
+            if (digit < 0) {
+                return null;
+            }
+            if (digits < 16) {
+                msb = (msb << 4) | digit;
+            } else {
+                lsb = (lsb << 4) | digit;
+            }
+            digits++;
+        }
+        return new CompactId(msb, lsb);
+    }
+
+    /**
+     * Returns the value of the ASCII hex digit, or {@code -1} if the char is not in {@code [0-9a-fA-F]}.
+     *
+     * <p>Unlike {@link Character#digit(char, int)}, does not accept non-ASCII digits
+     * (such as full-width ones), which are not valid in a UUID string.
+     */
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the compact string form produced by {@link #toCompactString()}.
+     *
+     * @throws IllegalArgumentException if the string is not a valid compact ID
+     */
+    public static CompactId fromCompactString(String value) {
+        checkNotNull(value);
+        checkArgument(value.length() == COMPACT_STRING_LENGTH, "Not a compact ID: %s", value);
+        final byte[] bytes = COMPACT_ENCODING.decode(value);
+        return new CompactId(readLong(bytes, 0), readLong(bytes, 8));
+    }
+
+    /**
+     * Returns the canonical lowercase 36-char UUID form.
+     */
+    public String toUuidString() {
+        final char[] chars = new char[UUID_STRING_LENGTH];
+        writeHex(chars, 0, mostSigBits >>> 32, 8);
+        chars[8] = '-';
+        writeHex(chars, 9, mostSigBits >>> 16, 4);
+        chars[13] = '-';
+        writeHex(chars, 14, mostSigBits, 4);
+        chars[18] = '-';
+        writeHex(chars, 19, leastSigBits >>> 48, 4);
+        chars[23] = '-';
+        writeHex(chars, 24, leastSigBits, 12);
+        return new String(chars);
+    }
+
+    /**
+     * Returns the 22-char URL-safe Base64 form.
+     */
+    public String toCompactString() {
+        final byte[] bytes = new byte[BYTES];
+        writeLong(bytes, 0, mostSigBits);
+        writeLong(bytes, 8, leastSigBits);
+        return COMPACT_ENCODING.encode(bytes);
+    }
+
+    public long getMostSignificantBits() {
+        return mostSigBits;
+    }
+
+    public long getLeastSignificantBits() {
+        return leastSigBits;
+    }
+
+    /**
+     * Returns the creation time in milliseconds for time-ordered IDs.
+     *
+     * <p>The result is meaningless for IDs not created by {@link #newTimeOrdered()}.
+     */
+    public long getTimestampMillis() {
+        return mostSigBits >>> 16;
+    }
+
+    private static void writeHex(char[] dest, int offset, long value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            dest[offset + i] = Character.forDigit((int) (value & 0xF), 16);
+            value >>>= 4;
+        }
+    }
+
+    private static void writeLong(byte[] dest, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            dest[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long readLong(byte[] src, int offset) {
+        long result = 0;
+        for (int i = 0; i < 8; i++) {
+            result = (result << 8) | (src[offset + i] & 0xFF);
+        }
+        return result;
+    }
+
+    /**
+     * Compares IDs as unsigned 128-bit numbers, so that time-ordered IDs are sorted by creation time.
+     */
+    @Override
+    public int compareTo(CompactId other) {
+        final int result = compareUnsigned(mostSigBits, other.mostSigBits);
+        return result != 0
+               ? result
+               : compareUnsigned(leastSigBits, other.leastSigBits);
+    }
+
+    private static int compareUnsigned(long a, long b) {
+        final long flippedA = a + Long.MIN_VALUE;
+        final long flippedB = b + Long.MIN_VALUE;
+        return flippedA < flippedB ? -1 : (flippedA == flippedB ? 0 : 1);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CompactId)) {
+            return false;
+        }
+        final CompactId other = (CompactId) obj;
+        return mostSigBits == other.mostSigBits && leastSigBits == other.leastSigBits;
+    }
+
+    @Override
+    public int hashCode() {
+        final long hash = mostSigBits ^ leastSigBits;
+        return (int) (hash >> 32) ^ (int) hash;
+    }
+
+    @Override
+    public String toString() {
+        return toUuidString();
+    }
+}
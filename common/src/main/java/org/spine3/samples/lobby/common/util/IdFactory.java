@@ -21,7 +21,6 @@
 package org.spine3.samples.lobby.common.util;
 
 import com.google.protobuf.Message;
-import org.spine3.base.Identifiers;
 import org.spine3.samples.lobby.common.ConferenceId;
 import org.spine3.samples.lobby.common.OrderId;
 import org.spine3.samples.lobby.common.ReservationId;
@@ -30,6 +29,9 @@ import org.spine3.samples.lobby.common.SeatTypeId;
 /**
  * The utility class containing convenience methods for identifiers creation.
  *
+ * <p>All identifiers are time-ordered UUID strings (see {@link CompactId}), so they stay
+ * compatible with existing random UUID values while keeping related records close in storage.
+ *
  * @author Alexander Litus
  * @see Message
  */
@@ -40,41 +42,41 @@ public class IdFactory {
     }
 
     /**
-     * Creates a new {@code OrderId} with a random UUID value.
+     * Creates a new {@code OrderId} with a new time-ordered UUID value.
      */
     public static OrderId newOrderId() {
-        final String id = Identifiers.newUuid();
+        final String id = newUuid();
         return OrderId.newBuilder()
                       .setUuid(id)
                       .build();
     }
 
     /**
-     * Creates a new {@code ReservationId} with a random UUID value.
+     * Creates a new {@code ReservationId} with a new time-ordered UUID value.
      */
     public static ReservationId newReservationId() {
-        final String id = Identifiers.newUuid();
+        final String id = newUuid();
         return ReservationId.newBuilder()
                             .setUuid(id)
                             .build();
     }
 
     /**
-     * Creates a new {@code ConferenceId} with a random UUID value.
+     * Creates a new {@code ConferenceId} with a new time-ordered UUID value.
      */
     public static ConferenceId newConferenceId() {
-        final String id = Identifiers.newUuid();
+        final String id = newUuid();
         return ConferenceId.newBuilder()
                            .setUuid(id)
                            .build();
     }
 
     /**
-     * Creates a new {@code SeatTypeId} with a random UUID value.
+     * Creates a new {@code SeatTypeId} with a new time-ordered UUID value.
      */
     public static SeatTypeId newSeatTypeId() {
         return SeatTypeId.newBuilder()
-                         .setUuid(Identifiers.newUuid())
+                         .setUuid(newUuid())
                          .build();
     }
 
@@ -86,4 +88,15 @@ public class IdFactory {
                          .setUuid(uuid)
                          .build();
     }
+
+    /**
+     * Generates a new time-ordered UUID string.
+     *
+     * <p>The result has the same format as values created by {@link org.spine3.base.Identifiers#newUuid()}.
+     */
+    public static String newUuid() {
+        final String result = CompactId.newTimeOrdered()
+                                       .toUuidString();
+        return result;
+    }
 }
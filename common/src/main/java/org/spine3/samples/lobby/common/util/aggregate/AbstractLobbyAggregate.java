@@ -21,18 +21,27 @@
 package org.spine3.samples.lobby.common.util.aggregate;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import com.google.protobuf.Message;
 import org.spine3.base.CommandContext;
 import org.spine3.base.Event;
+import org.spine3.protobuf.AnyPacker;
 import org.spine3.samples.lobby.common.ImportEvents;
+import org.spine3.samples.lobby.common.util.dispatch.MessageDispatcher;
+import org.spine3.samples.lobby.common.util.dispatch.MessageDispatchers;
 import org.spine3.server.aggregate.Aggregate;
 
+import javax.annotation.Nullable;
+import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 
 /**
  * <p>Abstract type of aggregate used in the project.
  * Provides some tools for testing needs.</p>
  *
+ * <p>Event appliers of subclasses should be package-private, so that the dispatcher generated
+ * for the aggregate class can call them without reflection (see {@link #replay(Iterable)}).
+ *
  * @param <I> the type for IDs of this class of aggregates
  * @param <S> the type of the state held by the aggregate
  * @param <B> the type of the aggregate state builder
@@ -43,6 +52,17 @@ import java.util.List;
 @SuppressWarnings("AbstractClassWithoutAbstractMethods")
 public abstract class AbstractLobbyAggregate<I, S extends Message, B extends Message.Builder> extends Aggregate<I, S, B> {
 
+    /**
+     * The builder used while replaying events via {@link #replay(Iterable)}.
+     */
+    @Nullable
+    private B replayBuilder;
+
+    /**
+     * The version of the aggregate when it was loaded by an {@link OptimisticAggregateRepository}.
+     */
+    private int loadedVersion;
+
     /**
      * Creates a new aggregate instance.
      *
@@ -57,6 +77,61 @@ public abstract class AbstractLobbyAggregate<I, S extends Message, B extends Mes
         super(id);
     }
 
+    /**
+     * Returns the builder of the replayed state during {@link #replay(Iterable)},
+     * or the builder provided by {@link Aggregate} otherwise.
+     */
+    @Override
+    protected B getBuilder() {
+        if (replayBuilder != null) {
+            return replayBuilder;
+        }
+        return super.getBuilder();
+    }
+
+    /**
+     * Applies the given events to the aggregate state.
+     *
+     * <p>Used to restore aggregates from event histories read outside of the repository,
+     * e.g. while compacting or archiving the history.
+     *
+     * <p>Uses the dispatcher generated for the aggregate class at build time, if it is present.
+     * Otherwise, {@code @Apply} methods are called via reflection.
+     *
+     * @param events the events to apply
+     * @see MessageDispatchers#forClass(Class)
+     */
+    public void replay(Iterable<Event> events) {
+        final MessageDispatcher<AbstractLobbyAggregate<I, S, B>> dispatcher = MessageDispatchers.forClass(getClass());
+        replay(events, dispatcher);
+    }
+
+    /**
+     * Applies the given events to the aggregate state using the given dispatcher.
+     *
+     * @param events     the events to apply
+     * @param dispatcher the dispatcher calling {@code @Apply} methods of this aggregate
+     */
+    @VisibleForTesting
+    public void replay(Iterable<Event> events, MessageDispatcher<AbstractLobbyAggregate<I, S, B>> dispatcher) {
+        @SuppressWarnings("unchecked") // It is ensured by the `Aggregate` type parameters.
+        final B builder = (B) getState().toBuilder();
+        replayBuilder = builder;
+        try {
+            for (Event event : events) {
+                final Message message = AnyPacker.unpack(event.getMessage());
+                dispatcher.apply(this, message);
+            }
+        } catch (InvocationTargetException e) {
+            throw Throwables.propagate(e.getCause());
+        } finally {
+            replayBuilder = null;
+        }
+        @SuppressWarnings("unchecked") // It is ensured by the `Aggregate` type parameters.
+        final S newState = (S) builder.build();
+        incrementState(newState);
+    }
+
     /**
      * Changes the state of the aggregate.
      * Should be used for testing purposes only.
@@ -68,6 +143,14 @@ public abstract class AbstractLobbyAggregate<I, S extends Message, B extends Mes
         incrementState(newState);
     }
 
+    /* package */ int getLoadedVersion() {
+        return loadedVersion;
+    }
+
+    /* package */ void setLoadedVersion(int loadedVersion) {
+        this.loadedVersion = loadedVersion;
+    }
+
     /**
      * Provides basic logic for handling {@code ImportEvents} command.
      * If no special logic is required, should be overridden "as is" with {@link org.spine3.server.command.Assign} annotation.
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.common.util.aggregate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The statistics of commits of an {@link OptimisticAggregateRepository}.
+ *
+ * <p>A commit is an attempt to store an aggregate after it handled a command.
+ * A commit conflicts if another command committed a newer version of the aggregate in the meantime.
+ *
+ * <p>Is thread-safe. The counters are updated independently, so a snapshot taken while commands
+ * are dispatched may be slightly inconsistent.
+ *
+ * @author Alexander Litus
+ */
+public class CommitStats {
+
+    private final AtomicLong commandCount = new AtomicLong();
+    private final AtomicLong commitCount = new AtomicLong();
+    private final AtomicLong conflictCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong exhaustedCount = new AtomicLong();
+
+    /**
+     * The numbers of commands by the number of their retries.
+     */
+    private final AtomicLongArray commandCountsByRetries;
+
+    /* package */ CommitStats(int maxAttempts) {
+        this.commandCountsByRetries = new AtomicLongArray(maxAttempts);
+    }
+
+    /* package */ void onCommit() {
+        commitCount.incrementAndGet();
+    }
+
+    /* package */ void onConflict() {
+        conflictCount.incrementAndGet();
+    }
+
+    /* package */ void onRetriesExhausted() {
+        exhaustedCount.incrementAndGet();
+    }
+
+    /* package */ void onCommandDispatched(int retries) {
+        commandCount.incrementAndGet();
+        retryCount.addAndGet(retries);
+        commandCountsByRetries.incrementAndGet(Math.min(retries, commandCountsByRetries.length() - 1));
+    }
+
+    /**
+     * Returns the number of dispatched commands, including the failed ones.
+     */
+    public long getCommandCount() {
+        return commandCount.get();
+    }
+
+    public long getCommitCount() {
+        return commitCount.get();
+    }
+
+    public long getConflictCount() {
+        return conflictCount.get();
+    }
+
+    /**
+     * Returns the number of commands which failed because they conflicted on each attempt.
+     */
+    public long getExhaustedCount() {
+        return exhaustedCount.get();
+    }
+
+    /**
+     * Returns the share of commits which conflicted, from {@code 0} to {@code 1}.
+     */
+    public double getConflictRate() {
+        final long commits = commitCount.get();
+        final double result = (commits == 0) ? 0 : (double) conflictCount.get() / commits;
+        return result;
+    }
+
+    /**
+     * Returns the mean number of retries per dispatched command.
+     */
+    public double getRetriesPerCommand() {
+        final long commands = commandCount.get();
+        final double result = (commands == 0) ? 0 : (double) retryCount.get() / commands;
+        return result;
+    }
+
+    /**
+     * Returns the number of commands which were retried the given number of times.
+     */
+    public long getCommandCount(int retries) {
+        if (retries < 0 || retries >= commandCountsByRetries.length()) {
+            return 0;
+        }
+        return commandCountsByRetries.get(retries);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d commands, %d commits, %d conflicts (%.2f%%), %.3f retries per command, " +
+                             "%d exhausted",
+                             getCommandCount(), getCommitCount(), getConflictCount(), getConflictRate() * 100,
+                             getRetriesPerCommand(), getExhaustedCount());
+    }
+}
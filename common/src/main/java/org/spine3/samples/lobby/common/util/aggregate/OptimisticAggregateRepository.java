@@ -0,0 +1,216 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.common.util.aggregate;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Striped;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spine3.base.Command;
+import org.spine3.server.BoundedContext;
+import org.spine3.server.aggregate.AggregateRepository;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The aggregate repository which commits concurrent commands to the same aggregate optimistically.
+ *
+ * <p>An aggregate is loaded, handles a command and is stored in separate steps, so two concurrent commands
+ * may be handled against the same state. Instead of serializing the handling of commands with a lock,
+ * the repository stores an aggregate only if the version it was loaded with is still the version
+ * in the storage. Otherwise, the events of the command are discarded with a {@link VersionConflictException},
+ * and the command is handled again against the fresh state according to the {@link RetryPolicy}.
+ *
+ * <p>The stored version is checked and the events are written under a lock striped by aggregate ID,
+ * so only the commits of the aggregates sharing a stripe wait for each other. The version written
+ * by each commit is kept as the stored version of the aggregate, so a commit does not read
+ * the aggregate back from the storage. The stored versions are kept for a bounded number of recently
+ * committed aggregates; the first commit of any other aggregate loads it to learn its version.
+ * As the storage has no version-checked append, the repository must be the only writer of its aggregates.
+ *
+ * <p>Commands with no events are checked as well, as their outcome (e.g. a rejection) depends on the state.
+ *
+ * <p>A retried command is handled more than once, so any side effect of its handler (e.g. a call
+ * to an external service, or a change of an in-memory counter) is repeated, while only the events
+ * of the last attempt are stored. Commands are therefore retried only if the repository
+ * {@linkplain #isRetrySafe(Command) declares} their handlers free of side effects.
+ *
+ * @param <I> the type of aggregate IDs
+ * @param <A> the type of aggregates
+ * @author Alexander Litus
+ */
+public abstract class OptimisticAggregateRepository<I, A extends AbstractLobbyAggregate<I, ?, ?>>
+        extends AggregateRepository<I, A> {
+
+    private static final int LOCK_STRIPE_COUNT = 64;
+    private static final int MAX_STORED_VERSION_COUNT = 10_000;
+
+    private final Striped<Lock> commitLocks = Striped.lock(LOCK_STRIPE_COUNT);
+
+    /**
+     * The versions of recently committed aggregates in the storage, updated under the commit locks.
+     */
+    private final Cache<I, Integer> storedVersions = CacheBuilder.newBuilder()
+                                                                 .maximumSize(MAX_STORED_VERSION_COUNT)
+                                                                 .build();
+    private final RetryPolicy retryPolicy;
+    private final CommitStats stats;
+
+    /**
+     * Creates a new repository instance with the {@linkplain RetryPolicy#getDefault() default} retry policy.
+     *
+     * @param boundedContext the bounded context to which this repository belongs
+     */
+    protected OptimisticAggregateRepository(BoundedContext boundedContext) {
+        this(boundedContext, RetryPolicy.getDefault());
+    }
+
+    /**
+     * Creates a new repository instance.
+     *
+     * @param boundedContext the bounded context to which this repository belongs
+     * @param retryPolicy    the policy of retrying conflicting commands
+     */
+    protected OptimisticAggregateRepository(BoundedContext boundedContext, RetryPolicy retryPolicy) {
+        super(boundedContext);
+        this.retryPolicy = checkNotNull(retryPolicy);
+        this.stats = new CommitStats(retryPolicy.getMaxAttempts());
+    }
+
+    /**
+     * Dispatches the command, handling it again while it conflicts with concurrent commands.
+     *
+     * @throws VersionConflictException if the command conflicts on each attempt allowed by the retry policy,
+     *                                  or conflicts once and is not {@linkplain #isRetrySafe(Command) safe}
+     *                                  to retry
+     */
+    @Override
+    public void dispatch(Command command) throws IllegalStateException {
+        int retries = 0;
+        try {
+            while (true) {
+                try {
+                    super.dispatch(command);
+                    return;
+                } catch (VersionConflictException e) {
+                    if (!isRetrySafe(command)
+                            || !retryPolicy.canRetry(retries)
+                            || Thread.currentThread()
+                                     .isInterrupted()) {
+                        stats.onRetriesExhausted();
+                        throw e;
+                    }
+                    log().debug("Retrying the command after a conflict: {}", e.getMessage());
+                    LockSupport.parkNanos(retryPolicy.getDelayNanos(retries));
+                    retries++;
+                }
+            }
+        } finally {
+            stats.onCommandDispatched(retries);
+        }
+    }
+
+    /**
+     * Determines if the given command may be handled again after a conflict.
+     *
+     * <p>Returns {@code false} by default. Override this method to return {@code true} for the commands
+     * whose handlers only read the aggregate state and the command, and produce events.
+     *
+     * @param command the conflicting command
+     */
+    @SuppressWarnings("UnusedParameters") // The parameter is used by the overriding methods.
+    protected boolean isRetrySafe(Command command) {
+        return false;
+    }
+
+    /**
+     * Loads an aggregate and remembers the version it is loaded with.
+     */
+    @Nonnull
+    @Override
+    public A load(I id) throws IllegalStateException {
+        final A aggregate = super.load(id);
+        aggregate.setLoadedVersion(aggregate.getVersion());
+        return aggregate;
+    }
+
+    /**
+     * Stores the aggregate if no other command committed it since it was loaded.
+     *
+     * @throws VersionConflictException if a newer version of the aggregate is stored
+     */
+    @Override
+    protected void store(A aggregate) {
+        final I id = aggregate.getId();
+        final int expectedVersion = aggregate.getLoadedVersion();
+        stats.onCommit();
+        final Lock lock = commitLocks.get(id);
+        lock.lock();
+        try {
+            final int storedVersion = getStoredVersion(id);
+            if (storedVersion != expectedVersion) {
+                stats.onConflict();
+                throw new VersionConflictException(id, expectedVersion, storedVersion);
+            }
+            storedVersions.invalidate(id);
+            super.store(aggregate);
+            storedVersions.put(id, aggregate.getVersion());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the version of the aggregate in the storage.
+     *
+     * <p>Must be called under the commit lock of the aggregate.
+     */
+    private int getStoredVersion(I id) {
+        final Integer committedVersion = storedVersions.getIfPresent(id);
+        if (committedVersion != null) {
+            return committedVersion;
+        }
+        return super.load(id)
+                    .getVersion();
+    }
+
+    /**
+     * Returns the statistics of commits and conflicts of this repository.
+     */
+    public CommitStats getCommitStats() {
+        return stats;
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+        @SuppressWarnings("NonSerializableFieldInSerializableClass")
+        private final Logger value = LoggerFactory.getLogger(OptimisticAggregateRepository.class);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.common.util.aggregate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The policy of retrying commands which conflict with concurrent commands to the same aggregate.
+ *
+ * <p>A command is handled at most {@linkplain Builder#setMaxAttempts(int) max attempts} times.
+ * Before retry {@code n} (starting from zero), the thread waits for a random time
+ * between zero and {@code min(maxDelay, baseDelay * 2^n)}, so that the commands which conflicted once
+ * do not conflict again by retrying at the same time.
+ *
+ * @author Alexander Litus
+ * @see OptimisticAggregateRepository
+ */
+public class RetryPolicy {
+
+    private static final int MAX_DELAY_SHIFT = 30;
+
+    private final int maxAttempts;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+
+    private RetryPolicy(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.baseDelayNanos = builder.baseDelayNanos;
+        this.maxDelayNanos = builder.maxDelayNanos;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the policy with default settings.
+     */
+    public static RetryPolicy getDefault() {
+        return newBuilder().build();
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Returns {@code true} if a command may be handled again after the given number of retries.
+     */
+    public boolean canRetry(int retryCount) {
+        final boolean result = retryCount + 1 < maxAttempts;
+        return result;
+    }
+
+    /**
+     * Returns a random delay before the retry with the given number, in nanoseconds.
+     *
+     * @param retryNumber the number of the retry, starting from zero
+     */
+    public long getDelayNanos(int retryNumber) {
+        checkArgument(retryNumber >= 0, "Retry number must not be negative.");
+        final long bound = Math.min(maxDelayNanos, baseDelayNanos << Math.min(retryNumber, MAX_DELAY_SHIFT));
+        if (bound <= 0) {
+            return 0;
+        }
+        final long result = ThreadLocalRandom.current()
+                                             .nextLong(bound);
+        return result;
+    }
+
+    /**
+     * The builder of {@link RetryPolicy} instances.
+     */
+    public static class Builder {
+
+        private static final int DEFAULT_MAX_ATTEMPTS = 10;
+        private static final long DEFAULT_BASE_DELAY_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+        private static final long DEFAULT_MAX_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+        private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+        private long baseDelayNanos = DEFAULT_BASE_DELAY_NANOS;
+        private long maxDelayNanos = DEFAULT_MAX_DELAY_NANOS;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum number of times a command is handled, including the first attempt.
+         */
+        public Builder setMaxAttempts(int maxAttempts) {
+            checkArgument(maxAttempts > 0, "Max attempts must be positive.");
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the bound of the delay before the first retry, which doubles with each next retry
+         * up to the given maximum.
+         */
+        public Builder setDelay(long baseDelay, long maxDelay, TimeUnit unit) {
+            checkNotNull(unit);
+            checkArgument(baseDelay >= 0 && maxDelay >= baseDelay,
+                          "Delays must satisfy 0 <= baseDelay <= maxDelay.");
+            this.baseDelayNanos = unit.toNanos(baseDelay);
+            this.maxDelayNanos = unit.toNanos(maxDelay);
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.common.util.aggregate;
+
+/**
+ * Thrown when an aggregate is stored after a newer version of it is committed by another command.
+ *
+ * @author Alexander Litus
+ * @see OptimisticAggregateRepository
+ */
+public class VersionConflictException extends IllegalStateException {
+
+    private static final long serialVersionUID = 0L;
+
+    private final int expectedVersion;
+    private final int actualVersion;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param aggregateId     the ID of the aggregate
+     * @param expectedVersion the version of the aggregate when it was loaded
+     * @param actualVersion   the last committed version of the aggregate
+     */
+    public VersionConflictException(Object aggregateId, int expectedVersion, int actualVersion) {
+        super(String.format("Version conflict of aggregate %s: expected version %d, actual %d.",
+                            aggregateId, expectedVersion, actualVersion));
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public int getActualVersion() {
+        return actualVersion;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.common.util.dispatch;
+
+import com.google.protobuf.Message;
+import org.spine3.base.EventContext;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Dispatches events to the handler methods of an entity class.
+ *
+ * <p>Exceptions thrown by a handler method are wrapped into {@link InvocationTargetException},
+ * the same way as {@link java.lang.reflect.Method#invoke(Object, Object...)} does.
+ *
+ * @param <E> the type of the entity
+ * @author Alexander Litus
+ * @see MessageDispatchers
+ */
+public interface MessageDispatcher<E> {
+
+    /**
+     * Calls the {@code @Apply} method of the {@code entity} for the {@code event}.
+     *
+     * @throws IllegalArgumentException if there is no applier for the event class
+     */
+    void apply(E entity, Message event) throws InvocationTargetException;
+
+    /**
+     * Calls the {@code @Subscribe} method of the {@code entity} for the {@code event}.
+     *
+     * @throws IllegalArgumentException if there is no subscriber for the event class
+     */
+    void on(E entity, Message event, EventContext context) throws InvocationTargetException;
+}
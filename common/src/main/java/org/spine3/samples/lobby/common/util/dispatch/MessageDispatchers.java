@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.common.util.dispatch;
+
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.collect.Maps.newConcurrentMap;
+
+/**
+ * The utility class for obtaining {@link MessageDispatcher}s for entity classes.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings("UtilityClass")
+public class MessageDispatchers {
+
+    /**
+     * The suffix of the name of a generated dispatcher class.
+     */
+    public static final String DISPATCHER_CLASS_SUFFIX = "Dispatcher";
+
+    private static final ConcurrentMap<Class<?>, MessageDispatcher<?>> dispatchers = newConcurrentMap();
+
+    private MessageDispatchers() {
+    }
+
+    /**
+     * Returns the generated dispatcher for the given entity class,
+     * or a {@link ReflectiveDispatcher} if there is no generated one.
+     *
+     * <p>The result is cached per entity class.
+     */
+    @SuppressWarnings("unchecked") // It is ensured by the generator that the dispatcher is for the entity class.
+    public static <E> MessageDispatcher<E> forClass(Class<?> entityClass) {
+        MessageDispatcher<?> result = dispatchers.get(entityClass);
+        if (result == null) {
+            final MessageDispatcher<?> generated = loadGenerated(entityClass);
+            final MessageDispatcher<?> created = (generated != null)
+                                                 ? generated
+                                                 : new ReflectiveDispatcher<Object>(entityClass);
+            final MessageDispatcher<?> existing = dispatchers.putIfAbsent(entityClass, created);
+            result = (existing != null) ? existing : created;
+        }
+        return (MessageDispatcher<E>) result;
+    }
+
+    /**
+     * Returns a new reflective dispatcher for the given entity class.
+     *
+     * <p>Use {@link #forClass(Class)} unless a reflective dispatcher is required explicitly (e.g., for benchmarks).
+     */
+    public static <E> MessageDispatcher<E> reflective(Class<?> entityClass) {
+        return new ReflectiveDispatcher<>(entityClass);
+    }
+
+    /**
+     * Returns {@code true} if there is a generated dispatcher for the given entity class.
+     */
+    public static boolean isGenerated(Class<?> entityClass) {
+        final boolean result = !(forClass(entityClass) instanceof ReflectiveDispatcher);
+        return result;
+    }
+
+    private static MessageDispatcher<?> loadGenerated(Class<?> entityClass) {
+        final String name = entityClass.getName() + DISPATCHER_CLASS_SUFFIX;
+        try {
+            final Class<?> dispatcherClass = Class.forName(name, true, entityClass.getClassLoader());
+            final MessageDispatcher<?> result = (MessageDispatcher<?>) dispatcherClass.newInstance();
+            return result;
+        } catch (ClassNotFoundException ignored) {
+            return null;
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Cannot create the dispatcher: " + name, e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.common.util.dispatch;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.Message;
+import org.spine3.base.EventContext;
+import org.spine3.server.aggregate.Apply;
+import org.spine3.server.event.Subscribe;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * The dispatcher which finds handler methods by annotations and calls them via reflection.
+ *
+ * <p>The methods are looked up once, when the dispatcher is created.
+ * Only the methods declared in the entity class itself are taken into account.
+ *
+ * @param <E> the type of the entity
+ * @author Alexander Litus
+ */
+public class ReflectiveDispatcher<E> implements MessageDispatcher<E> {
+
+    private final String entityClassName;
+    private final Map<Class<?>, Method> appliers;
+    private final Map<Class<?>, Method> subscribers;
+
+    /* package */ ReflectiveDispatcher(Class<?> entityClass) {
+        this.entityClassName = entityClass.getName();
+        this.appliers = scan(entityClass, Apply.class);
+        this.subscribers = scan(entityClass, Subscribe.class);
+    }
+
+    private static Map<Class<?>, Method> scan(Class<?> entityClass, Class<? extends Annotation> annotation) {
+        final ImmutableMap.Builder<Class<?>, Method> result = ImmutableMap.builder();
+        for (Method method : entityClass.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(annotation) && method.getParameterTypes().length > 0) {
+                method.setAccessible(true);
+                result.put(method.getParameterTypes()[0], method);
+            }
+        }
+        return result.build();
+    }
+
+    @Override
+    public void apply(E entity, Message event) throws InvocationTargetException {
+        final Method method = findMethod(appliers, event, Apply.class);
+        invoke(method, entity, event);
+    }
+
+    @Override
+    public void on(E entity, Message event, EventContext context) throws InvocationTargetException {
+        final Method method = findMethod(subscribers, event, Subscribe.class);
+        final boolean acceptsContext = method.getParameterTypes().length > 1;
+        if (acceptsContext) {
+            invoke(method, entity, event, context);
+        } else {
+            invoke(method, entity, event);
+        }
+    }
+
+    private Method findMethod(Map<Class<?>, Method> methods, Message event, Class<? extends Annotation> annotation) {
+        final Method method = methods.get(event.getClass());
+        if (method == null) {
+            throw new IllegalArgumentException("No @" + annotation.getSimpleName() + " method in " +
+                                               entityClassName + " for " + event.getClass()
+                                                                                .getName());
+        }
+        return method;
+    }
+
+    private static void invoke(Method method, Object entity, Object... args) throws InvocationTargetException {
+        try {
+            method.invoke(entity, args);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.common.util.idempotency;
+
+/**
+ * An open-addressing hash set of 64-bit fingerprints.
+ *
+ * <p>Takes about 11 bytes per fingerprint on average, compared to about 80 bytes per string key
+ * in a {@link java.util.HashSet}.
+ *
+ * <p>Is not thread-safe.
+ *
+ * @author Alexander Litus
+ */
+/* package */ class FingerprintSet {
+
+    /**
+     * The value of an empty slot. The fingerprint with this value is stored as {@link #ZERO_REPLACEMENT}.
+     */
+    private static final long EMPTY = 0;
+    private static final long ZERO_REPLACEMENT = 1;
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int LOAD_FACTOR_PERCENT = 75;
+
+    private long[] table;
+    private int size;
+
+    /* package */ FingerprintSet() {
+        this.table = new long[MIN_CAPACITY];
+    }
+
+    /**
+     * Adds the fingerprint to the set.
+     *
+     * @return {@code true} if the set did not contain the fingerprint
+     */
+    /* package */ boolean add(long fingerprint) {
+        final long value = normalize(fingerprint);
+        if (!insert(table, value)) {
+            return false;
+        }
+        size++;
+        if (size * 100L > table.length * (long) LOAD_FACTOR_PERCENT) {
+            grow();
+        }
+        return true;
+    }
+
+    /* package */ boolean contains(long fingerprint) {
+        final long value = normalize(fingerprint);
+        final int mask = table.length - 1;
+        int index = indexOf(value, mask);
+        while (table[index] != EMPTY) {
+            if (table[index] == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the fingerprint from the set.
+     *
+     * @return {@code true} if the set contained the fingerprint
+     */
+    /* package */ boolean remove(long fingerprint) {
+        final long value = normalize(fingerprint);
+        final int mask = table.length - 1;
+        int index = indexOf(value, mask);
+        while (table[index] != EMPTY) {
+            if (table[index] == value) {
+                removeAt(index);
+                size--;
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /* package */ int size() {
+        return size;
+    }
+
+    private void grow() {
+        final long[] newTable = new long[table.length * 2];
+        for (long value : table) {
+            if (value != EMPTY) {
+                insert(newTable, value);
+            }
+        }
+        table = newTable;
+    }
+
+    private static boolean insert(long[] table, long value) {
+        final int mask = table.length - 1;
+        int index = indexOf(value, mask);
+        while (table[index] != EMPTY) {
+            if (table[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = value;
+        return true;
+    }
+
+    /**
+     * Empties the slot and shifts back the following values of the probe sequence,
+     * so that no lookup stops at the emptied slot before reaching its value.
+     */
+    private void removeAt(int slot) {
+        final int mask = table.length - 1;
+        int hole = slot;
+        int index = slot;
+        while (true) {
+            index = (index + 1) & mask;
+            final long value = table[index];
+            if (value == EMPTY) {
+                break;
+            }
+            final int home = indexOf(value, mask);
+            final boolean canMove = ((index - home) & mask) >= ((index - hole) & mask);
+            if (canMove) {
+                table[hole] = value;
+                hole = index;
+            }
+        }
+        table[hole] = EMPTY;
+    }
+
+    /**
+     * Fingerprints are hashes already, so their low bits are used as the index directly.
+     */
+    private static int indexOf(long value, int mask) {
+        return (int) value & mask;
+    }
+
+    private static long normalize(long fingerprint) {
+        return fingerprint == EMPTY ? ZERO_REPLACEMENT : fingerprint;
+    }
+}
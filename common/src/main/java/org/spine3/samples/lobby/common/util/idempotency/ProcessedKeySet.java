@@ -0,0 +1,273 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.common.util.idempotency;
+
+import com.google.common.base.Ticker;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The time-bounded set of idempotency keys of the messages already processed by entities.
+ *
+ * <p>A key is a pair of an entity key (e.g. an order ID) and an idempotency key of a message
+ * (e.g. a command ID or a key supplied by a client). Pairs are stored as 64-bit fingerprints,
+ * so millions of keys per day take tens of megabytes. The probability of a false duplicate
+ * is about {@code n^2 / 2^65} for {@code n} stored keys, i.e. less than {@code 10^-5} for ten million keys.
+ *
+ * <p>Keys are kept in {@linkplain Builder#setGenerationCount(int) generations}. When the newest generation
+ * gets older than {@code retention / (generationCount - 1)}, the oldest generation is dropped as a whole.
+ * So a key is remembered for at least the {@linkplain Builder#setRetention(long, TimeUnit) retention period}
+ * and at most {@code retention * generationCount / (generationCount - 1)}.
+ *
+ * <p>Is thread-safe. The keys are split into {@link #STRIPE_COUNT} stripes by their fingerprints, each with
+ * its own generations and lock, so that concurrent callers marking different keys rarely wait for each other.
+ *
+ * @author Alexander Litus
+ */
+public class ProcessedKeySet {
+
+    /**
+     * The number of independently locked stripes. Must be a power of two.
+     */
+    private static final int STRIPE_COUNT = 16;
+
+    private final HashFunction hashFunction = Hashing.murmur3_128();
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+    private ProcessedKeySet(Builder builder) {
+        final long generationNanos = builder.retentionNanos / (builder.generationCount - 1);
+        final long startNanos = builder.ticker.read();
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe(builder.ticker, generationNanos, builder.generationCount, startNanos);
+        }
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Marks the message as processed by the entity.
+     *
+     * <p>The check and the marking are atomic, so a caller may mark the message before processing it
+     * to reserve the key against concurrent duplicates. If the processing fails, the key should be
+     * {@linkplain #release(String, String) released}, so that a retry is processed again.
+     *
+     * @param entityKey      the key of the entity processing the message
+     * @param idempotencyKey the key of the message
+     * @return {@code true} if the message was not processed by the entity within the retention period,
+     *         {@code false} if it is a duplicate
+     */
+    public boolean markProcessed(String entityKey, String idempotencyKey) {
+        final long fingerprint = fingerprint(entityKey, idempotencyKey);
+        final boolean result = stripeOf(fingerprint).markProcessed(fingerprint);
+        return result;
+    }
+
+    /**
+     * Forgets that the message was processed by the entity.
+     *
+     * @return {@code true} if the message was marked as processed
+     */
+    public boolean release(String entityKey, String idempotencyKey) {
+        final long fingerprint = fingerprint(entityKey, idempotencyKey);
+        final boolean result = stripeOf(fingerprint).release(fingerprint);
+        return result;
+    }
+
+    /**
+     * Returns {@code true} if the message is processed by the entity within the retention period.
+     */
+    public boolean isProcessed(String entityKey, String idempotencyKey) {
+        final long fingerprint = fingerprint(entityKey, idempotencyKey);
+        final boolean result = stripeOf(fingerprint).contains(fingerprint);
+        return result;
+    }
+
+    /**
+     * Returns the number of keys remembered.
+     *
+     * <p>The stripes are counted one by one, so the result may miss the keys marked or released concurrently.
+     */
+    public long size() {
+        long result = 0;
+        for (Stripe stripe : stripes) {
+            result += stripe.size();
+        }
+        return result;
+    }
+
+    /**
+     * Selects the stripe by the high bits of the fingerprint, as the low bits index the {@link FingerprintSet}.
+     */
+    private Stripe stripeOf(long fingerprint) {
+        final int index = (int) (fingerprint >>> 32) & (STRIPE_COUNT - 1);
+        return stripes[index];
+    }
+
+    private long fingerprint(String entityKey, String idempotencyKey) {
+        final long result = hashFunction.newHasher()
+                                        .putInt(entityKey.length())
+                                        .putString(entityKey, UTF_8)
+                                        .putString(idempotencyKey, UTF_8)
+                                        .hash()
+                                        .asLong();
+        return result;
+    }
+
+    /**
+     * The generations of the fingerprints of one stripe, guarded by the stripe itself.
+     */
+    private static class Stripe {
+
+        private final Ticker ticker;
+        private final long generationNanos;
+        private final int generationCount;
+
+        /**
+         * The generations of keys, the newest first.
+         */
+        private final Deque<FingerprintSet> generations = new ArrayDeque<>();
+        private long newestGenerationStartNanos;
+
+        private Stripe(Ticker ticker, long generationNanos, int generationCount, long startNanos) {
+            this.ticker = ticker;
+            this.generationNanos = generationNanos;
+            this.generationCount = generationCount;
+            for (int i = 0; i < generationCount; i++) {
+                generations.addLast(new FingerprintSet());
+            }
+            this.newestGenerationStartNanos = startNanos;
+        }
+
+        private synchronized boolean markProcessed(long fingerprint) {
+            expireGenerations();
+            if (containsFingerprint(fingerprint)) {
+                return false;
+            }
+            generations.getFirst()
+                       .add(fingerprint);
+            return true;
+        }
+
+        private synchronized boolean release(long fingerprint) {
+            for (FingerprintSet generation : generations) {
+                if (generation.remove(fingerprint)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private synchronized boolean contains(long fingerprint) {
+            expireGenerations();
+            final boolean result = containsFingerprint(fingerprint);
+            return result;
+        }
+
+        private synchronized long size() {
+            expireGenerations();
+            long result = 0;
+            for (FingerprintSet generation : generations) {
+                result += generation.size();
+            }
+            return result;
+        }
+
+        private boolean containsFingerprint(long fingerprint) {
+            for (FingerprintSet generation : generations) {
+                if (generation.contains(fingerprint)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void expireGenerations() {
+            final long elapsed = ticker.read() - newestGenerationStartNanos;
+            if (elapsed < generationNanos) {
+                return;
+            }
+            final long expired = elapsed / generationNanos;
+            final long replaced = Math.min(expired, generationCount);
+            for (long i = 0; i < replaced; i++) {
+                generations.removeLast();
+                generations.addFirst(new FingerprintSet());
+            }
+            newestGenerationStartNanos += expired * generationNanos;
+        }
+    }
+
+    /**
+     * The builder of {@link ProcessedKeySet} instances.
+     */
+    public static class Builder {
+
+        private static final long DEFAULT_RETENTION_NANOS = TimeUnit.DAYS.toNanos(1);
+        private static final int DEFAULT_GENERATION_COUNT = 4;
+
+        private long retentionNanos = DEFAULT_RETENTION_NANOS;
+        private int generationCount = DEFAULT_GENERATION_COUNT;
+        private Ticker ticker = Ticker.systemTicker();
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the minimum period during which processed keys are remembered.
+         */
+        public Builder setRetention(long retention, TimeUnit unit) {
+            checkNotNull(unit);
+            checkArgument(retention > 0, "Retention must be positive.");
+            this.retentionNanos = unit.toNanos(retention);
+            return this;
+        }
+
+        /**
+         * Sets the number of generations in which keys are kept.
+         *
+         * <p>More generations keep the memory closer to the number of keys processed within the retention period,
+         * at the cost of more lookups per key.
+         */
+        public Builder setGenerationCount(int generationCount) {
+            checkArgument(generationCount >= 2, "At least two generations are required.");
+            this.generationCount = generationCount;
+            return this;
+        }
+
+        public Builder setTicker(Ticker ticker) {
+            this.ticker = checkNotNull(ticker);
+            return this;
+        }
+
+        public ProcessedKeySet build() {
+            return new ProcessedKeySet(this);
+        }
+    }
+}
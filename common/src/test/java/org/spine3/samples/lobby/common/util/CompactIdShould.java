@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.common.util;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings("InstanceMethodNamingConvention")
+public class CompactIdShould {
+
+    private static final int ID_COUNT = 1000;
+
+    @Test
+    public void produce_same_uuid_string_as_java_util_uuid() {
+        final UUID uuid = UUID.randomUUID();
+        final CompactId id = CompactId.of(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        assertEquals(uuid.toString(), id.toUuidString());
+    }
+
+    @Test
+    public void parse_uuid_string() {
+        final UUID uuid = UUID.randomUUID();
+        final CompactId id = CompactId.fromUuidString(uuid.toString());
+        assertEquals(uuid.getMostSignificantBits(), id.getMostSignificantBits());
+        assertEquals(uuid.getLeastSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    @Test
+    public void parse_upper_case_uuid_string() {
+        final UUID uuid = UUID.randomUUID();
+        final CompactId id = CompactId.fromUuidString(uuid.toString()
+                                                          .toUpperCase());
+        assertEquals(uuid.toString(), id.toUuidString());
+    }
+
+    @Test
+    public void return_null_when_parsing_non_uuid_string() {
+        assertNull(CompactId.tryParse("registration-pm-123"));
+        assertNull(CompactId.tryParse("zzzzzzzz-zzzz-zzzz-zzzz-zzzzzzzzzzzz"));
+    }
+
+    @Test
+    public void return_null_when_parsing_uuid_string_with_non_ascii_digits() {
+        final String fullWidthDigit = "\uFF11";
+        final String value = fullWidthDigit + UUID.randomUUID()
+                                                  .toString()
+                                                  .substring(1);
+        assertNull(CompactId.tryParse(value));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throw_exception_when_parsing_invalid_uuid_string() {
+        CompactId.fromUuidString("not-a-uuid");
+    }
+
+    @Test
+    public void convert_to_compact_string_and_back() {
+        final CompactId id = CompactId.newTimeOrdered();
+        final String compact = id.toCompactString();
+        assertEquals(22, compact.length());
+        assertEquals(id, CompactId.fromCompactString(compact));
+    }
+
+    @Test
+    public void generate_valid_version_7_uuid() {
+        final CompactId id = CompactId.newTimeOrdered();
+        final UUID uuid = UUID.fromString(id.toUuidString());
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+    }
+
+    @Test
+    public void generate_time_ordered_ids() {
+        CompactId previous = CompactId.newTimeOrdered();
+        for (int i = 0; i < ID_COUNT; i++) {
+            final CompactId next = CompactId.newTimeOrdered();
+            assertTrue(previous.compareTo(next) < 0);
+            assertTrue(previous.toUuidString()
+                               .compareTo(next.toUuidString()) < 0);
+            previous = next;
+        }
+    }
+
+    @Test
+    public void store_creation_time() {
+        final long before = System.currentTimeMillis();
+        final CompactId id = CompactId.newTimeOrdered();
+        assertTrue(id.getTimestampMillis() >= before);
+    }
+}
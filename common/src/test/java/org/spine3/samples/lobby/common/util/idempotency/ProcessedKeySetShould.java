@@ -0,0 +1,200 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.common.util.idempotency;
+
+import com.google.common.base.Ticker;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class ProcessedKeySetShould {
+
+    private static final String ENTITY = "order-1";
+    private static final String KEY = "command-1";
+
+    private final FakeTicker ticker = new FakeTicker();
+    private final ProcessedKeySet keys = ProcessedKeySet.newBuilder()
+                                                        .setRetention(3, TimeUnit.HOURS)
+                                                        .setGenerationCount(4)
+                                                        .setTicker(ticker)
+                                                        .build();
+
+    @Test
+    public void detect_duplicate_key() {
+        assertTrue(keys.markProcessed(ENTITY, KEY));
+        assertFalse(keys.markProcessed(ENTITY, KEY));
+        assertTrue(keys.isProcessed(ENTITY, KEY));
+    }
+
+    @Test
+    public void distinguish_keys_of_different_entities() {
+        keys.markProcessed(ENTITY, KEY);
+
+        assertTrue(keys.markProcessed("order-2", KEY));
+    }
+
+    @Test
+    public void not_confuse_entity_and_key_boundary() {
+        keys.markProcessed("ab", "c");
+
+        assertFalse(keys.isProcessed("a", "bc"));
+    }
+
+    @Test
+    public void remember_key_for_retention_period() {
+        ticker.advance(59, TimeUnit.MINUTES);
+        keys.markProcessed(ENTITY, KEY);
+
+        ticker.advance(3, TimeUnit.HOURS);
+
+        assertTrue(keys.isProcessed(ENTITY, KEY));
+    }
+
+    @Test
+    public void forget_key_after_all_generations_expire() {
+        keys.markProcessed(ENTITY, KEY);
+
+        ticker.advance(4, TimeUnit.HOURS);
+
+        assertFalse(keys.isProcessed(ENTITY, KEY));
+        assertEquals(0, keys.size());
+    }
+
+    @Test
+    public void forget_all_keys_after_long_idle_period() {
+        keys.markProcessed(ENTITY, KEY);
+
+        ticker.advance(30, TimeUnit.DAYS);
+
+        assertFalse(keys.isProcessed(ENTITY, KEY));
+    }
+
+    @Test
+    public void forget_released_key() {
+        keys.markProcessed(ENTITY, KEY);
+
+        assertTrue(keys.release(ENTITY, KEY));
+
+        assertFalse(keys.isProcessed(ENTITY, KEY));
+        assertTrue(keys.markProcessed(ENTITY, KEY));
+    }
+
+    @Test
+    public void not_release_unknown_key() {
+        assertFalse(keys.release(ENTITY, KEY));
+    }
+
+    @Test
+    public void keep_other_keys_when_releasing_key() {
+        final int count = 10_000;
+        final List<String> processed = newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            final String key = UUID.randomUUID()
+                                   .toString();
+            keys.markProcessed(ENTITY, key);
+            processed.add(key);
+        }
+        for (int i = 0; i < count; i += 2) {
+            assertTrue(keys.release(ENTITY, processed.get(i)));
+        }
+        for (int i = 0; i < count; i++) {
+            final boolean kept = i % 2 != 0;
+            assertEquals(kept, keys.isProcessed(ENTITY, processed.get(i)));
+        }
+        assertEquals(count / 2, keys.size());
+    }
+
+    @Test
+    public void store_many_keys() {
+        final int count = 100_000;
+        for (int i = 0; i < count; i++) {
+            assertTrue(keys.markProcessed(ENTITY, UUID.randomUUID()
+                                                      .toString()));
+        }
+        assertEquals(count, keys.size());
+    }
+
+    @Test
+    public void mark_each_key_once_when_marked_concurrently() throws Exception {
+        final int threadCount = 8;
+        final int count = 10_000;
+        final List<String> processed = newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            processed.add(UUID.randomUUID()
+                              .toString());
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        final List<Future<Integer>> results = newArrayListWithCapacity(threadCount);
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int marked = 0;
+                        for (String key : processed) {
+                            if (keys.markProcessed(ENTITY, key)) {
+                                marked++;
+                            }
+                        }
+                        return marked;
+                    }
+                }));
+            }
+            int marked = 0;
+            for (Future<Integer> result : results) {
+                marked += result.get();
+            }
+            assertEquals(count, marked);
+            assertEquals(count, keys.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class FakeTicker extends Ticker {
+
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        private void advance(long duration, TimeUnit unit) {
+            nanos += unit.toNanos(duration);
+        }
+    }
+}
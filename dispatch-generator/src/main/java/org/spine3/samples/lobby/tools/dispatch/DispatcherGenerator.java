@@ -0,0 +1,342 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.tools.dispatch;
+
+import javax.annotation.Nullable;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The annotation processor which generates a {@code MessageDispatcher} for each entity class
+ * declaring {@code @Apply} or {@code @Subscribe} methods.
+ *
+ * <p>The generated class is named {@code <EntityClass>Dispatcher}, resides in the package of the entity class
+ * and calls the handler methods directly from a {@code switch} on the event class name.
+ *
+ * <p>A dispatcher is not generated (and the entity falls back to reflective dispatching) if:
+ * <ul>
+ *     <li>the entity class is not a top-level class, is abstract or generic;
+ *     <li>any of the handler methods is {@code private} or has no parameters;
+ *     <li>there are several handlers of the same event type.
+ * </ul>
+ *
+ * @author Alexander Litus
+ */
+@SupportedAnnotationTypes({
+        DispatcherGenerator.APPLY,
+        DispatcherGenerator.SUBSCRIBE
+})
+public class DispatcherGenerator extends AbstractProcessor {
+
+    /* package */ static final String APPLY = "org.spine3.server.aggregate.Apply";
+    /* package */ static final String SUBSCRIBE = "org.spine3.server.event.Subscribe";
+
+    private static final String DISPATCHER_CLASS_SUFFIX = "Dispatcher";
+    private static final String DISPATCHER_INTERFACE =
+            "org.spine3.samples.lobby.common.util.dispatch.MessageDispatcher";
+    private static final String MESSAGE = "com.google.protobuf.Message";
+    private static final String EVENT_CONTEXT = "org.spine3.base.EventContext";
+    private static final String INVOCATION_EXCEPTION = "java.lang.reflect.InvocationTargetException";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        final Map<TypeElement, EntityMethods> entities = new LinkedHashMap<>();
+        for (TypeElement annotation : annotations) {
+            final String annotationName = annotation.getQualifiedName()
+                                                    .toString();
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.METHOD) {
+                    continue;
+                }
+                final ExecutableElement method = (ExecutableElement) element;
+                final TypeElement entity = (TypeElement) method.getEnclosingElement();
+                EntityMethods methods = entities.get(entity);
+                if (methods == null) {
+                    methods = new EntityMethods();
+                    entities.put(entity, methods);
+                }
+                methods.add(annotationName, method);
+            }
+        }
+        for (Map.Entry<TypeElement, EntityMethods> entry : entities.entrySet()) {
+            final TypeElement entity = entry.getKey();
+            final EntityMethods methods = entry.getValue();
+            if (canGenerate(entity, methods)) {
+                generate(entity, methods);
+            }
+        }
+        // Do not claim Spine annotations, as other processors may need them.
+        return false;
+    }
+
+    private boolean canGenerate(TypeElement entity, EntityMethods methods) {
+        final Set<Modifier> modifiers = entity.getModifiers();
+        if (entity.getNestingKind() != NestingKind.TOP_LEVEL
+                || modifiers.contains(Modifier.ABSTRACT)
+                || !entity.getTypeParameters()
+                          .isEmpty()) {
+            return false;
+        }
+        for (ExecutableElement method : methods.all()) {
+            if (method.getModifiers()
+                      .contains(Modifier.PRIVATE)) {
+                warn(entity, "Dispatcher is not generated for " + entity.getQualifiedName() +
+                             " because the handler method is private: " + method);
+                return false;
+            }
+            if (method.getParameters()
+                      .isEmpty()) {
+                warn(entity, "Dispatcher is not generated for " + entity.getQualifiedName() +
+                             " because the handler method has no parameters: " + method);
+                return false;
+            }
+        }
+        return hasUniqueMessageTypes(entity, methods.appliers)
+                && hasUniqueMessageTypes(entity, methods.subscribers);
+    }
+
+    private boolean hasUniqueMessageTypes(TypeElement entity, Iterable<ExecutableElement> methods) {
+        final Set<TypeElement> messageTypes = new HashSet<>();
+        for (ExecutableElement method : methods) {
+            if (!messageTypes.add(messageType(method))) {
+                warn(entity, "Dispatcher is not generated for " + entity.getQualifiedName() +
+                             " because there are several handlers of the event type: " + method);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void warn(Element element, String message) {
+        processingEnv.getMessager()
+                     .printMessage(Diagnostic.Kind.WARNING, message, element);
+    }
+
+    private void generate(TypeElement entity, EntityMethods methods) {
+        final PackageElement pkg = processingEnv.getElementUtils()
+                                                .getPackageOf(entity);
+        final String packageName = pkg.getQualifiedName()
+                                      .toString();
+        final String entityName = entity.getSimpleName()
+                                        .toString();
+        final String dispatcherName = entityName + DISPATCHER_CLASS_SUFFIX;
+        final String qualifiedName = pkg.isUnnamed() ? dispatcherName : packageName + '.' + dispatcherName;
+
+        final StringBuilder out = new StringBuilder(4096);
+        if (!pkg.isUnnamed()) {
+            out.append("package ")
+               .append(packageName)
+               .append(";\n\n");
+        }
+        out.append("/**\n")
+           .append(" * Dispatches events to the handler methods of {@link ")
+           .append(entityName)
+           .append("}.\n")
+           .append(" *\n")
+           .append(" * <p>Generated by {@code ")
+           .append(DispatcherGenerator.class.getSimpleName())
+           .append("}. Do not edit.\n")
+           .append(" */\n")
+           .append("public final class ")
+           .append(dispatcherName)
+           .append(" implements ")
+           .append(DISPATCHER_INTERFACE)
+           .append('<')
+           .append(entityName)
+           .append("> {\n");
+
+        appendApply(out, entityName, methods.appliers);
+        appendOn(out, entityName, methods.subscribers);
+
+        out.append("}\n");
+        write(entity, qualifiedName, out);
+    }
+
+    private void appendApply(StringBuilder out, String entityName, List<ExecutableElement> methods) {
+        out.append('\n')
+           .append("    @Override\n")
+           .append("    public void apply(")
+           .append(entityName)
+           .append(" entity, ")
+           .append(MESSAGE)
+           .append(" event) throws ")
+           .append(INVOCATION_EXCEPTION)
+           .append(" {\n");
+        appendSwitchStart(out);
+        for (ExecutableElement method : methods) {
+            appendCase(out, method);
+            out.append("                    entity.")
+               .append(method.getSimpleName())
+               .append(arguments(method, null))
+               .append(";\n")
+               .append("                    return;\n");
+        }
+        appendSwitchEnd(out, "Apply", entityName);
+    }
+
+    private void appendOn(StringBuilder out, String entityName, List<ExecutableElement> methods) {
+        out.append('\n')
+           .append("    @Override\n")
+           .append("    public void on(")
+           .append(entityName)
+           .append(" entity, ")
+           .append(MESSAGE)
+           .append(" event, ")
+           .append(EVENT_CONTEXT)
+           .append(" context) throws ")
+           .append(INVOCATION_EXCEPTION)
+           .append(" {\n");
+        appendSwitchStart(out);
+        for (ExecutableElement method : methods) {
+            appendCase(out, method);
+            out.append("                    entity.")
+               .append(method.getSimpleName())
+               .append(arguments(method, "context"))
+               .append(";\n")
+               .append("                    return;\n");
+        }
+        appendSwitchEnd(out, "Subscribe", entityName);
+    }
+
+    private static void appendSwitchStart(StringBuilder out) {
+        out.append("        final String type = event.getClass().getName();\n")
+           .append("        try {\n")
+           .append("            switch (type) {\n");
+    }
+
+    private static void appendSwitchEnd(StringBuilder out, String annotation, String entityName) {
+        out.append("                default:\n")
+           .append("                    break;\n")
+           .append("            }\n")
+           .append("        } catch (Throwable t) {\n")
+           .append("            throw new ")
+           .append(INVOCATION_EXCEPTION)
+           .append("(t);\n")
+           .append("        }\n")
+           .append("        throw new IllegalArgumentException(\"No @")
+           .append(annotation)
+           .append(" method in ")
+           .append(entityName)
+           .append(" for \" + type);\n")
+           .append("    }\n");
+    }
+
+    private void appendCase(StringBuilder out, ExecutableElement method) {
+        final TypeElement messageType = messageType(method);
+        final String binaryName = processingEnv.getElementUtils()
+                                               .getBinaryName(messageType)
+                                               .toString();
+        out.append("                case \"")
+           .append(binaryName)
+           .append("\":\n");
+    }
+
+    private String arguments(ExecutableElement method, @Nullable String contextVar) {
+        final String messageClass = messageType(method).getQualifiedName()
+                                                       .toString();
+        final StringBuilder result = new StringBuilder("(")
+                .append(messageClass)
+                .append(") event");
+        final boolean acceptsContext = method.getParameters()
+                                             .size() > 1;
+        if (acceptsContext && contextVar != null) {
+            result.append(", ")
+                  .append(contextVar);
+        }
+        return "(" + result + ')';
+    }
+
+    private TypeElement messageType(ExecutableElement method) {
+        final VariableElement param = method.getParameters()
+                                            .get(0);
+        final TypeMirror type = processingEnv.getTypeUtils()
+                                             .erasure(param.asType());
+        return (TypeElement) ((DeclaredType) type).asElement();
+    }
+
+    private void write(TypeElement entity, String qualifiedName, CharSequence source) {
+        try {
+            final JavaFileObject file = processingEnv.getFiler()
+                                                     .createSourceFile(qualifiedName, entity);
+            try (Writer writer = file.openWriter()) {
+                writer.append(source);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager()
+                         .printMessage(Diagnostic.Kind.ERROR, "Cannot write " + qualifiedName + ": " + e, entity);
+        }
+    }
+
+    /**
+     * The handler methods of an entity class grouped by the annotation.
+     */
+    private static class EntityMethods {
+
+        private final List<ExecutableElement> appliers = new ArrayList<>();
+        private final List<ExecutableElement> subscribers = new ArrayList<>();
+
+        private void add(String annotation, ExecutableElement method) {
+            switch (annotation) {
+                case APPLY:
+                    appliers.add(method);
+                    break;
+                case SUBSCRIBE:
+                    subscribers.add(method);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported annotation: " + annotation);
+            }
+        }
+
+        private Iterable<ExecutableElement> all() {
+            final Set<ExecutableElement> result = new HashSet<>(appliers);
+            result.addAll(subscribers);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.spine3.samples.lobby.common.util.idempotency.ProcessedKeySet;
+import org.spine3.samples.lobby.registration.admission.WaitingRoom;
+import org.spine3.samples.lobby.registration.analytics.SalesAnalytics;
+import org.spine3.samples.lobby.registration.archive.ArchivedAggregates;
+import org.spine3.samples.lobby.registration.archive.ColdStore;
+import org.spine3.samples.lobby.registration.catalog.ConferenceCatalog;
+import org.spine3.samples.lobby.registration.catalog.ConferenceSearch;
+import org.spine3.samples.lobby.registration.command.DelayedCommandStore;
+import org.spine3.samples.lobby.registration.command.PriorityCommandDispatcher;
+import org.spine3.samples.lobby.registration.conference.ConferenceProjectionRepository;
+import org.spine3.samples.lobby.registration.conference.SeatAdjustments;
+import org.spine3.samples.lobby.registration.order.OrderPricingServiceImpl;
+import org.spine3.samples.lobby.registration.order.OrderRepository;
+import org.spine3.samples.lobby.registration.procman.RegistrationProcessManagerRepository;
+import org.spine3.samples.lobby.registration.projection.CheckpointStore;
+import org.spine3.samples.lobby.registration.projection.EventHistory;
+import org.spine3.samples.lobby.registration.projection.InMemoryCheckpointStore;
+import org.spine3.samples.lobby.registration.promotion.PromotionService;
+import org.spine3.samples.lobby.registration.seat.assignment.SeatAssignmentsRepository;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailabilityRepository;
+import org.spine3.samples.lobby.registration.waitlist.Waitlist;
+import org.spine3.server.BoundedContext;
+import org.spine3.server.command.CommandBus;
+import org.spine3.server.command.CommandStore;
+import org.spine3.server.event.EventBus;
+import org.spine3.server.event.EventStore;
+import org.spine3.server.storage.StorageFactory;
+
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The Orders & Registrations bounded context with all registration repositories registered.
+ *
+ * <p>The services and read models of the registration are subscribed to the event bus of the bounded context.
+ * The read models are kept in memory and are filled from the event history on start-up,
+ * each one streaming the history from the event store on its own.
+ *
+ * <p>Closing the instance closes the bounded context along with the services created for it.
+ *
+ * @author Alexander Litus
+ */
+public class RegistrationBoundedContext implements AutoCloseable {
+
+    private static final String NAME = "Orders & Registrations";
+
+    /**
+     * The number of threads applying the event history to the conference projections on start-up.
+     */
+    private static final int CATCH_UP_PARALLELISM = Runtime.getRuntime()
+                                                           .availableProcessors();
+
+    private final BoundedContext boundedContext;
+    private final ConferenceProjectionRepository conferenceRepository;
+    private final SeatAdjustments seatAdjustments;
+    private final SeatsAvailabilityRepository seatsAvailabilityRepository;
+    private final PriorityCommandDispatcher commandDispatcher;
+    private final Waitlist waitlist;
+    private final PromotionService promotionService;
+    private final ConferenceCatalog catalog;
+    private final ConferenceSearch search;
+    private final SalesAnalytics salesAnalytics;
+
+    @Nullable
+    private final WaitingRoom waitingRoom;
+
+    private RegistrationBoundedContext(BoundedContext boundedContext,
+                                       ConferenceProjectionRepository conferenceRepository,
+                                       SeatAdjustments seatAdjustments,
+                                       SeatsAvailabilityRepository seatsAvailabilityRepository,
+                                       PriorityCommandDispatcher commandDispatcher,
+                                       Waitlist waitlist,
+                                       PromotionService promotionService,
+                                       ConferenceCatalog catalog,
+                                       ConferenceSearch search,
+                                       SalesAnalytics salesAnalytics,
+                                       @Nullable WaitingRoom waitingRoom) {
+        this.boundedContext = boundedContext;
+        this.conferenceRepository = conferenceRepository;
+        this.seatAdjustments = seatAdjustments;
+        this.seatsAvailabilityRepository = seatsAvailabilityRepository;
+        this.commandDispatcher = commandDispatcher;
+        this.waitlist = waitlist;
+        this.promotionService = promotionService;
+        this.catalog = catalog;
+        this.search = search;
+        this.salesAnalytics = salesAnalytics;
+        this.waitingRoom = waitingRoom;
+    }
+
+    /**
+     * Creates a new bounded context with all registration repositories registered.
+     *
+     * <p>The checkpoints of projections are kept in memory, so the projections catch up
+     * with the whole event history on each start. Registrants are not admitted via a waiting room.
+     *
+     * @param storageFactory the factory of storages for the bounded context
+     */
+    public static RegistrationBoundedContext newInstance(StorageFactory storageFactory) {
+        return newBuilder().setStorageFactory(storageFactory)
+                           .build();
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public BoundedContext getBoundedContext() {
+        return boundedContext;
+    }
+
+    /**
+     * Returns the repository of the conference projections registered in the bounded context.
+     */
+    public ConferenceProjectionRepository getConferenceRepository() {
+        return conferenceRepository;
+    }
+
+    /**
+     * Returns the repository of the seats availability aggregates registered in the bounded context.
+     */
+    public SeatsAvailabilityRepository getSeatsAvailabilityRepository() {
+        return seatsAvailabilityRepository;
+    }
+
+    /**
+     * Returns the dispatcher through which the registration process managers post commands.
+     *
+     * <p>Other command sources (e.g. the web application) should post commands through it as well,
+     * so that the commands releasing seats are prioritized over all the others.
+     */
+    public PriorityCommandDispatcher getCommandDispatcher() {
+        return commandDispatcher;
+    }
+
+    /**
+     * Returns the waitlist of the orders awaiting seats which were unavailable when the orders were reserved.
+     */
+    public Waitlist getWaitlist() {
+        return waitlist;
+    }
+
+    /**
+     * Returns the service applying promo codes to orders.
+     */
+    public PromotionService getPromotionService() {
+        return promotionService;
+    }
+
+    /**
+     * Returns the catalog of conferences.
+     */
+    public ConferenceCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Returns the full-text search over the conference listings.
+     */
+    public ConferenceSearch getSearch() {
+        return search;
+    }
+
+    /**
+     * Returns the sales analytics per seat type per day.
+     */
+    public SalesAnalytics getSalesAnalytics() {
+        return salesAnalytics;
+    }
+
+    /**
+     * Returns the waiting room admitting registrants to placing orders,
+     * or {@code null} if admission is not controlled.
+     */
+    @Nullable
+    public WaitingRoom getWaitingRoom() {
+        return waitingRoom;
+    }
+
+    /**
+     * Posts the pending seat adjustments and the queued commands, stops admitting registrants
+     * and closes the bounded context.
+     */
+    @Override
+    public void close() throws Exception {
+        seatAdjustments.close();
+        commandDispatcher.close();
+        if (waitingRoom != null) {
+            waitingRoom.close();
+        }
+        boundedContext.close();
+    }
+
+    /**
+     * The builder of {@link RegistrationBoundedContext} instances.
+     */
+    public static class Builder {
+
+        private StorageFactory storageFactory;
+        private CheckpointStore checkpointStore;
+        private int commandWorkerCount = Runtime.getRuntime()
+                                                .availableProcessors();
+        @Nullable
+        private WaitingRoom waitingRoom;
+        private PromotionService promotionService;
+        @Nullable
+        private ColdStore coldStore;
+        @Nullable
+        private DelayedCommandStore delayedCommandStore;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the factory of storages for the bounded context.
+         */
+        public Builder setStorageFactory(StorageFactory storageFactory) {
+            this.storageFactory = checkNotNull(storageFactory);
+            return this;
+        }
+
+        /**
+         * Sets the store of the projection checkpoints.
+         *
+         * <p>If not set, the checkpoints are kept in memory.
+         */
+        public Builder setCheckpointStore(CheckpointStore checkpointStore) {
+            this.checkpointStore = checkNotNull(checkpointStore);
+            return this;
+        }
+
+        /**
+         * Sets the number of threads posting commands from the
+         * {@linkplain RegistrationBoundedContext#getCommandDispatcher() dispatcher} to the command bus.
+         *
+         * <p>The number of available processors is used by default.
+         */
+        public Builder setCommandWorkerCount(int commandWorkerCount) {
+            checkArgument(commandWorkerCount > 0, "Command worker count must be positive.");
+            this.commandWorkerCount = commandWorkerCount;
+            return this;
+        }
+
+        /**
+         * Sets the store of the commands which the {@linkplain RegistrationBoundedContext#getCommandDispatcher()
+         * dispatcher} holds until their delays pass, e.g. the expiration of registrations.
+         *
+         * <p>The stored commands are re-armed on start. If not set, delayed commands are lost on restart.
+         */
+        public Builder setDelayedCommandStore(DelayedCommandStore delayedCommandStore) {
+            this.delayedCommandStore = checkNotNull(delayedCommandStore);
+            return this;
+        }
+
+        /**
+         * Sets the waiting room admitting registrants to placing orders.
+         *
+         * <p>The waiting room is started by {@link #build()} and closed along with the bounded context.
+         * If not set, any registrant can place an order.
+         */
+        public Builder setWaitingRoom(WaitingRoom waitingRoom) {
+            this.waitingRoom = checkNotNull(waitingRoom);
+            return this;
+        }
+
+        /**
+         * Sets the service applying promo codes to orders.
+         *
+         * <p>If not set, no promo codes are accepted.
+         */
+        public Builder setPromotionService(PromotionService promotionService) {
+            this.promotionService = checkNotNull(promotionService);
+            return this;
+        }
+
+        /**
+         * Sets the cold store of archived orders and seat assignments.
+         *
+         * <p>The archived aggregates are restored from the store on load and reject commands.
+         * If not set, aggregates are loaded from the hot storage only.
+         */
+        public Builder setColdStore(ColdStore coldStore) {
+            this.coldStore = checkNotNull(coldStore);
+            return this;
+        }
+
+        /**
+         * Creates the bounded context, registers the repositories and brings the conference projections
+         * and the read models up to date with the event history.
+         */
+        public RegistrationBoundedContext build() {
+            checkNotNull(storageFactory, "Storage factory must be set.");
+            if (checkpointStore == null) {
+                checkpointStore = new InMemoryCheckpointStore();
+            }
+            if (promotionService == null) {
+                promotionService = PromotionService.newBuilder()
+                                                   .build();
+            }
+            final EventStore eventStore = EventStore.newBuilder()
+                                                    .setStreamExecutor(MoreExecutors.directExecutor())
+                                                    .setStorage(storageFactory.createEventStorage())
+                                                    .build();
+            final CommandStore commandStore = new CommandStore(storageFactory.createCommandStorage());
+            final BoundedContext boundedContext = BoundedContext.newBuilder()
+                                                                .setName(NAME)
+                                                                .setStorageFactory(storageFactory)
+                                                                .setCommandBus(CommandBus.newInstance(commandStore))
+                                                                .setEventBus(EventBus.newBuilder()
+                                                                                     .setEventStore(eventStore)
+                                                                                     .build())
+                                                                .build();
+
+            final PriorityCommandDispatcher.Builder commandDispatcherBuilder =
+                    PriorityCommandDispatcher.newBuilder()
+                                             .setCommandBus(boundedContext.getCommandBus())
+                                             .setWorkerCount(commandWorkerCount);
+            if (delayedCommandStore != null) {
+                commandDispatcherBuilder.setDelayedCommandStore(delayedCommandStore);
+            }
+            final PriorityCommandDispatcher commandDispatcher = commandDispatcherBuilder.build();
+            final ArchivedAggregates archivedAggregates = (coldStore == null)
+                                                          ? null
+                                                          : new ArchivedAggregates(coldStore);
+            final SeatAdjustments seatAdjustments = SeatAdjustments.newBuilder()
+                                                                   .setCommandBus(boundedContext.getCommandBus())
+                                                                   .build();
+            final ConferenceProjectionRepository conferenceRepository =
+                    new ConferenceProjectionRepository(boundedContext, seatAdjustments);
+            boundedContext.register(conferenceRepository);
+            final SeatsAvailabilityRepository seatsAvailabilityRepository =
+                    new SeatsAvailabilityRepository(boundedContext);
+            boundedContext.register(seatsAvailabilityRepository);
+            final OrderRepository orderRepository =
+                    OrderRepository.newBuilder()
+                                   .setBoundedContext(boundedContext)
+                                   .setOrderPricingService(new OrderPricingServiceImpl(conferenceRepository))
+                                   .setSeatsAvailabilityRepository(seatsAvailabilityRepository)
+                                   .setAdmissionControl(waitingRoom)
+                                   .setProcessedCommands(ProcessedKeySet.newBuilder()
+                                                                        .build())
+                                   .setPromotionService(promotionService)
+                                   .setArchivedOrders(archivedAggregates)
+                                   .build();
+            boundedContext.register(orderRepository);
+            boundedContext.register(new SeatAssignmentsRepository(boundedContext, archivedAggregates));
+            boundedContext.register(new RegistrationProcessManagerRepository(boundedContext, commandDispatcher,
+                                                                             ProcessedKeySet.newBuilder()
+                                                                                            .build()));
+            final Waitlist waitlist = Waitlist.newBuilder()
+                                              .setCommandBus(boundedContext.getCommandBus())
+                                              .build();
+
+            conferenceRepository.catchUp(eventStore, checkpointStore, CATCH_UP_PARALLELISM);
+            final ConferenceCatalog catalog = new ConferenceCatalog();
+            EventHistory.replay(eventStore, catalog);
+            final ConferenceSearch search = new ConferenceSearch();
+            EventHistory.replay(eventStore, search);
+            final SalesAnalytics salesAnalytics = new SalesAnalytics();
+            EventHistory.replay(eventStore, salesAnalytics);
+            EventHistory.replay(eventStore, promotionService);
+
+            final EventBus eventBus = boundedContext.getEventBus();
+            eventBus.subscribe(waitlist);
+            eventBus.subscribe(promotionService);
+            eventBus.subscribe(catalog);
+            eventBus.subscribe(search);
+            eventBus.subscribe(salesAnalytics);
+            commandDispatcher.start();
+            if (waitingRoom != null) {
+                waitingRoom.start();
+            }
+            return new RegistrationBoundedContext(boundedContext, conferenceRepository, seatAdjustments,
+                                                  seatsAvailabilityRepository, commandDispatcher, waitlist,
+                                                  promotionService, catalog, search, salesAnalytics, waitingRoom);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.admission;
+
+import org.spine3.samples.lobby.common.OrderId;
+
+/**
+ * Decides whether a registrant may place a new order.
+ *
+ * @author Alexander Litus
+ * @see WaitingRoom
+ */
+public interface AdmissionControl {
+
+    /**
+     * Admits the registrant holding the ticket to placing the order.
+     *
+     * <p>A ticket admits a single order. It may be presented again for the same order,
+     * e.g. when placing the order is retried, but is rejected for any other order.
+     *
+     * @param ticket  the ticket of the registrant
+     * @param orderId the ID of the order to place
+     * @return {@code true} if the ticket is valid, its holder is admitted to registration
+     *         and the ticket is not used for another order
+     */
+    boolean admit(AdmissionTicket ticket, OrderId orderId);
+}
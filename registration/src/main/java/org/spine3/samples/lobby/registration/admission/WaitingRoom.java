@@ -0,0 +1,334 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.admission;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.OrderId;
+
+import javax.annotation.Nullable;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Maps.newConcurrentMap;
+
+/**
+ * The virtual waiting room which admits registrants to {@code RegisterToConference} in the order of arrival
+ * at a configured rate per conference.
+ *
+ * <p>On arrival, a registrant {@linkplain #enter(ConferenceId) receives} an {@link AdmissionTicket}.
+ * Tickets of a conference are numbered densely from zero. The queue of a conference is the range
+ * of numbers {@code [admitted, issued)}, so it is kept as two counters regardless of how many registrants wait.
+ *
+ * <p>Issuing tickets and querying positions are lock-free. Admission is performed by a single scheduler thread
+ * which advances the {@code admitted} counter of each conference by the number of tickets due since the last tick.
+ *
+ * <p>Tickets are signed with a secret key of the waiting room, so that a registrant cannot claim a lower number.
+ * An admitted ticket is bound to the first order placed with it, so that it cannot admit other orders.
+ *
+ * @author Alexander Litus
+ */
+public class WaitingRoom implements AdmissionControl, AutoCloseable {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final ConcurrentMap<ConferenceId, ConferenceQueue> queues = newConcurrentMap();
+    private final double defaultAdmissionRate;
+    private final long tickIntervalMillis;
+    private final HashFunction signatureFunction;
+
+    @Nullable
+    private ScheduledExecutorService scheduler;
+    private long lastTickNanos;
+
+    private WaitingRoom(Builder builder) {
+        this.defaultAdmissionRate = builder.admissionRate;
+        this.tickIntervalMillis = builder.tickIntervalMillis;
+        final SecureRandom random = new SecureRandom();
+        this.signatureFunction = Hashing.sipHash24(random.nextLong(), random.nextLong());
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Issues a new ticket to the registrant arriving at the waiting room of the conference.
+     */
+    public AdmissionTicket enter(ConferenceId conferenceId) {
+        final ConferenceQueue queue = queueOf(conferenceId);
+        final long number = queue.issued.getAndIncrement();
+        final AdmissionTicket result = AdmissionTicket.newBuilder()
+                                                      .setConferenceId(conferenceId)
+                                                      .setNumber(number)
+                                                      .setSignature(sign(conferenceId, number))
+                                                      .build();
+        return result;
+    }
+
+    /**
+     * Returns the number of registrants ahead of the ticket holder in the queue, including the holder.
+     *
+     * <p>Returns {@code 0} if the ticket is admitted. Does not block admission or ticket issuing.
+     *
+     * @throws IllegalArgumentException if the ticket is not issued by this waiting room
+     */
+    public long getPosition(AdmissionTicket ticket) {
+        checkArgument(isValid(ticket), "Invalid admission ticket: %s", ticket);
+        final ConferenceQueue queue = queues.get(ticket.getConferenceId());
+        final long admitted = queue.admitted.get();
+        final long number = ticket.getNumber();
+        final long result = (number < admitted) ? 0 : number - admitted + 1;
+        return result;
+    }
+
+    /**
+     * Returns the number of registrants waiting for admission to the conference.
+     */
+    public long getWaitingCount(ConferenceId conferenceId) {
+        final ConferenceQueue queue = queues.get(conferenceId);
+        if (queue == null) {
+            return 0;
+        }
+        final long result = queue.issued.get() - queue.admitted.get();
+        return result;
+    }
+
+    /**
+     * Returns {@code true} if the ticket is valid and the registrant holding it is admitted to registration.
+     *
+     * <p>Does not check whether the ticket is already used for an order.
+     */
+    public boolean isAdmitted(AdmissionTicket ticket) {
+        if (!isValid(ticket)) {
+            return false;
+        }
+        final ConferenceQueue queue = queues.get(ticket.getConferenceId());
+        final boolean result = ticket.getNumber() < queue.admitted.get();
+        return result;
+    }
+
+    @Override
+    public boolean admit(AdmissionTicket ticket, OrderId orderId) {
+        if (!isAdmitted(ticket)) {
+            return false;
+        }
+        final ConferenceQueue queue = queues.get(ticket.getConferenceId());
+        final OrderId boundOrderId = queue.usedTickets.putIfAbsent(ticket.getNumber(), orderId);
+        final boolean result = (boundOrderId == null) || boundOrderId.equals(orderId);
+        return result;
+    }
+
+    /**
+     * Sets the number of registrants admitted to the conference per second.
+     */
+    public void setAdmissionRate(ConferenceId conferenceId, double admissionsPerSecond) {
+        checkArgument(admissionsPerSecond >= 0, "Admission rate must not be negative.");
+        queueOf(conferenceId).admissionRate = admissionsPerSecond;
+    }
+
+    /**
+     * Starts admitting registrants in the background.
+     */
+    public synchronized void start() {
+        checkState(scheduler == null, "The waiting room is already started.");
+        lastTickNanos = System.nanoTime();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    tick();
+                } catch (RuntimeException e) {
+                    log().error("Admission tick failed.", e);
+                }
+            }
+        }, tickIntervalMillis, tickIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops admitting registrants.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private synchronized void tick() {
+        final long now = System.nanoTime();
+        admitDue(now - lastTickNanos);
+        lastTickNanos = now;
+    }
+
+    /**
+     * Admits the registrants due in the given period according to admission rates.
+     *
+     * <p>Is called by the scheduler thread only.
+     */
+    /* package */ synchronized void admitDue(long elapsedNanos) {
+        for (Map.Entry<ConferenceId, ConferenceQueue> entry : queues.entrySet()) {
+            final ConferenceQueue queue = entry.getValue();
+            queue.credit += queue.admissionRate * elapsedNanos / NANOS_PER_SECOND;
+            final long count = (long) queue.credit;
+            if (count > 0) {
+                queue.credit -= count;
+                queue.admit(count);
+            }
+        }
+    }
+
+    private boolean isValid(AdmissionTicket ticket) {
+        final ConferenceId conferenceId = ticket.getConferenceId();
+        final ConferenceQueue queue = queues.get(conferenceId);
+        if (queue == null) {
+            return false;
+        }
+        final long number = ticket.getNumber();
+        final boolean result = number >= 0
+                && number < queue.issued.get()
+                && ticket.getSignature() == sign(conferenceId, number);
+        return result;
+    }
+
+    private long sign(ConferenceId conferenceId, long number) {
+        final long result = signatureFunction.newHasher()
+                                             .putString(conferenceId.getUuid(), UTF_8)
+                                             .putLong(number)
+                                             .hash()
+                                             .asLong();
+        return result;
+    }
+
+    private ConferenceQueue queueOf(ConferenceId conferenceId) {
+        ConferenceQueue queue = queues.get(conferenceId);
+        if (queue == null) {
+            final ConferenceQueue created = new ConferenceQueue(defaultAdmissionRate);
+            final ConferenceQueue existing = queues.putIfAbsent(conferenceId, created);
+            queue = (existing != null) ? existing : created;
+        }
+        return queue;
+    }
+
+    /**
+     * The queue of the registrants of a conference.
+     *
+     * <p>The tickets with numbers in {@code [0, admitted)} are admitted, {@code [admitted, issued)} are waiting.
+     */
+    private static class ConferenceQueue {
+
+        private final AtomicLong issued = new AtomicLong();
+        private final AtomicLong admitted = new AtomicLong();
+
+        /**
+         * The IDs of the orders placed with admitted tickets by the ticket numbers.
+         */
+        private final ConcurrentMap<Long, OrderId> usedTickets = newConcurrentMap();
+
+        private volatile double admissionRate;
+
+        /**
+         * The fractional number of admissions accumulated between ticks.
+         *
+         * <p>Is accessed by the scheduler thread only.
+         */
+        private double credit;
+
+        private ConferenceQueue(double admissionRate) {
+            this.admissionRate = admissionRate;
+        }
+
+        /**
+         * Admits up to {@code count} waiting registrants.
+         *
+         * <p>Admissions are not accumulated while the queue is empty.
+         */
+        private void admit(long count) {
+            final long waiting = issued.get() - admitted.get();
+            final long admittedNow = Math.min(count, waiting);
+            admitted.addAndGet(admittedNow);
+        }
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+        @SuppressWarnings("NonSerializableFieldInSerializableClass")
+        private final Logger value = LoggerFactory.getLogger(WaitingRoom.class);
+    }
+
+    /**
+     * The builder of {@link WaitingRoom} instances.
+     */
+    public static class Builder {
+
+        private static final double DEFAULT_ADMISSION_RATE = 100;
+        private static final long DEFAULT_TICK_INTERVAL_MILLIS = 100;
+
+        private double admissionRate = DEFAULT_ADMISSION_RATE;
+        private long tickIntervalMillis = DEFAULT_TICK_INTERVAL_MILLIS;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the number of registrants admitted to a conference per second,
+         * unless {@linkplain WaitingRoom#setAdmissionRate(ConferenceId, double) set} for the conference.
+         */
+        public Builder setAdmissionRate(double admissionsPerSecond) {
+            checkArgument(admissionsPerSecond >= 0, "Admission rate must not be negative.");
+            this.admissionRate = admissionsPerSecond;
+            return this;
+        }
+
+        /**
+         * Sets the interval between admissions.
+         */
+        public Builder setTickInterval(long interval, TimeUnit unit) {
+            checkNotNull(unit);
+            final long millis = unit.toMillis(interval);
+            checkArgument(millis > 0, "Tick interval must be at least one millisecond.");
+            this.tickIntervalMillis = millis;
+            return this;
+        }
+
+        public WaitingRoom build() {
+            return new WaitingRoom(this);
+        }
+    }
+}
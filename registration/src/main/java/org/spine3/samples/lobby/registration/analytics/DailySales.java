@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.analytics;
+
+/**
+ * The daily sales counters of a seat type.
+ *
+ * <p>The counters of all measures of a day are stored next to each other in a single array
+ * covering the days from the first to the last day with sales.
+ *
+ * <p>Is not thread-safe.
+ *
+ * @author Alexander Litus
+ */
+/* package */ class DailySales {
+
+    /* package */ static final int SEATS = 0;
+    /* package */ static final int REVENUE = 1;
+    /* package */ static final int CONFIRMED_SEATS = 2;
+    /* package */ static final int CONFIRMED_REVENUE = 3;
+
+    private static final int MEASURE_COUNT = 4;
+    private static final int INITIAL_DAY_CAPACITY = 32;
+
+    private long[] counters = new long[0];
+    private int firstDay;
+    private int dayCount;
+
+    /**
+     * Adds the value to the counter of the measure on the day.
+     */
+    /* package */ void add(int day, int measure, long value) {
+        ensureDay(day);
+        counters[(day - firstDay) * MEASURE_COUNT + measure] += value;
+    }
+
+    /**
+     * Returns the counter of the measure on the day.
+     */
+    /* package */ long get(int day, int measure) {
+        final int offset = day - firstDay;
+        if (offset < 0 || offset >= dayCount) {
+            return 0;
+        }
+        return counters[offset * MEASURE_COUNT + measure];
+    }
+
+    private void ensureDay(int day) {
+        if (dayCount == 0) {
+            counters = new long[INITIAL_DAY_CAPACITY * MEASURE_COUNT];
+            firstDay = day;
+            dayCount = 1;
+            return;
+        }
+        if (day < firstDay) {
+            final int shift = firstDay - day;
+            final int newDayCount = dayCount + shift;
+            final long[] shifted = new long[capacityFor(newDayCount) * MEASURE_COUNT];
+            System.arraycopy(counters, 0, shifted, shift * MEASURE_COUNT, dayCount * MEASURE_COUNT);
+            counters = shifted;
+            firstDay = day;
+            dayCount = newDayCount;
+            return;
+        }
+        final int newDayCount = day - firstDay + 1;
+        if (newDayCount > dayCount) {
+            if (newDayCount * MEASURE_COUNT > counters.length) {
+                final long[] grown = new long[capacityFor(newDayCount) * MEASURE_COUNT];
+                System.arraycopy(counters, 0, grown, 0, dayCount * MEASURE_COUNT);
+                counters = grown;
+            }
+            dayCount = newDayCount;
+        }
+    }
+
+    private int capacityFor(int newDayCount) {
+        final int capacity = counters.length / MEASURE_COUNT;
+        return Math.max(newDayCount, capacity * 2);
+    }
+}
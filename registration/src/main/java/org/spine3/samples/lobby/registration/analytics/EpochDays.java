@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.analytics;
+
+import com.google.protobuf.Timestamp;
+import org.spine3.time.LocalDate;
+
+/**
+ * Utilities for converting dates and timestamps to the number of days since the epoch in UTC.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings("UtilityClass")
+/* package */ class EpochDays {
+
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+    private static final int DAYS_PER_ERA = 146_097;
+    private static final int YEARS_PER_ERA = 400;
+    private static final int DAYS_FROM_ERA_START_TO_EPOCH = 719_468;
+
+    private EpochDays() {
+    }
+
+    /**
+     * Returns the day of the timestamp.
+     */
+    /* package */ static int of(Timestamp timestamp) {
+        final long seconds = timestamp.getSeconds();
+        final long days = (seconds >= 0)
+                          ? seconds / SECONDS_PER_DAY
+                          : (seconds - SECONDS_PER_DAY + 1) / SECONDS_PER_DAY;
+        return (int) days;
+    }
+
+    /**
+     * Returns the day of the date in the proleptic Gregorian calendar.
+     */
+    /* package */ static int of(LocalDate date) {
+        final int month = date.getMonthValue();
+        final int year = (month <= 2) ? date.getYear() - 1 : date.getYear();
+        final int era = floorDiv(year, YEARS_PER_ERA);
+        final int yearOfEra = year - era * YEARS_PER_ERA;
+        final int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + date.getDay() - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - DAYS_FROM_ERA_START_TO_EPOCH;
+    }
+
+    /**
+     * Returns the date of the day in the proleptic Gregorian calendar.
+     */
+    /* package */ static LocalDate toDate(int epochDay) {
+        final int days = epochDay + DAYS_FROM_ERA_START_TO_EPOCH;
+        final int era = floorDiv(days, DAYS_PER_ERA);
+        final int dayOfEra = days - era * DAYS_PER_ERA;
+        final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / (DAYS_PER_ERA - 1)) / 365;
+        final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        final int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        final int month = (shiftedMonth < 10) ? shiftedMonth + 3 : shiftedMonth - 9;
+        final int year = yearOfEra + era * YEARS_PER_ERA + (month <= 2 ? 1 : 0);
+        final LocalDate result = LocalDate.newBuilder()
+                                          .setYear(year)
+                                          .setMonthValue(month)
+                                          .setDay(day)
+                                          .build();
+        return result;
+    }
+
+    private static int floorDiv(int dividend, int divisor) {
+        final int quotient = dividend / divisor;
+        return (dividend % divisor < 0) ? quotient - 1 : quotient;
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.analytics;
+
+import com.google.protobuf.Any;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import org.spine3.base.Event;
+import org.spine3.base.EventContext;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.OrderId;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.registration.contracts.OrderConfirmed;
+import org.spine3.samples.lobby.registration.contracts.OrderExpired;
+import org.spine3.samples.lobby.registration.contracts.OrderPlaced;
+import org.spine3.samples.lobby.registration.contracts.OrderTotalsCalculated;
+import org.spine3.samples.lobby.registration.contracts.SeatOrderLine;
+import org.spine3.samples.lobby.registration.projection.ReadModel;
+import org.spine3.server.event.EventSubscriber;
+import org.spine3.server.event.Subscribe;
+import org.spine3.time.LocalDate;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Maps.newHashMap;
+import static org.spine3.samples.lobby.registration.analytics.DailySales.CONFIRMED_REVENUE;
+import static org.spine3.samples.lobby.registration.analytics.DailySales.CONFIRMED_SEATS;
+import static org.spine3.samples.lobby.registration.analytics.DailySales.REVENUE;
+import static org.spine3.samples.lobby.registration.analytics.DailySales.SEATS;
+
+/**
+ * The live sales analytics of conferences: seats sold and revenue per seat type per day.
+ *
+ * <p>The sales of an order are counted on the day the order is placed, once its totals are calculated.
+ * If the totals are recalculated, the previous lines of the order are retracted before the new ones are counted.
+ * When the order expires, its lines are retracted. Once the order is confirmed, its lines are also counted as
+ * confirmed and the order is no longer tracked.
+ *
+ * <p>The counters are kept in {@linkplain DailySales primitive arrays} per seat type, so a query reads
+ * a contiguous range of an array. Only the orders which are neither confirmed nor expired are kept
+ * along with their lines, to be able to retract them.
+ *
+ * <p>The analytics must be subscribed to the event bus of the bounded context to receive order events.
+ * The counters are kept in memory and are {@linkplain #replay(Iterable) replayed} from the event history
+ * after a restart.
+ *
+ * <p>Revenue is summed in the amount units of the seat prices; a conference is expected to sell seats
+ * in a single currency. The revenue of an order is its total net of the promo code discount,
+ * split between the seat types in proportion to their line totals.
+ *
+ * <p>The analytics is thread-safe. Queries run concurrently with each other and exclusively with updates.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings("UnusedParameters")
+public class SalesAnalytics extends EventSubscriber implements ReadModel {
+
+    /* package */ static final int MAX_SERIES_DAYS = 3660;
+
+    private static final String ORDER_PLACED_TYPE_SUFFIX = typeUrlSuffixOf(OrderPlaced.getDefaultInstance());
+    private static final String ORDER_TOTALS_CALCULATED_TYPE_SUFFIX =
+            typeUrlSuffixOf(OrderTotalsCalculated.getDefaultInstance());
+    private static final String ORDER_CONFIRMED_TYPE_SUFFIX = typeUrlSuffixOf(OrderConfirmed.getDefaultInstance());
+    private static final String ORDER_EXPIRED_TYPE_SUFFIX = typeUrlSuffixOf(OrderExpired.getDefaultInstance());
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<ConferenceId, Map<SeatTypeId, DailySales>> conferences = newHashMap();
+    private final Map<OrderId, OpenOrder> openOrders = newHashMap();
+
+    @Subscribe
+    public void on(OrderPlaced event, EventContext context) {
+        lock.writeLock()
+            .lock();
+        try {
+            apply(event, context.getTimestamp());
+        } finally {
+            lock.writeLock()
+                .unlock();
+        }
+    }
+
+    @Subscribe
+    public void on(OrderTotalsCalculated event, EventContext context) {
+        lock.writeLock()
+            .lock();
+        try {
+            apply(event);
+        } finally {
+            lock.writeLock()
+                .unlock();
+        }
+    }
+
+    @Subscribe
+    public void on(OrderConfirmed event, EventContext context) {
+        lock.writeLock()
+            .lock();
+        try {
+            apply(event);
+        } finally {
+            lock.writeLock()
+                .unlock();
+        }
+    }
+
+    @Subscribe
+    public void on(OrderExpired event, EventContext context) {
+        lock.writeLock()
+            .lock();
+        try {
+            apply(event);
+        } finally {
+            lock.writeLock()
+                .unlock();
+        }
+    }
+
+    /**
+     * Discards the current counters and recalculates them from the event history in the calling thread.
+     *
+     * <p>Only the order events are parsed; other events are skipped by their type URL.
+     *
+     * @param history all events of the bounded context in the chronological order
+     * @return the number of order events applied
+     */
+    public long rebuild(Iterable<Event> history) {
+        lock.writeLock()
+            .lock();
+        try {
+            conferences.clear();
+            openOrders.clear();
+            return replay(history);
+        } finally {
+            lock.writeLock()
+                .unlock();
+        }
+    }
+
+    /**
+     * Applies the events following the ones already applied to the counters in the calling thread.
+     *
+     * <p>Only the order events are parsed; other events are skipped by their type URL.
+     *
+     * @param events the events of the bounded context in the chronological order
+     * @return the number of order events applied
+     */
+    @Override
+    public long replay(Iterable<Event> events) {
+        lock.writeLock()
+            .lock();
+        try {
+            long result = 0;
+            for (Event event : events) {
+                if (applyPacked(event)) {
+                    result++;
+                }
+            }
+            return result;
+        } finally {
+            lock.writeLock()
+                .unlock();
+        }
+    }
+
+    /**
+     * Returns the daily sales of the seat type at the conference.
+     *
+     * @param firstDay the first day of the series
+     * @param lastDay  the last day of the series, inclusive
+     * @throws IllegalArgumentException if the series ends before it starts or is longer than {@link #MAX_SERIES_DAYS}
+     */
+    public SalesSeries getSeries(ConferenceId conferenceId, SeatTypeId seatTypeId,
+                                 LocalDate firstDay, LocalDate lastDay) {
+        checkNotNull(conferenceId);
+        checkNotNull(seatTypeId);
+        final int first = EpochDays.of(firstDay);
+        final int last = EpochDays.of(lastDay);
+        checkArgument(first <= last, "The series must not end before it starts.");
+        checkArgument(last - first < MAX_SERIES_DAYS, "The series must not be longer than %s days.", MAX_SERIES_DAYS);
+
+        final SalesSeries.Builder result = SalesSeries.newBuilder()
+                                                      .setConferenceId(conferenceId)
+                                                      .setSeatTypeId(seatTypeId)
+                                                      .setFirstDay(firstDay);
+        lock.readLock()
+            .lock();
+        try {
+            final Map<SeatTypeId, DailySales> seatTypes = conferences.get(conferenceId);
+            final DailySales sales = (seatTypes == null) ? null : seatTypes.get(seatTypeId);
+            for (int day = first; day <= last; day++) {
+                result.addSeatsSold(valueOf(sales, day, SEATS))
+                      .addRevenue(valueOf(sales, day, REVENUE))
+                      .addSeatsConfirmed(valueOf(sales, day, CONFIRMED_SEATS))
+                      .addRevenueConfirmed(valueOf(sales, day, CONFIRMED_REVENUE));
+            }
+        } finally {
+            lock.readLock()
+                .unlock();
+        }
+        return result.build();
+    }
+
+    /**
+     * Returns the number of orders which are neither confirmed nor expired.
+     */
+    public int getOpenOrderCount() {
+        lock.readLock()
+            .lock();
+        try {
+            return openOrders.size();
+        } finally {
+            lock.readLock()
+                .unlock();
+        }
+    }
+
+    private static long valueOf(@Nullable DailySales sales, int day, int measure) {
+        return (sales == null) ? 0 : sales.get(day, measure);
+    }
+
+    /**
+     * Applies the event if it is an order event.
+     *
+     * @return {@code true} if the event is applied, {@code false} if it is skipped
+     */
+    private boolean applyPacked(Event event) {
+        final Any message = event.getMessage();
+        final String typeUrl = message.getTypeUrl();
+        try {
+            if (typeUrl.endsWith(ORDER_PLACED_TYPE_SUFFIX)) {
+                final Timestamp eventTime = event.getContext()
+                                                 .getTimestamp();
+                apply(OrderPlaced.parseFrom(message.getValue()), eventTime);
+            } else if (typeUrl.endsWith(ORDER_TOTALS_CALCULATED_TYPE_SUFFIX)) {
+                apply(OrderTotalsCalculated.parseFrom(message.getValue()));
+            } else if (typeUrl.endsWith(ORDER_CONFIRMED_TYPE_SUFFIX)) {
+                apply(OrderConfirmed.parseFrom(message.getValue()));
+            } else if (typeUrl.endsWith(ORDER_EXPIRED_TYPE_SUFFIX)) {
+                apply(OrderExpired.parseFrom(message.getValue()));
+            } else {
+                return false;
+            }
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalArgumentException("Failed to parse the event: " + event.getContext()
+                                                                                    .getEventId(), e);
+        }
+        return true;
+    }
+
+    private void apply(OrderPlaced event, Timestamp eventTime) {
+        final Timestamp placedTime = event.hasPlacedTime() ? event.getPlacedTime() : eventTime;
+        final Map<SeatTypeId, DailySales> seatTypes = seatTypesOf(event.getConferenceId());
+        openOrders.put(event.getOrderId(), new OpenOrder(seatTypes, EpochDays.of(placedTime)));
+    }
+
+    private void apply(OrderTotalsCalculated event) {
+        final OpenOrder order = openOrders.get(event.getOrderId());
+        if (order == null) {
+            return;
+        }
+        order.count(-1, SEATS, REVENUE);
+        final long total = event.hasTotal() ? event.getTotal()
+                                                   .getAmount() : 0;
+        order.setLines(event.getOrderLineList(), total);
+        order.count(1, SEATS, REVENUE);
+    }
+
+    private void apply(OrderConfirmed event) {
+        final OpenOrder order = openOrders.remove(event.getOrderId());
+        if (order != null) {
+            order.count(1, CONFIRMED_SEATS, CONFIRMED_REVENUE);
+        }
+    }
+
+    private void apply(OrderExpired event) {
+        final OpenOrder order = openOrders.remove(event.getOrderId());
+        if (order != null) {
+            order.count(-1, SEATS, REVENUE);
+        }
+    }
+
+    private Map<SeatTypeId, DailySales> seatTypesOf(ConferenceId conferenceId) {
+        Map<SeatTypeId, DailySales> result = conferences.get(conferenceId);
+        if (result == null) {
+            result = newHashMap();
+            conferences.put(conferenceId, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the suffix of the type URLs of the messages of the type regardless of the type URL prefix.
+     */
+    private static String typeUrlSuffixOf(Message message) {
+        return '/' + message.getDescriptorForType()
+                            .getFullName();
+    }
+
+    /**
+     * The order which may still be repriced or expire, with the lines counted in the sales.
+     */
+    private static class OpenOrder {
+
+        private static final DailySales[] NO_SALES = {};
+        private static final long[] NO_VALUES = {};
+
+        private final Map<SeatTypeId, DailySales> seatTypes;
+        private final int day;
+
+        private DailySales[] lineSales = NO_SALES;
+        private long[] quantities = NO_VALUES;
+        private long[] amounts = NO_VALUES;
+
+        private OpenOrder(Map<SeatTypeId, DailySales> seatTypes, int day) {
+            this.seatTypes = seatTypes;
+            this.day = day;
+        }
+
+        /**
+         * Sets the lines of the order and splits the total of the order between them.
+         *
+         * <p>The total is split in proportion to the line totals, so that a discount given to the order
+         * lowers the revenue of each seat type. The rounding remainder goes to the last line.
+         */
+        private void setLines(List<SeatOrderLine> lines, long total) {
+            final int count = lines.size();
+            lineSales = new DailySales[count];
+            quantities = new long[count];
+            amounts = new long[count];
+            long linesTotal = 0;
+            for (int i = 0; i < count; i++) {
+                final SeatOrderLine line = lines.get(i);
+                lineSales[i] = salesOf(line.getSeatTypeId());
+                quantities[i] = line.getQuantity();
+                amounts[i] = line.getLineTotal()
+                                 .getAmount();
+                linesTotal += amounts[i];
+            }
+            if (linesTotal == 0 || linesTotal == total) {
+                return;
+            }
+            long allocated = 0;
+            for (int i = 0; i < count - 1; i++) {
+                amounts[i] = amounts[i] * total / linesTotal;
+                allocated += amounts[i];
+            }
+            amounts[count - 1] = total - allocated;
+        }
+
+        /**
+         * Adds the lines of the order multiplied by the sign to the measures of seats and revenue.
+         */
+        private void count(int sign, int seatsMeasure, int revenueMeasure) {
+            for (int i = 0; i < lineSales.length; i++) {
+                lineSales[i].add(day, seatsMeasure, sign * quantities[i]);
+                lineSales[i].add(day, revenueMeasure, sign * amounts[i]);
+            }
+        }
+
+        private DailySales salesOf(SeatTypeId seatTypeId) {
+            DailySales result = seatTypes.get(seatTypeId);
+            if (result == null) {
+                result = new DailySales();
+                seatTypes.put(seatTypeId, result);
+            }
+            return result;
+        }
+    }
+}
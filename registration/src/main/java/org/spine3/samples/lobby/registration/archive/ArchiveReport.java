@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.archive;
+
+import org.spine3.base.Event;
+
+/**
+ * The result of an {@link Archiver} run, including the footprint of the hot storage before and after it.
+ *
+ * @author Alexander Litus
+ */
+public class ArchiveReport {
+
+    private static final double BYTES_PER_KIB = 1024;
+
+    private long hotEventCount;
+    private long hotEventBytes;
+    private long archivedEventCount;
+    private long archivedEventBytes;
+    private int orderCount;
+    private int seatAssignmentsCount;
+    private int processCount;
+    private int coldEntityCount;
+    private int coldSegmentCount;
+    private long coldSizeInBytes;
+
+    /* package */ ArchiveReport() {
+    }
+
+    /* package */ void onRetained(Event event) {
+        hotEventCount++;
+        hotEventBytes += event.getSerializedSize();
+    }
+
+    /* package */ void onArchived(Event event) {
+        archivedEventCount++;
+        archivedEventBytes += event.getSerializedSize();
+    }
+
+    /* package */ void onOrderArchived() {
+        orderCount++;
+    }
+
+    /* package */ void onSeatAssignmentsArchived() {
+        seatAssignmentsCount++;
+    }
+
+    /* package */ void onProcessArchived() {
+        processCount++;
+    }
+
+    /* package */ void setColdStore(ColdStore coldStore) {
+        this.coldEntityCount = coldStore.getEntityCount();
+        this.coldSegmentCount = coldStore.getSegmentCount();
+        this.coldSizeInBytes = coldStore.getSizeInBytes();
+    }
+
+    /**
+     * Returns the number of events left in the hot history.
+     */
+    public long getHotEventCount() {
+        return hotEventCount;
+    }
+
+    /**
+     * Returns the serialized size of the events left in the hot history.
+     */
+    public long getHotEventBytes() {
+        return hotEventBytes;
+    }
+
+    /**
+     * Returns the number of events moved from the hot history to the cold store.
+     */
+    public long getArchivedEventCount() {
+        return archivedEventCount;
+    }
+
+    /**
+     * Returns the serialized size of the events moved to the cold store, before compression.
+     */
+    public long getArchivedEventBytes() {
+        return archivedEventBytes;
+    }
+
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    public int getSeatAssignmentsCount() {
+        return seatAssignmentsCount;
+    }
+
+    public int getProcessCount() {
+        return processCount;
+    }
+
+    /**
+     * Returns the number of entities in the cold store after the run.
+     */
+    public int getColdEntityCount() {
+        return coldEntityCount;
+    }
+
+    public int getColdSegmentCount() {
+        return coldSegmentCount;
+    }
+
+    public long getColdSizeInBytes() {
+        return coldSizeInBytes;
+    }
+
+    @Override
+    public String toString() {
+        final long hotEventCountBefore = hotEventCount + archivedEventCount;
+        final long hotEventBytesBefore = hotEventBytes + archivedEventBytes;
+        return String.format("Archived %d orders, %d seat assignments, %d processes. " +
+                             "Hot history: %d -> %d events, %.1f -> %.1f KiB. " +
+                             "Cold store: %d entities in %d segments, %.1f KiB.",
+                             orderCount, seatAssignmentsCount, processCount,
+                             hotEventCountBefore, hotEventCount,
+                             hotEventBytesBefore / BYTES_PER_KIB, hotEventBytes / BYTES_PER_KIB,
+                             coldEntityCount, coldSegmentCount, coldSizeInBytes / BYTES_PER_KIB);
+    }
+}
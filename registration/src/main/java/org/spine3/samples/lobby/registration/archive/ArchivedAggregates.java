@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.archive;
+
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import org.spine3.base.Command;
+import org.spine3.protobuf.AnyPacker;
+import org.spine3.samples.lobby.common.util.aggregate.AbstractLobbyAggregate;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Serves the aggregates moved to the {@link ColdStore} to an aggregate repository.
+ *
+ * <p>An archived aggregate is completed, so it is read-only: commands sent to it are rejected.
+ * Its events are deleted from the hot storage, so the repository loads an empty aggregate
+ * and {@linkplain #restore(AbstractLobbyAggregate) restores} it from the cold store.
+ *
+ * @author Alexander Litus
+ */
+public class ArchivedAggregates {
+
+    private final ColdStore coldStore;
+
+    public ArchivedAggregates(ColdStore coldStore) {
+        this.coldStore = checkNotNull(coldStore);
+    }
+
+    /**
+     * Checks that the command is not sent to an archived aggregate.
+     *
+     * <p>The ID of the target aggregate is the first field of the command message.
+     *
+     * @throws IllegalStateException if the target aggregate is archived
+     */
+    public void checkNotArchived(Command command) {
+        final Message message = AnyPacker.unpack(command.getMessage());
+        final FieldDescriptor idField = message.getDescriptorForType()
+                                               .getFields()
+                                               .get(0);
+        final Object id = message.getField(idField);
+        if (id instanceof Message) {
+            checkState(!coldStore.contains((Message) id), "The aggregate is archived and accepts no commands: %s",
+                       id);
+        }
+    }
+
+    /**
+     * Applies the archived events to the aggregate loaded from the hot storage if it has no events there.
+     *
+     * @param aggregate the aggregate loaded from the hot storage
+     * @return {@code true} if the aggregate is restored from the cold store, {@code false} otherwise
+     */
+    public boolean restore(AbstractLobbyAggregate<? extends Message, ?, ?> aggregate) {
+        if (aggregate.getVersion() > 0) {
+            return false;
+        }
+        final ArchivedEntity archived = coldStore.read(aggregate.getId());
+        if (archived == null) {
+            return false;
+        }
+        aggregate.replay(archived.getEventList());
+        return true;
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.archive;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import io.grpc.stub.StreamObserver;
+import org.spine3.base.Event;
+import org.spine3.protobuf.AnyPacker;
+import org.spine3.samples.lobby.common.OrderId;
+import org.spine3.samples.lobby.common.util.aggregate.AbstractLobbyAggregate;
+import org.spine3.samples.lobby.registration.contracts.OrderConfirmed;
+import org.spine3.samples.lobby.registration.contracts.OrderExpired;
+import org.spine3.samples.lobby.registration.contracts.OrderPartiallyReserved;
+import org.spine3.samples.lobby.registration.contracts.OrderPlaced;
+import org.spine3.samples.lobby.registration.contracts.OrderRegistrantAssigned;
+import org.spine3.samples.lobby.registration.contracts.OrderReservationCompleted;
+import org.spine3.samples.lobby.registration.contracts.OrderTotalsCalculated;
+import org.spine3.samples.lobby.registration.contracts.OrderUpdated;
+import org.spine3.samples.lobby.registration.contracts.SeatAssigned;
+import org.spine3.samples.lobby.registration.contracts.SeatAssignment;
+import org.spine3.samples.lobby.registration.contracts.SeatAssignmentUpdated;
+import org.spine3.samples.lobby.registration.contracts.SeatAssignmentsCreated;
+import org.spine3.samples.lobby.registration.contracts.SeatAssignmentsId;
+import org.spine3.samples.lobby.registration.contracts.SeatUnassigned;
+import org.spine3.samples.lobby.registration.order.OrderAggregate;
+import org.spine3.samples.lobby.registration.procman.ProcessManagerId;
+import org.spine3.samples.lobby.registration.procman.RegistrationProcess;
+import org.spine3.samples.lobby.registration.procman.RegistrationProcessManagerRepository;
+import org.spine3.samples.lobby.registration.seat.assignment.SeatAssignmentsAggregate;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Maps.newLinkedHashMap;
+import static com.google.common.collect.Sets.newHashSet;
+
+/**
+ * Moves completed orders, registration processes and fully assigned seat assignments
+ * from the hot event history to the {@link ColdStore} once the retention period has passed.
+ *
+ * <p>An order is completed when it is confirmed or expired. Seat assignments are completed when each seat
+ * is assigned to an attendee; their retention period starts with the last change.
+ *
+ * <p>The hot history is read twice: first to find the entities completed before the retention period,
+ * then to move their events to the cold store. The other events are passed to the retained history,
+ * which replaces the hot history. The streams of the archived orders and seat assignments are then
+ * {@linkplain HotStorage#delete(Message) deleted} from the hot storage of aggregates, and their repositories
+ * restore them from the cold store with {@link ArchivedAggregates}. The cold segment is written before
+ * the streams are deleted and the retained history is completed, so a failed run loses no events.
+ *
+ * <p>Registration processes are not event-sourced, so only their state is archived. It stays
+ * in the entity storage, so that the process of an archived order is not started again.
+ *
+ * @author Alexander Litus
+ */
+public class Archiver {
+
+    private static final Set<Class<? extends Message>> ORDER_EVENTS =
+            ImmutableSet.<Class<? extends Message>>of(OrderPlaced.class,
+                                                      OrderUpdated.class,
+                                                      OrderPartiallyReserved.class,
+                                                      OrderReservationCompleted.class,
+                                                      OrderTotalsCalculated.class,
+                                                      OrderExpired.class,
+                                                      OrderRegistrantAssigned.class,
+                                                      OrderConfirmed.class);
+
+    private static final Set<Class<? extends Message>> SEAT_ASSIGNMENTS_EVENTS =
+            ImmutableSet.<Class<? extends Message>>of(SeatAssignmentsCreated.class,
+                                                      SeatAssigned.class,
+                                                      SeatUnassigned.class,
+                                                      SeatAssignmentUpdated.class);
+
+    private static final String ORDER_ID_FIELD = "order_id";
+    private static final String ASSIGNMENTS_ID_FIELD = "assignments_id";
+
+    private final ColdStore coldStore;
+    private final long retentionSeconds;
+
+    @Nullable
+    private final HotStorage hotStorage;
+
+    @Nullable
+    private final RegistrationProcessManagerRepository processManagerRepository;
+
+    private Archiver(Builder builder) {
+        this.coldStore = builder.coldStore;
+        this.retentionSeconds = builder.retentionSeconds;
+        this.hotStorage = builder.hotStorage;
+        this.processManagerRepository = builder.processManagerRepository;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Moves the entities completed before the retention period to the cold store.
+     *
+     * @param hotHistory      all events of the bounded context in the chronological order
+     * @param now             the current time
+     * @param retainedHistory receives the events which stay in the hot history, in the same order
+     * @return the report on the archived entities and the hot history footprint
+     */
+    public ArchiveReport run(Iterable<Event> hotHistory, Timestamp now, StreamObserver<Event> retainedHistory) {
+        final Completions completions = new Completions();
+        for (Event event : hotHistory) {
+            completions.add(event);
+        }
+        final Set<Message> due = completions.getCompletedBefore(now.getSeconds() - retentionSeconds);
+
+        final ArchiveReport report = new ArchiveReport();
+        final Map<Message, List<Event>> streams = newLinkedHashMap();
+        for (Event event : hotHistory) {
+            final Message entityId = entityIdOf(AnyPacker.unpack(event.getMessage()));
+            if (entityId != null && due.contains(entityId)) {
+                List<Event> stream = streams.get(entityId);
+                if (stream == null) {
+                    stream = newArrayList();
+                    streams.put(entityId, stream);
+                }
+                stream.add(event);
+                report.onArchived(event);
+            } else {
+                retainedHistory.onNext(event);
+                report.onRetained(event);
+            }
+        }
+
+        final List<ArchivedEntity> entities = newArrayList();
+        for (Map.Entry<Message, List<Event>> stream : streams.entrySet()) {
+            final Message id = stream.getKey();
+            entities.add(archive(id, stream.getValue(), completions.getCompletedTime(id), report));
+        }
+        if (processManagerRepository != null) {
+            for (Message id : streams.keySet()) {
+                if (id instanceof OrderId) {
+                    final ArchivedEntity process = archiveProcess((OrderId) id, completions.getCompletedTime(id));
+                    if (process != null) {
+                        entities.add(process);
+                        report.onProcessArchived();
+                    }
+                }
+            }
+        }
+        if (!entities.isEmpty()) {
+            coldStore.write(entities);
+        }
+        if (hotStorage != null) {
+            for (Message id : streams.keySet()) {
+                hotStorage.delete(id);
+            }
+        }
+        retainedHistory.onCompleted();
+        report.setColdStore(coldStore);
+        return report;
+    }
+
+    private static ArchivedEntity archive(Message id, List<Event> events, Timestamp completedTime,
+                                          ArchiveReport report) {
+        final AbstractLobbyAggregate<?, ?, ?> aggregate;
+        if (id instanceof OrderId) {
+            aggregate = new OrderAggregate((OrderId) id);
+            report.onOrderArchived();
+        } else {
+            aggregate = new SeatAssignmentsAggregate((SeatAssignmentsId) id);
+            report.onSeatAssignmentsArchived();
+        }
+        aggregate.replay(events);
+        final ArchivedEntity result = ArchivedEntity.newBuilder()
+                                                    .setId(AnyPacker.pack(id))
+                                                    .setState(AnyPacker.pack(aggregate.getState()))
+                                                    .addAllEvent(events)
+                                                    .setCompletedTime(completedTime)
+                                                    .build();
+        return result;
+    }
+
+    @Nullable
+    private ArchivedEntity archiveProcess(OrderId orderId, Timestamp completedTime) {
+        checkNotNull(processManagerRepository);
+        final ProcessManagerId id = RegistrationProcessManagerRepository.getProcessManagerId(orderId);
+        final RegistrationProcess state = processManagerRepository.load(id)
+                                                                  .getState();
+        if (!state.getIsCompleted()) {
+            return null;
+        }
+        final ArchivedEntity result = ArchivedEntity.newBuilder()
+                                                    .setId(AnyPacker.pack(id))
+                                                    .setState(AnyPacker.pack(state))
+                                                    .setCompletedTime(completedTime)
+                                                    .build();
+        return result;
+    }
+
+    /**
+     * Returns the ID of the archived entity which produced the event,
+     * or {@code null} if the event is not produced by an archived entity type.
+     */
+    @Nullable
+    private static Message entityIdOf(Message event) {
+        final Class<? extends Message> eventClass = event.getClass();
+        if (ORDER_EVENTS.contains(eventClass)) {
+            return getField(event, ORDER_ID_FIELD);
+        }
+        if (SEAT_ASSIGNMENTS_EVENTS.contains(eventClass)) {
+            return getField(event, ASSIGNMENTS_ID_FIELD);
+        }
+        return null;
+    }
+
+    private static Message getField(Message message, String fieldName) {
+        final FieldDescriptor field = message.getDescriptorForType()
+                                             .findFieldByName(fieldName);
+        return (Message) message.getField(field);
+    }
+
+    /**
+     * The completion times of orders and seat assignments found in the event history.
+     */
+    private static class Completions {
+
+        private final Map<OrderId, Timestamp> orders = newHashMap();
+        private final Map<SeatAssignmentsId, AssignmentsProgress> seatAssignments = newHashMap();
+
+        private void add(Event event) {
+            final Message message = AnyPacker.unpack(event.getMessage());
+            final Timestamp time = event.getContext()
+                                        .getTimestamp();
+            if (message instanceof OrderConfirmed) {
+                orders.put(((OrderConfirmed) message).getOrderId(), time);
+            } else if (message instanceof OrderExpired) {
+                orders.put(((OrderExpired) message).getOrderId(), time);
+            } else if (message instanceof SeatAssignmentsCreated) {
+                final SeatAssignmentsCreated created = (SeatAssignmentsCreated) message;
+                final AssignmentsProgress progress = new AssignmentsProgress(created.getOrderId());
+                for (SeatAssignment assignment : created.getAssignmentList()) {
+                    progress.update(assignment);
+                }
+                progress.lastChangeTime = time;
+                seatAssignments.put(created.getAssignmentsId(), progress);
+            } else if (message instanceof SeatAssigned) {
+                final SeatAssigned assigned = (SeatAssigned) message;
+                final AssignmentsProgress progress = seatAssignments.get(assigned.getAssignmentsId());
+                if (progress != null) {
+                    progress.update(assigned.getAssignment());
+                    progress.lastChangeTime = time;
+                }
+            } else if (message instanceof SeatUnassigned) {
+                final SeatUnassigned unassigned = (SeatUnassigned) message;
+                final AssignmentsProgress progress = seatAssignments.get(unassigned.getAssignmentsId());
+                if (progress != null) {
+                    progress.unassignedPositions.add(unassigned.getPosition()
+                                                               .getValue());
+                    progress.lastChangeTime = time;
+                }
+            } else if (message instanceof SeatAssignmentUpdated) {
+                final SeatAssignmentUpdated updated = (SeatAssignmentUpdated) message;
+                final AssignmentsProgress progress = seatAssignments.get(updated.getAssignmentsId());
+                if (progress != null) {
+                    progress.lastChangeTime = time;
+                }
+            }
+        }
+
+        /**
+         * Returns the IDs of orders and seat assignments completed not later than the given time.
+         *
+         * <p>Seat assignments are returned only if their order is returned as well.
+         */
+        private Set<Message> getCompletedBefore(long cutoffSeconds) {
+            final Set<Message> result = newHashSet();
+            for (Map.Entry<OrderId, Timestamp> order : orders.entrySet()) {
+                if (order.getValue()
+                         .getSeconds() <= cutoffSeconds) {
+                    result.add(order.getKey());
+                }
+            }
+            for (Map.Entry<SeatAssignmentsId, AssignmentsProgress> entry : seatAssignments.entrySet()) {
+                final AssignmentsProgress progress = entry.getValue();
+                if (progress.isCompleted()
+                        && progress.lastChangeTime.getSeconds() <= cutoffSeconds
+                        && result.contains(progress.orderId)) {
+                    result.add(entry.getKey());
+                }
+            }
+            return result;
+        }
+
+        private Timestamp getCompletedTime(Message id) {
+            if (id instanceof OrderId) {
+                return orders.get(id);
+            }
+            return seatAssignments.get(id).lastChangeTime;
+        }
+    }
+
+    /**
+     * The seats of seat assignments which are not assigned to attendees yet.
+     */
+    private static class AssignmentsProgress {
+
+        private final OrderId orderId;
+        private final Set<Integer> unassignedPositions = newHashSet();
+        private Timestamp lastChangeTime;
+
+        private AssignmentsProgress(OrderId orderId) {
+            this.orderId = orderId;
+        }
+
+        private void update(SeatAssignment assignment) {
+            final int position = assignment.getPosition()
+                                           .getValue();
+            if (assignment.hasAttendee()) {
+                unassignedPositions.remove(position);
+            } else {
+                unassignedPositions.add(position);
+            }
+        }
+
+        private boolean isCompleted() {
+            return unassignedPositions.isEmpty();
+        }
+    }
+
+    /**
+     * The builder of {@link Archiver} instances.
+     */
+    public static class Builder {
+
+        private static final long DEFAULT_RETENTION_SECONDS = TimeUnit.DAYS.toSeconds(30);
+
+        private ColdStore coldStore;
+        private long retentionSeconds = DEFAULT_RETENTION_SECONDS;
+        @Nullable
+        private HotStorage hotStorage;
+        @Nullable
+        private RegistrationProcessManagerRepository processManagerRepository;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the store to which the completed entities are moved.
+         */
+        public Builder setColdStore(ColdStore coldStore) {
+            this.coldStore = checkNotNull(coldStore);
+            return this;
+        }
+
+        /**
+         * Sets the period during which a completed entity stays in the hot history.
+         */
+        public Builder setRetention(long retention, TimeUnit unit) {
+            checkNotNull(unit);
+            checkArgument(retention >= 0, "Retention must not be negative.");
+            this.retentionSeconds = unit.toSeconds(retention);
+            return this;
+        }
+
+        /**
+         * Sets the hot storage of aggregates from which the archived orders and seat assignments are deleted.
+         *
+         * <p>If not set, the archived streams stay in the hot storage as well. Commands to them are still
+         * rejected by the repositories given the {@link ArchivedAggregates}.
+         */
+        public Builder setHotStorage(HotStorage hotStorage) {
+            this.hotStorage = checkNotNull(hotStorage);
+            return this;
+        }
+
+        /**
+         * Sets the repository from which the states of completed registration processes are archived.
+         *
+         * <p>If not set, registration processes are not archived.
+         */
+        public Builder setProcessManagerRepository(RegistrationProcessManagerRepository repository) {
+            this.processManagerRepository = checkNotNull(repository);
+            return this;
+        }
+
+        public Archiver build() {
+            checkNotNull(coldStore, "The cold store must be set.");
+            return new Archiver(this);
+        }
+    }
+}
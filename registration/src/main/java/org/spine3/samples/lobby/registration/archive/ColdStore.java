@@ -0,0 +1,405 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.archive;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Message;
+import org.spine3.protobuf.AnyPacker;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static com.google.common.base.Charsets.US_ASCII;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newConcurrentMap;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * The cold storage of archived entities, kept as compressed segment files in a directory.
+ *
+ * <p>Each {@linkplain #write(Iterable) write} creates a new immutable segment. Entities of a segment are packed
+ * into blocks of about {@value #BLOCK_SIZE} bytes, and each block is compressed separately. The segment ends
+ * with an index of its blocks and entities, so that reading an entity by ID inflates only the block containing it.
+ *
+ * <p>The indexes of all segments are read when the store is opened. Only the IDs and positions of entities
+ * are kept in memory; entities themselves are read lazily.
+ *
+ * <p>If an entity is written to several segments, the latest one is read.
+ *
+ * <p>Is thread-safe.
+ *
+ * @author Alexander Litus
+ */
+public class ColdStore {
+
+    /* package */ static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final byte[] MAGIC = "LOBA".getBytes(US_ASCII);
+    private static final int FORMAT_VERSION = 1;
+    private static final int TRAILER_SIZE = 8 + 4;
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+    private static final String SEGMENT_FILE_EXTENSION = ".archive";
+
+    private final Path directory;
+    private final List<Path> segments = new CopyOnWriteArrayList<>();
+    private final Map<ByteString, Location> index = newConcurrentMap();
+
+    /**
+     * Opens the store reading the indexes of the segments in the directory.
+     *
+     * @param directory the directory for segment files; is created if it does not exist
+     * @throws IllegalStateException if the directory cannot be created or a segment cannot be read
+     */
+    public ColdStore(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            for (Path segment : listSegments(directory)) {
+                readIndex(segment);
+                segments.add(segment);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open the cold store: " + directory, e);
+        }
+    }
+
+    /**
+     * Writes the entities to a new segment.
+     *
+     * <p>The segment is written to a temporary file first and then atomically moved in place,
+     * so that a crash never leaves a partially written segment.
+     *
+     * @throws IllegalStateException if the segment cannot be written
+     */
+    public synchronized void write(Iterable<ArchivedEntity> entities) {
+        final Path segment = directory.resolve(String.format("%s%06d%s", SEGMENT_FILE_PREFIX, segments.size(),
+                                                             SEGMENT_FILE_EXTENSION));
+        try {
+            final Path tmpFile = Files.createTempFile(directory, segment.getFileName()
+                                                                        .toString(), null);
+            try (OutputStream output = Files.newOutputStream(tmpFile)) {
+                new SegmentWriter(output).write(entities);
+            }
+            Files.move(tmpFile, segment, ATOMIC_MOVE);
+            readIndex(segment);
+            segments.add(segment);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write the cold store segment: " + segment, e);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the entity with the given ID is archived.
+     */
+    public boolean contains(Message id) {
+        return index.containsKey(keyOf(id));
+    }
+
+    /**
+     * Reads the archived entity with the given ID.
+     *
+     * @return the entity or {@code null} if it is not archived
+     * @throws IllegalStateException if the segment of the entity cannot be read
+     */
+    @Nullable
+    public ArchivedEntity read(Message id) {
+        final Location location = index.get(keyOf(id));
+        if (location == null) {
+            return null;
+        }
+        try {
+            final byte[] block = location.block.read();
+            final InputStream input = new ByteArrayInputStream(block, location.offset, block.length - location.offset);
+            final ArchivedEntity result = ArchivedEntity.parseDelimitedFrom(input);
+            return result;
+        } catch (IOException | DataFormatException e) {
+            throw new IllegalStateException("Cannot read the archived entity: " + id, e);
+        }
+    }
+
+    /**
+     * Returns the number of archived entities.
+     */
+    public int getEntityCount() {
+        return index.size();
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Returns the total size of the segment files in bytes.
+     */
+    public long getSizeInBytes() {
+        long result = 0;
+        for (Path segment : segments) {
+            try {
+                result += Files.size(segment);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read the size of the segment: " + segment, e);
+            }
+        }
+        return result;
+    }
+
+    private static ByteString keyOf(Message id) {
+        return AnyPacker.pack(id)
+                        .toByteString();
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        final List<Path> result = newArrayList();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_FILE_PREFIX + '*' +
+                                                                               SEGMENT_FILE_EXTENSION)) {
+            for (Path file : files) {
+                result.add(file);
+            }
+        }
+        // Segment names are numbered with leading zeros, so the name order is the order of writing.
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Reads the index of the segment, replacing the locations of entities written to the earlier segments.
+     */
+    private void readIndex(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, READ)) {
+            final long size = channel.size();
+            checkFormat(size >= MAGIC.length + 1 + TRAILER_SIZE, segment);
+            final ByteBuffer header = readFully(channel, 0, MAGIC.length + 1);
+            checkFormat(hasMagic(header) && header.get() == FORMAT_VERSION, segment);
+
+            final ByteBuffer trailer = readFully(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+            final long indexOffset = trailer.getLong();
+            checkFormat(hasMagic(trailer) && indexOffset > 0 && indexOffset < size - TRAILER_SIZE, segment);
+
+            final ByteBuffer indexBytes = readFully(channel, indexOffset, (int) (size - TRAILER_SIZE - indexOffset));
+            final CodedInputStream input = CodedInputStream.newInstance(indexBytes.array(), 0, indexBytes.limit());
+            final int blockCount = input.readRawVarint32();
+            final Block[] blocks = new Block[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                final long offset = input.readRawVarint64();
+                final int compressedLength = input.readRawVarint32();
+                final int rawLength = input.readRawVarint32();
+                blocks[i] = new Block(segment, offset, compressedLength, rawLength);
+            }
+            final int entityCount = input.readRawVarint32();
+            for (int i = 0; i < entityCount; i++) {
+                final ByteString key = input.readBytes();
+                final int blockIndex = input.readRawVarint32();
+                final int offset = input.readRawVarint32();
+                index.put(key, new Location(blocks[blockIndex], offset));
+            }
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        final ByteBuffer result = ByteBuffer.allocate(length);
+        while (result.hasRemaining()) {
+            if (channel.read(result, position + result.position()) < 0) {
+                throw new IOException("Unexpected end of the segment file.");
+            }
+        }
+        result.flip();
+        return result;
+    }
+
+    private static boolean hasMagic(ByteBuffer buffer) {
+        for (byte expected : MAGIC) {
+            if (buffer.get() != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void checkFormat(boolean condition, Path segment) throws IOException {
+        if (!condition) {
+            throw new IOException("Not a cold store segment: " + segment);
+        }
+    }
+
+    /**
+     * The position of an entity in an uncompressed block.
+     */
+    private static class Location {
+
+        private final Block block;
+        private final int offset;
+
+        private Location(Block block, int offset) {
+            this.block = block;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * A compressed block of a segment.
+     */
+    private static class Block {
+
+        private final Path segment;
+        private final long offset;
+        private final int compressedLength;
+        private final int rawLength;
+
+        private Block(Path segment, long offset, int compressedLength, int rawLength) {
+            this.segment = segment;
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.rawLength = rawLength;
+        }
+
+        private byte[] read() throws IOException, DataFormatException {
+            final ByteBuffer compressed;
+            try (FileChannel channel = FileChannel.open(segment, READ)) {
+                compressed = readFully(channel, offset, compressedLength);
+            }
+            final Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed.array(), 0, compressedLength);
+                final byte[] result = new byte[rawLength];
+                int length = 0;
+                while (length < rawLength && !inflater.finished()) {
+                    final int inflated = inflater.inflate(result, length, rawLength - length);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new DataFormatException("Truncated block of the segment: " + segment);
+                    }
+                    length += inflated;
+                }
+                return result;
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Writes a segment: the header, the compressed blocks of entities, the index and the trailer.
+     */
+    private static class SegmentWriter {
+
+        private final OutputStream output;
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE);
+        private final ByteArrayOutputStream blockIndex = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream entityIndex = new ByteArrayOutputStream();
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private final byte[] buffer = new byte[BLOCK_SIZE];
+        private long position;
+        private int blockCount;
+        private int entityCount;
+
+        private SegmentWriter(OutputStream output) {
+            this.output = output;
+        }
+
+        private void write(Iterable<ArchivedEntity> entities) throws IOException {
+            try {
+                writeRaw(MAGIC);
+                writeRaw(new byte[]{FORMAT_VERSION});
+                final CodedOutputStream entityIndexOutput = CodedOutputStream.newInstance(entityIndex);
+                for (ArchivedEntity entity : entities) {
+                    checkArgument(entity.hasId(), "An archived entity must have an ID.");
+                    entityIndexOutput.writeBytesNoTag(entity.getId()
+                                                            .toByteString());
+                    entityIndexOutput.writeRawVarint32(blockCount);
+                    entityIndexOutput.writeRawVarint32(block.size());
+                    entity.writeDelimitedTo(block);
+                    entityCount++;
+                    if (block.size() >= BLOCK_SIZE) {
+                        flushBlock();
+                    }
+                }
+                entityIndexOutput.flush();
+                if (block.size() > 0) {
+                    flushBlock();
+                }
+                writeIndex();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            final byte[] raw = block.toByteArray();
+            block.reset();
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            final long blockOffset = position;
+            while (!deflater.finished()) {
+                final int length = deflater.deflate(buffer);
+                output.write(buffer, 0, length);
+                position += length;
+            }
+            final CodedOutputStream index = CodedOutputStream.newInstance(blockIndex);
+            index.writeRawVarint64(blockOffset);
+            index.writeRawVarint32((int) (position - blockOffset));
+            index.writeRawVarint32(raw.length);
+            index.flush();
+            blockCount++;
+        }
+
+        private void writeIndex() throws IOException {
+            final long indexOffset = position;
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final CodedOutputStream index = CodedOutputStream.newInstance(bytes);
+            index.writeRawVarint32(blockCount);
+            index.writeRawBytes(blockIndex.toByteArray());
+            index.writeRawVarint32(entityCount);
+            index.writeRawBytes(entityIndex.toByteArray());
+            index.flush();
+            writeRaw(bytes.toByteArray());
+
+            final ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            trailer.putLong(indexOffset);
+            trailer.put(MAGIC);
+            writeRaw(trailer.array());
+        }
+
+        private void writeRaw(byte[] bytes) throws IOException {
+            output.write(bytes);
+            position += bytes.length;
+        }
+    }
+}
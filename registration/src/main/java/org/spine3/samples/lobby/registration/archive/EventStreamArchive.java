@@ -0,0 +1,194 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.archive;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.Message;
+import io.grpc.stub.StreamObserver;
+import org.spine3.base.Event;
+import org.spine3.protobuf.AnyPacker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+/**
+ * The archive of event streams, e.g. the original events of compacted aggregates.
+ *
+ * <p>A stream is written as length-delimited events compressed with Deflate, so it is written and read
+ * with bounded memory regardless of its length. A stream may be archived in several parts, e.g. by repeated
+ * compactions; the parts are read in the order of writing.
+ *
+ * <p>Is thread-safe for streams with different IDs.
+ *
+ * @author Alexander Litus
+ */
+public class EventStreamArchive {
+
+    private static final String FILE_EXTENSION = ".events";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final HashFunction hashFunction = Hashing.murmur3_128();
+    private final Path directory;
+
+    /**
+     * Creates a new archive.
+     *
+     * @param directory the directory for stream files; is created if it does not exist
+     * @throws IllegalStateException if the directory cannot be created
+     */
+    public EventStreamArchive(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create the event stream archive directory: " + directory, e);
+        }
+    }
+
+    /**
+     * Opens a writer of a new part of the stream.
+     *
+     * <p>The part is written to a temporary file and becomes readable when the writer is closed.
+     *
+     * @param streamId the ID of the stream, e.g. the ID of the aggregate
+     * @throws IllegalStateException if the file cannot be created
+     */
+    public Writer openWriter(Message streamId) {
+        final String name = nameOf(streamId);
+        try {
+            final Path tmpFile = Files.createTempFile(directory, name, null);
+            return new Writer(tmpFile, name);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open the archived event stream: " + streamId, e);
+        }
+    }
+
+    /**
+     * Returns {@code true} if at least one part of the stream is archived.
+     */
+    public boolean contains(Message streamId) {
+        return Files.exists(partOf(nameOf(streamId), 0));
+    }
+
+    /**
+     * Reads all parts of the stream, passing the events to the observer one by one.
+     *
+     * @throws IllegalStateException if the stream cannot be read
+     */
+    public void read(Message streamId, StreamObserver<Event> observer) {
+        final String name = nameOf(streamId);
+        try {
+            for (int part = 0; Files.exists(partOf(name, part)); part++) {
+                try (InputStream input = new InflaterInputStream(
+                        new BufferedInputStream(Files.newInputStream(partOf(name, part)), BUFFER_SIZE))) {
+                    Event event = Event.parseDelimitedFrom(input);
+                    while (event != null) {
+                        observer.onNext(event);
+                        event = Event.parseDelimitedFrom(input);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read the archived event stream: " + streamId, e);
+        }
+        observer.onCompleted();
+    }
+
+    private String nameOf(Message streamId) {
+        return hashFunction.hashBytes(AnyPacker.pack(streamId)
+                                               .toByteArray())
+                           .toString();
+    }
+
+    private Path partOf(String name, int part) {
+        return directory.resolve(String.format("%s-%04d%s", name, part, FILE_EXTENSION));
+    }
+
+    /**
+     * The writer of a part of an archived event stream.
+     */
+    public class Writer implements Closeable {
+
+        private final Path tmpFile;
+        private final String name;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final DeflaterOutputStream output;
+        private long eventCount;
+
+        private Writer(Path tmpFile, String name) throws IOException {
+            this.tmpFile = tmpFile;
+            this.name = name;
+            final OutputStream file = new BufferedOutputStream(Files.newOutputStream(tmpFile), BUFFER_SIZE);
+            this.output = new DeflaterOutputStream(file, deflater, BUFFER_SIZE);
+        }
+
+        /**
+         * Appends the event to the stream.
+         *
+         * @throws IllegalStateException if the event cannot be written
+         */
+        public void write(Event event) {
+            try {
+                event.writeDelimitedTo(output);
+                eventCount++;
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot write the archived event stream: " + tmpFile, e);
+            }
+        }
+
+        public long getEventCount() {
+            return eventCount;
+        }
+
+        /**
+         * Completes the part and makes it readable.
+         *
+         * @throws IOException if the part cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                output.close();
+            } finally {
+                deflater.end();
+            }
+            synchronized (EventStreamArchive.this) {
+                int part = 0;
+                while (Files.exists(partOf(name, part))) {
+                    part++;
+                }
+                Files.move(tmpFile, partOf(name, part), ATOMIC_MOVE);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.bundle;
+
+import org.spine3.samples.lobby.registration.replay.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The metrics of bundle reservations.
+ *
+ * <p>The latency of a bundle is the time from the start of the saga until all the seats are reserved
+ * or all the reservations are cancelled.
+ *
+ * @author Alexander Litus
+ */
+public class BundleMetrics {
+
+    private static final double PERCENTILE_50 = 50;
+    private static final double PERCENTILE_99 = 99;
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final LatencyHistogram reservedLatency = new LatencyHistogram();
+    private final LatencyHistogram compensatedLatency = new LatencyHistogram();
+    private final AtomicLong failedCompensationCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+
+    /* package */ BundleMetrics() {
+    }
+
+    /* package */ void onReserved(long latencyNanos) {
+        reservedLatency.record(latencyNanos);
+    }
+
+    /* package */ void onCompensated(long latencyNanos) {
+        compensatedLatency.record(latencyNanos);
+    }
+
+    /* package */ void onCompensationFailed() {
+        failedCompensationCount.incrementAndGet();
+    }
+
+    /* package */ void onExpired() {
+        expiredCount.incrementAndGet();
+    }
+
+    /**
+     * Returns the latencies of the bundles reserved in full.
+     */
+    public LatencyHistogram getReservedLatency() {
+        return reservedLatency;
+    }
+
+    /**
+     * Returns the latencies of the bundles which reservations are cancelled.
+     */
+    public LatencyHistogram getCompensatedLatency() {
+        return compensatedLatency;
+    }
+
+    /**
+     * Returns the number of bundles which reservations could not be cancelled in some conferences.
+     */
+    public long getFailedCompensationCount() {
+        return failedCompensationCount.get();
+    }
+
+    /**
+     * Returns the number of reserved bundles which released their seats, as they were not confirmed in time.
+     */
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("reserved %d (p50 %.2f ms, p99 %.2f ms), compensated %d (p50 %.2f ms, p99 %.2f ms), " +
+                             "failed compensations %d, expired %d",
+                             reservedLatency.getCount(),
+                             reservedLatency.getPercentileNanos(PERCENTILE_50) / NANOS_PER_MILLI,
+                             reservedLatency.getPercentileNanos(PERCENTILE_99) / NANOS_PER_MILLI,
+                             compensatedLatency.getCount(),
+                             compensatedLatency.getPercentileNanos(PERCENTILE_50) / NANOS_PER_MILLI,
+                             compensatedLatency.getPercentileNanos(PERCENTILE_99) / NANOS_PER_MILLI,
+                             getFailedCompensationCount(),
+                             getExpiredCount());
+    }
+}
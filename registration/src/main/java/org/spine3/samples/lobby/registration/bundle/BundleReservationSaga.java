@@ -0,0 +1,587 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.bundle;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spine3.base.Command;
+import org.spine3.base.Commands;
+import org.spine3.base.Response;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.ReservationId;
+import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
+import org.spine3.samples.lobby.registration.seat.availability.CancelSeatReservation;
+import org.spine3.samples.lobby.registration.seat.availability.CommitSeatReservation;
+import org.spine3.samples.lobby.registration.seat.availability.MakeSeatReservation;
+import org.spine3.samples.lobby.registration.seat.availability.SeatQuantities;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailability;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailabilityRepository;
+import org.spine3.samples.lobby.registration.util.Seats;
+import org.spine3.server.command.CommandBus;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
+import static com.google.protobuf.util.TimeUtil.add;
+import static com.google.protobuf.util.TimeUtil.createDurationFromMillis;
+import static com.google.protobuf.util.TimeUtil.getCurrentTime;
+import static com.google.protobuf.util.TimeUtil.toMillis;
+import static org.spine3.samples.lobby.common.util.CommandContexts.newCommandContext;
+import static org.spine3.samples.lobby.registration.bundle.BundleReservation.Status.CANCELLING;
+import static org.spine3.samples.lobby.registration.bundle.BundleReservation.Status.CONFIRMING;
+import static org.spine3.samples.lobby.registration.bundle.BundleReservation.Status.RESERVED;
+import static org.spine3.samples.lobby.registration.bundle.BundleReservation.Status.RESERVING;
+import static org.spine3.samples.lobby.registration.util.Seats.findById;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatsAvailabilityId;
+
+/**
+ * The saga reserving the seats of a bundle of conferences (e.g. a main conference and a workshop) as a whole.
+ *
+ * <p>The seats of each conference are reserved by its own {@code SeatsAvailability} aggregate under the same
+ * reservation ID. The {@link MakeSeatReservation} commands are posted to the command bus in parallel. If a conference
+ * reserves fewer seats than requested or fails to handle the command, the reservations made in the other
+ * conferences are cancelled with {@link CancelSeatReservation} commands, so the bundle is either reserved
+ * in full or not at all. The aggregates are committed optimistically and no aggregate is locked for the duration
+ * of the saga, so concurrent bundles sharing conferences cannot deadlock whatever order their commands run in.
+ *
+ * <p>A reserved bundle {@linkplain Builder#setExpiration(long, TimeUnit) expires} unless it is
+ * {@linkplain #confirm(ReservationId) confirmed}: its reservations are then cancelled, so that abandoned bundles
+ * do not hold seats. A confirmed bundle commits its reservations with {@link CommitSeatReservation} commands.
+ *
+ * <p>The state of each bundle is written to the {@link BundleReservationStore} before each step and deleted
+ * when the bundle is completed. After a restart, {@link #recover()} completes the bundles left in the store.
+ *
+ * <p>Between the reservation and the compensation, the seats of a cancelled bundle are unavailable
+ * to other registrants.
+ *
+ * @author Alexander Litus
+ */
+public class BundleReservationSaga implements AutoCloseable {
+
+    private static final long RESPONSE_TIMEOUT_SECONDS = 30;
+
+    private final CommandBus commandBus;
+    private final SeatsAvailabilityRepository repository;
+    private final BundleReservationStore store;
+
+    /**
+     * Guards the changes of the bundle statuses in the store.
+     */
+    private final Object storeLock = new Object();
+
+    private final long expirationMillis;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService expiryScheduler =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                                                               .setNameFormat("bundle-expiry-%d")
+                                                               .setDaemon(true)
+                                                               .build());
+    private final BundleMetrics metrics = new BundleMetrics();
+
+    private BundleReservationSaga(Builder builder) {
+        this.commandBus = builder.commandBus;
+        this.repository = builder.repository;
+        this.store = builder.store;
+        this.expirationMillis = builder.expirationMillis;
+        this.executor = Executors.newFixedThreadPool(builder.parallelism);
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Reserves the seats of each conference of the bundle, or none of them.
+     *
+     * @param reservationId the ID of the reservation in each conference
+     * @param seats         the seats to reserve by conference
+     * @return {@link BundleOutcome#RESERVED} if all the seats are reserved,
+     *         {@link BundleOutcome#COMPENSATED} if the reservations are cancelled
+     * @throws IllegalStateException if a reservation cannot be cancelled; the seats of the conferences
+     *                               which are cancelled are released anyway
+     */
+    public BundleOutcome reserve(ReservationId reservationId, Map<ConferenceId, List<SeatQuantity>> seats) {
+        checkNotNull(reservationId);
+        checkArgument(!seats.isEmpty(), "A bundle must include at least one conference.");
+        final long startNanos = System.nanoTime();
+        final BundleReservation.Builder bundle = BundleReservation.newBuilder()
+                                                                  .setReservationId(reservationId)
+                                                                  .setStatus(RESERVING);
+        for (Map.Entry<ConferenceId, List<SeatQuantity>> conference : seats.entrySet()) {
+            bundle.addConference(ConferenceSeats.newBuilder()
+                                                .setConferenceId(conference.getKey())
+                                                .addAllSeat(conference.getValue()));
+        }
+        synchronized (storeLock) {
+            checkState(store.read(reservationId) == null, "The bundle is already being reserved: %s",
+                       reservationId.getUuid());
+            store.write(bundle.build());
+        }
+
+        final List<Future<Boolean>> reservations = newArrayListWithCapacity(bundle.getConferenceCount());
+        for (ConferenceSeats conference : bundle.getConferenceList()) {
+            reservations.add(executor.submit(new Reservation(reservationId, conference)));
+        }
+        boolean isReserved = true;
+        for (Future<Boolean> reservation : reservations) {
+            isReserved &= isReserved(reservation, reservationId);
+        }
+        if (isReserved) {
+            final Timestamp expirationTime = add(getCurrentTime(), createDurationFromMillis(expirationMillis));
+            store.write(bundle.setStatus(RESERVED)
+                              .setExpirationTime(expirationTime)
+                              .build());
+            scheduleExpiry(reservationId, expirationMillis);
+            metrics.onReserved(System.nanoTime() - startNanos);
+            return BundleOutcome.RESERVED;
+        }
+        store.write(bundle.setStatus(CANCELLING)
+                          .build());
+        compensate(bundle.build());
+        metrics.onCompensated(System.nanoTime() - startNanos);
+        return BundleOutcome.COMPENSATED;
+    }
+
+    /**
+     * Confirms the reserved bundle, committing its reservations in all the conferences.
+     *
+     * @param reservationId the ID of the bundle reservation
+     * @throws IllegalStateException if the bundle is not reserved (e.g. it is expired),
+     *                               or a reservation cannot be committed
+     */
+    public void confirm(ReservationId reservationId) {
+        final BundleReservation bundle = transition(reservationId, RESERVED, CONFIRMING);
+        checkState(bundle != null, "The bundle is not reserved: %s", reservationId.getUuid());
+        commit(bundle);
+    }
+
+    /**
+     * Completes the bundles left in the store, e.g. by a restart.
+     *
+     * <p>The bundles being reserved or cancelled are cancelled, the confirmed bundles are committed,
+     * and the expiration of the reserved bundles is scheduled again.
+     */
+    public void recover() {
+        for (BundleReservation bundle : store.readAll()) {
+            final ReservationId reservationId = bundle.getReservationId();
+            try {
+                switch (bundle.getStatus()) {
+                    case RESERVED:
+                        final long delayMillis = toMillis(bundle.getExpirationTime()) - System.currentTimeMillis();
+                        scheduleExpiry(reservationId, Math.max(0, delayMillis));
+                        break;
+                    case CONFIRMING:
+                        commit(bundle);
+                        break;
+                    default:
+                        final BundleReservation cancelling = bundle.toBuilder()
+                                                                   .setStatus(CANCELLING)
+                                                                   .build();
+                        store.write(cancelling);
+                        compensate(cancelling);
+                        break;
+                }
+            } catch (RuntimeException e) {
+                log().error("Cannot recover the bundle reservation {}.", reservationId.getUuid(), e);
+            }
+        }
+    }
+
+    /**
+     * Returns the metrics of the bundles reserved by this saga.
+     */
+    public BundleMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Stops the threads posting the commands and expiring the bundles.
+     *
+     * <p>The bundles which are not expired yet stay in the store, so that {@link #recover()} expires them
+     * after a restart.
+     */
+    @Override
+    public void close() {
+        expiryScheduler.shutdownNow();
+        executor.shutdown();
+    }
+
+    private void scheduleExpiry(final ReservationId reservationId, long delayMillis) {
+        expiryScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                expire(reservationId);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancels the reservations of the bundle unless it is confirmed.
+     */
+    private void expire(ReservationId reservationId) {
+        final BundleReservation bundle = transition(reservationId, RESERVED, CANCELLING);
+        if (bundle == null) {
+            return;
+        }
+        try {
+            compensate(bundle);
+            metrics.onExpired();
+        } catch (RuntimeException e) {
+            log().error("Cannot expire the bundle reservation {}.", reservationId.getUuid(), e);
+        }
+    }
+
+    /**
+     * Changes the status of the stored bundle if it has the expected one.
+     *
+     * @return the bundle with the new status, or {@code null} if the bundle does not have the expected status
+     */
+    @Nullable
+    private BundleReservation transition(ReservationId reservationId,
+                                         BundleReservation.Status expected,
+                                         BundleReservation.Status next) {
+        synchronized (storeLock) {
+            final BundleReservation bundle = store.read(reservationId);
+            if (bundle == null || bundle.getStatus() != expected) {
+                return null;
+            }
+            final BundleReservation result = bundle.toBuilder()
+                                                   .setStatus(next)
+                                                   .build();
+            store.write(result);
+            return result;
+        }
+    }
+
+    /**
+     * Commits the reservations of the confirmed bundle and deletes it from the store.
+     */
+    private void commit(BundleReservation bundle) {
+        final ReservationId reservationId = bundle.getReservationId();
+        final List<Future<Void>> commits = newArrayListWithCapacity(bundle.getConferenceCount());
+        for (ConferenceSeats conference : bundle.getConferenceList()) {
+            commits.add(executor.submit(new Commit(reservationId, conference.getConferenceId())));
+        }
+        final int failedCount = countFailed(commits, bundle, "commit");
+        checkState(failedCount == 0, "Bundle reservation %s is not committed in %s conference(s).",
+                   reservationId.getUuid(), failedCount);
+        store.delete(reservationId);
+    }
+
+    /**
+     * Cancels the reservations made in the conferences of the bundle and deletes it from the store.
+     */
+    private void compensate(BundleReservation bundle) {
+        final ReservationId reservationId = bundle.getReservationId();
+        final List<Future<Void>> cancellations = newArrayListWithCapacity(bundle.getConferenceCount());
+        for (ConferenceSeats conference : bundle.getConferenceList()) {
+            cancellations.add(executor.submit(new Cancellation(reservationId, conference.getConferenceId())));
+        }
+        final int failedCount = countFailed(cancellations, bundle, "cancel");
+        if (failedCount > 0) {
+            metrics.onCompensationFailed();
+            throw new IllegalStateException(String.format(
+                    "Bundle reservation %s is not cancelled in %d conference(s).",
+                    reservationId.getUuid(), failedCount));
+        }
+        store.delete(reservationId);
+    }
+
+    private static int countFailed(List<Future<Void>> steps, BundleReservation bundle, String action) {
+        int result = 0;
+        for (int i = 0; i < steps.size(); i++) {
+            try {
+                getUninterruptibly(steps.get(i));
+            } catch (ExecutionException e) {
+                log().error("Cannot {} the bundle reservation {} in the conference {}.",
+                            action, bundle.getReservationId()
+                                          .getUuid(),
+                            bundle.getConference(i)
+                                  .getConferenceId()
+                                  .getUuid(),
+                            e.getCause());
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isReserved(Future<Boolean> reservation, ReservationId reservationId) {
+        try {
+            return getUninterruptibly(reservation);
+        } catch (ExecutionException e) {
+            log().warn("Cannot reserve the seats of the bundle reservation {}.", reservationId.getUuid(),
+                       e.getCause());
+            return false;
+        }
+    }
+
+    @Nullable
+    private SeatQuantities findPendingReservation(ConferenceId conferenceId, ReservationId reservationId) {
+        final SeatsAvailability state = repository.load(newSeatsAvailabilityId(conferenceId))
+                                                  .getState();
+        final SeatQuantities result = Seats.findPendingReservation(state, reservationId);
+        return result;
+    }
+
+    /**
+     * Posts the command to the command bus and waits until it is handled.
+     *
+     * @throws IllegalStateException if the command is rejected or not handled in time
+     */
+    private void post(Message message) {
+        final Command command = Commands.create(message, newCommandContext());
+        final ResponseFuture response = new ResponseFuture();
+        commandBus.post(command, response);
+        try {
+            getUninterruptibly(response.result, RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The command is not handled: " + message.getClass()
+                                                                                     .getSimpleName(),
+                                            e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("The command is not handled in time: " + message.getClass()
+                                                                                             .getSimpleName(),
+                                            e);
+        }
+    }
+
+    /**
+     * Completes when the command bus completes or fails the response.
+     */
+    private static class ResponseFuture implements StreamObserver<Response> {
+
+        private final SettableFuture<Void> result = SettableFuture.create();
+
+        @Override
+        public void onNext(Response value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            result.setException(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            result.set(null);
+        }
+    }
+
+    /**
+     * Reserves the seats of a conference and tells if all of them are reserved.
+     */
+    private class Reservation implements Callable<Boolean> {
+
+        private final ReservationId reservationId;
+        private final ConferenceSeats conference;
+
+        private Reservation(ReservationId reservationId, ConferenceSeats conference) {
+            this.reservationId = reservationId;
+            this.conference = conference;
+        }
+
+        @Override
+        public Boolean call() {
+            final ConferenceId conferenceId = conference.getConferenceId();
+            final MakeSeatReservation message = MakeSeatReservation.newBuilder()
+                                                                   .setSeatsAvailabilityId(
+                                                                           newSeatsAvailabilityId(conferenceId))
+                                                                   .setReservationId(reservationId)
+                                                                   .setConferenceId(conferenceId)
+                                                                   .addAllSeat(conference.getSeatList())
+                                                                   .build();
+            post(message);
+            // Only the commands of this reservation change its pending seats, so the check is not stale.
+            final SeatQuantities reserved = findPendingReservation(conferenceId, reservationId);
+            if (reserved == null) {
+                return false;
+            }
+            for (SeatQuantity requested : conference.getSeatList()) {
+                final int reservedCount = findById(reserved.getItemList(), requested.getSeatTypeId()).getQuantity();
+                if (reservedCount < requested.getQuantity()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Cancels the reservation in a conference if it is made.
+     */
+    private class Cancellation implements Callable<Void> {
+
+        private final ReservationId reservationId;
+        private final ConferenceId conferenceId;
+
+        private Cancellation(ReservationId reservationId, ConferenceId conferenceId) {
+            this.reservationId = reservationId;
+            this.conferenceId = conferenceId;
+        }
+
+        @Override
+        public Void call() {
+            if (findPendingReservation(conferenceId, reservationId) == null) {
+                return null;
+            }
+            final CancelSeatReservation message = CancelSeatReservation.newBuilder()
+                                                                       .setSeatsAvailabilityId(
+                                                                               newSeatsAvailabilityId(conferenceId))
+                                                                       .setReservationId(reservationId)
+                                                                       .setConferenceId(conferenceId)
+                                                                       .build();
+            post(message);
+            return null;
+        }
+    }
+
+    /**
+     * Commits the reservation in a conference if it is not committed yet.
+     */
+    private class Commit implements Callable<Void> {
+
+        private final ReservationId reservationId;
+        private final ConferenceId conferenceId;
+
+        private Commit(ReservationId reservationId, ConferenceId conferenceId) {
+            this.reservationId = reservationId;
+            this.conferenceId = conferenceId;
+        }
+
+        @Override
+        public Void call() {
+            if (findPendingReservation(conferenceId, reservationId) == null) {
+                return null;
+            }
+            final CommitSeatReservation message = CommitSeatReservation.newBuilder()
+                                                                       .setSeatsAvailabilityId(
+                                                                               newSeatsAvailabilityId(conferenceId))
+                                                                       .setReservationId(reservationId)
+                                                                       .build();
+            post(message);
+            return null;
+        }
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+        @SuppressWarnings("NonSerializableFieldInSerializableClass")
+        private final Logger value = LoggerFactory.getLogger(BundleReservationSaga.class);
+    }
+
+    /**
+     * The builder of {@link BundleReservationSaga} instances.
+     */
+    public static class Builder {
+
+        private static final long DEFAULT_EXPIRATION_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+        private CommandBus commandBus;
+        private SeatsAvailabilityRepository repository;
+        private BundleReservationStore store;
+        private long expirationMillis = DEFAULT_EXPIRATION_MILLIS;
+        private int parallelism = Runtime.getRuntime()
+                                         .availableProcessors();
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the command bus to post the commands to the seats availability aggregates.
+         */
+        public Builder setCommandBus(CommandBus commandBus) {
+            this.commandBus = checkNotNull(commandBus);
+            return this;
+        }
+
+        /**
+         * Sets the repository from which the reserved seats are read.
+         */
+        public Builder setRepository(SeatsAvailabilityRepository repository) {
+            this.repository = checkNotNull(repository);
+            return this;
+        }
+
+        /**
+         * Sets the store of the bundles which are not completed yet.
+         *
+         * <p>If not set, the bundles are kept in memory.
+         */
+        public Builder setStore(BundleReservationStore store) {
+            this.store = checkNotNull(store);
+            return this;
+        }
+
+        /**
+         * Sets the time after which a reserved bundle which is not confirmed releases its seats.
+         *
+         * <p>Is 15 minutes by default, as for orders.
+         */
+        public Builder setExpiration(long expiration, TimeUnit unit) {
+            checkNotNull(unit);
+            checkArgument(expiration > 0, "Expiration must be positive.");
+            this.expirationMillis = unit.toMillis(expiration);
+            return this;
+        }
+
+        /**
+         * Sets the number of threads posting the commands of the bundles.
+         */
+        public Builder setParallelism(int parallelism) {
+            checkArgument(parallelism > 0, "Parallelism must be positive.");
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public BundleReservationSaga build() {
+            checkNotNull(commandBus, "The command bus must be set.");
+            checkNotNull(repository, "The repository must be set.");
+            if (store == null) {
+                store = new InMemoryBundleReservationStore();
+            }
+            return new BundleReservationSaga(this);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.bundle;
+
+import org.spine3.samples.lobby.common.ReservationId;
+
+import javax.annotation.Nullable;
+
+/**
+ * The storage of the bundle reservations which are not completed yet.
+ *
+ * @author Alexander Litus
+ * @see BundleReservationSaga
+ */
+public interface BundleReservationStore {
+
+    /**
+     * Reads the reservation with the given ID.
+     *
+     * @return the reservation or {@code null} if it is completed or unknown
+     */
+    @Nullable
+    BundleReservation read(ReservationId reservationId);
+
+    /**
+     * Reads all the stored reservations.
+     */
+    Iterable<BundleReservation> readAll();
+
+    /**
+     * Writes the given reservation replacing the previous state of the same reservation.
+     */
+    void write(BundleReservation reservation);
+
+    /**
+     * Deletes the completed reservation with the given ID.
+     */
+    void delete(ReservationId reservationId);
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.bundle;
+
+import com.google.common.collect.ImmutableList;
+import org.spine3.samples.lobby.common.ReservationId;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.collect.Maps.newConcurrentMap;
+
+/**
+ * The bundle reservation store which keeps reservations in memory.
+ *
+ * <p>Reservations are lost on restart, so the seats of the bundles which are not completed before a restart
+ * stay reserved.
+ *
+ * @author Alexander Litus
+ */
+public class InMemoryBundleReservationStore implements BundleReservationStore {
+
+    private final ConcurrentMap<ReservationId, BundleReservation> reservations = newConcurrentMap();
+
+    @Nullable
+    @Override
+    public BundleReservation read(ReservationId reservationId) {
+        return reservations.get(reservationId);
+    }
+
+    @Override
+    public Iterable<BundleReservation> readAll() {
+        return ImmutableList.copyOf(reservations.values());
+    }
+
+    @Override
+    public void write(BundleReservation reservation) {
+        reservations.put(reservation.getReservationId(), reservation);
+    }
+
+    @Override
+    public void delete(ReservationId reservationId) {
+        reservations.remove(reservationId);
+    }
+}
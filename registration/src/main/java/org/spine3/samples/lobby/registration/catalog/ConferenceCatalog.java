@@ -0,0 +1,370 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.catalog;
+
+import com.google.protobuf.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spine3.base.Event;
+import org.spine3.base.EventContext;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.protobuf.AnyPacker;
+import org.spine3.samples.lobby.conference.contracts.Conference;
+import org.spine3.samples.lobby.registration.projection.ReadModel;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceCreated;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferencePublished;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceUnpublished;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceUpdated;
+import org.spine3.server.event.EventSubscriber;
+import org.spine3.server.event.Subscribe;
+import org.spine3.time.LocalDate;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+import static com.google.common.collect.Maps.newHashMap;
+
+/**
+ * The read model of the conferences for browsing and searching the catalog.
+ *
+ * <p>The catalog is maintained from conference events and answers queries without loading projections.
+ * Each conference gets a dense slot number on creation. The indexes refer to conferences by slots:
+ * <ul>
+ *     <li>the slug index is a hash map from a slug to a slot;
+ *     <li>the {@linkplain IntervalIndex date index} finds conferences running on any day of a date range;
+ *     <li>the published bitmap has the bits of the slots of published conferences set.
+ * </ul>
+ *
+ * <p>The catalog must be subscribed to the event bus of the bounded context to receive conference events.
+ * Conferences are kept in memory, so the catalog is {@linkplain #replay(Iterable) filled} from the event history
+ * after a restart.
+ *
+ * <p>The catalog is thread-safe. Queries run concurrently with each other and exclusively with updates.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings("UnusedParameters")
+public class ConferenceCatalog extends EventSubscriber implements ReadModel {
+
+    /* package */ static final int DEFAULT_PAGE_SIZE = 20;
+    /* package */ static final int MAX_PAGE_SIZE = 100;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<ConferenceId, Integer> slots = newHashMap();
+    private final List<Conference> conferences = newArrayList();
+    private final Map<String, Integer> slugIndex = newHashMap();
+    private final IntervalIndex dateIndex = new IntervalIndex();
+    private final BitSet published = new BitSet();
+
+    @Subscribe
+    public void on(ConferenceCreated event, EventContext context) {
+        put(event.getConference());
+    }
+
+    @Subscribe
+    public void on(ConferenceUpdated event, EventContext context) {
+        put(event.getConference());
+    }
+
+    @Subscribe
+    public void on(ConferencePublished event, EventContext context) {
+        setPublished(event.getConferenceId(), true);
+    }
+
+    @Subscribe
+    public void on(ConferenceUnpublished event, EventContext context) {
+        setPublished(event.getConferenceId(), false);
+    }
+
+    /**
+     * Applies the conference events of the history to the catalog.
+     *
+     * <p>Is called on start-up, before the catalog is subscribed to the event bus.
+     *
+     * @param history all events of the bounded context in the chronological order
+     * @return the number of conference events applied
+     */
+    @Override
+    public long replay(Iterable<Event> history) {
+        long result = 0;
+        for (Event event : history) {
+            final Message message = AnyPacker.unpack(event.getMessage());
+            final EventContext context = event.getContext();
+            if (message instanceof ConferenceCreated) {
+                on((ConferenceCreated) message, context);
+            } else if (message instanceof ConferenceUpdated) {
+                on((ConferenceUpdated) message, context);
+            } else if (message instanceof ConferencePublished) {
+                on((ConferencePublished) message, context);
+            } else if (message instanceof ConferenceUnpublished) {
+                on((ConferenceUnpublished) message, context);
+            } else {
+                continue;
+            }
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Finds a conference by its slug.
+     *
+     * @return the conference or {@code null} if there is no conference with the slug
+     */
+    @Nullable
+    public Conference findBySlug(String slug) {
+        lock.readLock()
+            .lock();
+        try {
+            final Integer slot = slugIndex.get(slug);
+            final Conference result = (slot == null) ? null : conferences.get(slot);
+            return result;
+        } finally {
+            lock.readLock()
+                .unlock();
+        }
+    }
+
+    /**
+     * Finds a page of the conferences matching the query.
+     *
+     * @throws IllegalArgumentException if the page size or offset is invalid,
+     *                                  or the date range ends before it starts
+     */
+    public CatalogPage find(CatalogQuery query) {
+        final int pageSize = (query.getPageSize() == 0) ? DEFAULT_PAGE_SIZE : query.getPageSize();
+        checkArgument(pageSize > 0 && pageSize <= MAX_PAGE_SIZE,
+                      "Page size must be between 1 and %s.", MAX_PAGE_SIZE);
+        checkArgument(query.getPageOffset() >= 0, "Page offset must not be negative.");
+        final boolean hasDateRange = query.hasRunningFrom() || query.hasRunningTo();
+        final int firstDay = query.hasRunningFrom() ? toDayKey(query.getRunningFrom()) : Integer.MIN_VALUE;
+        final int lastDay = query.hasRunningTo() ? toDayKey(query.getRunningTo()) : firstDay;
+        checkArgument(firstDay <= lastDay, "Date range must not end before it starts: %s", query);
+
+        final PageCollector page = new PageCollector(query, pageSize);
+        if (hasDateRange) {
+            lockForDateQuery();
+        } else {
+            lock.readLock()
+                .lock();
+        }
+        try {
+            if (hasDateRange) {
+                dateIndex.findOverlapping(firstDay, lastDay, page);
+            } else {
+                page.visitAll(conferences.size());
+            }
+            return page.toCatalogPage();
+        } finally {
+            lock.readLock()
+                .unlock();
+        }
+    }
+
+    /**
+     * Returns the number of conferences in the catalog.
+     */
+    public int size() {
+        lock.readLock()
+            .lock();
+        try {
+            return conferences.size();
+        } finally {
+            lock.readLock()
+                .unlock();
+        }
+    }
+
+    /**
+     * Acquires the read lock and ensures that the date index is rebuilt after the last update.
+     *
+     * <p>If the index needs to be rebuilt, the write lock is acquired for the rebuild
+     * and downgraded to the read lock afterwards.
+     */
+    private void lockForDateQuery() {
+        lock.readLock()
+            .lock();
+        while (dateIndex.isDirty()) {
+            lock.readLock()
+                .unlock();
+            lock.writeLock()
+                .lock();
+            try {
+                dateIndex.rebuild();
+                lock.readLock()
+                    .lock();
+            } finally {
+                lock.writeLock()
+                    .unlock();
+            }
+        }
+    }
+
+    private void put(Conference conference) {
+        lock.writeLock()
+            .lock();
+        try {
+            final ConferenceId id = conference.getId();
+            Integer slot = slots.get(id);
+            if (slot == null) {
+                slot = conferences.size();
+                slots.put(id, slot);
+                conferences.add(conference);
+            } else {
+                final String previousSlug = conferences.get(slot)
+                                                       .getSlug()
+                                                       .getValue();
+                slugIndex.remove(previousSlug);
+                conferences.set(slot, conference);
+            }
+            final String slug = conference.getSlug()
+                                          .getValue();
+            if (!slug.isEmpty()) {
+                slugIndex.put(slug, slot);
+            }
+            if (conference.hasStartDate()) {
+                final int firstDay = toDayKey(conference.getStartDate());
+                final int lastDay = conference.hasEndDate() ? toDayKey(conference.getEndDate()) : firstDay;
+                dateIndex.put(slot, firstDay, lastDay);
+            } else {
+                dateIndex.remove(slot);
+            }
+            published.set(slot, conference.getIsPublished());
+        } finally {
+            lock.writeLock()
+                .unlock();
+        }
+    }
+
+    private void setPublished(ConferenceId id, boolean isPublished) {
+        lock.writeLock()
+            .lock();
+        try {
+            final Integer slot = slots.get(id);
+            if (slot == null) {
+                log().warn("No conference in the catalog, ID: {}", id.getUuid());
+                return;
+            }
+            final Conference conference = conferences.get(slot)
+                                                     .toBuilder()
+                                                     .setIsPublished(isPublished)
+                                                     .build();
+            conferences.set(slot, conference);
+            published.set(slot, isPublished);
+        } finally {
+            lock.writeLock()
+                .unlock();
+        }
+    }
+
+    /**
+     * Converts the date to a key which preserves the order of dates.
+     */
+    /* package */ static int toDayKey(LocalDate date) {
+        final int result = date.getYear() * 10_000 + date.getMonthValue() * 100 + date.getDay();
+        return result;
+    }
+
+    /**
+     * Collects a page of the conferences matching a query.
+     *
+     * <p>Skips the conferences before the page and stops the search after the first conference past the page.
+     */
+    private class PageCollector implements IntervalIndex.SlotVisitor {
+
+        private final boolean isPublishedOnly;
+        private final int offset;
+        private final int pageSize;
+        private final List<Conference> found;
+        private int matchedCount;
+        private boolean hasNextPage;
+
+        private PageCollector(CatalogQuery query, int pageSize) {
+            this.isPublishedOnly = query.getPublishedOnly();
+            this.offset = query.getPageOffset();
+            this.pageSize = pageSize;
+            this.found = newArrayListWithCapacity(pageSize);
+        }
+
+        @Override
+        public boolean visit(int slot) {
+            if (isPublishedOnly && !published.get(slot)) {
+                return true;
+            }
+            matchedCount++;
+            if (matchedCount <= offset) {
+                return true;
+            }
+            if (found.size() == pageSize) {
+                hasNextPage = true;
+                return false;
+            }
+            found.add(conferences.get(slot));
+            return true;
+        }
+
+        /**
+         * Visits the slots of all conferences in the order of creation.
+         */
+        private void visitAll(int slotCount) {
+            if (isPublishedOnly) {
+                for (int slot = published.nextSetBit(0); slot >= 0; slot = published.nextSetBit(slot + 1)) {
+                    if (!visit(slot)) {
+                        return;
+                    }
+                }
+            } else {
+                for (int slot = 0; slot < slotCount; slot++) {
+                    if (!visit(slot)) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private CatalogPage toCatalogPage() {
+            final CatalogPage result = CatalogPage.newBuilder()
+                                                  .addAllConference(found)
+                                                  .setHasNextPage(hasNextPage)
+                                                  .setNextPageOffset(offset + found.size())
+                                                  .build();
+            return result;
+        }
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+        @SuppressWarnings("NonSerializableFieldInSerializableClass")
+        private final Logger value = LoggerFactory.getLogger(ConferenceCatalog.class);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.catalog;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.Message;
+import org.spine3.base.Event;
+import org.spine3.base.EventContext;
+import org.spine3.protobuf.AnyPacker;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.conference.contracts.Conference;
+import org.spine3.samples.lobby.registration.projection.ReadModel;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceCreated;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceUpdated;
+import org.spine3.server.event.EventSubscriber;
+import org.spine3.server.event.Subscribe;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+
+/**
+ * The full-text search over the conference listings.
+ *
+ * <p>Indexes the name, description, tagline and location of conferences in an {@link InvertedIndex}
+ * maintained from {@code ConferenceCreated} and {@code ConferenceUpdated} events.
+ * An updated conference is re-indexed under a new document ID; the index is compacted once
+ * the outdated documents outnumber the current ones.
+ *
+ * <p>The search does not filter conferences by the publication status; use {@link ConferenceCatalog} for that.
+ *
+ * <p>The search must be subscribed to the event bus of the bounded context to receive conference events.
+ * The index is kept in memory, so it is {@linkplain #replay(Iterable) filled} from the event history after a restart.
+ *
+ * <p>The search is thread-safe. Queries run concurrently with each other and exclusively with updates.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings("UnusedParameters")
+public class ConferenceSearch extends EventSubscriber implements ReadModel {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final InvertedIndex index = new InvertedIndex();
+
+    private final Map<ConferenceId, Integer> docIds = newHashMap();
+
+    /**
+     * The IDs of the conferences by document IDs; {@code null} for outdated documents.
+     */
+    private List<ConferenceId> conferenceIds = newArrayList();
+
+    @Subscribe
+    public void on(ConferenceCreated event, EventContext context) {
+        index(event.getConference());
+    }
+
+    @Subscribe
+    public void on(ConferenceUpdated event, EventContext context) {
+        index(event.getConference());
+    }
+
+    /**
+     * Indexes the conferences created and updated in the history.
+     *
+     * <p>Is called on start-up, before the search is subscribed to the event bus.
+     *
+     * @param history all events of the bounded context in the chronological order
+     * @return the number of conference events applied
+     */
+    @Override
+    public long replay(Iterable<Event> history) {
+        long result = 0;
+        for (Event event : history) {
+            final Message message = AnyPacker.unpack(event.getMessage());
+            if (message instanceof ConferenceCreated) {
+                index(((ConferenceCreated) message).getConference());
+            } else if (message instanceof ConferenceUpdated) {
+                index(((ConferenceUpdated) message).getConference());
+            } else {
+                continue;
+            }
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Finds the conferences having all the words of the query in their listings.
+     *
+     * <p>Words are matched case-insensitively and regardless of diacritical marks.
+     * A word ending with {@code *} matches all words starting with it, e.g. {@code "java conf*"}.
+     *
+     * @param query the words to search for
+     * @param limit the maximum number of conferences to return
+     * @return the IDs of the found conferences, the most relevant first
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public List<ConferenceId> search(String query, int limit) {
+        lock.readLock()
+            .lock();
+        try {
+            final int[] found = index.search(query, limit);
+            final ImmutableList.Builder<ConferenceId> result = ImmutableList.builder();
+            for (int docId : found) {
+                result.add(conferenceIds.get(docId));
+            }
+            return result.build();
+        } finally {
+            lock.readLock()
+                .unlock();
+        }
+    }
+
+    private void index(Conference conference) {
+        final ConferenceId id = conference.getId();
+        final String text = conference.getName() + '\n' +
+                            conference.getDescription() + '\n' +
+                            conference.getTagline() + '\n' +
+                            conference.getLocation();
+        lock.writeLock()
+            .lock();
+        try {
+            final Integer previousDocId = docIds.get(id);
+            if (previousDocId != null) {
+                index.delete(previousDocId);
+                conferenceIds.set(previousDocId, null);
+            }
+            final int docId = index.add(text);
+            conferenceIds.add(docId, id);
+            docIds.put(id, docId);
+            if (index.needsCompaction()) {
+                compact();
+            }
+        } finally {
+            lock.writeLock()
+                .unlock();
+        }
+    }
+
+    private void compact() {
+        final int[] newDocIds = index.compact();
+        final List<ConferenceId> compacted = newArrayList();
+        for (int oldDocId = 0; oldDocId < newDocIds.length; oldDocId++) {
+            final int newDocId = newDocIds[oldDocId];
+            if (newDocId >= 0) {
+                final ConferenceId id = conferenceIds.get(oldDocId);
+                compacted.add(id);
+                docIds.put(id, newDocId);
+            }
+        }
+        conferenceIds = compacted;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.catalog;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The index of day ranges answering which ranges overlap a given range.
+ *
+ * <p>The ranges are kept in arrays sorted by the first day, which form an implicit balanced search tree:
+ * the root of a subarray is its middle element. Each element also holds the maximum last day
+ * in its subtree, so that a query skips the subtrees ending before the queried range.
+ * A query takes {@code O(log n + k)} time for {@code k} matching ranges, and visits them
+ * in the order of the first day.
+ *
+ * <p>Changes are accumulated and the arrays are rebuilt on the first query after a change,
+ * as the index is queried much more often than changed.
+ *
+ * <p>Days are represented by ordered {@code int} keys. The class is not thread-safe.
+ *
+ * @author Alexander Litus
+ */
+/* package */ class IntervalIndex {
+
+    /**
+     * The first and the last days of ranges by slot; the slot is the ID of a range.
+     */
+    private int[] firstDays = new int[0];
+    private int[] lastDays = new int[0];
+    private final BitSet indexedSlots = new BitSet();
+
+    private int[] sortedSlots = new int[0];
+    private int[] sortedFirstDays = new int[0];
+    private int[] sortedLastDays = new int[0];
+    private int[] maxLastDays = new int[0];
+    private boolean isDirty;
+
+    /**
+     * Sets the range of the slot replacing the previous one, if any.
+     */
+    /* package */ void put(int slot, int firstDay, int lastDay) {
+        ensureCapacity(slot + 1);
+        firstDays[slot] = firstDay;
+        lastDays[slot] = Math.max(firstDay, lastDay);
+        indexedSlots.set(slot);
+        isDirty = true;
+    }
+
+    /**
+     * Removes the range of the slot, if any.
+     */
+    /* package */ void remove(int slot) {
+        if (indexedSlots.get(slot)) {
+            indexedSlots.clear(slot);
+            isDirty = true;
+        }
+    }
+
+    /* package */ boolean isDirty() {
+        return isDirty;
+    }
+
+    /**
+     * Rebuilds the search arrays if the index was changed since the last rebuild.
+     */
+    /* package */ void rebuild() {
+        if (!isDirty) {
+            return;
+        }
+        final int size = indexedSlots.cardinality();
+        final long[] keys = new long[size];
+        int i = 0;
+        for (int slot = indexedSlots.nextSetBit(0); slot >= 0; slot = indexedSlots.nextSetBit(slot + 1)) {
+            // The first day in the high half and the slot in the low half sort by the day, then by the slot.
+            keys[i++] = ((long) firstDays[slot] << Integer.SIZE) | slot;
+        }
+        Arrays.sort(keys);
+        sortedSlots = new int[size];
+        sortedFirstDays = new int[size];
+        sortedLastDays = new int[size];
+        for (int j = 0; j < size; j++) {
+            final int slot = (int) keys[j];
+            sortedSlots[j] = slot;
+            sortedFirstDays[j] = firstDays[slot];
+            sortedLastDays[j] = lastDays[slot];
+        }
+        maxLastDays = new int[size];
+        computeMaxLastDays(0, size);
+        isDirty = false;
+    }
+
+    private int computeMaxLastDays(int from, int to) {
+        if (from >= to) {
+            return Integer.MIN_VALUE;
+        }
+        final int middle = (from + to) >>> 1;
+        final int leftMax = computeMaxLastDays(from, middle);
+        final int rightMax = computeMaxLastDays(middle + 1, to);
+        final int result = Math.max(sortedLastDays[middle], Math.max(leftMax, rightMax));
+        maxLastDays[middle] = result;
+        return result;
+    }
+
+    /**
+     * Passes the slots of the ranges overlapping {@code [firstDay, lastDay]} to the visitor
+     * in the order of their first days.
+     *
+     * <p>The index must be {@linkplain #rebuild() rebuilt} after the last change.
+     */
+    /* package */ void findOverlapping(int firstDay, int lastDay, SlotVisitor visitor) {
+        visit(0, sortedSlots.length, firstDay, lastDay, visitor);
+    }
+
+    /**
+     * Visits the subtree of {@code [from, to)} in order.
+     *
+     * @return {@code false} if the visitor requested to stop
+     */
+    private boolean visit(int from, int to, int firstDay, int lastDay, SlotVisitor visitor) {
+        if (from >= to) {
+            return true;
+        }
+        final int middle = (from + to) >>> 1;
+        if (maxLastDays[middle] < firstDay) {
+            return true;
+        }
+        if (!visit(from, middle, firstDay, lastDay, visitor)) {
+            return false;
+        }
+        if (sortedFirstDays[middle] > lastDay) {
+            // The right subtree starts even later.
+            return true;
+        }
+        if (sortedLastDays[middle] >= firstDay && !visitor.visit(sortedSlots[middle])) {
+            return false;
+        }
+        return visit(middle + 1, to, firstDay, lastDay, visitor);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (firstDays.length >= capacity) {
+            return;
+        }
+        final int newCapacity = Math.max(capacity, firstDays.length * 2);
+        firstDays = Arrays.copyOf(firstDays, newCapacity);
+        lastDays = Arrays.copyOf(lastDays, newCapacity);
+    }
+
+    /**
+     * Receives slots found in an index.
+     */
+    /* package */ interface SlotVisitor {
+
+        /**
+         * Receives a found slot.
+         *
+         * @return {@code true} to continue the search, {@code false} to stop it
+         */
+        boolean visit(int slot);
+    }
+}
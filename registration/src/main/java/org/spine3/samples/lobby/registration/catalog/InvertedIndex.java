@@ -0,0 +1,393 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.catalog;
+
+import com.google.common.collect.ImmutableList;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Maps.newTreeMap;
+
+/**
+ * The inverted index of text documents.
+ *
+ * <p>A document gets the next ID when added. Updating a document means deleting it and adding it under a new ID,
+ * so that the IDs in a postings list always grow and the list is only appended to. Each postings list is
+ * compressed as variable-length deltas between document IDs followed by the term frequencies.
+ * Deleted documents are skipped on search until the index is {@linkplain #compact() compacted}.
+ *
+ * <p>The terms are kept in a sorted map, so that the terms starting with a prefix form a range.
+ *
+ * <p>Search returns the documents having all the terms of the query, ranked by the sum of term frequencies
+ * weighted by the inverse document frequency of the terms.
+ *
+ * <p>The class is not thread-safe.
+ *
+ * @author Alexander Litus
+ */
+/* package */ class InvertedIndex {
+
+    /**
+     * The suffix of a query word which is matched as a prefix.
+     */
+    /* package */ static final char PREFIX_WILDCARD = '*';
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final int MIN_COMPACTION_DELETED_COUNT = 1024;
+
+    private final NavigableMap<String, PostingsList> postings = newTreeMap();
+    private final BitSet deleted = new BitSet();
+    private int nextDocId;
+    private int deletedCount;
+
+    /**
+     * Adds the document to the index.
+     *
+     * @return the ID of the document
+     */
+    /* package */ int add(String text) {
+        final int docId = nextDocId++;
+        final Map<String, Integer> frequencies = newHashMap();
+        for (String term : tokenize(text)) {
+            final Integer frequency = frequencies.get(term);
+            frequencies.put(term, (frequency == null) ? 1 : frequency + 1);
+        }
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            PostingsList list = postings.get(entry.getKey());
+            if (list == null) {
+                list = new PostingsList();
+                postings.put(entry.getKey(), list);
+            }
+            list.append(docId, entry.getValue());
+        }
+        return docId;
+    }
+
+    /**
+     * Deletes the document from the index.
+     */
+    /* package */ void delete(int docId) {
+        checkArgument(docId >= 0 && docId < nextDocId, "Unknown document ID: %s", docId);
+        if (!deleted.get(docId)) {
+            deleted.set(docId);
+            deletedCount++;
+        }
+    }
+
+    /**
+     * Returns the number of documents which are not deleted.
+     */
+    /* package */ int getLiveCount() {
+        return nextDocId - deletedCount;
+    }
+
+    /**
+     * Returns {@code true} if deleted documents take more space than live ones.
+     */
+    /* package */ boolean needsCompaction() {
+        final boolean result = deletedCount >= MIN_COMPACTION_DELETED_COUNT && deletedCount > getLiveCount();
+        return result;
+    }
+
+    /**
+     * Removes the deleted documents from the postings lists and renumbers the live documents densely
+     * preserving their order.
+     *
+     * @return the new IDs of the documents by their old IDs; {@code -1} for deleted documents
+     */
+    /* package */ int[] compact() {
+        final int[] newIds = new int[nextDocId];
+        int nextId = 0;
+        for (int docId = 0; docId < nextDocId; docId++) {
+            newIds[docId] = deleted.get(docId) ? -1 : nextId++;
+        }
+        final Iterator<PostingsList> lists = postings.values()
+                                                     .iterator();
+        while (lists.hasNext()) {
+            final PostingsList list = lists.next();
+            list.renumber(newIds);
+            if (list.docCount == 0) {
+                lists.remove();
+            }
+        }
+        nextDocId = nextId;
+        deleted.clear();
+        deletedCount = 0;
+        return newIds;
+    }
+
+    /**
+     * Finds the documents having all the words of the query.
+     *
+     * <p>A word ending with the {@linkplain #PREFIX_WILDCARD wildcard} matches all terms starting with it.
+     *
+     * @param query the words to search for
+     * @param limit the maximum number of documents to return
+     * @return the IDs of the found documents, the most relevant first
+     */
+    /* package */ int[] search(String query, int limit) {
+        checkArgument(limit > 0, "Limit must be positive.");
+        final List<Collection<PostingsList>> queryTerms = findQueryTerms(query);
+        if (queryTerms.isEmpty()) {
+            return new int[0];
+        }
+        final int[] matchedTermCounts = new int[nextDocId];
+        final float[] scores = new float[nextDocId];
+        for (int i = 0; i < queryTerms.size(); i++) {
+            for (PostingsList list : queryTerms.get(i)) {
+                final float inverseFrequency = (float) Math.log(1.0 + (double) getLiveCount() / list.docCount);
+                list.score(i, inverseFrequency, matchedTermCounts, scores);
+            }
+        }
+        return selectTop(queryTerms.size(), matchedTermCounts, scores, limit);
+    }
+
+    /**
+     * Finds the postings lists for each word of the query.
+     *
+     * @return the postings lists of the words or an empty list if any word has no postings
+     */
+    private List<Collection<PostingsList>> findQueryTerms(String query) {
+        final List<Collection<PostingsList>> result = newArrayList();
+        for (String word : query.split("\\s+")) {
+            final boolean isPrefix = word.length() > 1 && word.charAt(word.length() - 1) == PREFIX_WILDCARD;
+            final List<String> terms = tokenize(word);
+            for (int i = 0; i < terms.size(); i++) {
+                final String term = terms.get(i);
+                final Collection<PostingsList> lists;
+                if (isPrefix && i == terms.size() - 1) {
+                    lists = postings.subMap(term, true, term + Character.MAX_VALUE, false)
+                                    .values();
+                } else {
+                    final PostingsList list = postings.get(term);
+                    lists = (list == null)
+                            ? Collections.<PostingsList>emptyList()
+                            : Collections.singletonList(list);
+                }
+                if (lists.isEmpty()) {
+                    return ImmutableList.of();
+                }
+                result.add(lists);
+            }
+        }
+        return result;
+    }
+
+    private int[] selectTop(int termCount, int[] matchedTermCounts, final float[] scores, int limit) {
+        // The head of the queue is the least relevant of the selected documents.
+        final PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                final int comparison = Float.compare(scores[first], scores[second]);
+                return (comparison != 0) ? comparison : Integer.compare(second, first);
+            }
+        });
+        for (int docId = 0; docId < matchedTermCounts.length; docId++) {
+            if (matchedTermCounts[docId] != termCount || deleted.get(docId)) {
+                continue;
+            }
+            top.add(docId);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        final int[] result = new int[top.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = top.poll();
+        }
+        return result;
+    }
+
+    /**
+     * Splits the text into terms.
+     *
+     * <p>A term is a sequence of letters and digits. Terms are lower-cased and stripped of diacritical marks.
+     */
+    /* package */ static List<String> tokenize(String text) {
+        final String normalized = normalize(text);
+        final List<String> result = newArrayList();
+        int start = -1;
+        for (int i = 0; i < normalized.length(); i++) {
+            final boolean isTermChar = Character.isLetterOrDigit(normalized.charAt(i));
+            if (isTermChar && start < 0) {
+                start = i;
+            } else if (!isTermChar && start >= 0) {
+                result.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            result.add(normalized.substring(start));
+        }
+        return result;
+    }
+
+    private static String normalize(String text) {
+        String result = text.toLowerCase(Locale.ROOT);
+        if (!isAscii(result)) {
+            result = Normalizer.normalize(result, Normalizer.Form.NFD);
+            result = COMBINING_MARKS.matcher(result)
+                                    .replaceAll("");
+        }
+        return result;
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > Byte.MAX_VALUE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The documents having a term along with the frequencies of the term.
+     *
+     * <p>Each posting is encoded as the variable-length delta from the previous document ID
+     * followed by the variable-length term frequency.
+     */
+    private static class PostingsList {
+
+        private static final int INITIAL_CAPACITY = 8;
+        private static final int VALUE_BITS = 7;
+        private static final int VALUE_MASK = 0x7F;
+        private static final int CONTINUATION_BIT = 0x80;
+
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+        private int size;
+        private int docCount;
+        private int lastDocId;
+
+        private void append(int docId, int frequency) {
+            writeVarInt(docId - lastDocId);
+            writeVarInt(frequency);
+            lastDocId = docId;
+            docCount++;
+        }
+
+        /**
+         * Adds the score of the term to the documents having all the previous terms of a query.
+         *
+         * <p>The score of a document is accumulated only if it is matched by all previous query terms,
+         * i.e. its matched term count equals the index of the term. A query term may be expanded to
+         * several postings lists, so the document already matched by another list of the same term is scored too.
+         */
+        private void score(int termIndex, float inverseFrequency, int[] matchedTermCounts, float[] scores) {
+            int position = 0;
+            int docId = 0;
+            while (position < size) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[position++];
+                    delta |= (b & VALUE_MASK) << shift;
+                    shift += VALUE_BITS;
+                } while ((b & CONTINUATION_BIT) != 0);
+                int frequency = 0;
+                shift = 0;
+                do {
+                    b = bytes[position++];
+                    frequency |= (b & VALUE_MASK) << shift;
+                    shift += VALUE_BITS;
+                } while ((b & CONTINUATION_BIT) != 0);
+                docId += delta;
+
+                final int matchedCount = matchedTermCounts[docId];
+                if (matchedCount == termIndex) {
+                    matchedTermCounts[docId] = termIndex + 1;
+                    scores[docId] += frequency * inverseFrequency;
+                } else if (matchedCount == termIndex + 1) {
+                    scores[docId] += frequency * inverseFrequency;
+                }
+            }
+        }
+
+        /**
+         * Re-encodes the list with the new document IDs dropping the documents with {@code -1} new ID.
+         */
+        private void renumber(int[] newIds) {
+            final byte[] oldBytes = bytes;
+            final int oldSize = size;
+            bytes = new byte[Math.max(INITIAL_CAPACITY, oldSize)];
+            size = 0;
+            docCount = 0;
+            lastDocId = 0;
+            int position = 0;
+            int oldDocId = 0;
+            final int[] value = new int[1];
+            while (position < oldSize) {
+                position = readVarInt(oldBytes, position, value);
+                oldDocId += value[0];
+                position = readVarInt(oldBytes, position, value);
+                final int newId = newIds[oldDocId];
+                if (newId >= 0) {
+                    append(newId, value[0]);
+                }
+            }
+            if (size < bytes.length / 2) {
+                bytes = Arrays.copyOf(bytes, Math.max(INITIAL_CAPACITY, size));
+            }
+        }
+
+        private void writeVarInt(int value) {
+            if (size + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            int remaining = value;
+            while ((remaining & ~VALUE_MASK) != 0) {
+                bytes[size++] = (byte) ((remaining & VALUE_MASK) | CONTINUATION_BIT);
+                remaining >>>= VALUE_BITS;
+            }
+            bytes[size++] = (byte) remaining;
+        }
+
+        private static int readVarInt(byte[] source, int position, int[] value) {
+            int result = 0;
+            int shift = 0;
+            int current = position;
+            byte b;
+            do {
+                b = source[current++];
+                result |= (b & VALUE_MASK) << shift;
+                shift += VALUE_BITS;
+            } while ((b & CONTINUATION_BIT) != 0);
+            value[0] = result;
+            return current;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.command;
+
+import org.spine3.base.CommandId;
+
+/**
+ * The storage of commands held by a {@link PriorityCommandDispatcher} until their delays pass.
+ *
+ * <p>The dispatcher writes a delayed command before scheduling it and removes the command
+ * once it is posted to the command bus, so that the commands still waiting are re-armed after a restart.
+ *
+ * @author Alexander Litus
+ * @see DelayedCommand
+ */
+public interface DelayedCommandStore {
+
+    /**
+     * Writes the delayed command replacing the previous one with the same command ID.
+     */
+    void write(DelayedCommand command);
+
+    /**
+     * Removes the delayed command with the given ID, if it is present.
+     */
+    void remove(CommandId id);
+
+    /**
+     * Reads all the stored commands.
+     */
+    Iterable<DelayedCommand> readAll();
+}
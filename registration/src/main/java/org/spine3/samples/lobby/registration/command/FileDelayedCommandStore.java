@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.command;
+
+import com.google.common.collect.ImmutableList;
+import org.spine3.base.CommandId;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * The delayed command store which keeps each command in a separate file of the given directory.
+ *
+ * <p>A command is written to a temporary file first and then atomically moved in place,
+ * so that a crash never leaves a partially written command.
+ *
+ * @author Alexander Litus
+ */
+public class FileDelayedCommandStore implements DelayedCommandStore {
+
+    private static final String FILE_EXTENSION = ".command";
+
+    private final Path directory;
+
+    /**
+     * Creates a new store.
+     *
+     * @param directory the directory for command files; is created if it does not exist
+     * @throws IllegalStateException if the directory cannot be created
+     */
+    public FileDelayedCommandStore(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create the delayed command directory: " + directory, e);
+        }
+    }
+
+    @Override
+    public void write(DelayedCommand command) {
+        final Path file = fileOf(command.getCommand()
+                                        .getContext()
+                                        .getCommandId());
+        try {
+            final Path tmpFile = Files.createTempFile(directory, file.getFileName()
+                                                                    .toString(), null);
+            Files.write(tmpFile, command.toByteArray());
+            Files.move(tmpFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write the delayed command: " + file, e);
+        }
+    }
+
+    @Override
+    public void remove(CommandId id) {
+        final Path file = fileOf(id);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot remove the delayed command: " + file, e);
+        }
+    }
+
+    @Override
+    public Iterable<DelayedCommand> readAll() {
+        final ImmutableList.Builder<DelayedCommand> result = ImmutableList.builder();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, '*' + FILE_EXTENSION)) {
+            for (Path file : files) {
+                result.add(DelayedCommand.parseFrom(Files.readAllBytes(file)));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read the delayed commands: " + directory, e);
+        }
+        return result.build();
+    }
+
+    private Path fileOf(CommandId id) {
+        final String fileName = id.getUuid()
+                                  .replaceAll("[^A-Za-z0-9._-]", "_") + FILE_EXTENSION;
+        return directory.resolve(fileName);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.command;
+
+import com.google.common.collect.ImmutableList;
+import org.spine3.base.CommandId;
+
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.collect.Maps.newConcurrentMap;
+
+/**
+ * The delayed command store which keeps commands in memory.
+ *
+ * <p>Commands are lost on restart. Use {@link FileDelayedCommandStore} to re-arm delayed commands after a restart.
+ *
+ * @author Alexander Litus
+ */
+public class InMemoryDelayedCommandStore implements DelayedCommandStore {
+
+    private final ConcurrentMap<CommandId, DelayedCommand> commands = newConcurrentMap();
+
+    @Override
+    public void write(DelayedCommand command) {
+        commands.put(command.getCommand()
+                            .getContext()
+                            .getCommandId(), command);
+    }
+
+    @Override
+    public void remove(CommandId id) {
+        commands.remove(id);
+    }
+
+    @Override
+    public Iterable<DelayedCommand> readAll() {
+        return ImmutableList.copyOf(commands.values());
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.command;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The statistics of the time commands spend in a {@link CommandLane} before being dispatched.
+ *
+ * <p>Is updated concurrently, so the values returned by different getters may be slightly inconsistent.
+ *
+ * @author Alexander Litus
+ */
+public class LaneMetrics {
+
+    private final AtomicInteger waitingCount = new AtomicInteger();
+    private final AtomicLong dispatchedCount = new AtomicLong();
+    private final AtomicLong totalQueueTimeNanos = new AtomicLong();
+    private final AtomicLong maxQueueTimeNanos = new AtomicLong();
+
+    /* package */ LaneMetrics() {
+    }
+
+    /* package */ void onQueued() {
+        waitingCount.incrementAndGet();
+    }
+
+    /* package */ void onDispatched(long queueTimeNanos) {
+        waitingCount.decrementAndGet();
+        dispatchedCount.incrementAndGet();
+        totalQueueTimeNanos.addAndGet(queueTimeNanos);
+        long max = maxQueueTimeNanos.get();
+        while (queueTimeNanos > max && !maxQueueTimeNanos.compareAndSet(max, queueTimeNanos)) {
+            max = maxQueueTimeNanos.get();
+        }
+    }
+
+    /**
+     * Returns the number of commands currently waiting in the lane.
+     */
+    public int getWaitingCount() {
+        return waitingCount.get();
+    }
+
+    /**
+     * Returns the number of commands dispatched from the lane.
+     */
+    public long getDispatchedCount() {
+        return dispatchedCount.get();
+    }
+
+    /**
+     * Returns the total time spent in the lane by dispatched commands, in nanoseconds.
+     */
+    public long getTotalQueueTimeNanos() {
+        return totalQueueTimeNanos.get();
+    }
+
+    /**
+     * Returns the average time spent in the lane by a dispatched command, in nanoseconds.
+     */
+    public long getAverageQueueTimeNanos() {
+        final long count = dispatchedCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        final long result = totalQueueTimeNanos.get() / count;
+        return result;
+    }
+
+    /**
+     * Returns the longest time spent in the lane by a dispatched command, in nanoseconds.
+     */
+    public long getMaxQueueTimeNanos() {
+        return maxQueueTimeNanos.get();
+    }
+}
@@ -0,0 +1,580 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.command;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spine3.base.Command;
+import org.spine3.base.CommandContext;
+import org.spine3.base.CommandId;
+import org.spine3.base.Response;
+import org.spine3.protobuf.AnyPacker;
+import org.spine3.samples.lobby.registration.procman.ExpireRegistrationProcess;
+import org.spine3.samples.lobby.registration.seat.availability.AddSeats;
+import org.spine3.samples.lobby.registration.seat.availability.CancelSeatReservation;
+import org.spine3.samples.lobby.registration.seat.availability.CommitSeatReservation;
+import org.spine3.server.command.CommandBus;
+
+import javax.annotation.Nullable;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Sets.newConcurrentHashSet;
+import static com.google.protobuf.util.TimeUtil.add;
+import static com.google.protobuf.util.TimeUtil.getCurrentTime;
+import static com.google.protobuf.util.TimeUtil.toMillis;
+import static org.spine3.samples.lobby.registration.command.CommandLane.HIGH_PRIORITY;
+import static org.spine3.samples.lobby.registration.command.CommandLane.NORMAL;
+
+/**
+ * Posts commands to a {@link CommandBus} from two lanes, giving priority to the commands which release seats.
+ *
+ * <p>Commands which return seats to the pool ({@link CancelSeatReservation}, {@link ExpireRegistrationProcess},
+ * {@link CommitSeatReservation} and {@link AddSeats} by default) go through the {@linkplain CommandLane#HIGH_PRIORITY
+ * high-priority lane}, so that released seats become available without waiting behind a flood
+ * of {@code MakeSeatReservation} commands.
+ *
+ * <p>To prevent starvation of the {@linkplain CommandLane#NORMAL normal lane}, after
+ * {@linkplain Builder#setMaxHighPriorityBurst(int) a number} of high-priority commands dispatched in a row
+ * a waiting normal command is dispatched.
+ *
+ * <p>Commands are posted to the bus by {@linkplain Builder#setWorkerCount(int) worker threads}
+ * once the dispatcher is {@linkplain #start() started}. Each worker has its own pair of lanes. Commands
+ * with the same target (the first field of the command message, by the Spine convention) always go
+ * to the same worker, so the commands of an aggregate are posted in the order they are queued.
+ * The time commands spend in each lane is available via {@link #getMetrics(CommandLane)}.
+ *
+ * <p>A command {@linkplain CommandContext#getSchedule() scheduled} with a delay is written to
+ * a {@link DelayedCommandStore} and queued to its lane when the delay passes, so delayed commands
+ * (e.g. {@code ExpireRegistrationProcess}) are prioritized the same way as the others. The command is removed
+ * from the store once it is posted. Delayed commands remaining in the store on {@link #close()} are re-armed
+ * by {@link #start()} of the next dispatcher using the same store.
+ *
+ * @author Alexander Litus
+ */
+public class PriorityCommandDispatcher implements AutoCloseable {
+
+    private static final long TERMINATION_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Reports the failures of the delayed commands re-armed after a restart, whose senders are gone.
+     */
+    private static final StreamObserver<Response> REARMED_COMMAND_OBSERVER = new StreamObserver<Response>() {
+        @Override
+        public void onNext(Response response) {
+            // Do nothing.
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            log().error("Failed to post a delayed command re-armed after a restart.", t);
+        }
+
+        @Override
+        public void onCompleted() {
+            // Do nothing.
+        }
+    };
+
+    private final CommandBus commandBus;
+    private final Set<Class<? extends Message>> highPriorityCommands;
+    private final int maxHighPriorityBurst;
+    private final int workerCount;
+    private final DelayedCommandStore delayedCommands;
+
+    private final Map<CommandLane, LaneMetrics> metrics = new EnumMap<>(CommandLane.class);
+
+    /**
+     * The lanes of each worker, indexed by the worker number.
+     */
+    private final List<WorkerLanes> workerLanes;
+
+    /**
+     * Queues delayed commands to their lanes when their delays pass.
+     *
+     * <p>Delayed tasks are cancelled on shutdown, as the commands remain in {@link #delayedCommands}.
+     */
+    private final ScheduledThreadPoolExecutor delayScheduler;
+
+    /**
+     * The IDs of the delayed commands scheduled by this dispatcher and not posted yet.
+     */
+    private final Set<CommandId> armedCommands = newConcurrentHashSet();
+
+    @Nullable
+    private ExecutorService workers;
+
+    private volatile boolean isClosed;
+
+    private PriorityCommandDispatcher(Builder builder) {
+        this.commandBus = builder.commandBus;
+        this.highPriorityCommands = builder.highPriorityCommands;
+        this.maxHighPriorityBurst = builder.maxHighPriorityBurst;
+        this.workerCount = builder.workerCount;
+        this.delayedCommands = builder.delayedCommands;
+        for (CommandLane lane : CommandLane.values()) {
+            metrics.put(lane, new LaneMetrics());
+        }
+        final ImmutableList.Builder<WorkerLanes> lanes = ImmutableList.builder();
+        for (int i = 0; i < workerCount; i++) {
+            lanes.add(new WorkerLanes());
+        }
+        this.workerLanes = lanes.build();
+        this.delayScheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setNameFormat("command-delay-%d")
+                .setDaemon(true)
+                .build());
+        delayScheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Queues the command for posting to the command bus.
+     *
+     * <p>If the command is scheduled with a delay, it is stored and queued when the delay passes.
+     * The schedule is then removed from the command context, so that the command bus posts it at once.
+     *
+     * <p>After the dispatcher is {@linkplain #close() closed}, commands are posted from the calling thread,
+     * and delayed commands are only stored.
+     *
+     * @param command          the command to post
+     * @param responseObserver the observer to pass to the command bus
+     */
+    public void post(Command command, StreamObserver<Response> responseObserver) {
+        checkNotNull(command);
+        checkNotNull(responseObserver);
+        final CommandContext context = command.getContext();
+        final long delayMillis = context.hasSchedule() ? toMillis(context.getSchedule()
+                                                                         .getDelay()) : 0;
+        if (delayMillis <= 0) {
+            queue(command, responseObserver, false);
+            return;
+        }
+        final Command unscheduled = command.toBuilder()
+                                           .setContext(context.toBuilder()
+                                                              .clearSchedule())
+                                           .build();
+        final DelayedCommand delayed = DelayedCommand.newBuilder()
+                                                     .setCommand(unscheduled)
+                                                     .setDueTime(add(getCurrentTime(), context.getSchedule()
+                                                                                              .getDelay()))
+                                                     .build();
+        delayedCommands.write(delayed);
+        arm(delayed, responseObserver);
+    }
+
+    /**
+     * Schedules queueing of the stored delayed command when it is due.
+     *
+     * @return {@code true} if the command is scheduled, {@code false} if it is already scheduled
+     *         or the dispatcher is closed
+     */
+    private boolean arm(final DelayedCommand delayed, final StreamObserver<Response> responseObserver) {
+        if (isClosed) {
+            return false;
+        }
+        final CommandId id = delayed.getCommand()
+                                    .getContext()
+                                    .getCommandId();
+        if (!armedCommands.add(id)) {
+            return false;
+        }
+        final long delayMillis = toMillis(delayed.getDueTime()) - System.currentTimeMillis();
+        try {
+            delayScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    queue(delayed.getCommand(), responseObserver, true);
+                }
+            }, Math.max(delayMillis, 0), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException ignored) {
+            // The dispatcher is closed concurrently; the command remains in the store.
+            armedCommands.remove(id);
+            return false;
+        }
+    }
+
+    private void queue(Command command, StreamObserver<Response> responseObserver, boolean isDelayed) {
+        final Message message = AnyPacker.unpack(command.getMessage());
+        final CommandLane lane = getLane(message);
+        final PendingCommand pendingCommand = new PendingCommand(command, responseObserver, lane, isDelayed);
+        metrics.get(lane)
+               .onQueued();
+        if (isClosed) {
+            dispatch(pendingCommand);
+            return;
+        }
+        workerLanes.get(getWorkerIndex(message))
+                   .add(pendingCommand);
+    }
+
+    /**
+     * Returns the lane through which the command is dispatched.
+     */
+    public CommandLane getLane(Command command) {
+        final Message message = AnyPacker.unpack(command.getMessage());
+        return getLane(message);
+    }
+
+    private CommandLane getLane(Message message) {
+        final CommandLane result = highPriorityCommands.contains(message.getClass()) ? HIGH_PRIORITY : NORMAL;
+        return result;
+    }
+
+    /**
+     * Returns the number of the worker which posts the command.
+     */
+    /* package */ int getWorkerIndex(Command command) {
+        final Message message = AnyPacker.unpack(command.getMessage());
+        return getWorkerIndex(message);
+    }
+
+    private int getWorkerIndex(Message message) {
+        if (workerCount == 1) {
+            return 0;
+        }
+        final List<FieldDescriptor> fields = message.getDescriptorForType()
+                                                    .getFields();
+        final Object target = fields.isEmpty() ? message : message.getField(fields.get(0));
+        final int result = (target.hashCode() & Integer.MAX_VALUE) % workerCount;
+        return result;
+    }
+
+    /**
+     * Returns the queue time statistics of the lane.
+     */
+    public LaneMetrics getMetrics(CommandLane lane) {
+        return metrics.get(lane);
+    }
+
+    /**
+     * Starts posting queued commands to the command bus and re-arms the delayed commands found in the store.
+     */
+    public synchronized void start() {
+        checkState(workers == null && !isClosed, "The dispatcher is already started.");
+        workers = Executors.newFixedThreadPool(workerCount, new ThreadFactoryBuilder()
+                .setNameFormat("command-worker-%d")
+                .build());
+        for (WorkerLanes lanes : workerLanes) {
+            workers.execute(new Worker(lanes));
+        }
+        int rearmedCount = 0;
+        for (DelayedCommand delayed : delayedCommands.readAll()) {
+            if (arm(delayed, REARMED_COMMAND_OBSERVER)) {
+                rearmedCount++;
+            }
+        }
+        if (rearmedCount > 0) {
+            log().info("{} stored delayed commands are re-armed.", rearmedCount);
+        }
+    }
+
+    /**
+     * Lets the workers post the commands remaining in the lanes and stops them.
+     *
+     * <p>Delayed commands which are not queued yet remain in the {@link DelayedCommandStore}
+     * and are re-armed by the next dispatcher using the store.
+     */
+    @Override
+    public synchronized void close() throws InterruptedException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        delayScheduler.shutdown();
+        if (!delayScheduler.awaitTermination(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log().warn("Command delay scheduler did not terminate in {} seconds.", TERMINATION_TIMEOUT_SECONDS);
+        }
+        if (workers != null) {
+            for (WorkerLanes lanes : workerLanes) {
+                lanes.stop();
+            }
+            workers.shutdown();
+            if (!workers.awaitTermination(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log().warn("Command dispatcher workers did not terminate in {} seconds.",
+                           TERMINATION_TIMEOUT_SECONDS);
+            }
+            workers = null;
+        }
+        // Post the commands which are queued when the dispatcher is not started or the workers are stuck.
+        for (WorkerLanes lanes : workerLanes) {
+            PendingCommand next = lanes.pollNext();
+            while (next != null) {
+                dispatch(next);
+                next = lanes.pollNext();
+            }
+        }
+    }
+
+    /**
+     * Posts the next waiting command of the first worker which has one to the command bus.
+     *
+     * @return the dispatched command
+     * @throws IllegalStateException if no commands are waiting
+     */
+    /* package */ Command dispatchNext() {
+        for (WorkerLanes lanes : workerLanes) {
+            if (lanes.pending.tryAcquire()) {
+                final PendingCommand next = lanes.pollNext();
+                if (next != null) {
+                    dispatch(next);
+                    return next.command;
+                }
+            }
+        }
+        throw new IllegalStateException("No commands are waiting.");
+    }
+
+    private void dispatch(PendingCommand next) {
+        final long queueTimeNanos = System.nanoTime() - next.queuedAtNanos;
+        metrics.get(next.lane)
+               .onDispatched(queueTimeNanos);
+        try {
+            commandBus.post(next.command, next.responseObserver);
+        } catch (RuntimeException e) {
+            log().error("Failed to post command: " + next.command, e);
+            next.responseObserver.onError(e);
+        }
+        if (next.isDelayed) {
+            final CommandId id = next.command.getContext()
+                                             .getCommandId();
+            delayedCommands.remove(id);
+            armedCommands.remove(id);
+        }
+    }
+
+    /**
+     * The lanes of commands posted by a single worker.
+     */
+    private class WorkerLanes {
+
+        private final Map<CommandLane, Queue<PendingCommand>> queues = new EnumMap<>(CommandLane.class);
+
+        /**
+         * The number of commands waiting in the lanes, plus one after the worker is {@linkplain #stop() stopped}.
+         */
+        private final Semaphore pending = new Semaphore(0);
+
+        /**
+         * The number of high-priority commands dispatched in a row.
+         *
+         * <p>Is guarded by {@code this}.
+         */
+        private int highPriorityBurst;
+
+        private WorkerLanes() {
+            for (CommandLane lane : CommandLane.values()) {
+                queues.put(lane, new ConcurrentLinkedQueue<PendingCommand>());
+            }
+        }
+
+        private void add(PendingCommand command) {
+            queues.get(command.lane)
+                  .add(command);
+            pending.release();
+        }
+
+        /**
+         * Makes the worker exit once it posts the commands queued so far.
+         */
+        private void stop() {
+            pending.release();
+        }
+
+        /**
+         * Takes the next command to dispatch from the lanes.
+         *
+         * <p>The normal lane waits for at most {@link #maxHighPriorityBurst} high-priority commands.
+         */
+        @Nullable
+        private synchronized PendingCommand pollNext() {
+            final Queue<PendingCommand> normalLane = queues.get(NORMAL);
+            if (highPriorityBurst < maxHighPriorityBurst || normalLane.isEmpty()) {
+                final PendingCommand command = queues.get(HIGH_PRIORITY)
+                                                     .poll();
+                if (command != null) {
+                    highPriorityBurst++;
+                    return command;
+                }
+            }
+            highPriorityBurst = 0;
+            return normalLane.poll();
+        }
+    }
+
+    /**
+     * Posts commands of its lanes to the bus as they arrive until stopped or interrupted.
+     */
+    private class Worker implements Runnable {
+
+        private final WorkerLanes lanes;
+
+        private Worker(WorkerLanes lanes) {
+            this.lanes = lanes;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    lanes.pending.acquire();
+                    final PendingCommand next = lanes.pollNext();
+                    if (next == null) {
+                        // The permit is released by `stop()` after all the queued commands.
+                        return;
+                    }
+                    dispatch(next);
+                }
+            } catch (InterruptedException ignored) {
+                Thread.currentThread()
+                      .interrupt();
+            }
+        }
+    }
+
+    private static class PendingCommand {
+
+        private final Command command;
+        private final StreamObserver<Response> responseObserver;
+        private final CommandLane lane;
+        private final boolean isDelayed;
+        private final long queuedAtNanos;
+
+        private PendingCommand(Command command,
+                               StreamObserver<Response> responseObserver,
+                               CommandLane lane,
+                               boolean isDelayed) {
+            this.command = command;
+            this.responseObserver = responseObserver;
+            this.lane = lane;
+            this.isDelayed = isDelayed;
+            this.queuedAtNanos = System.nanoTime();
+        }
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+        @SuppressWarnings("NonSerializableFieldInSerializableClass")
+        private final Logger value = LoggerFactory.getLogger(PriorityCommandDispatcher.class);
+    }
+
+    /**
+     * The builder of {@link PriorityCommandDispatcher} instances.
+     */
+    public static class Builder {
+
+        private static final int DEFAULT_MAX_HIGH_PRIORITY_BURST = 8;
+
+        private static final Set<Class<? extends Message>> CAPACITY_RELEASING_COMMANDS =
+                ImmutableSet.<Class<? extends Message>>of(
+                        CancelSeatReservation.class,
+                        ExpireRegistrationProcess.class,
+                        CommitSeatReservation.class,
+                        AddSeats.class);
+
+        private CommandBus commandBus;
+        private Set<Class<? extends Message>> highPriorityCommands = CAPACITY_RELEASING_COMMANDS;
+        private int maxHighPriorityBurst = DEFAULT_MAX_HIGH_PRIORITY_BURST;
+        private int workerCount = 1;
+        private DelayedCommandStore delayedCommands;
+
+        private Builder() {
+        }
+
+        public Builder setCommandBus(CommandBus commandBus) {
+            this.commandBus = checkNotNull(commandBus);
+            return this;
+        }
+
+        /**
+         * Sets the classes of command messages dispatched through the high-priority lane.
+         */
+        public Builder setHighPriorityCommands(Iterable<Class<? extends Message>> commandClasses) {
+            this.highPriorityCommands = ImmutableSet.copyOf(commandClasses);
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of high-priority commands dispatched in a row while normal commands are waiting.
+         */
+        public Builder setMaxHighPriorityBurst(int maxHighPriorityBurst) {
+            checkArgument(maxHighPriorityBurst > 0, "High-priority burst must be positive.");
+            this.maxHighPriorityBurst = maxHighPriorityBurst;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads posting commands to the command bus.
+         *
+         * <p>Commands with the same target are always posted by the same worker, in the order they are queued.
+         */
+        public Builder setWorkerCount(int workerCount) {
+            checkArgument(workerCount > 0, "Worker count must be positive.");
+            this.workerCount = workerCount;
+            return this;
+        }
+
+        /**
+         * Sets the store of the delayed commands.
+         *
+         * <p>If not set, the delayed commands are kept in memory and are lost on restart.
+         */
+        public Builder setDelayedCommandStore(DelayedCommandStore delayedCommands) {
+            this.delayedCommands = checkNotNull(delayedCommands);
+            return this;
+        }
+
+        public PriorityCommandDispatcher build() {
+            checkState(commandBus != null, "Command bus must be set.");
+            if (delayedCommands == null) {
+                delayedCommands = new InMemoryDelayedCommandStore();
+            }
+            return new PriorityCommandDispatcher(this);
+        }
+    }
+}
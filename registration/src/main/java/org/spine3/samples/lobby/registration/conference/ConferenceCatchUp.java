@@ -0,0 +1,501 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.conference;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spine3.base.Event;
+import org.spine3.base.EventContext;
+import org.spine3.base.EventId;
+import org.spine3.protobuf.AnyPacker;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.util.dispatch.MessageDispatcher;
+import org.spine3.samples.lobby.common.util.dispatch.MessageDispatchers;
+import org.spine3.samples.lobby.registration.projection.CheckpointStore;
+import org.spine3.samples.lobby.registration.projection.EventHistory;
+import org.spine3.samples.lobby.registration.projection.ProjectionCheckpoint;
+import org.spine3.samples.lobby.registration.projection.ReadModel;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceCreated;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferencePublished;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceUnpublished;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceUpdated;
+import org.spine3.samples.sample.lobby.conference.contracts.SeatTypeCreated;
+import org.spine3.samples.sample.lobby.conference.contracts.SeatTypeUpdated;
+import org.spine3.server.event.EventStore;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Sets.newHashSet;
+
+/**
+ * Brings {@link ConferenceProjection}s up to date with the event history.
+ *
+ * <p>The history is processed in batches. After each batch, the updated projections are stored and
+ * a {@link ProjectionCheckpoint} is written. On the next run, the events up to the checkpoint are skipped,
+ * so a restart resumes from the last completed batch. When reading an {@link EventStore},
+ * only the events stored since the checkpoint time are queried.
+ *
+ * <p>In the parallel mode, a batch is partitioned by {@link ConferenceId} across worker threads.
+ * All events of a conference get into the same partition and are applied in the history order.
+ *
+ * <p>Projections do not send commands while catching up.
+ *
+ * <p>The time taken by a run is logged along with the number of applied events.
+ *
+ * @author Alexander Litus
+ */
+public class ConferenceCatchUp {
+
+    private static final int NANOS_PER_SECOND = 1_000_000_000;
+
+    private final ConferenceProjectionRepository repository;
+    private final CheckpointStore checkpointStore;
+    private final String checkpointName;
+    private final int parallelism;
+    private final int batchSize;
+    private final MessageDispatcher<ConferenceProjection> dispatcher;
+
+    /**
+     * The projections loaded during the catch-up.
+     *
+     * <p>Is modified only by the thread running the catch-up, between batches.
+     */
+    private final Map<ConferenceId, ConferenceProjection> projections = newHashMap();
+
+    private ConferenceCatchUp(Builder builder) {
+        this.repository = builder.repository;
+        this.checkpointStore = builder.checkpointStore;
+        this.checkpointName = builder.checkpointName;
+        this.parallelism = builder.parallelism;
+        this.batchSize = builder.batchSize;
+        this.dispatcher = MessageDispatchers.forClass(ConferenceProjection.class);
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Streams the events stored since the last checkpoint from the event store and applies them to the projections.
+     *
+     * @param eventStore the store of the event history of the bounded context;
+     *                   the events not related to conferences are skipped
+     * @return the number of events read after the last checkpoint
+     */
+    public long run(EventStore eventStore) {
+        final Run run = new Run();
+        try {
+            final Timestamp checkpointTime = run.getCheckpointTime();
+            // The query is exclusive, while the events stored at the checkpoint time may follow the checkpoint event.
+            final Timestamp after = (checkpointTime == null) ? null : justBefore(checkpointTime);
+            EventHistory.read(eventStore, after, batchSize, run);
+            return run.finish();
+        } finally {
+            run.shutdown();
+        }
+    }
+
+    /**
+     * Applies the events following the last checkpoint to the projections.
+     *
+     * @param history all events of the bounded context in the chronological order;
+     *                the events not related to conferences are skipped
+     * @return the number of events read after the last checkpoint
+     */
+    public long run(Iterable<Event> history) {
+        final Run run = new Run();
+        try {
+            run.replay(history);
+            return run.finish();
+        } finally {
+            run.shutdown();
+        }
+    }
+
+    private static Timestamp justBefore(Timestamp timestamp) {
+        if (timestamp.getNanos() > 0) {
+            return timestamp.toBuilder()
+                            .setNanos(timestamp.getNanos() - 1)
+                            .build();
+        }
+        return timestamp.toBuilder()
+                        .setSeconds(timestamp.getSeconds() - 1)
+                        .setNanos(NANOS_PER_SECOND - 1)
+                        .build();
+    }
+
+    private void processBatch(List<Event> batch, long eventCount, @Nullable ExecutorService workers) {
+        final Set<ConferenceId> updatedIds = newHashSet();
+        final List<List<ConferenceEvent>> partitions = partition(batch, updatedIds);
+        if (workers == null) {
+            apply(partitions.get(0));
+        } else {
+            applyInParallel(partitions, workers);
+        }
+        for (ConferenceId id : updatedIds) {
+            repository.storeCaughtUp(projections.get(id));
+        }
+        final Event lastEvent = batch.get(batch.size() - 1);
+        writeCheckpoint(lastEvent, eventCount);
+    }
+
+    /**
+     * Splits the batch into partitions by the conference ID and loads the projections of the batch.
+     *
+     * <p>The projections are loaded by the calling thread, so that the repository is never accessed concurrently.
+     */
+    private List<List<ConferenceEvent>> partition(List<Event> batch, Set<ConferenceId> updatedIds) {
+        final List<List<ConferenceEvent>> result = newArrayListWithCapacity(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            result.add(Lists.<ConferenceEvent>newArrayList());
+        }
+        for (Event event : batch) {
+            final Message message = AnyPacker.unpack(event.getMessage());
+            final ConferenceId id = getConferenceId(message);
+            if (id == null) {
+                continue;
+            }
+            ConferenceProjection projection = projections.get(id);
+            if (projection == null) {
+                projection = repository.loadForCatchUp(id);
+                projections.put(id, projection);
+            }
+            updatedIds.add(id);
+            final int index = (id.hashCode() & Integer.MAX_VALUE) % parallelism;
+            result.get(index)
+                  .add(new ConferenceEvent(projection, message, event.getContext()));
+        }
+        return result;
+    }
+
+    private void applyInParallel(List<List<ConferenceEvent>> partitions, ExecutorService workers) {
+        final List<Future<?>> results = newArrayListWithCapacity(partitions.size());
+        for (final List<ConferenceEvent> partition : partitions) {
+            final Future<?> result = workers.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    apply(partition);
+                    return null;
+                }
+            });
+            results.add(result);
+        }
+        try {
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new IllegalStateException("Conference catch-up is interrupted.", e);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private void apply(List<ConferenceEvent> partition) {
+        for (ConferenceEvent event : partition) {
+            try {
+                dispatcher.on(event.projection, event.message, event.context);
+            } catch (InvocationTargetException e) {
+                throw Throwables.propagate(e.getCause());
+            }
+        }
+    }
+
+    private void writeCheckpoint(Event lastEvent, long eventCount) {
+        final EventContext context = lastEvent.getContext();
+        final ProjectionCheckpoint checkpoint = ProjectionCheckpoint.newBuilder()
+                                                                    .setRepository(checkpointName)
+                                                                    .setTimestamp(context.getTimestamp())
+                                                                    .setEventId(context.getEventId())
+                                                                    .setEventCount(eventCount)
+                                                                    .build();
+        checkpointStore.write(checkpoint);
+    }
+
+    /**
+     * Obtains the ID of the conference the event is related to.
+     *
+     * @return the conference ID or {@code null} if the event is not handled by {@link ConferenceProjection}
+     */
+    @Nullable
+    /* package */ static ConferenceId getConferenceId(Message event) {
+        if (event instanceof ConferenceCreated) {
+            return ((ConferenceCreated) event).getConference()
+                                              .getId();
+        }
+        if (event instanceof ConferenceUpdated) {
+            return ((ConferenceUpdated) event).getConference()
+                                              .getId();
+        }
+        if (event instanceof ConferencePublished) {
+            return ((ConferencePublished) event).getConferenceId();
+        }
+        if (event instanceof ConferenceUnpublished) {
+            return ((ConferenceUnpublished) event).getConferenceId();
+        }
+        if (event instanceof SeatTypeCreated) {
+            return ((SeatTypeCreated) event).getSeatType()
+                                            .getConferenceId();
+        }
+        if (event instanceof SeatTypeUpdated) {
+            return ((SeatTypeUpdated) event).getSeatType()
+                                            .getConferenceId();
+        }
+        return null;
+    }
+
+    /**
+     * A single run of the catch-up, which collects the events following the checkpoint into batches.
+     */
+    private class Run implements ReadModel {
+
+        private final CheckpointFilter filter;
+        private final Stopwatch stopwatch = Stopwatch.createStarted();
+        private final List<Event> batch = newArrayListWithCapacity(batchSize);
+        @Nullable
+        private final ExecutorService workers;
+        private long eventCount;
+        private long newEventCount;
+
+        private Run() {
+            final ProjectionCheckpoint checkpoint = checkpointStore.read(checkpointName);
+            this.filter = new CheckpointFilter(checkpoint);
+            this.eventCount = (checkpoint == null) ? 0 : checkpoint.getEventCount();
+            this.workers = (parallelism > 1)
+                           ? Executors.newFixedThreadPool(parallelism)
+                           : null;
+        }
+
+        /**
+         * Returns the time of the checkpoint the run started from, or {@code null} if there is no checkpoint.
+         */
+        @Nullable
+        private Timestamp getCheckpointTime() {
+            return filter.timestamp;
+        }
+
+        /**
+         * Adds the events following the checkpoint to the current batch, processing the batch once it is full.
+         *
+         * @return the number of events following the checkpoint
+         */
+        @Override
+        public long replay(Iterable<Event> events) {
+            long result = 0;
+            for (Event event : events) {
+                if (filter.isProcessed(event)) {
+                    continue;
+                }
+                result++;
+                batch.add(event);
+                if (batch.size() == batchSize) {
+                    processPending();
+                }
+            }
+            return result;
+        }
+
+        private void processPending() {
+            eventCount += batch.size();
+            newEventCount += batch.size();
+            processBatch(batch, eventCount, workers);
+            batch.clear();
+        }
+
+        /**
+         * Processes the last incomplete batch and logs the time taken by the run.
+         *
+         * @return the number of events read after the checkpoint
+         */
+        private long finish() {
+            if (!batch.isEmpty()) {
+                processPending();
+            }
+            final long elapsedMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+            log().info("Conference projections caught up with {} events in {} ms ({} threads).",
+                       newEventCount, elapsedMillis, parallelism);
+            return newEventCount;
+        }
+
+        private void shutdown() {
+            if (workers != null) {
+                workers.shutdown();
+            }
+        }
+    }
+
+    /**
+     * An event message along with the projection to apply it to.
+     */
+    private static class ConferenceEvent {
+
+        private final ConferenceProjection projection;
+        private final Message message;
+        private final EventContext context;
+
+        private ConferenceEvent(ConferenceProjection projection, Message message, EventContext context) {
+            this.projection = projection;
+            this.message = message;
+            this.context = context;
+        }
+    }
+
+    /**
+     * Skips the events which are already processed according to a checkpoint.
+     *
+     * <p>The events older than the checkpoint are skipped. Among the events with the same timestamp
+     * as the checkpoint, the events up to and including the checkpoint event are skipped.
+     */
+    private static class CheckpointFilter {
+
+        @Nullable
+        private final Timestamp timestamp;
+        @Nullable
+        private final EventId lastEventId;
+        private boolean isLastEventPassed;
+
+        private CheckpointFilter(@Nullable ProjectionCheckpoint checkpoint) {
+            this.timestamp = (checkpoint == null) ? null : checkpoint.getTimestamp();
+            this.lastEventId = (checkpoint == null) ? null : checkpoint.getEventId();
+        }
+
+        private boolean isProcessed(Event event) {
+            if (timestamp == null) {
+                return false;
+            }
+            final EventContext context = event.getContext();
+            final int comparison = compare(context.getTimestamp(), timestamp);
+            if (comparison != 0) {
+                return comparison < 0;
+            }
+            if (isLastEventPassed) {
+                return false;
+            }
+            if (context.getEventId()
+                       .equals(lastEventId)) {
+                isLastEventPassed = true;
+            }
+            return true;
+        }
+
+        private static int compare(Timestamp first, Timestamp second) {
+            if (first.getSeconds() != second.getSeconds()) {
+                return first.getSeconds() < second.getSeconds() ? -1 : 1;
+            }
+            return Integer.compare(first.getNanos(), second.getNanos());
+        }
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+        @SuppressWarnings("NonSerializableFieldInSerializableClass")
+        private final Logger value = LoggerFactory.getLogger(ConferenceCatchUp.class);
+    }
+
+    /**
+     * The builder of {@link ConferenceCatchUp} instances.
+     */
+    public static class Builder {
+
+        private static final int DEFAULT_BATCH_SIZE = 10_000;
+
+        private ConferenceProjectionRepository repository;
+        private CheckpointStore checkpointStore;
+        private String checkpointName;
+        private int parallelism = 1;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+
+        private Builder() {
+        }
+
+        public Builder setRepository(ConferenceProjectionRepository repository) {
+            this.repository = checkNotNull(repository);
+            return this;
+        }
+
+        public Builder setCheckpointStore(CheckpointStore checkpointStore) {
+            this.checkpointStore = checkNotNull(checkpointStore);
+            return this;
+        }
+
+        /**
+         * Sets the name of the checkpoint.
+         *
+         * <p>The repository class name is used by default.
+         */
+        public Builder setCheckpointName(String checkpointName) {
+            this.checkpointName = checkNotNull(checkpointName);
+            return this;
+        }
+
+        /**
+         * Sets the number of worker threads; {@code 1} (the default) means processing in the calling thread.
+         */
+        public Builder setParallelism(int parallelism) {
+            checkArgument(parallelism > 0, "Parallelism must be positive.");
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Sets the number of events processed between checkpoints.
+         */
+        public Builder setBatchSize(int batchSize) {
+            checkArgument(batchSize > 0, "Batch size must be positive.");
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public ConferenceCatchUp build() {
+            checkNotNull(repository, "Repository must be set.");
+            checkNotNull(checkpointStore, "Checkpoint store must be set.");
+            if (checkpointName == null) {
+                checkpointName = repository.getCheckpointName();
+            }
+            return new ConferenceCatchUp(this);
+        }
+    }
+}
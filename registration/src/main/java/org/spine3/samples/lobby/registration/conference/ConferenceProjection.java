@@ -22,20 +22,13 @@ package org.spine3.samples.lobby.registration.conference;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
-import io.grpc.stub.StreamObserver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.spine3.base.Command;
-import org.spine3.base.CommandContext;
-import org.spine3.base.Commands;
 import org.spine3.base.EventContext;
-import org.spine3.base.Response;
 import org.spine3.samples.lobby.common.ConferenceId;
 import org.spine3.samples.lobby.common.SeatType;
 import org.spine3.samples.lobby.common.SeatTypeId;
 import org.spine3.samples.lobby.conference.contracts.Conference;
-import org.spine3.samples.lobby.registration.seat.availability.AddSeats;
-import org.spine3.samples.lobby.registration.seat.availability.RemoveSeats;
 import org.spine3.samples.sample.lobby.conference.contracts.ConferenceCreated;
 import org.spine3.samples.sample.lobby.conference.contracts.ConferencePublished;
 import org.spine3.samples.sample.lobby.conference.contracts.ConferenceUnpublished;
@@ -48,13 +41,10 @@ import org.spine3.server.projection.Projection;
 
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.collect.Iterables.filter;
-import static com.google.protobuf.util.TimeUtil.getCurrentTime;
-import static java.lang.Math.abs;
 import static java.lang.String.format;
-import static org.spine3.base.Commands.create;
-import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
 
 /**
  * Holds a structural representation of data extracted from a stream of events related to a conference.
@@ -69,7 +59,14 @@ import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
 @SuppressWarnings({"TypeMayBeWeakened", "UnusedParameters"})
 public class ConferenceProjection extends Projection<ConferenceId, Conference> {
 
-    private CommandBus commandBus;
+    /**
+     * Posts the changes of seat quantities to the seats availability aggregate.
+     *
+     * <p>Is {@code null} while the projection is catching up with the event history,
+     * as the commands were already sent when the events were handled for the first time.
+     */
+    @Nullable
+    private SeatAdjustments seatAdjustments;
 
     /**
      * Creates a new instance.
@@ -81,8 +78,18 @@ public class ConferenceProjection extends Projection<ConferenceId, Conference> {
         super(id);
     }
 
+    /* package */ void setSeatAdjustments(SeatAdjustments seatAdjustments) {
+        this.seatAdjustments = seatAdjustments;
+    }
+
+    /**
+     * Makes the projection post each change of seat quantities to the command bus at once.
+     */
     /* package */ void setCommandBus(CommandBus commandBus) {
-        this.commandBus = commandBus;
+        this.seatAdjustments = SeatAdjustments.newBuilder()
+                                              .setCommandBus(commandBus)
+                                              .setWindow(0, TimeUnit.MILLISECONDS)
+                                              .build();
     }
 
     @Subscribe
@@ -124,7 +131,7 @@ public class ConferenceProjection extends Projection<ConferenceId, Conference> {
             return;
         }
         conference.addSeatType(seatType);
-        sendAddSeatsRequest(id, seatType.getQuantityTotal());
+        adjustSeats(id, seatType.getQuantityTotal());
         incrementState(conference.build());
     }
 
@@ -151,63 +158,16 @@ public class ConferenceProjection extends Projection<ConferenceId, Conference> {
         final int oldTypeIndex = seatTypes.indexOf(oldSeatType);
         conference.setSeatType(oldTypeIndex, newSeatType);
 
-        addOrRemoveSeats(newSeatType.getQuantityTotal(), oldSeatType.getQuantityTotal(), id);
+        adjustSeats(id, newSeatType.getQuantityTotal() - oldSeatType.getQuantityTotal());
 
         incrementState(conference.build());
     }
 
-    private void addOrRemoveSeats(int newQuantity, int oldQuantity, SeatTypeId id) {
-        final int difference = newQuantity - oldQuantity;
-        if (difference > 0) {
-            sendAddSeatsRequest(id, difference);
-        } else if (difference < 0) {
-            sendRemoveSeatsRequest(id, abs(difference));
+    private void adjustSeats(SeatTypeId seatTypeId, int difference) {
+        if (seatAdjustments == null) {
+            return;
         }
-    }
-
-    private void sendAddSeatsRequest(SeatTypeId seatTypeId, int quantity) {
-        final AddSeats message = AddSeats.newBuilder()
-                                         .setConferenceId(getState().getId())
-                                         .setQuantity(newSeatQuantity(seatTypeId, quantity))
-                                         .build();
-        final Command command = create(message, newCommandContext());
-        commandBus.post(command, new StreamObserver<Response>() {
-            // TODO:12-09-16:dmytro.dashenkov: Handle completion or errors.
-            @Override
-            public void onNext(Response value) {
-            }
-
-            @Override
-            public void onError(Throwable t) {
-            }
-
-            @Override
-            public void onCompleted() {
-            }
-        });
-    }
-
-    private void sendRemoveSeatsRequest(SeatTypeId seatTypeId, int quantity) {
-        final RemoveSeats message = RemoveSeats.newBuilder()
-                                               .setConferenceId(getState().getId())
-                                               .setQuantity(newSeatQuantity(seatTypeId, quantity))
-                                               .build();
-        final Command command = create(message, newCommandContext());
-
-        // TODO:12-09-16:dmytro.dashenkov: Handle completion or errors.
-        commandBus.post(command, new StreamObserver<Response>() {
-            @Override
-            public void onNext(Response value) {
-            }
-
-            @Override
-            public void onError(Throwable t) {
-            }
-
-            @Override
-            public void onCompleted() {
-            }
-        });
+        seatAdjustments.adjust(getState().getId(), seatTypeId, difference);
     }
 
     private static List<SeatType> filterById(final SeatTypeId id, List<SeatType> seatTypes) {
@@ -221,13 +181,6 @@ public class ConferenceProjection extends Projection<ConferenceId, Conference> {
         return ImmutableList.copyOf(result);
     }
 
-    private static CommandContext newCommandContext() {
-        final CommandContext.Builder builder = CommandContext.newBuilder()
-                                                             .setTimestamp(getCurrentTime())
-                                                             .setCommandId(Commands.generateId());
-        return builder.build();
-    }
-
     private static Logger log() {
         return LogSingleton.INSTANCE.value;
     }
@@ -20,13 +20,23 @@
 
 package org.spine3.samples.lobby.registration.conference;
 
+import org.spine3.base.Event;
+import org.spine3.base.EventContext;
 import org.spine3.samples.lobby.common.ConferenceId;
 import org.spine3.samples.lobby.conference.contracts.Conference;
+import org.spine3.samples.lobby.registration.projection.CheckpointStore;
+import org.spine3.samples.lobby.registration.projection.ProjectionCheckpoint;
 import org.spine3.server.BoundedContext;
-import org.spine3.server.command.CommandBus;
+import org.spine3.server.event.EventStore;
 import org.spine3.server.projection.ProjectionRepository;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * The repository which manages conference projections.
@@ -37,20 +47,210 @@ import javax.annotation.Nonnull;
 public class ConferenceProjectionRepository extends ProjectionRepository<ConferenceId, ConferenceProjection, Conference> {
 
     /**
-     * Creates a new repository instance.
+     * Coalesces the changes of seat quantities made by all the projections.
+     */
+    private final SeatAdjustments seatAdjustments;
+
+    /**
+     * The number of live events after which the checkpoint is written.
+     */
+    /* package */ static final int CHECKPOINT_EVENT_INTERVAL = 1_000;
+
+    /**
+     * The time after the last checkpoint write after which the checkpoint is written on the next live event.
+     */
+    /* package */ static final long CHECKPOINT_INTERVAL_MILLIS = 1_000;
+
+    /**
+     * Guards the fields tracking the live events. Is never held while the checkpoint is written.
+     */
+    private final Object progressLock = new Object();
+
+    /**
+     * Serializes the checkpoint writes, so that an older checkpoint never overwrites a newer one.
+     */
+    private final Lock checkpointWriteLock = new ReentrantLock();
+
+    /**
+     * The store to which the checkpoint is written as live events are dispatched.
+     *
+     * <p>Is {@code null} until the repository {@linkplain #catchUp(EventStore, CheckpointStore, int) catches up}.
+     */
+    @Nullable
+    private CheckpointStore checkpointStore;
+
+    /**
+     * The number of events processed by the repository, including the events applied while catching up.
+     */
+    private long eventCount;
+
+    /**
+     * The checkpoint of the last dispatched event, or {@code null} if it is already written.
+     */
+    @Nullable
+    private ProjectionCheckpoint pendingCheckpoint;
+
+    private int eventsSinceCheckpoint;
+    private long lastCheckpointMillis;
+
+    /**
+     * Creates a new repository instance which posts each change of seat quantities at once.
      *
      * @param context current bounded context
      */
     public ConferenceProjectionRepository(BoundedContext context) {
+        this(context, SeatAdjustments.newBuilder()
+                                     .setCommandBus(context.getCommandBus())
+                                     .setWindow(0, TimeUnit.MILLISECONDS)
+                                     .build());
+    }
+
+    /**
+     * Creates a new repository instance which posts the changes of seat quantities through the given adjustments.
+     *
+     * <p>The caller owns the adjustments and should {@linkplain SeatAdjustments#close() close} them
+     * after the repository.
+     *
+     * @param context         current bounded context
+     * @param seatAdjustments the coalescer of the changes of seat quantities
+     */
+    public ConferenceProjectionRepository(BoundedContext context, SeatAdjustments seatAdjustments) {
         super(context);
+        this.seatAdjustments = checkNotNull(seatAdjustments);
     }
 
     @Nonnull
     @Override
     public ConferenceProjection load(ConferenceId id) throws IllegalStateException {
         final ConferenceProjection conference = super.load(id);
-        final CommandBus commandBus = getBoundedContext().getCommandBus();
-        conference.setCommandBus(commandBus);
+        conference.setSeatAdjustments(seatAdjustments);
+        return conference;
+    }
+
+    /**
+     * Brings the projections up to date with the events stored after the last checkpoint,
+     * then writes the checkpoint periodically as live events are dispatched.
+     *
+     * <p>Should be called on start-up, before the bounded context accepts commands.
+     *
+     * @param eventStore      the store of the event history
+     * @param checkpointStore the store of the repository checkpoint
+     * @param parallelism     the number of threads applying the history
+     * @return the number of events read after the last checkpoint
+     * @see ConferenceCatchUp
+     */
+    public long catchUp(EventStore eventStore, CheckpointStore checkpointStore, int parallelism) {
+        final ConferenceCatchUp catchUp = ConferenceCatchUp.newBuilder()
+                                                           .setRepository(this)
+                                                           .setCheckpointStore(checkpointStore)
+                                                           .setParallelism(parallelism)
+                                                           .build();
+        final long result = catchUp.run(eventStore);
+        final ProjectionCheckpoint checkpoint = checkpointStore.read(getCheckpointName());
+        synchronized (progressLock) {
+            this.eventCount = (checkpoint == null) ? 0 : checkpoint.getEventCount();
+            this.lastCheckpointMillis = System.currentTimeMillis();
+            this.checkpointStore = checkpointStore;
+        }
+        return result;
+    }
+
+    /**
+     * Dispatches the event to the projections and writes the checkpoint if the repository has
+     * {@linkplain #catchUp(EventStore, CheckpointStore, int) caught up} and {@link #CHECKPOINT_EVENT_INTERVAL}
+     * events or {@link #CHECKPOINT_INTERVAL_MILLIS} passed since the last write.
+     *
+     * <p>On restart, the events dispatched after the last written checkpoint are applied again while catching up.
+     */
+    @Override
+    public void dispatch(Event event) {
+        super.dispatch(event);
+        final boolean isCheckpointDue;
+        synchronized (progressLock) {
+            if (checkpointStore == null) {
+                return;
+            }
+            eventCount++;
+            eventsSinceCheckpoint++;
+            final EventContext context = event.getContext();
+            pendingCheckpoint = ProjectionCheckpoint.newBuilder()
+                                                    .setRepository(getCheckpointName())
+                                                    .setTimestamp(context.getTimestamp())
+                                                    .setEventId(context.getEventId())
+                                                    .setEventCount(eventCount)
+                                                    .build();
+            isCheckpointDue = eventsSinceCheckpoint >= CHECKPOINT_EVENT_INTERVAL
+                    || System.currentTimeMillis() - lastCheckpointMillis >= CHECKPOINT_INTERVAL_MILLIS;
+        }
+        // If another thread is writing, it writes this checkpoint or a later one.
+        if (isCheckpointDue && checkpointWriteLock.tryLock()) {
+            try {
+                writePendingCheckpoint();
+            } finally {
+                checkpointWriteLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the checkpoint of the last dispatched event if it is not written yet.
+     */
+    /* package */ void flushCheckpoint() {
+        checkpointWriteLock.lock();
+        try {
+            writePendingCheckpoint();
+        } finally {
+            checkpointWriteLock.unlock();
+        }
+    }
+
+    private void writePendingCheckpoint() {
+        final ProjectionCheckpoint checkpoint;
+        final CheckpointStore store;
+        synchronized (progressLock) {
+            checkpoint = pendingCheckpoint;
+            store = checkpointStore;
+            pendingCheckpoint = null;
+            eventsSinceCheckpoint = 0;
+            lastCheckpointMillis = System.currentTimeMillis();
+        }
+        if (checkpoint != null && store != null) {
+            store.write(checkpoint);
+        }
+    }
+
+    /**
+     * Writes the checkpoint of the last dispatched event and closes the repository.
+     */
+    @Override
+    public void close() throws Exception {
+        flushCheckpoint();
+        super.close();
+    }
+
+    /**
+     * Returns the name under which the checkpoint of the repository is stored.
+     */
+    /* package */ String getCheckpointName() {
+        return getClass().getName();
+    }
+
+    /**
+     * Loads a projection which does not send commands on handling events.
+     *
+     * <p>Is used for catching up with the event history.
+     *
+     * @see ConferenceCatchUp
+     */
+    /* package */ ConferenceProjection loadForCatchUp(ConferenceId id) {
+        final ConferenceProjection conference = super.load(id);
         return conference;
     }
+
+    /**
+     * Stores the projection updated while catching up with the event history.
+     */
+    /* package */ void storeCaughtUp(ConferenceProjection conference) {
+        store(conference);
+    }
 }
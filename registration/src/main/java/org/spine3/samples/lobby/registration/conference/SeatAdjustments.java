@@ -0,0 +1,287 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.conference;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.Message;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spine3.base.Command;
+import org.spine3.base.Response;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.registration.seat.availability.AddSeats;
+import org.spine3.samples.lobby.registration.seat.availability.RemoveSeats;
+import org.spine3.server.command.CommandBus;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Maps.newLinkedHashMap;
+import static java.lang.Math.abs;
+import static org.spine3.base.Commands.create;
+import static org.spine3.samples.lobby.common.util.CommandContexts.newCommandContext;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatsAvailabilityId;
+
+/**
+ * Coalesces the changes of seat quantities of conferences into {@link AddSeats} and {@link RemoveSeats} commands.
+ *
+ * <p>The changes of a conference made within the coalescing window are summed up by seat type, and at most
+ * one {@code AddSeats} and one {@code RemoveSeats} command with the {@code seat} lists is posted
+ * per conference when the window ends. So creating a conference with many seat types loads the seats
+ * availability aggregate once or twice instead of once per seat type.
+ *
+ * <p>With a zero window, the changes are posted at once, one command per change.
+ *
+ * <p>The pending changes are kept in memory. They are posted when the adjustments are {@linkplain #close() closed},
+ * and are lost only if the process stops within the window without closing them.
+ *
+ * @author Alexander Litus
+ */
+public class SeatAdjustments implements AutoCloseable {
+
+    private final CommandBus commandBus;
+    private final long windowMillis;
+
+    @Nullable
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * The pending changes of seat quantities by conference and seat type.
+     */
+    private final Map<ConferenceId, Map<SeatTypeId, Integer>> pending = newHashMap();
+
+    /**
+     * Tells if the adjustments are closed, so that the changes are posted at once.
+     *
+     * <p>Is guarded by {@code pending}.
+     */
+    private boolean closed;
+
+    private final StreamObserver<Response> responseObserver = new StreamObserver<Response>() {
+        @Override
+        public void onNext(Response value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            log().error("Failed to change the seat quantities.", t);
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    };
+
+    private SeatAdjustments(Builder builder) {
+        this.commandBus = builder.commandBus;
+        this.windowMillis = builder.windowMillis;
+        this.scheduler = (windowMillis == 0) ?
+                         null :
+                         Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                                                                            .setNameFormat("seat-adjustments-%d")
+                                                                            .setDaemon(true)
+                                                                            .build());
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Changes the number of seats of the seat type by the given difference.
+     *
+     * @param conferenceId the ID of the conference
+     * @param seatTypeId   the ID of the seat type
+     * @param difference   the number of seats to add if positive, or to remove if negative
+     */
+    public void adjust(ConferenceId conferenceId, SeatTypeId seatTypeId, int difference) {
+        if (difference == 0) {
+            return;
+        }
+        if (scheduler != null && coalesce(conferenceId, seatTypeId, difference)) {
+            return;
+        }
+        post(conferenceId, singletonMap(seatTypeId, difference));
+    }
+
+    /**
+     * Adds the change to the pending changes of the conference.
+     *
+     * @return {@code true} if the change is pending, {@code false} if the adjustments are closed
+     */
+    private boolean coalesce(final ConferenceId conferenceId, SeatTypeId seatTypeId, int difference) {
+        checkNotNull(scheduler);
+        synchronized (pending) {
+            if (closed) {
+                return false;
+            }
+            Map<SeatTypeId, Integer> changes = pending.get(conferenceId);
+            if (changes == null) {
+                changes = newLinkedHashMap();
+                pending.put(conferenceId, changes);
+                scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush(conferenceId);
+                    }
+                }, windowMillis, TimeUnit.MILLISECONDS);
+            }
+            final Integer current = changes.get(seatTypeId);
+            changes.put(seatTypeId, (current == null) ? difference : current + difference);
+            return true;
+        }
+    }
+
+    /**
+     * Posts the pending changes of all conferences at once.
+     */
+    public void flush() {
+        final Map<ConferenceId, Map<SeatTypeId, Integer>> changes;
+        synchronized (pending) {
+            changes = newHashMap(pending);
+            pending.clear();
+        }
+        for (Map.Entry<ConferenceId, Map<SeatTypeId, Integer>> entry : changes.entrySet()) {
+            post(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Posts the pending changes and stops the thread which posts the changes when their windows end.
+     *
+     * <p>The changes made after closing are posted at once.
+     */
+    @Override
+    public void close() {
+        synchronized (pending) {
+            closed = true;
+        }
+        flush();
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void flush(ConferenceId conferenceId) {
+        final Map<SeatTypeId, Integer> changes;
+        synchronized (pending) {
+            changes = pending.remove(conferenceId);
+        }
+        if (changes != null) {
+            try {
+                post(conferenceId, changes);
+            } catch (RuntimeException e) {
+                log().error("Failed to post the seat quantity changes of the conference " + conferenceId.getUuid(), e);
+            }
+        }
+    }
+
+    private void post(ConferenceId conferenceId, Map<SeatTypeId, Integer> changes) {
+        final AddSeats.Builder addSeats = AddSeats.newBuilder()
+                                                  .setSeatsAvailabilityId(newSeatsAvailabilityId(conferenceId))
+                                                  .setConferenceId(conferenceId);
+        final RemoveSeats.Builder removeSeats = RemoveSeats.newBuilder()
+                                                           .setSeatsAvailabilityId(newSeatsAvailabilityId(conferenceId))
+                                                           .setConferenceId(conferenceId);
+        for (Map.Entry<SeatTypeId, Integer> change : changes.entrySet()) {
+            final int difference = change.getValue();
+            if (difference > 0) {
+                addSeats.addSeat(newSeatQuantity(change.getKey(), difference));
+            } else if (difference < 0) {
+                removeSeats.addSeat(newSeatQuantity(change.getKey(), abs(difference)));
+            }
+        }
+        // The seats are added first, so that a seat type created and shrunk within the window exists on removal.
+        if (addSeats.getSeatCount() > 0) {
+            post(addSeats.build());
+        }
+        if (removeSeats.getSeatCount() > 0) {
+            post(removeSeats.build());
+        }
+    }
+
+    private void post(Message message) {
+        final Command command = create(message, newCommandContext());
+        commandBus.post(command, responseObserver);
+    }
+
+    private static Map<SeatTypeId, Integer> singletonMap(SeatTypeId seatTypeId, int difference) {
+        final Map<SeatTypeId, Integer> result = newHashMap();
+        result.put(seatTypeId, difference);
+        return result;
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+        @SuppressWarnings("NonSerializableFieldInSerializableClass")
+        private final Logger value = LoggerFactory.getLogger(SeatAdjustments.class);
+    }
+
+    /**
+     * The builder of {@link SeatAdjustments} instances.
+     */
+    public static class Builder {
+
+        private static final long DEFAULT_WINDOW_MILLIS = 50;
+
+        private CommandBus commandBus;
+        private long windowMillis = DEFAULT_WINDOW_MILLIS;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the command bus to post the commands to.
+         */
+        public Builder setCommandBus(CommandBus commandBus) {
+            this.commandBus = checkNotNull(commandBus);
+            return this;
+        }
+
+        /**
+         * Sets the time for which the changes of a conference are coalesced, zero to post each change at once.
+         */
+        public Builder setWindow(long window, TimeUnit unit) {
+            checkNotNull(unit);
+            checkArgument(window >= 0, "The coalescing window must not be negative.");
+            this.windowMillis = unit.toMillis(window);
+            return this;
+        }
+
+        public SeatAdjustments build() {
+            checkNotNull(commandBus, "The command bus must be set.");
+            return new SeatAdjustments(this);
+        }
+    }
+}
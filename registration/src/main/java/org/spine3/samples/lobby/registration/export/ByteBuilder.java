@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.export;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+/**
+ * A growable byte array with the primitives of the export format.
+ *
+ * <p>Integers are written as unsigned LEB128 varints; signed integers are zigzag-encoded first.
+ * Strings are written as the varint length followed by the UTF-8 bytes.
+ *
+ * @author Alexander Litus
+ */
+/* package */ class ByteBuilder {
+
+    private static final int VARINT_PAYLOAD_BITS = 7;
+    private static final int VARINT_PAYLOAD_MASK = 0x7F;
+    private static final int VARINT_CONTINUATION_BIT = 0x80;
+
+    private byte[] bytes;
+    private int size;
+
+    /* package */ ByteBuilder(int initialCapacity) {
+        this.bytes = new byte[initialCapacity];
+    }
+
+    /* package */ void writeByte(int value) {
+        ensureCapacity(size + 1);
+        bytes[size++] = (byte) value;
+    }
+
+    /* package */ void writeVarint(long value) {
+        ensureCapacity(size + 10);
+        long remaining = value;
+        while ((remaining & ~VARINT_PAYLOAD_MASK) != 0) {
+            bytes[size++] = (byte) ((remaining & VARINT_PAYLOAD_MASK) | VARINT_CONTINUATION_BIT);
+            remaining >>>= VARINT_PAYLOAD_BITS;
+        }
+        bytes[size++] = (byte) remaining;
+    }
+
+    /* package */ void writeZigZag(long value) {
+        writeVarint(zigZag(value));
+    }
+
+    /* package */ void writeString(String value) {
+        final byte[] encoded = value.getBytes(UTF_8);
+        writeVarint(encoded.length);
+        writeBytes(encoded, 0, encoded.length);
+    }
+
+    /* package */ void writeBytes(byte[] source, int offset, int length) {
+        ensureCapacity(size + length);
+        System.arraycopy(source, offset, bytes, size, length);
+        size += length;
+    }
+
+    /* package */ void reset() {
+        size = 0;
+    }
+
+    /* package */ int size() {
+        return size;
+    }
+
+    /**
+     * Returns the underlying array, valid up to {@link #size()}.
+     */
+    @SuppressWarnings("ReturnOfCollectionOrArrayField") // To avoid copying.
+    /* package */ byte[] array() {
+        return bytes;
+    }
+
+    /* package */ static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.export;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+
+/**
+ * The values of a column in the current stripe.
+ *
+ * @author Alexander Litus
+ */
+/* package */ class ColumnBuffer {
+
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private final ColumnEncoding encoding;
+    private final ByteBuilder values = new ByteBuilder(INITIAL_CAPACITY);
+
+    private final Map<String, Integer> dictionaryCodes = newHashMap();
+    private final List<String> dictionary = newArrayList();
+
+    private long previous;
+
+    /* package */ ColumnBuffer(ColumnEncoding encoding) {
+        this.encoding = encoding;
+    }
+
+    /* package */ ColumnEncoding getEncoding() {
+        return encoding;
+    }
+
+    /* package */ void addString(String value) {
+        if (encoding == ColumnEncoding.DICTIONARY) {
+            Integer code = dictionaryCodes.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                dictionaryCodes.put(value, code);
+            }
+            values.writeVarint(code);
+            return;
+        }
+        checkState(encoding == ColumnEncoding.STRING, "Not a string column: %s", encoding);
+        values.writeString(value);
+    }
+
+    /* package */ void addLong(long value) {
+        if (encoding == ColumnEncoding.DELTA) {
+            values.writeZigZag(value - previous);
+            previous = value;
+            return;
+        }
+        checkState(encoding == ColumnEncoding.VARINT, "Not an integer column: %s", encoding);
+        values.writeZigZag(value);
+    }
+
+    /**
+     * Writes the encoded values of the stripe to the output and resets the buffer for the next stripe.
+     */
+    /* package */ void drainTo(ByteBuilder output) {
+        if (encoding == ColumnEncoding.DICTIONARY) {
+            output.writeVarint(dictionary.size());
+            for (String entry : dictionary) {
+                output.writeString(entry);
+            }
+            dictionary.clear();
+            dictionaryCodes.clear();
+        }
+        output.writeBytes(values.array(), 0, values.size());
+        values.reset();
+        previous = 0;
+    }
+}
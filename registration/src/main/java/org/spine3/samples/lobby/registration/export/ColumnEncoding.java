@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.export;
+
+/**
+ * The encodings of the columns of the export format.
+ *
+ * @author Alexander Litus
+ */
+/* package */ enum ColumnEncoding {
+
+    /**
+     * Each value is a string.
+     */
+    STRING(1),
+
+    /**
+     * The dictionary of distinct strings of the stripe followed by a varint index into the dictionary per value.
+     */
+    DICTIONARY(2),
+
+    /**
+     * Each value is a zigzag varint.
+     */
+    VARINT(3),
+
+    /**
+     * Each value is a zigzag varint of its difference from the previous value of the stripe,
+     * the first value is a difference from zero.
+     */
+    DELTA(4);
+
+    private final int id;
+
+    ColumnEncoding(int id) {
+        this.id = id;
+    }
+
+    /* package */ int getId() {
+        return id;
+    }
+
+    /* package */ static ColumnEncoding forId(int id) {
+        for (ColumnEncoding encoding : values()) {
+            if (encoding.id == id) {
+                return encoding;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column encoding: " + id);
+    }
+}
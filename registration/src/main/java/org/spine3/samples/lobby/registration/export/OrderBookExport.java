@@ -0,0 +1,397 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.export;
+
+import com.google.protobuf.Timestamp;
+import org.spine3.money.Money;
+import org.spine3.samples.lobby.common.PersonalInfo;
+import org.spine3.samples.lobby.registration.contracts.SeatAssignment;
+import org.spine3.samples.lobby.registration.contracts.SeatOrderLine;
+import org.spine3.samples.lobby.registration.order.Order;
+import org.spine3.samples.lobby.registration.seat.assignment.SeatAssignments;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+
+import static com.google.common.base.Charsets.US_ASCII;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static org.spine3.samples.lobby.registration.export.ColumnEncoding.DELTA;
+import static org.spine3.samples.lobby.registration.export.ColumnEncoding.DICTIONARY;
+import static org.spine3.samples.lobby.registration.export.ColumnEncoding.STRING;
+import static org.spine3.samples.lobby.registration.export.ColumnEncoding.VARINT;
+
+/**
+ * Exports the states of orders and seat assignments to a compressed columnar file for reconciliation.
+ *
+ * <p>The states are streamed: rows are buffered in stripes of {@linkplain Builder#setRowsPerStripe(int) a number
+ * of rows} per table and written to the channel once a stripe is full, so the memory used does not depend
+ * on the number of exported states.
+ *
+ * <p>The file consists of:
+ * <ul>
+ *     <li>the {@link #MAGIC} bytes and the format version byte;
+ *     <li>the stripes of the {@link OrderColumn orders}, {@link OrderLineColumn order lines} and
+ *         {@link SeatAssignmentColumn seat assignments} tables as written by {@link StripeWriter};
+ *     <li>the {@link #END_OF_STRIPES} byte, the varint row count of each table and the {@link #MAGIC} bytes.
+ * </ul>
+ *
+ * <p>Conference and seat type IDs are dictionary-encoded per stripe. Timestamps and row references are
+ * delta-encoded. Each column of a stripe is deflated separately.
+ *
+ * @author Alexander Litus
+ */
+public class OrderBookExport implements AutoCloseable {
+
+    /* package */ static final byte[] MAGIC = "LOBX".getBytes(US_ASCII);
+    /* package */ static final int FORMAT_VERSION = 1;
+
+    /* package */ static final int END_OF_STRIPES = 0;
+    /* package */ static final int ORDERS_TABLE = 1;
+    /* package */ static final int ORDER_LINES_TABLE = 2;
+    /* package */ static final int SEAT_ASSIGNMENTS_TABLE = 3;
+
+    /* package */ static final int CONFIRMED_FLAG = 1;
+    /* package */ static final int EXPIRED_FLAG = 2;
+
+    private static final long MICROS_PER_SECOND = 1_000_000;
+    private static final int NANOS_PER_MICRO = 1_000;
+
+    private final ChannelOutput output;
+    private final StripeWriter stripeWriter;
+    private final TableWriter orders;
+    private final TableWriter orderLines;
+    private final TableWriter seatAssignments;
+
+    private boolean isStarted;
+    private boolean isClosed;
+
+    private OrderBookExport(Builder builder) {
+        this.output = new ChannelOutput(builder.channel, builder.bufferSize);
+        this.stripeWriter = new StripeWriter(output, builder.compressionLevel);
+        final int rowsPerStripe = builder.rowsPerStripe;
+        this.orders = new TableWriter(ORDERS_TABLE, OrderColumn.encodings(), rowsPerStripe, stripeWriter);
+        this.orderLines = new TableWriter(ORDER_LINES_TABLE, OrderLineColumn.encodings(), rowsPerStripe, stripeWriter);
+        this.seatAssignments = new TableWriter(SEAT_ASSIGNMENTS_TABLE, SeatAssignmentColumn.encodings(),
+                                               rowsPerStripe, stripeWriter);
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Adds the order with its lines to the export.
+     */
+    public void add(Order order) throws IOException {
+        checkNotNull(order);
+        checkState(!isClosed, "The export is closed.");
+        start();
+        final long orderRow = orders.getRowCount();
+        final Money price = order.getPrice();
+        final PersonalInfo registrant = order.getRegistrant();
+        orders.column(OrderColumn.ORDER_ID.ordinal())
+              .addString(order.getId()
+                              .getUuid());
+        orders.column(OrderColumn.CONFERENCE_ID.ordinal())
+              .addString(order.getConferenceId()
+                              .getUuid());
+        orders.column(OrderColumn.STATUS.ordinal())
+              .addLong(statusOf(order));
+        orders.column(OrderColumn.TOTAL.ordinal())
+              .addLong(price.getAmount());
+        orders.column(OrderColumn.CURRENCY.ordinal())
+              .addLong(price.getCurrencyValue());
+        orders.column(OrderColumn.PLACED_TIME.ordinal())
+              .addLong(toMicros(order.getPlacedTime()));
+        addPersonalInfo(orders, OrderColumn.REGISTRANT_GIVEN_NAME.ordinal(), registrant);
+        orders.endRow();
+
+        for (SeatOrderLine line : order.getOrderLineList()) {
+            orderLines.column(OrderLineColumn.ORDER_ROW.ordinal())
+                      .addLong(orderRow);
+            orderLines.column(OrderLineColumn.SEAT_TYPE_ID.ordinal())
+                      .addString(line.getSeatTypeId()
+                                     .getUuid());
+            orderLines.column(OrderLineColumn.QUANTITY.ordinal())
+                      .addLong(line.getQuantity());
+            orderLines.column(OrderLineColumn.UNIT_PRICE.ordinal())
+                      .addLong(line.getUnitPrice()
+                                   .getAmount());
+            orderLines.column(OrderLineColumn.LINE_TOTAL.ordinal())
+                      .addLong(line.getLineTotal()
+                                   .getAmount());
+            orderLines.endRow();
+        }
+    }
+
+    /**
+     * Adds the seat assignments to the export in the order of seat positions.
+     */
+    public void add(SeatAssignments assignments) throws IOException {
+        checkNotNull(assignments);
+        checkState(!isClosed, "The export is closed.");
+        start();
+        final String assignmentsId = assignments.getId()
+                                                .getUuid();
+        final SortedMap<Integer, SeatAssignment> sorted = new TreeMap<>(assignments.getAssignmentsMap());
+        for (Map.Entry<Integer, SeatAssignment> entry : sorted.entrySet()) {
+            final SeatAssignment assignment = entry.getValue();
+            seatAssignments.column(SeatAssignmentColumn.ASSIGNMENTS_ID.ordinal())
+                           .addString(assignmentsId);
+            seatAssignments.column(SeatAssignmentColumn.POSITION.ordinal())
+                           .addLong(entry.getKey());
+            seatAssignments.column(SeatAssignmentColumn.SEAT_TYPE_ID.ordinal())
+                           .addString(assignment.getSeatTypeId()
+                                                .getUuid());
+            addPersonalInfo(seatAssignments, SeatAssignmentColumn.ATTENDEE_GIVEN_NAME.ordinal(),
+                            assignment.getAttendee());
+            seatAssignments.endRow();
+        }
+    }
+
+    /**
+     * Returns the number of exported orders.
+     */
+    public long getOrderCount() {
+        return orders.getRowCount();
+    }
+
+    /**
+     * Writes the remaining stripes and the footer.
+     *
+     * <p>Does not close the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        try {
+            start();
+            orders.flush();
+            orderLines.flush();
+            seatAssignments.flush();
+            final ByteBuilder footer = new ByteBuilder(32);
+            footer.writeByte(END_OF_STRIPES);
+            footer.writeVarint(orders.getRowCount());
+            footer.writeVarint(orderLines.getRowCount());
+            footer.writeVarint(seatAssignments.getRowCount());
+            footer.writeBytes(MAGIC, 0, MAGIC.length);
+            output.write(footer);
+            output.flush();
+        } finally {
+            stripeWriter.end();
+        }
+    }
+
+    private void start() throws IOException {
+        if (isStarted) {
+            return;
+        }
+        isStarted = true;
+        output.write(MAGIC, 0, MAGIC.length);
+        output.write(new byte[]{FORMAT_VERSION}, 0, 1);
+    }
+
+    private static int statusOf(Order order) {
+        int result = 0;
+        if (order.getIsConfirmed()) {
+            result |= CONFIRMED_FLAG;
+        }
+        if (order.getIsExpired()) {
+            result |= EXPIRED_FLAG;
+        }
+        return result;
+    }
+
+    /**
+     * Converts the timestamp to microseconds since the epoch.
+     */
+    /* package */ static long toMicros(Timestamp timestamp) {
+        return timestamp.getSeconds() * MICROS_PER_SECOND + timestamp.getNanos() / NANOS_PER_MICRO;
+    }
+
+    /**
+     * Adds the given name, the family name and the email to the three columns starting from the given one.
+     */
+    private static void addPersonalInfo(TableWriter table, int firstColumn, PersonalInfo info) {
+        table.column(firstColumn)
+             .addString(info.getName()
+                            .getGivenName());
+        table.column(firstColumn + 1)
+             .addString(info.getName()
+                            .getFamilyName());
+        table.column(firstColumn + 2)
+             .addString(info.getEmail()
+                            .getValue());
+    }
+
+    /**
+     * The columns of the orders table.
+     */
+    /* package */ enum OrderColumn {
+        ORDER_ID(STRING),
+        CONFERENCE_ID(DICTIONARY),
+        /** The bit flags of {@link #CONFIRMED_FLAG} and {@link #EXPIRED_FLAG}. */
+        STATUS(VARINT),
+        TOTAL(VARINT),
+        CURRENCY(VARINT),
+        /** Microseconds since the epoch. */
+        PLACED_TIME(DELTA),
+        REGISTRANT_GIVEN_NAME(STRING),
+        REGISTRANT_FAMILY_NAME(STRING),
+        REGISTRANT_EMAIL(STRING);
+
+        private final ColumnEncoding encoding;
+
+        OrderColumn(ColumnEncoding encoding) {
+            this.encoding = encoding;
+        }
+
+        private static ColumnEncoding[] encodings() {
+            final OrderColumn[] columns = values();
+            final ColumnEncoding[] result = new ColumnEncoding[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                result[i] = columns[i].encoding;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The columns of the order lines table.
+     */
+    /* package */ enum OrderLineColumn {
+        /** The number of the row of the order in the orders table, starting from zero. */
+        ORDER_ROW(DELTA),
+        SEAT_TYPE_ID(DICTIONARY),
+        QUANTITY(VARINT),
+        UNIT_PRICE(VARINT),
+        LINE_TOTAL(VARINT);
+
+        private final ColumnEncoding encoding;
+
+        OrderLineColumn(ColumnEncoding encoding) {
+            this.encoding = encoding;
+        }
+
+        private static ColumnEncoding[] encodings() {
+            final OrderLineColumn[] columns = values();
+            final ColumnEncoding[] result = new ColumnEncoding[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                result[i] = columns[i].encoding;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The columns of the seat assignments table.
+     */
+    /* package */ enum SeatAssignmentColumn {
+        ASSIGNMENTS_ID(DICTIONARY),
+        POSITION(DELTA),
+        SEAT_TYPE_ID(DICTIONARY),
+        ATTENDEE_GIVEN_NAME(STRING),
+        ATTENDEE_FAMILY_NAME(STRING),
+        ATTENDEE_EMAIL(STRING);
+
+        private final ColumnEncoding encoding;
+
+        SeatAssignmentColumn(ColumnEncoding encoding) {
+            this.encoding = encoding;
+        }
+
+        private static ColumnEncoding[] encodings() {
+            final SeatAssignmentColumn[] columns = values();
+            final ColumnEncoding[] result = new ColumnEncoding[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                result[i] = columns[i].encoding;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The builder of {@link OrderBookExport} instances.
+     */
+    public static class Builder {
+
+        private static final int DEFAULT_ROWS_PER_STRIPE = 65_536;
+        private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+        private WritableByteChannel channel;
+        private int rowsPerStripe = DEFAULT_ROWS_PER_STRIPE;
+        private int bufferSize = DEFAULT_BUFFER_SIZE;
+        private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the channel to write the export to, e.g. a {@link java.nio.channels.FileChannel}.
+         */
+        public Builder setChannel(WritableByteChannel channel) {
+            this.channel = checkNotNull(channel);
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of rows of a table buffered in memory before they are written.
+         */
+        public Builder setRowsPerStripe(int rowsPerStripe) {
+            checkArgument(rowsPerStripe > 0, "Rows per stripe must be positive.");
+            this.rowsPerStripe = rowsPerStripe;
+            return this;
+        }
+
+        /**
+         * Sets the size of the buffer of writes to the channel in bytes.
+         */
+        public Builder setBufferSize(int bufferSize) {
+            checkArgument(bufferSize > 0, "Buffer size must be positive.");
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * Sets the {@link Deflater} compression level of columns.
+         */
+        public Builder setCompressionLevel(int compressionLevel) {
+            checkArgument(compressionLevel >= Deflater.NO_COMPRESSION && compressionLevel <= Deflater.BEST_COMPRESSION,
+                          "Invalid compression level: %s", compressionLevel);
+            this.compressionLevel = compressionLevel;
+            return this;
+        }
+
+        public OrderBookExport build() {
+            checkNotNull(channel, "Channel must be set.");
+            return new OrderBookExport(this);
+        }
+    }
+}
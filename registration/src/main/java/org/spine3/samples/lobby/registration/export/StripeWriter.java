@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.export;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the columns of stripes and writes them to the output.
+ *
+ * <p>A stripe is written as:
+ * <ul>
+ *     <li>the table ID byte;
+ *     <li>the varint number of rows;
+ *     <li>the varint number of columns;
+ *     <li>for each column: the {@linkplain ColumnEncoding encoding} ID byte, the varint size of the encoded values,
+ *         the varint size of the deflated values, and the deflated values.
+ * </ul>
+ *
+ * @author Alexander Litus
+ */
+/* package */ class StripeWriter {
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final ChannelOutput output;
+    private final Deflater deflater;
+    private final ByteBuilder header = new ByteBuilder(64);
+    private final ByteBuilder encoded = new ByteBuilder(INITIAL_BUFFER_SIZE);
+    private byte[] deflated = new byte[INITIAL_BUFFER_SIZE];
+
+    /* package */ StripeWriter(ChannelOutput output, int compressionLevel) {
+        this.output = output;
+        this.deflater = new Deflater(compressionLevel);
+    }
+
+    /* package */ void write(int tableId, int rowCount, ColumnBuffer[] columns) throws IOException {
+        header.reset();
+        header.writeByte(tableId);
+        header.writeVarint(rowCount);
+        header.writeVarint(columns.length);
+        output.write(header);
+        for (ColumnBuffer column : columns) {
+            encoded.reset();
+            column.drainTo(encoded);
+            final int deflatedSize = deflate();
+            header.reset();
+            header.writeByte(column.getEncoding()
+                                   .getId());
+            header.writeVarint(encoded.size());
+            header.writeVarint(deflatedSize);
+            output.write(header);
+            output.write(deflated, 0, deflatedSize);
+        }
+    }
+
+    /**
+     * Releases the compressor.
+     */
+    /* package */ void end() {
+        deflater.end();
+    }
+
+    private int deflate() {
+        deflater.reset();
+        deflater.setInput(encoded.array(), 0, encoded.size());
+        deflater.finish();
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == deflated.length) {
+                deflated = Arrays.copyOf(deflated, deflated.length * 2);
+            }
+            size += deflater.deflate(deflated, size, deflated.length - size);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.export;
+
+import java.io.IOException;
+
+/**
+ * Buffers the rows of a table and writes them in stripes of a fixed number of rows.
+ *
+ * <p>Only the current stripe is kept in memory.
+ *
+ * @author Alexander Litus
+ */
+/* package */ class TableWriter {
+
+    private final int tableId;
+    private final ColumnBuffer[] columns;
+    private final int rowsPerStripe;
+    private final StripeWriter stripeWriter;
+
+    private int stripeRowCount;
+    private long rowCount;
+
+    /* package */ TableWriter(int tableId, ColumnEncoding[] encodings, int rowsPerStripe, StripeWriter stripeWriter) {
+        this.tableId = tableId;
+        this.rowsPerStripe = rowsPerStripe;
+        this.stripeWriter = stripeWriter;
+        this.columns = new ColumnBuffer[encodings.length];
+        for (int i = 0; i < encodings.length; i++) {
+            columns[i] = new ColumnBuffer(encodings[i]);
+        }
+    }
+
+    /* package */ ColumnBuffer column(int index) {
+        return columns[index];
+    }
+
+    /**
+     * Completes the row which values are added to the columns, writing the stripe if it is full.
+     */
+    /* package */ void endRow() throws IOException {
+        stripeRowCount++;
+        rowCount++;
+        if (stripeRowCount == rowsPerStripe) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the rows of the incomplete stripe, if any.
+     */
+    /* package */ void flush() throws IOException {
+        if (stripeRowCount == 0) {
+            return;
+        }
+        stripeWriter.write(tableId, stripeRowCount, columns);
+        stripeRowCount = 0;
+    }
+
+    /**
+     * Returns the number of rows added to the table.
+     */
+    /* package */ long getRowCount() {
+        return rowCount;
+    }
+}
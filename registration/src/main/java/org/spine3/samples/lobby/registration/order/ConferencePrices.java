@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.order;
+
+import com.google.common.collect.ImmutableMap;
+import org.spine3.money.Money;
+import org.spine3.samples.lobby.common.SeatType;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.conference.contracts.Conference;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+import static com.google.common.collect.Maps.newLinkedHashMap;
+
+/**
+ * The price schedules of the seat types of a conference, compiled from a version of the conference projection.
+ *
+ * <p>Keeps the unit prices computed last together with the time range in which they are in effect,
+ * so that pricing the orders placed within the same price tiers returns the same map.
+ *
+ * @author Alexander Litus
+ */
+/* package */ class ConferencePrices {
+
+    /**
+     * The version of the conference projection from which the schedules are compiled.
+     */
+    private final int conferenceVersion;
+
+    private final ImmutableMap<SeatTypeId, PriceSchedule> schedules;
+
+    @Nullable
+    private volatile UnitPrices lastUnitPrices;
+
+    private ConferencePrices(ImmutableMap<SeatTypeId, PriceSchedule> schedules, int conferenceVersion) {
+        this.schedules = schedules;
+        this.conferenceVersion = conferenceVersion;
+    }
+
+    /**
+     * Compiles the price schedules of the conference seat types.
+     *
+     * <p>If several seat types have the same ID, the first one is used.
+     *
+     * @param conference        the state of the conference projection
+     * @param conferenceVersion the version of the conference projection
+     * @throws IllegalArgumentException if several price tiers of a seat type take effect at the same time
+     */
+    /* package */ static ConferencePrices compile(Conference conference, int conferenceVersion) {
+        final Map<SeatTypeId, PriceSchedule> schedules = newLinkedHashMap();
+        for (SeatType seatType : conference.getSeatTypeList()) {
+            final SeatTypeId id = seatType.getId();
+            if (!schedules.containsKey(id)) {
+                schedules.put(id, PriceSchedule.compile(seatType, conferenceVersion));
+            }
+        }
+        return new ConferencePrices(ImmutableMap.copyOf(schedules), conferenceVersion);
+    }
+
+    /**
+     * Returns {@code true} if the schedules are compiled from the conference projection of the given version.
+     */
+    /* package */ boolean isCompiledAt(int conferenceVersion) {
+        final boolean result = this.conferenceVersion == conferenceVersion;
+        return result;
+    }
+
+    /**
+     * Returns the unit prices in effect at the given time by seat type IDs.
+     *
+     * <p>Returns the map returned by the previous call if the prices did not change between the times.
+     *
+     * @param timeMillis the time in milliseconds since the epoch
+     */
+    /* package */ ImmutableMap<SeatTypeId, Money> getUnitPrices(long timeMillis) {
+        final UnitPrices last = lastUnitPrices;
+        if (last != null && last.isInEffectAt(timeMillis)) {
+            return last.prices;
+        }
+        final UnitPrices result = computeUnitPrices(timeMillis);
+        lastUnitPrices = result;
+        return result.prices;
+    }
+
+    private UnitPrices computeUnitPrices(long timeMillis) {
+        final ImmutableMap.Builder<SeatTypeId, Money> prices = ImmutableMap.builder();
+        long effectiveFrom = Long.MIN_VALUE;
+        long effectiveUntil = Long.MAX_VALUE;
+        for (Map.Entry<SeatTypeId, PriceSchedule> entry : schedules.entrySet()) {
+            final PriceSchedule schedule = entry.getValue();
+            prices.put(entry.getKey(), schedule.getPrice(timeMillis));
+            effectiveFrom = Math.max(effectiveFrom, schedule.getPriceEffectiveFrom(timeMillis));
+            effectiveUntil = Math.min(effectiveUntil, schedule.getNextPriceChange(timeMillis));
+        }
+        return new UnitPrices(prices.build(), effectiveFrom, effectiveUntil);
+    }
+
+    /**
+     * The unit prices in effect from {@code effectiveFrom} (inclusive) until {@code effectiveUntil} (exclusive).
+     *
+     * <p>{@link Long#MAX_VALUE} as {@code effectiveUntil} means that the prices never change.
+     */
+    private static class UnitPrices {
+
+        private final ImmutableMap<SeatTypeId, Money> prices;
+        private final long effectiveFrom;
+        private final long effectiveUntil;
+
+        private UnitPrices(ImmutableMap<SeatTypeId, Money> prices, long effectiveFrom, long effectiveUntil) {
+            this.prices = prices;
+            this.effectiveFrom = effectiveFrom;
+            this.effectiveUntil = effectiveUntil;
+        }
+
+        private boolean isInEffectAt(long timeMillis) {
+            final boolean result = timeMillis >= effectiveFrom
+                    && (timeMillis < effectiveUntil || effectiveUntil == Long.MAX_VALUE);
+            return result;
+        }
+    }
+}
@@ -20,7 +20,6 @@
 
 package org.spine3.samples.lobby.registration.order;
 
-import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.protobuf.Duration;
 import com.google.protobuf.Message;
@@ -32,8 +31,11 @@ import org.spine3.protobuf.Durations;
 import org.spine3.samples.lobby.common.ConferenceId;
 import org.spine3.samples.lobby.common.ImportEvents;
 import org.spine3.samples.lobby.common.OrderId;
+import org.spine3.samples.lobby.common.SeatTypeId;
 import org.spine3.samples.lobby.common.util.RandomPasswordGenerator;
 import org.spine3.samples.lobby.common.util.aggregate.AbstractLobbyAggregate;
+import org.spine3.samples.lobby.registration.admission.AdmissionControl;
+import org.spine3.samples.lobby.registration.admission.AdmissionTicket;
 import org.spine3.samples.lobby.registration.contracts.OrderAccessCode;
 import org.spine3.samples.lobby.registration.contracts.OrderConfirmed;
 import org.spine3.samples.lobby.registration.contracts.OrderExpired;
@@ -44,19 +46,27 @@ import org.spine3.samples.lobby.registration.contracts.OrderReservationCompleted
 import org.spine3.samples.lobby.registration.contracts.OrderTotal;
 import org.spine3.samples.lobby.registration.contracts.OrderTotalsCalculated;
 import org.spine3.samples.lobby.registration.contracts.OrderUpdated;
+import org.spine3.samples.lobby.registration.contracts.SeatOrderLine;
 import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
+import org.spine3.samples.lobby.registration.promotion.Promotion;
+import org.spine3.samples.lobby.registration.promotion.PromotionService;
 import org.spine3.samples.lobby.registration.util.Seats;
 import org.spine3.server.aggregate.Apply;
 import org.spine3.server.command.Assign;
 import org.spine3.server.entity.Entity;
 
 import javax.annotation.Nullable;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
-import static com.google.common.collect.Collections2.filter;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
 import static com.google.protobuf.util.TimeUtil.add;
 import static com.google.protobuf.util.TimeUtil.getCurrentTime;
+import static org.spine3.protobuf.Timestamps.isLaterThan;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
 import static org.spine3.samples.lobby.registration.order.OrderValidator.*;
 
 /**
@@ -78,6 +88,12 @@ public class OrderAggregate extends AbstractLobbyAggregate<OrderId, Order, Order
 
     private OrderPricingService pricingService;
 
+    @Nullable
+    private AdmissionControl admissionControl;
+
+    @Nullable
+    private PromotionService promotionService;
+
     /**
      * Creates a new instance.
      *
@@ -98,45 +114,101 @@ public class OrderAggregate extends AbstractLobbyAggregate<OrderId, Order, Order
         this.pricingService = service;
     }
 
+    /**
+     * Sets the admission control to check registrants placing new orders.
+     *
+     * <p>If it is not set, any registrant can place an order.
+     *
+     * @param admissionControl the admission control, e.g. a {@link org.spine3.samples.lobby.registration.admission.WaitingRoom}
+     */
+    public void setAdmissionControl(@Nullable AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    /**
+     * Sets the service applying promo codes to orders.
+     *
+     * <p>The service reserves a redemption of the code when the aggregate applies it. An order holds at most
+     * one redemption, so a handler retried on a conflict does not take it twice.
+     *
+     * <p>If it is not set, promo codes are ignored.
+     */
+    public void setPromotionService(@Nullable PromotionService promotionService) {
+        this.promotionService = promotionService;
+    }
+
     @Assign
     public List<Message> handle(RegisterToConference command, CommandContext context) {
         checkNotConfirmed(getState(), command);
         validateCommand(command);
 
         final ImmutableList.Builder<Message> result = ImmutableList.builder();
+        final Timestamp now = getCurrentTime();
         final boolean isNew = getVersion() == 0;
+        final Timestamp pricingTime;
         if (isNew) {
-            final OrderPlaced placed = EventFactory.orderPlaced(command);
+            checkAdmitted(command);
+            final OrderPlaced placed = EventFactory.orderPlaced(command, now);
             result.add(placed);
+            pricingTime = now;
         } else {
             final OrderUpdated updated = EventFactory.orderUpdated(command);
             result.add(updated);
+            pricingTime = getPricingTime(now);
+        }
+        final OrderTotalsCalculated totalsCalculated = reprice(command.getOrderId(),
+                command.getConferenceId(), command.getSeatList(), pricingTime, command.getPromoCode());
+        if (totalsCalculated != null) {
+            result.add(totalsCalculated);
         }
-        final OrderTotalsCalculated totalsCalculated = buildOrderTotalsCalculated(command.getOrderId(),
-                command.getConferenceId(), command.getSeatList());
-        result.add(totalsCalculated);
         return result.build();
     }
 
+    /**
+     * Places an order of a group registration, priced together with the other orders of the group.
+     */
+    @Assign
+    public List<Message> handle(PlaceGroupOrder command, CommandContext context) {
+        validateCommand(command);
+        checkState(getVersion() == 0, "The order of a group registration already exists, ID: %s",
+                   command.getOrderId()
+                          .getUuid());
+
+        final OrderPlaced placed = EventFactory.orderPlaced(command);
+        final OrderTotalsCalculated totalsCalculated =
+                EventFactory.orderTotalsCalculated(command.getOrderId(), command.getConferenceId(),
+                                                   command.getTotal(), "", null);
+        return ImmutableList.<Message>of(placed, totalsCalculated);
+    }
+
     @Assign
     public List<Message> handle(MarkSeatsAsReserved command, CommandContext context) {
         checkNotConfirmed(getState(), command);
         validateCommand(command);
 
         final ImmutableList.Builder<Message> result = ImmutableList.builder();
+        final Order state = getState();
         final List<SeatQuantity> reservedSeats = command.getSeatList();
+        final List<SeatQuantity> waitlistedSeats = findWaitlistedSeats(findRequestedSeats(state), reservedSeats);
 
-        if (isOrderPartiallyReserved(reservedSeats)) {
-            final OrderPartiallyReserved partiallyReserved = EventFactory.orderPartiallyReserved(command);
+        final boolean isPartiallyReserved = !waitlistedSeats.isEmpty();
+        if (isPartiallyReserved) {
+            final OrderPartiallyReserved partiallyReserved =
+                    EventFactory.orderPartiallyReserved(command, state.getConferenceId(), waitlistedSeats);
             result.add(partiallyReserved);
-
-            final OrderTotalsCalculated newTotalsCalculated = buildOrderTotalsCalculated(command.getOrderId(),
-                    getState().getConferenceId(), command.getSeatList());
-            result.add(newTotalsCalculated);
         } else {
             final OrderReservationCompleted reservationCompleted = EventFactory.orderReservationCompleted(command);
             result.add(reservationCompleted);
         }
+        // The seats are repriced if the reservation differs from the order, e.g. if waitlisted seats are reserved.
+        if (isPartiallyReserved || !reservedSeats.equals(state.getSeatList())) {
+            final OrderTotalsCalculated newTotalsCalculated = reprice(command.getOrderId(),
+                    state.getConferenceId(), reservedSeats, getPricingTime(getCurrentTime()),
+                    state.getRequestedPromoCode());
+            if (newTotalsCalculated != null) {
+                result.add(newTotalsCalculated);
+            }
+        }
         return result.build();
     }
 
@@ -183,46 +255,56 @@ public class OrderAggregate extends AbstractLobbyAggregate<OrderId, Order, Order
     /* Event Appliers */
 
     @Apply
-    private void apply(OrderPlaced event) {
+    /* package */ void apply(OrderPlaced event) {
         getBuilder()
                 .setId(event.getOrderId())
                 .setConferenceId(event.getConferenceId())
-                .addAllSeat(event.getSeatList());
+                .addAllSeat(event.getSeatList())
+                .setPlacedTime(event.getPlacedTime())
+                .setPriceLockExpiration(event.getReservationAutoExpiration());
     }
 
     @Apply
-    private void apply(OrderUpdated event) {
+    /* package */ void apply(OrderUpdated event) {
         updateSeats(event.getSeatList());
+        getBuilder().clearWaitlistedSeat();
     }
 
     @Apply
-    private void apply(OrderPartiallyReserved event) {
+    /* package */ void apply(OrderPartiallyReserved event) {
         updateSeats(event.getSeatList());
+        getBuilder().clearWaitlistedSeat()
+                    .addAllWaitlistedSeat(event.getWaitlistedSeatList());
     }
 
     @Apply
-    private void apply(OrderReservationCompleted event) {
+    /* package */ void apply(OrderReservationCompleted event) {
         updateSeats(event.getSeatList());
+        getBuilder().clearWaitlistedSeat();
     }
 
     @Apply
-    private void apply(OrderTotalsCalculated event) {
+    /* package */ void apply(OrderTotalsCalculated event) {
         final Money price = event.getTotal();
-        getBuilder().setPrice(price);
+        getBuilder().setPrice(price)
+                    .clearOrderLine()
+                    .addAllOrderLine(event.getOrderLineList())
+                    .setPromoCode(event.getPromoCode())
+                    .setRequestedPromoCode(event.getRequestedPromoCode());
     }
 
     @Apply
-    private void apply(OrderExpired event) {
+    /* package */ void apply(OrderExpired event) {
         getBuilder().setIsExpired(true);
     }
 
     @Apply
-    private void apply(OrderRegistrantAssigned event) {
+    /* package */ void apply(OrderRegistrantAssigned event) {
         getBuilder().setRegistrant(event.getPersonalInfo());
     }
 
     @Apply
-    private void apply(OrderConfirmed event) {
+    /* package */ void apply(OrderConfirmed event) {
         getBuilder().setIsConfirmed(true);
     }
 
@@ -231,32 +313,38 @@ public class OrderAggregate extends AbstractLobbyAggregate<OrderId, Order, Order
                     .addAllSeat(newSeats);
     }
 
-    private boolean isOrderPartiallyReserved(final List<SeatQuantity> reservedSeats) {
-        final List<SeatQuantity> requestedSeats = getState().getSeatList();
-        if (reservedSeats.size() < requestedSeats.size()) {
-            return true;
+    /**
+     * Returns the seats requested by the order: the reserved ones and the ones awaited on the waitlist.
+     */
+    private static List<SeatQuantity> findRequestedSeats(Order order) {
+        final List<SeatQuantity> result = newArrayList(order.getSeatList());
+        for (SeatQuantity waitlistedOne : order.getWaitlistedSeatList()) {
+            final SeatTypeId seatTypeId = waitlistedOne.getSeatTypeId();
+            final SeatQuantity reservedOne = Seats.findById(result, seatTypeId, null);
+            if (reservedOne != null) {
+                final int quantity = reservedOne.getQuantity() + waitlistedOne.getQuantity();
+                result.set(result.indexOf(reservedOne), newSeatQuantity(seatTypeId, quantity));
+            } else {
+                result.add(waitlistedOne);
+            }
         }
-        final Collection<SeatQuantity> partlyReservedSeats = findPartlyReservedSeats(requestedSeats, reservedSeats);
-        final boolean isPartlyReserved = partlyReservedSeats.size() > 0;
-        return isPartlyReserved;
+        return result;
     }
 
-    private static Collection<SeatQuantity> findPartlyReservedSeats(final List<SeatQuantity> requestedSeats,
-                                                                    final List<SeatQuantity> reservedSeats) {
-        final Collection<SeatQuantity> result = filter(requestedSeats, new Predicate<SeatQuantity>() {
-            @Override
-            public boolean apply(@Nullable SeatQuantity requestedOne) {
-                if (requestedOne == null) {
-                    return false;
-                }
-                final SeatQuantity reservedOne = Seats.findById(reservedSeats, requestedOne.getSeatTypeId(), null);
-                if (reservedOne == null) {
-                    return false;
-                }
-                final boolean isPartlyReserved = reservedOne.getQuantity() < requestedOne.getQuantity();
-                return isPartlyReserved;
+    /**
+     * Returns the quantities of the requested seats which are not reserved.
+     */
+    private static List<SeatQuantity> findWaitlistedSeats(Iterable<SeatQuantity> requestedSeats,
+                                                          List<SeatQuantity> reservedSeats) {
+        final List<SeatQuantity> result = newArrayList();
+        for (SeatQuantity requestedOne : requestedSeats) {
+            final SeatTypeId seatTypeId = requestedOne.getSeatTypeId();
+            final SeatQuantity reservedOne = Seats.findById(reservedSeats, seatTypeId);
+            final int missingQuantity = requestedOne.getQuantity() - reservedOne.getQuantity();
+            if (missingQuantity > 0) {
+                result.add(newSeatQuantity(seatTypeId, missingQuantity));
             }
-        });
+        }
         return result;
     }
 
@@ -269,19 +357,133 @@ public class OrderAggregate extends AbstractLobbyAggregate<OrderId, Order, Order
         }
     }
 
-    private OrderTotalsCalculated buildOrderTotalsCalculated(OrderId orderId, ConferenceId conferenceId, List<SeatQuantity> seats) {
-        final OrderTotal total = pricingService.calculateTotalOrderPrice(conferenceId, seats);
-        return EventFactory.orderTotalsCalculated(orderId, total);
+    private void checkAdmitted(RegisterToConference command) {
+        if (admissionControl == null) {
+            return;
+        }
+        final AdmissionTicket ticket = command.getAdmissionTicket();
+        final boolean isAdmitted = ticket.getConferenceId()
+                                         .equals(command.getConferenceId())
+                && admissionControl.admit(ticket, command.getOrderId());
+        checkState(isAdmitted, "The registrant is not admitted to the conference yet, order ID: %s",
+                   command.getOrderId()
+                          .getUuid());
+    }
+
+    /**
+     * Returns the time as of which the seats of the order are priced.
+     *
+     * <p>The prices in effect when the order is placed are locked in until the reservation auto expiration.
+     * After that, the current prices apply.
+     */
+    private Timestamp getPricingTime(Timestamp now) {
+        final Order state = getState();
+        final boolean isPriceLocked = state.hasPlacedTime() && isLaterThan(state.getPriceLockExpiration(), now);
+        final Timestamp result = isPriceLocked ? state.getPlacedTime() : now;
+        return result;
+    }
+
+    /**
+     * Prices the seats of the order, reusing the priced lines of the seat types whose quantity and unit price
+     * are not changed, and applies the promo code.
+     *
+     * <p>The unit prices are obtained once, and the changed lines are priced with them.
+     *
+     * <p>A line is repriced if the unit price of its seat type as of the pricing time differs from the price
+     * the line was priced at, e.g. if the conference changed the price or an early bird period ended.
+     *
+     * @return the event with the new totals, or {@code null} if the seats and the requested promo code
+     *         are the same as already priced
+     */
+    @Nullable
+    private OrderTotalsCalculated reprice(OrderId orderId,
+                                          ConferenceId conferenceId,
+                                          List<SeatQuantity> seats,
+                                          Timestamp pricingTime,
+                                          String promoCode) {
+        final Map<SeatTypeId, SeatOrderLine> pricedLines = newHashMap();
+        for (SeatOrderLine line : getState().getOrderLineList()) {
+            pricedLines.put(line.getSeatTypeId(), line);
+        }
+        final Map<SeatTypeId, Money> unitPrices = seats.isEmpty()
+                                                  ? Collections.<SeatTypeId, Money>emptyMap()
+                                                  : pricingService.getUnitPrices(conferenceId, pricingTime);
+        final List<SeatOrderLine> unchangedLines = newArrayList();
+        final List<SeatQuantity> changedSeats = newArrayList();
+        for (SeatQuantity seat : seats) {
+            final SeatOrderLine line = pricedLines.get(seat.getSeatTypeId());
+            if (line != null && isPricedAt(line, seat, unitPrices)) {
+                unchangedLines.add(line);
+            } else {
+                changedSeats.add(seat);
+            }
+        }
+        final boolean isSeatTypeRemoved = unchangedLines.size() < pricedLines.size();
+        final String requestedPromoCode = Promotion.normalize(promoCode);
+        final boolean isPromoCodeChanged = !requestedPromoCode.equals(getState().getRequestedPromoCode());
+        if (changedSeats.isEmpty() && !isSeatTypeRemoved && !isPromoCodeChanged) {
+            return null;
+        }
+
+        final OrderTotal.Builder total = OrderTotal.newBuilder()
+                                                   .addAllOrderLine(unchangedLines);
+        final Money.Builder totalPrice = Money.newBuilder();
+        if (!changedSeats.isEmpty()) {
+            final OrderTotal changedTotal = OrderPricingServiceImpl.calculateTotalOrderPrice(conferenceId,
+                                                                                             changedSeats,
+                                                                                             unitPrices);
+            total.addAllOrderLine(changedTotal.getOrderLineList());
+            totalPrice.mergeFrom(changedTotal.getTotalPrice());
+        }
+        for (SeatOrderLine line : unchangedLines) {
+            if (line.hasLineTotal()) {
+                final Money lineTotal = line.getLineTotal();
+                totalPrice.setAmount(totalPrice.getAmount() + lineTotal.getAmount());
+                totalPrice.setCurrency(lineTotal.getCurrency());
+            }
+        }
+        total.setTotalPrice(totalPrice);
+        final OrderTotal orderTotal = total.build();
+        final Promotion promotion = (promotionService == null)
+                                    ? null
+                                    : promotionService.apply(orderId, conferenceId, requestedPromoCode);
+        return EventFactory.orderTotalsCalculated(orderId, conferenceId, orderTotal, requestedPromoCode, promotion);
+    }
+
+    private static boolean isPricedAt(SeatOrderLine line, SeatQuantity seat, Map<SeatTypeId, Money> unitPrices) {
+        final Money unitPrice = unitPrices.get(seat.getSeatTypeId());
+        final boolean result = line.getQuantity() == seat.getQuantity() &&
+                               line.getUnitPrice()
+                                   .equals(unitPrice);
+        return result;
     }
 
     private static class EventFactory {
 
-        private static OrderTotalsCalculated orderTotalsCalculated(OrderId orderId, OrderTotal total) {
+        private static OrderTotalsCalculated orderTotalsCalculated(OrderId orderId,
+                                                                   ConferenceId conferenceId,
+                                                                   OrderTotal total,
+                                                                   String requestedPromoCode,
+                                                                   @Nullable Promotion promotion) {
             final OrderTotalsCalculated.Builder result = OrderTotalsCalculated.newBuilder()
                                                                               .setOrderId(orderId)
+                                                                              .setConferenceId(conferenceId)
                                                                               .addAllOrderLine(total.getOrderLineList());
-
-            final Money totalPrice = total.getTotalPrice();
+            result.setRequestedPromoCode(requestedPromoCode);
+
+            Money totalPrice = total.getTotalPrice();
+            if (promotion != null) {
+                final long discountAmount = Math.min(promotion.getDiscount(total.getOrderLineList()),
+                                                     totalPrice.getAmount());
+                final Money discount = totalPrice.toBuilder()
+                                                 .setAmount(discountAmount)
+                                                 .build();
+                totalPrice = totalPrice.toBuilder()
+                                       .setAmount(totalPrice.getAmount() - discountAmount)
+                                       .build();
+                result.setPromoCode(promotion.getCode())
+                      .setDiscount(discount);
+            }
             if (totalPrice.getAmount() > 0) {
                 result.setTotal(totalPrice);
             } else {
@@ -290,20 +492,37 @@ public class OrderAggregate extends AbstractLobbyAggregate<OrderId, Order, Order
             return result.build();
         }
 
-        private static OrderPlaced orderPlaced(RegisterToConference command) {
-            final Timestamp expirationTime = add(getCurrentTime(), RESERVATION_EXPIRATION_PERIOD);
+        private static OrderPlaced orderPlaced(RegisterToConference command, Timestamp placedTime) {
+            final OrderPlaced.Builder result = newOrderPlaced(command.getOrderId(), command.getConferenceId(),
+                                                              command.getSeatList(), placedTime);
+            return result.build();
+        }
+
+        private static OrderPlaced orderPlaced(PlaceGroupOrder command) {
+            final OrderPlaced.Builder result = newOrderPlaced(command.getOrderId(), command.getConferenceId(),
+                                                              command.getSeatList(), command.getPlacedTime());
+            result.setGroupRegistrationId(command.getGroupRegistrationId());
+            return result.build();
+        }
+
+        private static OrderPlaced.Builder newOrderPlaced(OrderId orderId,
+                                                          ConferenceId conferenceId,
+                                                          Iterable<SeatQuantity> seats,
+                                                          Timestamp placedTime) {
+            final Timestamp expirationTime = add(placedTime, RESERVATION_EXPIRATION_PERIOD);
             final String code = RandomPasswordGenerator.generate(ACCESS_CODE_LENGTH);
             final OrderAccessCode accessCode = OrderAccessCode.newBuilder()
                                                               .setValue(code)
                                                               .build();
 
             final OrderPlaced.Builder result = OrderPlaced.newBuilder()
-                                                          .setOrderId(command.getOrderId())
-                                                          .setConferenceId(command.getConferenceId())
-                                                          .addAllSeat(command.getSeatList())
+                                                          .setOrderId(orderId)
+                                                          .setConferenceId(conferenceId)
+                                                          .addAllSeat(seats)
                                                           .setReservationAutoExpiration(expirationTime)
-                                                          .setAccessCode(accessCode);
-            return result.build();
+                                                          .setAccessCode(accessCode)
+                                                          .setPlacedTime(placedTime);
+            return result;
         }
 
         private static OrderUpdated orderUpdated(RegisterToConference command) {
@@ -313,11 +532,15 @@ public class OrderAggregate extends AbstractLobbyAggregate<OrderId, Order, Order
             return result.build();
         }
 
-        private static OrderPartiallyReserved orderPartiallyReserved(MarkSeatsAsReserved command) {
+        private static OrderPartiallyReserved orderPartiallyReserved(MarkSeatsAsReserved command,
+                                                                     ConferenceId conferenceId,
+                                                                     Iterable<SeatQuantity> waitlistedSeats) {
             final OrderPartiallyReserved.Builder result = OrderPartiallyReserved.newBuilder()
                                                                                 .setOrderId(command.getOrderId())
                                                                                 .setReservationExpiration(command.getReservationExpiration())
-                                                                                .addAllSeat(command.getSeatList());
+                                                                                .addAllSeat(command.getSeatList())
+                                                                                .setConferenceId(conferenceId)
+                                                                                .addAllWaitlistedSeat(waitlistedSeats);
             return result.build();
         }
 
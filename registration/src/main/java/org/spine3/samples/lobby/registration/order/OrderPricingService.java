@@ -20,10 +20,16 @@
 
 package org.spine3.samples.lobby.registration.order;
 
+import com.google.protobuf.Timestamp;
+import org.spine3.money.Money;
 import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.SeatTypeId;
 import org.spine3.samples.lobby.registration.contracts.OrderTotal;
 import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * The service which calculates prices of order seats.
  *
@@ -36,7 +42,29 @@ public interface OrderPricingService {
      *
      * @param conferenceId the ID of the conference to which the {@code seats} are related
      * @param seats        the seats to calculate the price for
+     * @param pricingTime  the time as of which the seat prices are taken
      * @return the total price of the seats
      */
-    OrderTotal calculateTotalOrderPrice(ConferenceId conferenceId, Iterable<SeatQuantity> seats);
+    OrderTotal calculateTotalOrderPrice(ConferenceId conferenceId, Iterable<SeatQuantity> seats, Timestamp pricingTime);
+
+    /**
+     * Calculates the prices of several orders of the conference in one pass.
+     *
+     * @param conferenceId the ID of the conference to which the orders are related
+     * @param orders       the seats of each order
+     * @param pricingTime  the time as of which the seat prices are taken
+     * @return the total prices of the orders, in the order of {@code orders}
+     */
+    List<OrderTotal> calculateTotalOrderPrices(ConferenceId conferenceId,
+                                               List<? extends Iterable<SeatQuantity>> orders,
+                                               Timestamp pricingTime);
+
+    /**
+     * Returns the unit prices of the seat types of the conference.
+     *
+     * @param conferenceId the ID of the conference
+     * @param pricingTime  the time as of which the seat prices are taken
+     * @return the unit prices by seat type IDs
+     */
+    Map<SeatTypeId, Money> getUnitPrices(ConferenceId conferenceId, Timestamp pricingTime);
 }
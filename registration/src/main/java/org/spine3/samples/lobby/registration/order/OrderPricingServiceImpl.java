@@ -20,9 +20,13 @@
 
 package org.spine3.samples.lobby.registration.order;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.Timestamp;
 import org.spine3.money.Money;
 import org.spine3.samples.lobby.common.ConferenceId;
-import org.spine3.samples.lobby.common.SeatType;
+import org.spine3.samples.lobby.common.SeatTypeId;
 import org.spine3.samples.lobby.registration.conference.ConferenceProjection;
 import org.spine3.samples.lobby.registration.conference.ConferenceProjectionRepository;
 import org.spine3.samples.lobby.registration.contracts.OrderTotal;
@@ -30,6 +34,10 @@ import org.spine3.samples.lobby.registration.contracts.SeatOrderLine;
 import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
 
 import java.util.List;
+import java.util.Map;
+
+import static com.google.protobuf.util.TimeUtil.toMillis;
+import static java.util.Collections.singletonList;
 
 /**
  * The implementation of the service which calculates prices of order seats.
@@ -38,8 +46,24 @@ import java.util.List;
  */
 public class OrderPricingServiceImpl implements OrderPricingService {
 
+    /**
+     * The maximum number of conferences whose compiled prices are kept.
+     */
+    /* package */ static final int MAX_CACHED_CONFERENCE_COUNT = 1_000;
+
     private final ConferenceProjectionRepository conferenceRepository;
 
+    /**
+     * The compiled prices of recently priced conferences.
+     *
+     * <p>The prices are recompiled when the conference projection changes. The least recently used conferences
+     * are evicted, so the prices of unpublished or past conferences are not kept forever.
+     */
+    private final Cache<ConferenceId, ConferencePrices> conferencePrices =
+            CacheBuilder.newBuilder()
+                        .maximumSize(MAX_CACHED_CONFERENCE_COUNT)
+                        .build();
+
     /**
      * Creates a new pricing service instance.
      *
@@ -50,13 +74,42 @@ public class OrderPricingServiceImpl implements OrderPricingService {
     }
 
     @Override
-    public OrderTotal calculateTotalOrderPrice(ConferenceId conferenceId, Iterable<SeatQuantity> seats) {
+    public OrderTotal calculateTotalOrderPrice(ConferenceId conferenceId,
+                                               Iterable<SeatQuantity> seats,
+                                               Timestamp pricingTime) {
+        final List<OrderTotal> result = calculateTotalOrderPrices(conferenceId, singletonList(seats), pricingTime);
+        return result.get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The conference is loaded and the unit price of each of its seat types is resolved once for all the orders.
+     */
+    @Override
+    public List<OrderTotal> calculateTotalOrderPrices(ConferenceId conferenceId,
+                                                      List<? extends Iterable<SeatQuantity>> orders,
+                                                      Timestamp pricingTime) {
+        final Map<SeatTypeId, Money> unitPrices = getUnitPrices(conferenceId, pricingTime);
+        final ImmutableList.Builder<OrderTotal> result = ImmutableList.builder();
+        for (Iterable<SeatQuantity> seats : orders) {
+            result.add(calculateTotalOrderPrice(conferenceId, seats, unitPrices));
+        }
+        return result.build();
+    }
+
+    /**
+     * Prices the seats with the given unit prices.
+     *
+     * @throws IllegalArgumentException if there is no unit price for a seat type
+     */
+    /* package */ static OrderTotal calculateTotalOrderPrice(ConferenceId conferenceId,
+                                                             Iterable<SeatQuantity> seats,
+                                                             Map<SeatTypeId, Money> unitPrices) {
         final OrderTotal.Builder result = OrderTotal.newBuilder();
         final Money.Builder totalPrice = Money.newBuilder();
-        final List<SeatType> seatTypes = getSeatTypes(conferenceId);
-
         for (SeatQuantity seat : seats) {
-            final SeatOrderLine line = buildOrderLine(seat, seatTypes);
+            final SeatOrderLine line = buildOrderLine(seat, unitPrices);
             checkOrderLine(line, conferenceId, seat);
             result.addOrderLine(line);
             if (line.hasLineTotal()) {
@@ -78,33 +131,47 @@ public class OrderPricingServiceImpl implements OrderPricingService {
         }
     }
 
-    @SuppressWarnings("TypeMayBeWeakened")
-    private static SeatOrderLine buildOrderLine(SeatQuantity seat, Iterable<SeatType> seatTypes) {
-        for (SeatType seatType : seatTypes) {
-            if (seat.getSeatTypeId()
-                    .equals(seatType.getId())) {
-                final Money unitPrice = seatType.getPrice();
-                final int quantity = seat.getQuantity();
-                final long totalAmount = unitPrice.getAmount() * quantity;
-                final Money totalPrice = Money.newBuilder()
-                                              .setAmount(totalAmount)
-                                              .build();
-                final SeatOrderLine orderLine = SeatOrderLine.newBuilder()
-                                                             .setQuantity(quantity)
-                                                             .setSeatTypeId(seat.getSeatTypeId())
-                                                             .setUnitPrice(unitPrice)
-                                                             .setLineTotal(totalPrice)
-                                                             .build();
-                return orderLine;
-            }
+    private static SeatOrderLine buildOrderLine(SeatQuantity seat, Map<SeatTypeId, Money> unitPrices) {
+        final Money unitPrice = unitPrices.get(seat.getSeatTypeId());
+        if (unitPrice == null) {
+            return SeatOrderLine.getDefaultInstance();
         }
-        return SeatOrderLine.getDefaultInstance();
+        final int quantity = seat.getQuantity();
+        final long totalAmount = unitPrice.getAmount() * quantity;
+        final Money totalPrice = unitPrice.toBuilder()
+                                          .setAmount(totalAmount)
+                                          .build();
+        final SeatOrderLine orderLine = SeatOrderLine.newBuilder()
+                                                     .setQuantity(quantity)
+                                                     .setSeatTypeId(seat.getSeatTypeId())
+                                                     .setUnitPrice(unitPrice)
+                                                     .setLineTotal(totalPrice)
+                                                     .build();
+        return orderLine;
     }
 
-    private List<SeatType> getSeatTypes(ConferenceId conferenceId) {
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The conference projection is loaded to check its version. The returned map is immutable and is shared
+     * by the calls for the same version of the conference as long as the prices in effect do not change.
+     */
+    @Override
+    public Map<SeatTypeId, Money> getUnitPrices(ConferenceId conferenceId, Timestamp pricingTime) {
         final ConferenceProjection conference = conferenceRepository.load(conferenceId);
-        final List<SeatType> seatTypes = conference.getState()
-                                                   .getSeatTypeList();
-        return seatTypes;
+        final ConferencePrices prices = getConferencePrices(conferenceId, conference);
+        final Map<SeatTypeId, Money> result = prices.getUnitPrices(toMillis(pricingTime));
+        return result;
+    }
+
+    private ConferencePrices getConferencePrices(ConferenceId conferenceId, ConferenceProjection conference) {
+        final int conferenceVersion = conference.getVersion();
+        final ConferencePrices prices = conferencePrices.getIfPresent(conferenceId);
+        if (prices != null && prices.isCompiledAt(conferenceVersion)) {
+            return prices;
+        }
+        final ConferencePrices compiled = ConferencePrices.compile(conference.getState(), conferenceVersion);
+        conferencePrices.put(conferenceId, compiled);
+        return compiled;
     }
 }
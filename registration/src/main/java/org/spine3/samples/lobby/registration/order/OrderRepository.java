@@ -20,35 +20,339 @@
 
 package org.spine3.samples.lobby.registration.order;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spine3.base.Command;
+import org.spine3.base.CommandContext;
+import org.spine3.base.Commands;
+import org.spine3.protobuf.AnyPacker;
 import org.spine3.samples.lobby.common.OrderId;
+import org.spine3.samples.lobby.common.ReservationId;
+import org.spine3.samples.lobby.common.util.aggregate.OptimisticAggregateRepository;
+import org.spine3.samples.lobby.common.util.idempotency.ProcessedKeySet;
+import org.spine3.samples.lobby.registration.admission.AdmissionControl;
+import org.spine3.samples.lobby.registration.admission.AdmissionTicket;
+import org.spine3.samples.lobby.registration.archive.ArchivedAggregates;
+import org.spine3.samples.lobby.registration.contracts.OrderTotal;
+import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
+import org.spine3.samples.lobby.registration.promotion.PromotionService;
+import org.spine3.samples.lobby.registration.seat.availability.MakeGroupSeatReservation;
+import org.spine3.samples.lobby.registration.seat.availability.MakeSeatReservation;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailabilityRepository;
 import org.spine3.server.BoundedContext;
-import org.spine3.server.aggregate.AggregateRepository;
+import org.spine3.server.type.CommandClass;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+import static com.google.common.collect.Maps.newHashMap;
+import static com.google.protobuf.util.TimeUtil.getCurrentTime;
+import static org.spine3.samples.lobby.common.util.CommandContexts.newChildContext;
+import static org.spine3.samples.lobby.registration.order.OrderValidator.validateCommand;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatsAvailabilityId;
 
 /**
  * The repository for order aggregates.
  *
+ * <p>Concurrent commands to an order are committed optimistically and retried on conflicts.
+ *
+ * <p>Archived orders are read-only: they are restored from the cold store on load and reject commands.
+ *
  * @author Alexander Litus
  * @see OrderAggregate
  */
-public class OrderRepository extends AggregateRepository<OrderId, OrderAggregate> {
+public class OrderRepository extends OptimisticAggregateRepository<OrderId, OrderAggregate> {
+
+    private static final String GROUP_RESERVATION_KEY = "seat-reservation";
 
     private final OrderPricingService orderPricingService;
+    private final SeatsAvailabilityRepository seatsAvailabilityRepository;
+
+    @Nullable
+    private final AdmissionControl admissionControl;
+
+    @Nullable
+    private final ProcessedKeySet processedCommands;
+
+    @Nullable
+    private final PromotionService promotionService;
+
+    @Nullable
+    private final ArchivedAggregates archivedOrders;
+
+    private OrderRepository(Builder builder) {
+        super(builder.boundedContext);
+        this.orderPricingService = builder.orderPricingService;
+        this.seatsAvailabilityRepository = builder.seatsAvailabilityRepository;
+        this.admissionControl = builder.admissionControl;
+        this.processedCommands = builder.processedCommands;
+        this.promotionService = builder.promotionService;
+        this.archivedOrders = builder.archivedOrders;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the classes of commands handled by order aggregates and {@link RegisterGroupToConference}.
+     */
+    @Override
+    public Set<CommandClass> getCommandClasses() {
+        final Set<CommandClass> result = ImmutableSet.<CommandClass>builder()
+                                                     .addAll(super.getCommandClasses())
+                                                     .add(CommandClass.of(RegisterGroupToConference.class))
+                                                     .build();
+        return result;
+    }
+
+    /**
+     * Dispatches the command to an order aggregate unless it is a retry of a processed {@link RegisterToConference}
+     * or {@link RegisterGroupToConference}.
+     *
+     * <p>A retry is acknowledged without loading the aggregate, as the order already reflects the outcome
+     * of the original command. The key of the command is reserved before dispatching, so that a retry
+     * delivered concurrently with the original command is skipped as well. The key is released if the command
+     * fails, so that a retry of a failed command is handled again.
+     *
+     * <p>A {@link RegisterGroupToConference} command is split into orders of the group. Its key is reserved
+     * per group registration, and the key of each order is derived from it. So a retry of a group which failed
+     * in part skips the orders already placed and places only the rest.
+     *
+     * @throws IllegalStateException if the command is sent to an archived order
+     * @see #dispatchGroup(RegisterGroupToConference, String, CommandContext)
+     */
+    @Override
+    public void dispatch(Command command) throws IllegalStateException {
+        if (archivedOrders != null) {
+            archivedOrders.checkNotArchived(command);
+        }
+        final Message message = AnyPacker.unpack(command.getMessage());
+        if (message instanceof RegisterGroupToConference) {
+            final RegisterGroupToConference group = (RegisterGroupToConference) message;
+            final String groupKey = group.getGroupRegistrationId()
+                                         .getUuid();
+            final String idempotencyKey = getIdempotencyKey(group.getIdempotencyKey(), command);
+            if (!markProcessed(groupKey, idempotencyKey)) {
+                return;
+            }
+            try {
+                dispatchGroup(group, idempotencyKey, command.getContext());
+            } catch (RuntimeException e) {
+                release(groupKey, idempotencyKey);
+                throw e;
+            }
+            return;
+        }
+        if (!(message instanceof RegisterToConference)) {
+            super.dispatch(command);
+            return;
+        }
+        final RegisterToConference registration = (RegisterToConference) message;
+        final String orderKey = registration.getOrderId()
+                                            .getUuid();
+        final String idempotencyKey = getIdempotencyKey(registration.getIdempotencyKey(), command);
+        if (!markProcessed(orderKey, idempotencyKey)) {
+            return;
+        }
+        try {
+            super.dispatch(command);
+        } catch (RuntimeException e) {
+            release(orderKey, idempotencyKey);
+            throw e;
+        }
+    }
+
+    private boolean markProcessed(String entityKey, String idempotencyKey) {
+        if (processedCommands == null) {
+            return true;
+        }
+        final boolean result = processedCommands.markProcessed(entityKey, idempotencyKey);
+        if (!result) {
+            log().debug("Skipping retried command with idempotency key: {}", idempotencyKey);
+        }
+        return result;
+    }
+
+    private void release(String entityKey, String idempotencyKey) {
+        if (processedCommands != null) {
+            processedCommands.release(entityKey, idempotencyKey);
+        }
+    }
+
+    /**
+     * Places all orders of the group registration and reserves their seats with one command.
+     *
+     * <p>The orders are priced together, so that unit prices of the conference are resolved once per group
+     * instead of once per order. Each order is then placed with a {@link PlaceGroupOrder} command and keeps
+     * its own registration process for expiration and payment. The seats of all placed orders are reserved
+     * by one {@link MakeGroupSeatReservation} command, which is handled by a single seats availability aggregate.
+     * Each command gets its own context with an ID derived from the ID of the group registration command.
+     *
+     * <p>An order is placed and its seats are reserved once per idempotency key of the group: a retry skips
+     * the orders placed by an earlier attempt, and reserves the seats of the orders whose reservation failed.
+     * Reserving the seats of an order again would add to its reservation. A retry is recognized by
+     * the {@linkplain RegisterGroupToConference#getIdempotencyKey() idempotency key} of the group,
+     * so that a client retrying a group must set the key.
+     *
+     * <p>An order which fails to be placed does not prevent placing the others, but its seats are not reserved.
+     *
+     * @throws IllegalStateException if the registrant is not admitted, any order of the group is not placed,
+     *                               or the seats of the placed orders are not reserved
+     */
+    private void dispatchGroup(RegisterGroupToConference group, String idempotencyKey, CommandContext context) {
+        validateCommand(group);
+        checkAdmitted(group);
+        final Timestamp placedTime = getCurrentTime();
+        final List<GroupOrder> orders = group.getOrderList();
+        final List<List<SeatQuantity>> seats = newArrayListWithCapacity(orders.size());
+        for (GroupOrder order : orders) {
+            seats.add(order.getSeatList());
+        }
+        final List<OrderTotal> totals =
+                orderPricingService.calculateTotalOrderPrices(group.getConferenceId(), seats, placedTime);
+
+        final MakeGroupSeatReservation.Builder reservation =
+                MakeGroupSeatReservation.newBuilder()
+                                        .setSeatsAvailabilityId(newSeatsAvailabilityId(group.getConferenceId()))
+                                        .setConferenceId(group.getConferenceId());
+        final Map<String, String> reservationKeys = newHashMap();
+        int failedCount = 0;
+        for (int i = 0; i < orders.size(); i++) {
+            final GroupOrder order = orders.get(i);
+            final String orderKey = order.getOrderId()
+                                         .getUuid();
+            final String orderIdempotencyKey = idempotencyKey + '/' + orderKey;
+            if (markProcessed(orderKey, orderIdempotencyKey)) {
+                final PlaceGroupOrder placeOrder =
+                        PlaceGroupOrder.newBuilder()
+                                       .setOrderId(order.getOrderId())
+                                       .setConferenceId(group.getConferenceId())
+                                       .addAllSeat(order.getSeatList())
+                                       .setGroupRegistrationId(group.getGroupRegistrationId())
+                                       .setTotal(totals.get(i))
+                                       .setPlacedTime(placedTime)
+                                       .build();
+                try {
+                    super.dispatch(Commands.create(placeOrder, newChildContext(context, orderKey)));
+                } catch (RuntimeException e) {
+                    release(orderKey, orderIdempotencyKey);
+                    log().error("Failed to place the order of a group registration, ID: " + orderKey, e);
+                    failedCount++;
+                    continue;
+                }
+            }
+            final String reservationKey = orderIdempotencyKey + '/' + GROUP_RESERVATION_KEY;
+            if (markProcessed(orderKey, reservationKey)) {
+                reservationKeys.put(orderKey, reservationKey);
+                reservation.addReservation(newSeatReservation(group, order));
+            }
+        }
+
+        if (reservation.getReservationCount() > 0) {
+            try {
+                reserveSeats(group, reservation.build(), context);
+            } catch (RuntimeException e) {
+                for (Map.Entry<String, String> key : reservationKeys.entrySet()) {
+                    release(key.getKey(), key.getValue());
+                }
+                throw e;
+            }
+        }
+        if (failedCount > 0) {
+            throw new IllegalStateException(failedCount + " orders of the group registration are not placed, ID: " +
+                                            group.getGroupRegistrationId()
+                                                 .getUuid());
+        }
+    }
+
+    private static MakeSeatReservation newSeatReservation(RegisterGroupToConference group, GroupOrder order) {
+        final ReservationId reservationId = ReservationId.newBuilder()
+                                                         .setUuid(order.getOrderId()
+                                                                       .getUuid())
+                                                         .build();
+        final MakeSeatReservation result = MakeSeatReservation.newBuilder()
+                                                              .setConferenceId(group.getConferenceId())
+                                                              .setReservationId(reservationId)
+                                                              .addAllSeat(order.getSeatList())
+                                                              .build();
+        return result;
+    }
+
+    /**
+     * Dispatches the reservation of the group seats to the seats availability repository directly
+     * rather than posting it to the command bus, which would only log a failure of the handler.
+     *
+     * @throws IllegalStateException if the seats are not reserved
+     */
+    private void reserveSeats(RegisterGroupToConference group,
+                              MakeGroupSeatReservation message,
+                              CommandContext groupContext) {
+        final Command command = Commands.create(message, newChildContext(groupContext, GROUP_RESERVATION_KEY));
+        try {
+            seatsAvailabilityRepository.dispatch(command);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Failed to reserve the seats of a group registration, ID: " +
+                                            group.getGroupRegistrationId()
+                                                 .getUuid(), e);
+        }
+    }
 
     /**
-     * Creates a new repository instance.
+     * Checks that the registrant is admitted to register the group.
      *
-     * @param boundedContext      the bounded context to which this repository belongs
-     * @param orderPricingService the pricing service to inject to order aggregates
+     * <p>The ticket of the group is bound to the first order of the group, so that it admits a retry
+     * of the same group registration, but not another registration.
      */
-    public OrderRepository(BoundedContext boundedContext, OrderPricingService orderPricingService) {
-        super(boundedContext);
-        this.orderPricingService = orderPricingService;
+    private void checkAdmitted(RegisterGroupToConference group) {
+        if (admissionControl == null) {
+            return;
+        }
+        final AdmissionTicket ticket = group.getAdmissionTicket();
+        final OrderId firstOrderId = group.getOrder(0)
+                                          .getOrderId();
+        final boolean isAdmitted = ticket.getConferenceId()
+                                         .equals(group.getConferenceId())
+                && admissionControl.admit(ticket, firstOrderId);
+        checkState(isAdmitted, "The registrant is not admitted to the conference yet, group registration ID: %s",
+                   group.getGroupRegistrationId()
+                        .getUuid());
+    }
+
+    private static String getIdempotencyKey(String clientKey, Command command) {
+        if (!clientKey.isEmpty()) {
+            return clientKey;
+        }
+        final String result = command.getContext()
+                                     .getCommandId()
+                                     .getUuid();
+        return result;
     }
 
     /**
-     * Loads an aggregate by an ID and injects required services to it.
+     * Returns {@code true}, as the order command handlers have no side effects which a retry repeats.
+     *
+     * <p>The pricing service only looks prices up. The promotion service and the admission control
+     * act once per order: a promo code applied again for the same order takes no more redemptions,
+     * and a ticket is accepted again for the same order.
+     */
+    @Override
+    protected boolean isRetrySafe(Command command) {
+        return true;
+    }
+
+    /**
+     * Loads an aggregate by an ID, restoring it from the cold store if it is archived,
+     * and injects required services to it.
      *
      * @param id id of the aggregate to load
      * @return the loaded object
@@ -58,7 +362,124 @@ public class OrderRepository extends AggregateRepository<OrderId, OrderAggregate
     @Override
     public OrderAggregate load(OrderId id) throws IllegalStateException {
         final OrderAggregate order = super.load(id);
+        if (archivedOrders != null) {
+            archivedOrders.restore(order);
+        }
         order.setOrderPricingService(orderPricingService);
+        order.setAdmissionControl(admissionControl);
+        order.setPromotionService(promotionService);
         return order;
     }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+        @SuppressWarnings("NonSerializableFieldInSerializableClass")
+        private final Logger value = LoggerFactory.getLogger(OrderRepository.class);
+    }
+
+    /**
+     * The builder of {@link OrderRepository} instances.
+     */
+    public static class Builder {
+
+        private BoundedContext boundedContext;
+        private OrderPricingService orderPricingService;
+        private SeatsAvailabilityRepository seatsAvailabilityRepository;
+
+        @Nullable
+        private AdmissionControl admissionControl;
+
+        @Nullable
+        private ProcessedKeySet processedCommands;
+
+        @Nullable
+        private PromotionService promotionService;
+
+        @Nullable
+        private ArchivedAggregates archivedOrders;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the bounded context to which the repository belongs.
+         */
+        public Builder setBoundedContext(BoundedContext boundedContext) {
+            this.boundedContext = checkNotNull(boundedContext);
+            return this;
+        }
+
+        /**
+         * Sets the pricing service to inject to order aggregates.
+         */
+        public Builder setOrderPricingService(OrderPricingService orderPricingService) {
+            this.orderPricingService = checkNotNull(orderPricingService);
+            return this;
+        }
+
+        /**
+         * Sets the repository which reserves the seats of group registrations.
+         */
+        public Builder setSeatsAvailabilityRepository(SeatsAvailabilityRepository seatsAvailabilityRepository) {
+            this.seatsAvailabilityRepository = checkNotNull(seatsAvailabilityRepository);
+            return this;
+        }
+
+        /**
+         * Sets the admission control which admits registrants to placing orders.
+         *
+         * <p>If not set, all registrants are admitted.
+         */
+        public Builder setAdmissionControl(@Nullable AdmissionControl admissionControl) {
+            this.admissionControl = admissionControl;
+            return this;
+        }
+
+        /**
+         * Sets the keys of the processed commands, which are used to skip retried {@link RegisterToConference}
+         * commands.
+         *
+         * <p>A command is a retry if a command with the same {@linkplain RegisterToConference#getIdempotencyKey()
+         * idempotency key} (or the same command ID, if the key is not set) was dispatched to the same order
+         * within the retention period of the key set.
+         *
+         * <p>If not set, retried commands are handled again.
+         */
+        public Builder setProcessedCommands(@Nullable ProcessedKeySet processedCommands) {
+            this.processedCommands = processedCommands;
+            return this;
+        }
+
+        /**
+         * Sets the promotion service which applies promo codes to orders.
+         *
+         * <p>The service must be subscribed to the event bus of the bounded context to count redemptions.
+         * If not set, promo codes are ignored.
+         */
+        public Builder setPromotionService(@Nullable PromotionService promotionService) {
+            this.promotionService = promotionService;
+            return this;
+        }
+
+        /**
+         * Sets the orders moved to the cold store.
+         *
+         * <p>If not set, orders are loaded from the hot storage only.
+         */
+        public Builder setArchivedOrders(@Nullable ArchivedAggregates archivedOrders) {
+            this.archivedOrders = archivedOrders;
+            return this;
+        }
+
+        public OrderRepository build() {
+            checkState(boundedContext != null, "Bounded context must be set.");
+            checkState(orderPricingService != null, "Order pricing service must be set.");
+            checkState(seatsAvailabilityRepository != null, "Seats availability repository must be set.");
+            return new OrderRepository(this);
+        }
+    }
 }
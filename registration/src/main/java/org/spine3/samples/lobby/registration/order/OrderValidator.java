@@ -21,8 +21,13 @@
 package org.spine3.samples.lobby.registration.order;
 
 import com.google.protobuf.Message;
+import org.spine3.samples.lobby.common.OrderId;
 
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Sets.newHashSet;
 import static java.lang.String.format;
 import static org.spine3.samples.lobby.registration.util.ValidationUtils.*;
 
@@ -63,6 +68,31 @@ import static org.spine3.samples.lobby.registration.util.ValidationUtils.*;
         checkSeats(cmd.getSeatList(), cmd);
     }
 
+    /* package */
+    static void validateCommand(PlaceGroupOrder cmd) {
+        checkOrderId(cmd.hasOrderId(), cmd);
+        checkConferenceId(cmd.hasConferenceId(), cmd);
+        checkSeats(cmd.getSeatList(), cmd);
+        checkMessageField(cmd.hasGroupRegistrationId(), "group registration ID", cmd);
+        checkMessageField(cmd.hasTotal(), "total", cmd);
+        checkMessageField(cmd.hasPlacedTime(), "placed time", cmd);
+    }
+
+    /* package */
+    static void validateCommand(RegisterGroupToConference cmd) {
+        checkMessageField(cmd.hasGroupRegistrationId(), "group registration ID", cmd);
+        checkConferenceId(cmd.hasConferenceId(), cmd);
+        checkMessageField(cmd.getOrderCount() > 0, "orders", cmd);
+        final Set<OrderId> orderIds = newHashSet();
+        for (GroupOrder order : cmd.getOrderList()) {
+            checkOrderId(order.hasOrderId(), order);
+            checkSeats(order.getSeatList(), order);
+            checkArgument(orderIds.add(order.getOrderId()), "Duplicate order ID in a group registration: %s",
+                          order.getOrderId()
+                               .getUuid());
+        }
+    }
+
     /* package */
     static void validateCommand(MarkSeatsAsReserved cmd) {
         checkOrderId(cmd.hasOrderId(), cmd);
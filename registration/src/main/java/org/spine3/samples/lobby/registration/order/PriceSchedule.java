@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.order;
+
+import com.google.common.collect.Ordering;
+import org.spine3.money.Money;
+import org.spine3.samples.lobby.common.PriceTier;
+import org.spine3.samples.lobby.common.SeatType;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.protobuf.util.TimeUtil.toMillis;
+
+/**
+ * The price schedule of a seat type compiled for lookups by time.
+ *
+ * <p>The {@linkplain SeatType#getPriceTierList() price tiers} are sorted by the effective time,
+ * so the price in effect at a given time is found by binary search without allocating objects.
+ *
+ * @author Alexander Litus
+ */
+/* package */ class PriceSchedule {
+
+    private static final Comparator<PriceTier> BY_EFFECTIVE_TIME = new Comparator<PriceTier>() {
+        @Override
+        public int compare(PriceTier first, PriceTier second) {
+            final long firstMillis = toMillis(first.getEffectiveFrom());
+            final long secondMillis = toMillis(second.getEffectiveFrom());
+            return Long.compare(firstMillis, secondMillis);
+        }
+    };
+
+    private final Money basePrice;
+
+    /**
+     * The version of the conference projection from which the schedule is compiled.
+     */
+    private final int conferenceVersion;
+
+    /**
+     * The times (in milliseconds) from which the {@link #tierPrices} are in effect, in ascending order.
+     */
+    private final long[] effectiveFromMillis;
+    private final Money[] tierPrices;
+
+    private PriceSchedule(SeatType seatType, int conferenceVersion) {
+        this.basePrice = seatType.getPrice();
+        this.conferenceVersion = conferenceVersion;
+        final List<PriceTier> sortedTiers = Ordering.from(BY_EFFECTIVE_TIME)
+                                                    .sortedCopy(seatType.getPriceTierList());
+        final int tierCount = sortedTiers.size();
+        this.effectiveFromMillis = new long[tierCount];
+        this.tierPrices = new Money[tierCount];
+        for (int i = 0; i < tierCount; i++) {
+            final PriceTier tier = sortedTiers.get(i);
+            effectiveFromMillis[i] = toMillis(tier.getEffectiveFrom());
+            tierPrices[i] = tier.getPrice();
+            checkArgument(i == 0 || effectiveFromMillis[i - 1] < effectiveFromMillis[i],
+                          "Price tiers of the seat type %s take effect at the same time.",
+                          seatType.getId()
+                                  .getUuid());
+        }
+    }
+
+    /**
+     * Compiles the price schedule of the seat type.
+     *
+     * @param seatType          the seat type to compile the schedule of
+     * @param conferenceVersion the version of the conference projection containing the seat type
+     * @throws IllegalArgumentException if several price tiers take effect at the same time
+     */
+    /* package */ static PriceSchedule compile(SeatType seatType, int conferenceVersion) {
+        return new PriceSchedule(seatType, conferenceVersion);
+    }
+
+    /**
+     * Returns {@code true} if the schedule is compiled from the conference projection of the given version.
+     *
+     * <p>The projection gets a new version on every change of its state, so comparing versions tells
+     * whether the prices changed without comparing the price tiers.
+     */
+    /* package */ boolean isCompiledAt(int conferenceVersion) {
+        final boolean result = this.conferenceVersion == conferenceVersion;
+        return result;
+    }
+
+    /**
+     * Returns the price in effect at the given time.
+     *
+     * @param timeMillis the time in milliseconds since the epoch
+     */
+    /* package */ Money getPrice(long timeMillis) {
+        final int tierIndex = getTierIndex(timeMillis);
+        final Money result = (tierIndex < 0) ? basePrice : tierPrices[tierIndex];
+        return result;
+    }
+
+    /**
+     * Returns the time from which the price in effect at the given time is in effect,
+     * or {@link Long#MIN_VALUE} for the base price.
+     *
+     * @param timeMillis the time in milliseconds since the epoch
+     */
+    /* package */ long getPriceEffectiveFrom(long timeMillis) {
+        final int tierIndex = getTierIndex(timeMillis);
+        final long result = (tierIndex < 0) ? Long.MIN_VALUE : effectiveFromMillis[tierIndex];
+        return result;
+    }
+
+    /**
+     * Returns the time at which the price in effect at the given time changes,
+     * or {@link Long#MAX_VALUE} if it is the price of the last tier.
+     *
+     * @param timeMillis the time in milliseconds since the epoch
+     */
+    /* package */ long getNextPriceChange(long timeMillis) {
+        final int nextTierIndex = getTierIndex(timeMillis) + 1;
+        final long result = (nextTierIndex < effectiveFromMillis.length)
+                            ? effectiveFromMillis[nextTierIndex]
+                            : Long.MAX_VALUE;
+        return result;
+    }
+
+    /**
+     * Returns the index of the last tier which takes effect not later than the given time,
+     * or {@code -1} if the base price is in effect.
+     */
+    private int getTierIndex(long timeMillis) {
+        final int index = Arrays.binarySearch(effectiveFromMillis, timeMillis);
+        final int result = (index >= 0) ? index : -index - 2;
+        return result;
+    }
+}
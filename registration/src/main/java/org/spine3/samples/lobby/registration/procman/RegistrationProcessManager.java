@@ -37,6 +37,7 @@ import org.spine3.samples.lobby.common.ConferenceId;
 import org.spine3.samples.lobby.common.OrderId;
 import org.spine3.samples.lobby.common.ReservationId;
 import org.spine3.samples.lobby.payment.contracts.PaymentCompleted;
+import org.spine3.samples.lobby.registration.command.PriorityCommandDispatcher;
 import org.spine3.samples.lobby.registration.contracts.OrderConfirmed;
 import org.spine3.samples.lobby.registration.contracts.OrderPlaced;
 import org.spine3.samples.lobby.registration.contracts.OrderUpdated;
@@ -48,18 +49,20 @@ import org.spine3.samples.lobby.registration.seat.availability.CancelSeatReserva
 import org.spine3.samples.lobby.registration.seat.availability.CommitSeatReservation;
 import org.spine3.samples.lobby.registration.seat.availability.MakeSeatReservation;
 import org.spine3.samples.lobby.registration.seat.availability.SeatsReserved;
+import org.spine3.samples.lobby.registration.seat.availability.WaitlistedSeatsReserved;
 import org.spine3.server.command.Assign;
 import org.spine3.server.event.Subscribe;
 import org.spine3.server.procman.CommandRouted;
 import org.spine3.server.procman.ProcessManager;
-import org.spine3.time.ZoneOffset;
-import org.spine3.users.TenantId;
-import org.spine3.users.UserId;
+
+import javax.annotation.Nullable;
 
 import static com.google.protobuf.util.TimeUtil.getCurrentTime;
 import static org.spine3.base.Commands.create;
 import static org.spine3.protobuf.Timestamps.isLaterThan;
+import static org.spine3.samples.lobby.common.util.CommandContexts.newCommandContext;
 import static org.spine3.samples.lobby.registration.procman.RegistrationProcess.State.*;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatsAvailabilityId;
 
 /**
  * A process manager for registration to conference process.
@@ -73,6 +76,9 @@ public class RegistrationProcessManager extends ProcessManager<ProcessManagerId,
 
     private CommandSender commandSender;
 
+    @Nullable
+    private PriorityCommandDispatcher commandDispatcher;
+
     /**
      * Creates a new instance.
      *
@@ -89,6 +95,16 @@ public class RegistrationProcessManager extends ProcessManager<ProcessManagerId,
         this.commandSender = commandSender;
     }
 
+    /**
+     * Sets the dispatcher through which commands are posted.
+     *
+     * <p>Delayed commands (e.g. {@link ExpireRegistrationProcess}) are held by the dispatcher
+     * and go through its lanes when due. If not set, commands are posted to the command bus directly.
+     */
+    /* package */ void setCommandDispatcher(@Nullable PriorityCommandDispatcher commandDispatcher) {
+        this.commandDispatcher = commandDispatcher;
+    }
+
     @Subscribe
     public void on(OrderPlaced event, EventContext context) throws IllegalProcessStateFailure {
         final RegistrationProcess.State state = getState().getProcessState();
@@ -102,7 +118,10 @@ public class RegistrationProcessManager extends ProcessManager<ProcessManagerId,
             commandSender.rejectOrder(event);
         } else {
             setProcessState(AWAITING_RESERVATION_CONFIRMATION);
-            commandSender.reserveSeats(event);
+            if (!event.hasGroupRegistrationId()) {
+                // Seats of a group registration are reserved for all orders of the group at once.
+                commandSender.reserveSeats(event);
+            }
             commandSender.expireRegistrationProcess(event, getId());
         }
     }
@@ -123,7 +142,20 @@ public class RegistrationProcessManager extends ProcessManager<ProcessManagerId,
         final RegistrationProcess state = getState();
         if (state.getProcessState() == AWAITING_RESERVATION_CONFIRMATION) {
             setProcessState(RESERVATION_CONFIRMED);
-            commandSender.markSeatsAsReserved(event, state);
+            commandSender.markSeatsAsReserved(event.getReservedSeatUpdatedList(), state);
+        } else {
+            throw newIllegalProcessStateFailure(event);
+        }
+    }
+
+    /**
+     * Marks the seats reserved for the waitlisted order later, when they are released.
+     */
+    @Subscribe
+    public void on(WaitlistedSeatsReserved event, EventContext context) throws IllegalProcessStateFailure {
+        final RegistrationProcess state = getState();
+        if (state.getProcessState() == RESERVATION_CONFIRMED) {
+            commandSender.markSeatsAsReserved(event.getReservedSeatUpdatedList(), state);
         } else {
             throw newIllegalProcessStateFailure(event);
         }
@@ -145,7 +177,7 @@ public class RegistrationProcessManager extends ProcessManager<ProcessManagerId,
         final RegistrationProcess.State state = getState().getProcessState();
         if (state == RESERVATION_CONFIRMED || state == PAYMENT_RECEIVED) {
             setIsCompleted(true);
-            commandSender.commitSeatReservation(event);
+            commandSender.commitSeatReservation(event, getState().getConferenceId());
         } else {
             throw newIllegalProcessStateFailure(event);
         }
@@ -224,6 +256,8 @@ public class RegistrationProcessManager extends ProcessManager<ProcessManagerId,
         private void reserveSeats(OrderId orderId, ConferenceId conferenceId, Iterable<SeatQuantity> seats) {
             final ReservationId reservationId = toReservationId(orderId);
             final MakeSeatReservation message = MakeSeatReservation.newBuilder()
+                                                                   .setSeatsAvailabilityId(
+                                                                           newSeatsAvailabilityId(conferenceId))
                                                                    .setConferenceId(conferenceId)
                                                                    .setReservationId(reservationId)
                                                                    .addAllSeat(seats)
@@ -231,11 +265,11 @@ public class RegistrationProcessManager extends ProcessManager<ProcessManagerId,
             send(message);
         }
 
-        private void markSeatsAsReserved(SeatsReserved event, RegistrationProcess state) {
+        private void markSeatsAsReserved(Iterable<SeatQuantity> reservedSeats, RegistrationProcess state) {
             final MarkSeatsAsReserved message = MarkSeatsAsReserved.newBuilder()
                                                                    .setOrderId(state.getOrderId())
                                                                    .setReservationExpiration(state.getReservationAutoExpiration())
-                                                                   .addAllSeat(event.getReservedSeatUpdatedList())
+                                                                   .addAllSeat(reservedSeats)
                                                                    .build();
             send(message);
         }
@@ -259,9 +293,11 @@ public class RegistrationProcessManager extends ProcessManager<ProcessManagerId,
             send(message);
         }
 
-        private void commitSeatReservation(OrderConfirmed event) {
+        private void commitSeatReservation(OrderConfirmed event, ConferenceId conferenceId) {
             final ReservationId reservationId = toReservationId(event.getOrderId());
             final CommitSeatReservation message = CommitSeatReservation.newBuilder()
+                                                                       .setSeatsAvailabilityId(
+                                                                               newSeatsAvailabilityId(conferenceId))
                                                                        .setReservationId(reservationId)
                                                                        .build();
             send(message);
@@ -277,6 +313,9 @@ public class RegistrationProcessManager extends ProcessManager<ProcessManagerId,
         private CancelSeatReservation newCancelSeatReservationCommand(RegistrationProcess state) {
             final ReservationId reservationId = toReservationId(state.getOrderId());
             final CancelSeatReservation message = CancelSeatReservation.newBuilder()
+                                                                       .setSeatsAvailabilityId(
+                                                                               newSeatsAvailabilityId(
+                                                                                       state.getConferenceId()))
                                                                        .setReservationId(reservationId)
                                                                        .setConferenceId(state.getConferenceId())
                                                                        .build();
@@ -290,34 +329,20 @@ public class RegistrationProcessManager extends ProcessManager<ProcessManagerId,
         }
 
         private void send(Message cmdMsg) {
-            // TODO:2016-02-29:alexander.litus: obtain user ID and zone offset
-            final CommandContext context = Commands.createContext(
-                    TenantId.getDefaultInstance(),
-                    UserId.getDefaultInstance(),
-                    ZoneOffset.getDefaultInstance());
+            final CommandContext context = newCommandContext();
             final Command cmd = create(cmdMsg, context);
             post(cmd);
         }
 
         private void send(Message cmdMsg, Duration delay) {
-            // TODO:2016-02-29:alexander.litus: obtain user ID and zone offset
-            final CommandContext.Schedule schedule = CommandContext.Schedule.newBuilder()
-                                                                            .setDelay(delay)
-                                                                            .build();
-            final CommandContext context = Commands.createContext(
-                    TenantId.getDefaultInstance(),
-                    UserId.getDefaultInstance(),
-                    ZoneOffset.getDefaultInstance())
-                                                   .toBuilder()
-                                                   .setSchedule(schedule)
-                                                   .build();
+            final CommandContext context = newCommandContext(delay);
             final Command cmd = create(cmdMsg, context);
             post(cmd);
         }
 
         @VisibleForTesting // otherwise it would be private
         protected void post(Command cmd) {
-            getCommandBus().post(cmd, new StreamObserver<Response>() {
+            final StreamObserver<Response> responseObserver = new StreamObserver<Response>() {
                 @Override
                 public void onNext(Response value) {
                 }
@@ -329,7 +354,12 @@ public class RegistrationProcessManager extends ProcessManager<ProcessManagerId,
                 @Override
                 public void onCompleted() {
                 }
-            });
+            };
+            if (commandDispatcher != null) {
+                commandDispatcher.post(cmd, responseObserver);
+            } else {
+                getCommandBus().post(cmd, responseObserver);
+            }
         }
     }
 
@@ -22,19 +22,28 @@ package org.spine3.samples.lobby.registration.procman;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.protobuf.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spine3.base.Event;
 import org.spine3.base.EventContext;
+import org.spine3.protobuf.AnyPacker;
 import org.spine3.samples.lobby.common.OrderId;
 import org.spine3.samples.lobby.common.ReservationId;
+import org.spine3.samples.lobby.common.util.idempotency.ProcessedKeySet;
 import org.spine3.samples.lobby.payment.contracts.PaymentCompleted;
+import org.spine3.samples.lobby.registration.command.PriorityCommandDispatcher;
 import org.spine3.samples.lobby.registration.contracts.OrderConfirmed;
 import org.spine3.samples.lobby.registration.contracts.OrderPlaced;
 import org.spine3.samples.lobby.registration.contracts.OrderUpdated;
 import org.spine3.samples.lobby.registration.seat.availability.SeatsReserved;
+import org.spine3.samples.lobby.registration.seat.availability.WaitlistedSeatsReserved;
 import org.spine3.server.BoundedContext;
 import org.spine3.server.entity.IdFunction;
 import org.spine3.server.procman.ProcessManagerRepository;
 import org.spine3.server.type.EventClass;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Map;
 
 /**
@@ -45,22 +54,110 @@ import java.util.Map;
 public class RegistrationProcessManagerRepository
         extends ProcessManagerRepository<ProcessManagerId, RegistrationProcessManager, RegistrationProcess> {
 
+    private static final String PAYMENT_COMPLETED_KEY = PaymentCompleted.getDescriptor()
+                                                                         .getFullName();
+
     private final Map<EventClass, IdFunction<ProcessManagerId, ? extends Message, EventContext>> idFromEventFunctions =
             ImmutableMap.<EventClass, IdFunction<ProcessManagerId, ? extends Message, EventContext>>builder()
                     .put(EventClass.of(OrderPlaced.class), new GetIdFromEventOrderPlaced())
                     .put(EventClass.of(OrderUpdated.class), new GetIdFromEventOrderUpdated())
                     .put(EventClass.of(SeatsReserved.class), new GetIdFromEventSeatsReserved())
+                    .put(EventClass.of(WaitlistedSeatsReserved.class), new GetIdFromEventWaitlistedSeatsReserved())
                     .put(EventClass.of(OrderConfirmed.class), new GetIdFromEventOrderConfirmed())
                     .put(EventClass.of(PaymentCompleted.class), new GetIdFromEventPaymentCompleted())
                     .build();
 
+    @Nullable
+    private final PriorityCommandDispatcher commandDispatcher;
+
+    @Nullable
+    private final ProcessedKeySet processedPayments;
+
     /**
      * Creates a new repository instance.
      *
      * @param boundedContext the bounded context to which this repository belongs
      */
-    protected RegistrationProcessManagerRepository(BoundedContext boundedContext) {
+    public RegistrationProcessManagerRepository(BoundedContext boundedContext) {
+        this(boundedContext, null);
+    }
+
+    /**
+     * Creates a new repository instance whose process managers post commands via the given dispatcher.
+     *
+     * @param boundedContext    the bounded context to which this repository belongs
+     * @param commandDispatcher the dispatcher to inject to process managers
+     */
+    public RegistrationProcessManagerRepository(BoundedContext boundedContext,
+                                                @Nullable PriorityCommandDispatcher commandDispatcher) {
+        this(boundedContext, commandDispatcher, null);
+    }
+
+    /**
+     * Creates a new repository instance which skips repeatedly delivered {@link PaymentCompleted} events.
+     *
+     * <p>The payment for an order is completed once, so any {@code PaymentCompleted} event for an order
+     * for which it was already dispatched within the retention period of the key set is a repeated delivery.
+     *
+     * @param boundedContext    the bounded context to which this repository belongs
+     * @param commandDispatcher the dispatcher to inject to process managers
+     * @param processedPayments the keys of the processed payments
+     */
+    public RegistrationProcessManagerRepository(BoundedContext boundedContext,
+                                                @Nullable PriorityCommandDispatcher commandDispatcher,
+                                                @Nullable ProcessedKeySet processedPayments) {
         super(boundedContext);
+        this.commandDispatcher = commandDispatcher;
+        this.processedPayments = processedPayments;
+    }
+
+    /**
+     * Dispatches the event to a process manager unless it is a repeated {@link PaymentCompleted}.
+     *
+     * <p>Skipping repeated payments avoids loading the process manager only to fail
+     * with {@link IllegalProcessStateFailure}. The payment is marked as processed before dispatching,
+     * so that a repeated delivery racing with the original one is skipped too, and released if dispatching fails.
+     */
+    @Override
+    public void dispatch(Event event) throws IllegalArgumentException {
+        final Message message = AnyPacker.unpack(event.getMessage());
+        if (processedPayments == null || !(message instanceof PaymentCompleted)) {
+            super.dispatch(event);
+            return;
+        }
+        final String orderKey = ((PaymentCompleted) message).getOrderId()
+                                                            .getUuid();
+        if (!processedPayments.markProcessed(orderKey, PAYMENT_COMPLETED_KEY)) {
+            log().debug("Skipping repeated payment completion, order ID: {}", orderKey);
+            return;
+        }
+        try {
+            super.dispatch(event);
+        } catch (RuntimeException e) {
+            processedPayments.release(orderKey, PAYMENT_COMPLETED_KEY);
+            throw e;
+        }
+    }
+
+    /**
+     * Loads a process manager by an ID and injects the command dispatcher to it.
+     *
+     * @param id id of the process manager to load
+     * @return the loaded object
+     */
+    @Nonnull
+    @Override
+    public RegistrationProcessManager load(ProcessManagerId id) {
+        final RegistrationProcessManager processManager = super.load(id);
+        processManager.setCommandDispatcher(commandDispatcher);
+        return processManager;
+    }
+
+    /**
+     * Returns the ID of the process manager registering the order.
+     */
+    public static ProcessManagerId getProcessManagerId(OrderId orderId) {
+        return IdConverter.toProcessManagerId(orderId);
     }
 
     @Override
@@ -99,6 +196,17 @@ public class RegistrationProcessManagerRepository
         }
     }
 
+    private static class GetIdFromEventWaitlistedSeatsReserved
+            implements IdFunction<ProcessManagerId, WaitlistedSeatsReserved, EventContext> {
+
+        @Override
+        public ProcessManagerId getId(WaitlistedSeatsReserved message, EventContext context) {
+            final ReservationId reservationId = message.getReservationId();
+            final ProcessManagerId result = IdConverter.toProcessManagerId(reservationId);
+            return result;
+        }
+    }
+
     private static class GetIdFromEventOrderConfirmed implements IdFunction<ProcessManagerId, OrderConfirmed, EventContext> {
 
         @Override
@@ -138,6 +246,12 @@ public class RegistrationProcessManagerRepository
             return toProcessManagerId(uuid);
         }
 
+        /**
+         * Creates a process manager ID from the given order UUID.
+         *
+         * <p>The UUID is used as is, without parsing, so that routing an event costs one concatenation
+         * and the IDs of the stored process managers remain valid.
+         */
         private static ProcessManagerId toProcessManagerId(String uuid) {
             final String processManagerId = PROC_MAN_ID_PREFIX + uuid;
             return ProcessManagerId.newBuilder()
@@ -145,4 +259,14 @@ public class RegistrationProcessManagerRepository
                                    .build();
         }
     }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+        @SuppressWarnings("NonSerializableFieldInSerializableClass")
+        private final Logger value = LoggerFactory.getLogger(RegistrationProcessManagerRepository.class);
+    }
 }
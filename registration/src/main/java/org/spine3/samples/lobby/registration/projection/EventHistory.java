@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.projection;
+
+import com.google.protobuf.Timestamp;
+import io.grpc.stub.StreamObserver;
+import org.spine3.base.Event;
+import org.spine3.server.event.EventStore;
+import org.spine3.server.event.EventStreamQuery;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+
+/**
+ * The utility class for reading the event history of a bounded context.
+ *
+ * <p>The history is streamed from the event store in batches, so that only a single batch is kept in memory.
+ * Each read model reads its own stream on start-up.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings("UtilityClass")
+public class EventHistory {
+
+    /**
+     * The default number of events passed to a read model at once.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    private EventHistory() {
+    }
+
+    /**
+     * Streams all the events of the store to the read model.
+     *
+     * @return the number of events applied by the read model
+     * @throws IllegalStateException if the events cannot be read
+     */
+    public static long replay(EventStore eventStore, ReadModel readModel) {
+        return read(eventStore, null, DEFAULT_BATCH_SIZE, readModel);
+    }
+
+    /**
+     * Streams the events of the store stored after the given time to the read model
+     * in the chronological order.
+     *
+     * @param eventStore the store to read
+     * @param after      the time after which the events are read, or {@code null} to read all the events
+     * @param batchSize  the maximum number of events passed to the read model at once
+     * @param readModel  the read model to apply the events to
+     * @return the number of events applied by the read model
+     * @throws IllegalStateException if the events cannot be read
+     */
+    public static long read(EventStore eventStore, @Nullable Timestamp after, int batchSize, ReadModel readModel) {
+        checkArgument(batchSize > 0, "Batch size must be positive.");
+        final EventStreamQuery.Builder query = EventStreamQuery.newBuilder();
+        if (after != null) {
+            query.setAfter(after);
+        }
+        final BatchingObserver observer = new BatchingObserver(batchSize, readModel);
+        eventStore.read(query.build(), observer);
+        return observer.awaitCompletion();
+    }
+
+    /**
+     * Passes the streamed events to a read model in batches.
+     */
+    private static class BatchingObserver implements StreamObserver<Event> {
+
+        private final int batchSize;
+        private final ReadModel readModel;
+        private final List<Event> batch;
+        private final CountDownLatch completion = new CountDownLatch(1);
+        private long appliedCount;
+
+        @Nullable
+        private Throwable error;
+
+        private BatchingObserver(int batchSize, ReadModel readModel) {
+            this.batchSize = batchSize;
+            this.readModel = readModel;
+            this.batch = newArrayListWithCapacity(batchSize);
+        }
+
+        @Override
+        public void onNext(Event event) {
+            batch.add(event);
+            if (batch.size() == batchSize) {
+                flush();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            completion.countDown();
+        }
+
+        @Override
+        public void onCompleted() {
+            flush();
+            completion.countDown();
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            appliedCount += readModel.replay(batch);
+            batch.clear();
+        }
+
+        private long awaitCompletion() {
+            try {
+                completion.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+                throw new IllegalStateException("Reading of the event history is interrupted.", e);
+            }
+            if (error != null) {
+                throw new IllegalStateException("Cannot read the event history.", error);
+            }
+            return appliedCount;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.projection;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * The checkpoint store which keeps each checkpoint in a separate file of the given directory.
+ *
+ * <p>A checkpoint is written to a temporary file first and then atomically moved in place,
+ * so that a crash never leaves a partially written checkpoint.
+ *
+ * @author Alexander Litus
+ */
+public class FileCheckpointStore implements CheckpointStore {
+
+    private static final String FILE_EXTENSION = ".checkpoint";
+
+    private final Path directory;
+
+    /**
+     * Creates a new store.
+     *
+     * @param directory the directory for checkpoint files; is created if it does not exist
+     * @throws IllegalStateException if the directory cannot be created
+     */
+    public FileCheckpointStore(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create the checkpoint directory: " + directory, e);
+        }
+    }
+
+    @Nullable
+    @Override
+    public ProjectionCheckpoint read(String repository) {
+        final Path file = fileOf(repository);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            final byte[] bytes = Files.readAllBytes(file);
+            final ProjectionCheckpoint result = ProjectionCheckpoint.parseFrom(bytes);
+            return result;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read the checkpoint: " + file, e);
+        }
+    }
+
+    @Override
+    public void write(ProjectionCheckpoint checkpoint) {
+        final Path file = fileOf(checkpoint.getRepository());
+        try {
+            final Path tmpFile = Files.createTempFile(directory, file.getFileName()
+                                                                    .toString(), null);
+            Files.write(tmpFile, checkpoint.toByteArray());
+            Files.move(tmpFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write the checkpoint: " + file, e);
+        }
+    }
+
+    private Path fileOf(String repository) {
+        final String fileName = repository.replaceAll("[^A-Za-z0-9._-]", "_") + FILE_EXTENSION;
+        return directory.resolve(fileName);
+    }
+}
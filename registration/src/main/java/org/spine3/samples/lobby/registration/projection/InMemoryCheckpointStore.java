@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.projection;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.collect.Maps.newConcurrentMap;
+
+/**
+ * The checkpoint store which keeps checkpoints in memory.
+ *
+ * <p>Checkpoints are lost on restart. Use {@link FileCheckpointStore} to resume catching up after a restart.
+ *
+ * @author Alexander Litus
+ */
+public class InMemoryCheckpointStore implements CheckpointStore {
+
+    private final ConcurrentMap<String, ProjectionCheckpoint> checkpoints = newConcurrentMap();
+
+    @Nullable
+    @Override
+    public ProjectionCheckpoint read(String repository) {
+        return checkpoints.get(repository);
+    }
+
+    @Override
+    public void write(ProjectionCheckpoint checkpoint) {
+        checkpoints.put(checkpoint.getRepository(), checkpoint);
+    }
+}
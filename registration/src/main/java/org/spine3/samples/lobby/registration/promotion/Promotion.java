@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.promotion;
+
+import com.google.common.collect.ImmutableSet;
+import org.spine3.money.Money;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.registration.contracts.SeatOrderLine;
+
+import javax.annotation.Nullable;
+import java.util.Locale;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The promotion compiled from a {@link PromotionRule} for applying to orders.
+ *
+ * @author Alexander Litus
+ */
+public class Promotion {
+
+    private static final int HUNDRED_PERCENT = 100;
+
+    private final String code;
+    private final int percentOff;
+    private final long amountOffPerSeat;
+    private final Set<SeatTypeId> seatTypeIds;
+
+    /**
+     * The counter of remaining redemptions, or {@code null} if the usage is not limited.
+     */
+    @Nullable
+    private final RedemptionCounter counter;
+
+    private Promotion(PromotionRule rule, int stripeCount) {
+        this.code = normalize(rule.getCode());
+        this.percentOff = rule.getPercentOff();
+        this.amountOffPerSeat = rule.getAmountOffPerSeat()
+                                    .getAmount();
+        this.seatTypeIds = ImmutableSet.copyOf(rule.getSeatTypeIdList());
+        final int usageCap = rule.getUsageCap();
+        this.counter = (usageCap > 0) ? new RedemptionCounter(usageCap, stripeCount) : null;
+    }
+
+    /**
+     * Compiles the rule.
+     *
+     * @throws IllegalArgumentException if the rule has no code, no discount or an invalid discount
+     */
+    /* package */ static Promotion compile(PromotionRule rule, int stripeCount) {
+        checkArgument(!rule.getCode()
+                           .isEmpty(), "Promo code must not be empty.");
+        checkArgument(rule.getDiscountCase() != PromotionRule.DiscountCase.DISCOUNT_NOT_SET,
+                      "No discount for promo code: %s", rule.getCode());
+        checkArgument(rule.getPercentOff() >= 0 && rule.getPercentOff() <= HUNDRED_PERCENT,
+                      "Invalid discount percent for promo code: %s", rule.getCode());
+        checkArgument(rule.getUsageCap() >= 0, "Usage cap must not be negative.");
+        return new Promotion(rule, stripeCount);
+    }
+
+    /**
+     * Converts the promo code to the form in which it is looked up.
+     */
+    public static String normalize(String code) {
+        return code.trim()
+                   .toUpperCase(Locale.ROOT);
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Calculates the discount for the order lines.
+     *
+     * @return the amount of the discount in the currency of the lines
+     */
+    public long getDiscount(Iterable<SeatOrderLine> lines) {
+        long result = 0;
+        for (SeatOrderLine line : lines) {
+            if (isApplicableTo(line.getSeatTypeId())) {
+                result += getDiscount(line);
+            }
+        }
+        return result;
+    }
+
+    private long getDiscount(SeatOrderLine line) {
+        final Money lineTotal = line.getLineTotal();
+        if (percentOff > 0) {
+            final long result = lineTotal.getAmount() * percentOff / HUNDRED_PERCENT;
+            return result;
+        }
+        final long result = Math.min(amountOffPerSeat * line.getQuantity(), lineTotal.getAmount());
+        return result;
+    }
+
+    private boolean isApplicableTo(SeatTypeId seatTypeId) {
+        final boolean result = seatTypeIds.isEmpty() || seatTypeIds.contains(seatTypeId);
+        return result;
+    }
+
+    /**
+     * Returns the number of orders which currently hold a redemption of the code.
+     *
+     * <p>Returns {@code 0} if the usage of the code is not limited.
+     */
+    public int getRedeemedCount() {
+        return (counter == null) ? 0 : counter.getRedeemedCount();
+    }
+
+    /**
+     * Takes a redemption of the code.
+     *
+     * @return {@code true} if the redemption is granted, {@code false} if the usage cap is reached
+     */
+    /* package */ boolean tryRedeem() {
+        return counter == null || counter.tryRedeem();
+    }
+
+    /* package */ void release() {
+        if (counter != null) {
+            counter.release();
+        }
+    }
+}
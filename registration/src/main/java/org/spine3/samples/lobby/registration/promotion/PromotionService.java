@@ -0,0 +1,264 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.promotion;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spine3.base.Event;
+import org.spine3.base.EventContext;
+import org.spine3.protobuf.AnyPacker;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.OrderId;
+import org.spine3.samples.lobby.registration.contracts.OrderConfirmed;
+import org.spine3.samples.lobby.registration.contracts.OrderExpired;
+import org.spine3.samples.lobby.registration.contracts.OrderTotalsCalculated;
+import org.spine3.samples.lobby.registration.projection.ReadModel;
+import org.spine3.server.event.EventSubscriber;
+import org.spine3.server.event.Subscribe;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Maps.newConcurrentMap;
+import static com.google.common.collect.Maps.newHashMap;
+
+/**
+ * The service redeeming promo codes for orders.
+ *
+ * <p>The {@linkplain PromotionRule rules} are compiled into a lookup table per conference when the service is built.
+ *
+ * <p>An order holds at most one redemption. It is reserved atomically when the promotion is
+ * {@linkplain #apply(OrderId, ConferenceId, String) applied} to the order, so orders priced concurrently
+ * never redeem a code over its usage cap. The redemption is released when the order
+ * {@linkplain #on(OrderExpired, EventContext) expires} (including an order rejected on cancellation)
+ * or drops the code, and kept when the order is {@linkplain #on(OrderConfirmed, EventContext) confirmed}.
+ *
+ * <p>The service must be subscribed to the event bus of the bounded context to receive order events.
+ * Redemptions are kept in memory and are {@linkplain #replay(Iterable) replayed} from the event history
+ * after a restart.
+ *
+ * @author Alexander Litus
+ */
+public class PromotionService extends EventSubscriber implements ReadModel {
+
+    private final ImmutableMap<ConferenceId, ImmutableMap<String, Promotion>> promotions;
+
+    /**
+     * The promotions redeemed by orders which are neither confirmed nor expired yet.
+     */
+    private final ConcurrentMap<OrderId, Promotion> redemptions = newConcurrentMap();
+
+    private PromotionService(Builder builder) {
+        final ImmutableMap.Builder<ConferenceId, ImmutableMap<String, Promotion>> result = ImmutableMap.builder();
+        for (Map.Entry<ConferenceId, Map<String, Promotion>> entry : builder.promotions.entrySet()) {
+            result.put(entry.getKey(), ImmutableMap.copyOf(entry.getValue()));
+        }
+        this.promotions = result.build();
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Finds the promotion of the conference by the promo code.
+     *
+     * @return the promotion or {@code null} if the code is unknown
+     */
+    @Nullable
+    public Promotion find(ConferenceId conferenceId, String code) {
+        final ImmutableMap<String, Promotion> conferencePromotions = promotions.get(conferenceId);
+        if (conferencePromotions == null) {
+            return null;
+        }
+        final Promotion result = conferencePromotions.get(Promotion.normalize(code));
+        return result;
+    }
+
+    /**
+     * Applies the promotion of the promo code to the order, reserving a redemption of the code.
+     *
+     * <p>Applying the code already redeemed by the order takes no more redemptions, so a handler retried
+     * on a conflict gets the same promotion even if the usage cap is reached since. If the order held
+     * a redemption of another code, it is released once the new one is granted.
+     *
+     * <p>If the command applying the code fails, the redemption is kept until the order expires.
+     *
+     * @param orderId      the ID of the order
+     * @param conferenceId the ID of the conference of the order
+     * @param code         the promo code
+     * @return the promotion, or {@code null} if the code is empty, unknown or its usage cap is reached
+     */
+    @Nullable
+    public Promotion apply(OrderId orderId, ConferenceId conferenceId, String code) {
+        final Promotion promotion = code.isEmpty() ? null : find(conferenceId, code);
+        if (promotion == null) {
+            return null;
+        }
+        if (promotion == redemptions.get(orderId)) {
+            return promotion;
+        }
+        if (!promotion.tryRedeem()) {
+            log().debug("The usage cap of promo code {} is reached, order ID: {}", promotion.getCode(),
+                        orderId.getUuid());
+            return null;
+        }
+        final Promotion previous = redemptions.put(orderId, promotion);
+        // The previous redemption is either of another code or of the same code taken by a concurrent call.
+        if (previous != null) {
+            previous.release();
+        }
+        return promotion;
+    }
+
+    /**
+     * Releases the redemption held by the order, if any.
+     */
+    public void release(OrderId orderId) {
+        final Promotion promotion = redemptions.remove(orderId);
+        if (promotion != null) {
+            promotion.release();
+        }
+    }
+
+    /**
+     * Takes the redemption of the published promo code, or releases the redemption
+     * if the order is priced without a code.
+     *
+     * <p>The redemption of a code is already reserved when the code is applied, so taking it again does nothing.
+     */
+    @Subscribe
+    public void on(OrderTotalsCalculated event, EventContext context) {
+        final OrderId orderId = event.getOrderId();
+        final String code = event.getPromoCode();
+        if (code.isEmpty()) {
+            release(orderId);
+            return;
+        }
+        final Promotion promotion = apply(orderId, event.getConferenceId(), code);
+        if (promotion == null) {
+            log().warn("The promo code {} of the order {} is over its usage cap.", code, orderId.getUuid());
+        }
+    }
+
+    @Subscribe
+    public void on(OrderExpired event, EventContext context) {
+        release(event.getOrderId());
+    }
+
+    @Subscribe
+    public void on(OrderConfirmed event, EventContext context) {
+        // The redemption is used for good, so it is not tracked anymore.
+        redemptions.remove(event.getOrderId());
+    }
+
+    /**
+     * Takes the redemptions of the orders from the event history in the calling thread.
+     *
+     * <p>Should be called on start-up with the whole history, before orders are priced, so that the usage caps
+     * account for the redemptions taken before the restart.
+     *
+     * @param history the events of the bounded context in the chronological order
+     * @return the number of order events applied
+     */
+    @Override
+    public long replay(Iterable<Event> history) {
+        long result = 0;
+        for (Event event : history) {
+            final Message message = AnyPacker.unpack(event.getMessage());
+            final EventContext context = event.getContext();
+            if (message instanceof OrderTotalsCalculated) {
+                on((OrderTotalsCalculated) message, context);
+            } else if (message instanceof OrderExpired) {
+                on((OrderExpired) message, context);
+            } else if (message instanceof OrderConfirmed) {
+                on((OrderConfirmed) message, context);
+            } else {
+                continue;
+            }
+            result++;
+        }
+        return result;
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+        @SuppressWarnings("NonSerializableFieldInSerializableClass")
+        private final Logger value = LoggerFactory.getLogger(PromotionService.class);
+    }
+
+    /**
+     * The builder of {@link PromotionService} instances.
+     */
+    public static class Builder {
+
+        private final Map<ConferenceId, Map<String, Promotion>> promotions = newHashMap();
+        private int stripeCount = Runtime.getRuntime()
+                                         .availableProcessors();
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the number of stripes of redemption counters.
+         *
+         * <p>Must be set before adding rules.
+         */
+        public Builder setStripeCount(int stripeCount) {
+            checkArgument(stripeCount > 0, "Stripe count must be positive.");
+            this.stripeCount = stripeCount;
+            return this;
+        }
+
+        /**
+         * Adds the promotion rule.
+         *
+         * @throws IllegalArgumentException if the rule is invalid or its code is already added for the conference
+         */
+        public Builder addRule(PromotionRule rule) {
+            checkNotNull(rule);
+            final Promotion promotion = Promotion.compile(rule, stripeCount);
+            final ConferenceId conferenceId = rule.getConferenceId();
+            Map<String, Promotion> conferencePromotions = promotions.get(conferenceId);
+            if (conferencePromotions == null) {
+                conferencePromotions = newHashMap();
+                promotions.put(conferenceId, conferencePromotions);
+            }
+            checkArgument(!conferencePromotions.containsKey(promotion.getCode()),
+                          "Duplicate promo code: %s", promotion.getCode());
+            conferencePromotions.put(promotion.getCode(), promotion);
+            return this;
+        }
+
+        public PromotionService build() {
+            return new PromotionService(this);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.promotion;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The counter of the remaining redemptions of a promo code with a usage cap.
+ *
+ * <p>The cap is split between stripes, each of which is decremented by compare-and-set only while it is positive.
+ * So the number of redemptions never exceeds the cap, while concurrent redemptions by different threads
+ * mostly touch different stripes. Stripes are placed in separate cache lines to avoid false sharing.
+ *
+ * <p>A thread starts from its own stripe and tries the others when it is exhausted. A redemption may be rejected
+ * while a concurrently released one is not yet visible to the scanning thread, but never granted over the cap.
+ *
+ * @author Alexander Litus
+ */
+public class RedemptionCounter {
+
+    /**
+     * The distance between stripes in the array: 16 ints take a 64-byte cache line.
+     */
+    private static final int STRIPE_STEP = 16;
+
+    private final int cap;
+    private final int stripeCount;
+    private final AtomicIntegerArray remaining;
+
+    /**
+     * Creates a new counter.
+     *
+     * @param cap         the maximum number of redemptions
+     * @param stripeCount the maximum number of stripes; the actual number does not exceed the cap
+     */
+    public RedemptionCounter(int cap, int stripeCount) {
+        checkArgument(cap > 0, "Usage cap must be positive.");
+        checkArgument(stripeCount > 0, "Stripe count must be positive.");
+        this.cap = cap;
+        this.stripeCount = Math.min(stripeCount, cap);
+        this.remaining = new AtomicIntegerArray(this.stripeCount * STRIPE_STEP);
+        final int share = cap / this.stripeCount;
+        final int remainder = cap % this.stripeCount;
+        for (int i = 0; i < this.stripeCount; i++) {
+            final int stripeCap = (i < remainder) ? share + 1 : share;
+            remaining.set(i * STRIPE_STEP, stripeCap);
+        }
+    }
+
+    /**
+     * Creates a new counter with a stripe per available processor.
+     */
+    public RedemptionCounter(int cap) {
+        this(cap, Runtime.getRuntime()
+                         .availableProcessors());
+    }
+
+    /**
+     * Takes a redemption.
+     *
+     * @return {@code true} if the redemption is granted, {@code false} if the cap is reached
+     */
+    public boolean tryRedeem() {
+        final int start = homeStripe();
+        for (int i = 0; i < stripeCount; i++) {
+            final int index = ((start + i) % stripeCount) * STRIPE_STEP;
+            int value = remaining.get(index);
+            while (value > 0) {
+                if (remaining.compareAndSet(index, value, value - 1)) {
+                    return true;
+                }
+                value = remaining.get(index);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a granted redemption.
+     */
+    public void release() {
+        final int index = homeStripe() * STRIPE_STEP;
+        remaining.incrementAndGet(index);
+    }
+
+    /**
+     * Returns the number of granted and not released redemptions.
+     */
+    public int getRedeemedCount() {
+        int left = 0;
+        for (int i = 0; i < stripeCount; i++) {
+            left += remaining.get(i * STRIPE_STEP);
+        }
+        final int result = cap - left;
+        return result;
+    }
+
+    public int getCap() {
+        return cap;
+    }
+
+    private int homeStripe() {
+        final long threadId = Thread.currentThread()
+                                    .getId();
+        final int result = (int) (threadId % stripeCount);
+        return result;
+    }
+}
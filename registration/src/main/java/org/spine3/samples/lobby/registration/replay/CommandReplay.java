@@ -0,0 +1,269 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.replay;
+
+import com.google.protobuf.Timestamp;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spine3.base.Command;
+import org.spine3.base.Response;
+import org.spine3.server.command.CommandBus;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Maps.newConcurrentMap;
+
+/**
+ * Replays a recorded {@linkplain CommandLogReader command log} against a {@link CommandBus} to measure
+ * the capacity of the bounded context.
+ *
+ * <p>Commands are posted at the relative times of their recording {@linkplain Builder#setSpeedup(double) sped up}
+ * by a factor, e.g. {@code 1} for the original pace or {@code 10} for ten times faster,
+ * or at the {@linkplain #MAX_SPEED maximum speed}.
+ *
+ * <p>Up to {@linkplain Builder#setParallelism(int) a number} of commands are posted concurrently. When all of them
+ * are in flight, the replay falls behind the schedule. The time a late command waits is included into
+ * its {@linkplain CommandTypeStats#getLatency() latency}, so that the report is not skewed by the replay
+ * slowing down to the pace of the bounded context.
+ *
+ * @author Alexander Litus
+ */
+public class CommandReplay {
+
+    /**
+     * The speedup at which commands are posted as soon as a poster is free, disregarding their recorded times.
+     */
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final CommandBus commandBus;
+    private final double speedup;
+    private final int parallelism;
+
+    private CommandReplay(Builder builder) {
+        this.commandBus = builder.commandBus;
+        this.speedup = builder.speedup;
+        this.parallelism = builder.parallelism;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Posts the commands of the log to the command bus and waits until all of them are handled.
+     *
+     * @return the throughput and latencies per command type
+     * @throws IOException          if the log cannot be read
+     * @throws InterruptedException if interrupted while waiting for commands to be due or handled
+     */
+    public ReplayReport replay(CommandLogReader log) throws IOException, InterruptedException {
+        checkNotNull(log);
+        final ConcurrentMap<String, CommandTypeStats> stats = newConcurrentMap();
+        final Semaphore posters = new Semaphore(parallelism);
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        final long startNanos = System.nanoTime();
+        try {
+            long firstRecordedNanos = 0;
+            boolean isFirst = true;
+            Command command = log.read();
+            while (command != null) {
+                final long recordedNanos = toNanos(command.getContext()
+                                                          .getTimestamp());
+                if (isFirst) {
+                    firstRecordedNanos = recordedNanos;
+                    isFirst = false;
+                }
+                final long dueNanos = isMaxSpeed()
+                                      ? System.nanoTime()
+                                      : startNanos + (long) ((recordedNanos - firstRecordedNanos) / speedup);
+                sleepUntil(dueNanos);
+                posters.acquire();
+                final CommandTypeStats typeStats = statsOf(command, stats);
+                executor.execute(new Post(command, typeStats, dueNanos, posters));
+                command = log.read();
+            }
+            posters.acquire(parallelism);
+        } finally {
+            executor.shutdownNow();
+        }
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        return new ReplayReport(stats, elapsedNanos);
+    }
+
+    private boolean isMaxSpeed() {
+        return speedup == MAX_SPEED;
+    }
+
+    private static void sleepUntil(long dueNanos) throws InterruptedException {
+        long remaining = dueNanos - System.nanoTime();
+        while (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+            remaining = dueNanos - System.nanoTime();
+        }
+    }
+
+    private static CommandTypeStats statsOf(Command command, ConcurrentMap<String, CommandTypeStats> stats) {
+        final String commandType = commandTypeOf(command);
+        CommandTypeStats result = stats.get(commandType);
+        if (result == null) {
+            final CommandTypeStats created = new CommandTypeStats(commandType);
+            final CommandTypeStats existing = stats.putIfAbsent(commandType, created);
+            result = (existing != null) ? existing : created;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the full name of the command message type without unpacking the message.
+     */
+    /* package */ static String commandTypeOf(Command command) {
+        final String typeUrl = command.getMessage()
+                                      .getTypeUrl();
+        final String result = typeUrl.substring(typeUrl.lastIndexOf('/') + 1);
+        return result;
+    }
+
+    private static long toNanos(Timestamp timestamp) {
+        return timestamp.getSeconds() * NANOS_PER_SECOND + timestamp.getNanos();
+    }
+
+    /**
+     * Posts a command to the command bus and records its latency once it is handled.
+     */
+    private class Post implements Runnable, StreamObserver<Response> {
+
+        private final Command command;
+        private final CommandTypeStats stats;
+        private final long dueNanos;
+        private final Semaphore posters;
+        private final AtomicBoolean isHandled = new AtomicBoolean();
+        private volatile long postedNanos;
+
+        private Post(Command command, CommandTypeStats stats, long dueNanos, Semaphore posters) {
+            this.command = command;
+            this.stats = stats;
+            this.dueNanos = dueNanos;
+            this.posters = posters;
+        }
+
+        @Override
+        public void run() {
+            postedNanos = System.nanoTime();
+            try {
+                commandBus.post(command, this);
+            } catch (RuntimeException e) {
+                onError(e);
+            }
+        }
+
+        @Override
+        public void onNext(Response value) {
+            // Do nothing. The command is handled once completed.
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            log().debug("Replayed command failed: {}", t.getMessage());
+            onHandled(true);
+        }
+
+        @Override
+        public void onCompleted() {
+            onHandled(false);
+        }
+
+        private void onHandled(boolean isError) {
+            if (!isHandled.compareAndSet(false, true)) {
+                return;
+            }
+            final long now = System.nanoTime();
+            stats.onHandled(now - dueNanos, now - postedNanos, isError);
+            posters.release();
+        }
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+        @SuppressWarnings("NonSerializableFieldInSerializableClass")
+        private final Logger value = LoggerFactory.getLogger(CommandReplay.class);
+    }
+
+    /**
+     * The builder of {@link CommandReplay} instances.
+     */
+    public static class Builder {
+
+        private static final int DEFAULT_PARALLELISM = 4;
+
+        private CommandBus commandBus;
+        private double speedup = 1;
+        private int parallelism = DEFAULT_PARALLELISM;
+
+        private Builder() {
+        }
+
+        public Builder setCommandBus(CommandBus commandBus) {
+            this.commandBus = checkNotNull(commandBus);
+            return this;
+        }
+
+        /**
+         * Sets how many times faster than recorded the commands are posted.
+         *
+         * @param speedup a positive factor or {@link #MAX_SPEED}
+         */
+        public Builder setSpeedup(double speedup) {
+            checkArgument(speedup > 0, "Speedup must be positive.");
+            this.speedup = speedup;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of commands posted concurrently.
+         */
+        public Builder setParallelism(int parallelism) {
+            checkArgument(parallelism > 0, "Parallelism must be positive.");
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public CommandReplay build() {
+            checkState(commandBus != null, "Command bus must be set.");
+            return new CommandReplay(this);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.replay;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The statistics of the replayed commands of a type.
+ *
+ * @author Alexander Litus
+ */
+public class CommandTypeStats {
+
+    private final String commandType;
+    private final AtomicLong errorCount = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+
+    /* package */ CommandTypeStats(String commandType) {
+        this.commandType = commandType;
+    }
+
+    /* package */ void onHandled(long latencyNanos, long serviceTimeNanos, boolean isError) {
+        latency.record(latencyNanos);
+        serviceTime.record(serviceTimeNanos);
+        if (isError) {
+            errorCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the full name of the command message type, e.g.
+     * {@code spine.samples.lobby.registration.contracts.RegisterToConference}.
+     */
+    public String getCommandType() {
+        return commandType;
+    }
+
+    /**
+     * Returns the number of handled commands, including the failed ones.
+     */
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    /**
+     * Returns the number of commands which the command bus reported as failed.
+     */
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * Returns the time from the moment a command is due according to the replay schedule until it is handled.
+     *
+     * <p>Includes the time the command waits for a free poster when the replay falls behind the schedule.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the time from posting a command to the command bus until it is handled.
+     */
+    public LatencyHistogram getServiceTime() {
+        return serviceTime;
+    }
+}
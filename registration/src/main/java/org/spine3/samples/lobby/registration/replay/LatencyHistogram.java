@@ -0,0 +1,150 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.replay;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The distribution of command latencies.
+ *
+ * <p>Latencies are counted in buckets which widths grow with the latency, so that a percentile is reported
+ * with a relative error of at most {@code 1/16} while the memory used does not depend on the number of commands.
+ *
+ * <p>Is updated concurrently, so the values returned by different getters may be slightly inconsistent.
+ *
+ * @author Alexander Litus
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private static final double MAX_PERCENTILE = 100;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram() {
+    }
+
+    /**
+     * Records a latency.
+     *
+     * <p>Negative values are recorded as zero.
+     */
+    public void record(long nanos) {
+        final long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        totalNanos.addAndGet(value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the average latency in nanoseconds.
+     */
+    public long getMeanNanos() {
+        final long count = this.count.get();
+        if (count == 0) {
+            return 0;
+        }
+        final long result = totalNanos.get() / count;
+        return result;
+    }
+
+    /**
+     * Returns the longest latency in nanoseconds.
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns the latency in nanoseconds which the given percentage of commands did not exceed.
+     *
+     * @param percentile the percentage of commands in {@code (0, 100]}
+     */
+    public long getPercentileNanos(double percentile) {
+        checkArgument(percentile > 0 && percentile <= MAX_PERCENTILE, "Invalid percentile: %s", percentile);
+        final long count = this.count.get();
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(percentile / MAX_PERCENTILE * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                final long result = Math.min(upperBoundOf(i), maxNanos.get());
+                return result;
+            }
+        }
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns the index of the bucket of the non-negative value.
+     *
+     * <p>Values below {@code 2 * SUB_BUCKET_COUNT} have a bucket each. Each next power of two is split
+     * into {@code SUB_BUCKET_COUNT} buckets of equal width.
+     */
+    /* package */ static int bucketOf(long value) {
+        final int highestBit = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        if (highestBit < SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+        final int shift = highestBit - SUB_BUCKET_BITS;
+        final int subBucket = (int) ((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+        final int result = (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+        return result;
+    }
+
+    /**
+     * Returns the largest value counted in the bucket.
+     */
+    /* package */ static long upperBoundOf(int bucket) {
+        final int group = bucket / SUB_BUCKET_COUNT;
+        final int subBucket = bucket % SUB_BUCKET_COUNT;
+        if (group == 0) {
+            return subBucket;
+        }
+        final int shift = group - 1;
+        final long lowerBound = (long) (SUB_BUCKET_COUNT + subBucket) << shift;
+        final long result = lowerBound + (1L << shift) - 1;
+        return result;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.replay;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput and latencies of a replay per command type.
+ *
+ * @author Alexander Litus
+ */
+public class ReplayReport {
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final double MEDIAN = 50;
+    private static final double P90 = 90;
+    private static final double P99 = 99;
+
+    private static final String HEADER_FORMAT = "%-48s %10s %8s %10s %9s %9s %9s %9s%n";
+    private static final String ROW_FORMAT = "%-48s %10d %8d %10.1f %9.3f %9.3f %9.3f %9.3f%n";
+
+    private final Map<String, CommandTypeStats> stats;
+    private final long elapsedNanos;
+
+    /* package */ ReplayReport(Map<String, CommandTypeStats> stats, long elapsedNanos) {
+        this.stats = ImmutableMap.copyOf(stats);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the statistics of each replayed command type.
+     */
+    public Collection<CommandTypeStats> getStats() {
+        return stats.values();
+    }
+
+    /**
+     * Returns the statistics of the command type.
+     *
+     * @param commandType the full name of the command message type
+     * @throws IllegalArgumentException if no commands of the type are replayed
+     */
+    public CommandTypeStats getStats(String commandType) {
+        final CommandTypeStats result = stats.get(commandType);
+        if (result == null) {
+            throw new IllegalArgumentException("No commands replayed of type: " + commandType);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the duration of the replay in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the total number of replayed commands.
+     */
+    public long getCommandCount() {
+        long result = 0;
+        for (CommandTypeStats typeStats : stats.values()) {
+            result += typeStats.getCount();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of replayed commands per second.
+     */
+    public double getThroughput() {
+        return throughputOf(getCommandCount());
+    }
+
+    /**
+     * Returns the number of replayed commands of the type per second.
+     */
+    public double getThroughput(CommandTypeStats typeStats) {
+        return throughputOf(typeStats.getCount());
+    }
+
+    private double throughputOf(long count) {
+        if (elapsedNanos == 0) {
+            return 0;
+        }
+        final double result = count * NANOS_PER_SECOND / elapsedNanos;
+        return result;
+    }
+
+    /**
+     * Returns the report as a table with a row per command type and latencies in milliseconds.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder();
+        result.append(String.format(HEADER_FORMAT, "command", "count", "errors", "cmd/s",
+                                    "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        for (CommandTypeStats typeStats : stats.values()) {
+            final LatencyHistogram latency = typeStats.getLatency();
+            result.append(String.format(ROW_FORMAT, typeStats.getCommandType(),
+                                        typeStats.getCount(),
+                                        typeStats.getErrorCount(),
+                                        getThroughput(typeStats),
+                                        toMillis(latency.getPercentileNanos(MEDIAN)),
+                                        toMillis(latency.getPercentileNanos(P90)),
+                                        toMillis(latency.getPercentileNanos(P99)),
+                                        toMillis(latency.getMaxNanos())));
+        }
+        result.append(String.format("%d commands in %.3f s, %.1f cmd/s%n",
+                                    getCommandCount(), elapsedNanos / NANOS_PER_SECOND, getThroughput()));
+        return result.toString();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.replay;
+
+import org.spine3.base.Event;
+import org.spine3.samples.lobby.registration.RegistrationBoundedContext;
+import org.spine3.server.BoundedContext;
+import org.spine3.server.event.EventBus;
+import org.spine3.server.storage.memory.InMemoryStorageFactory;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Replays a command log against a new in-memory Orders & Registrations bounded context
+ * and prints the {@link ReplayReport}.
+ *
+ * <p>Usage: {@code ReplayTool <command log> [<speedup> | max] [<parallelism>] [<seed event log>]}.
+ *
+ * <p>The optional seed event log is a sequence of length-delimited {@link Event} messages, e.g. the
+ * {@code ConferenceCreated} and {@code SeatTypeCreated} events of the sale, posted to the event bus
+ * before the replay starts.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr") // Is a command-line tool.
+public class ReplayTool {
+
+    private static final String MAX_SPEED_ARGUMENT = "max";
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    private ReplayTool() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: ReplayTool <command log> [<speedup> | max] [<parallelism>] [<seed event log>]");
+            System.exit(1);
+        }
+        final double speedup = (args.length > 1) ? parseSpeedup(args[1]) : 1;
+        final int parallelism = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_PARALLELISM;
+
+        final RegistrationBoundedContext context =
+                RegistrationBoundedContext.newInstance(InMemoryStorageFactory.getInstance());
+        final BoundedContext boundedContext = context.getBoundedContext();
+        if (args.length > 3) {
+            final long count = seed(boundedContext.getEventBus(), args[3]);
+            System.out.println("Posted " + count + " seed events.");
+        }
+        final CommandReplay replay = CommandReplay.newBuilder()
+                                                  .setCommandBus(boundedContext.getCommandBus())
+                                                  .setSpeedup(speedup)
+                                                  .setParallelism(parallelism)
+                                                  .build();
+        try (CommandLogReader log = new CommandLogReader(new FileInputStream(args[0]))) {
+            final ReplayReport report = replay.replay(log);
+            System.out.print(report);
+        }
+        System.exit(0);
+    }
+
+    private static double parseSpeedup(String argument) {
+        if (MAX_SPEED_ARGUMENT.equalsIgnoreCase(argument)) {
+            return CommandReplay.MAX_SPEED;
+        }
+        return Double.parseDouble(argument);
+    }
+
+    private static long seed(EventBus eventBus, String path) throws IOException {
+        long count = 0;
+        try (InputStream input = new BufferedInputStream(new FileInputStream(path))) {
+            Event event = Event.parseDelimitedFrom(input);
+            while (event != null) {
+                eventBus.post(event);
+                count++;
+                event = Event.parseDelimitedFrom(input);
+            }
+        }
+        return count;
+    }
+}
@@ -121,7 +121,7 @@ public class SeatAssignmentsAggregate extends AbstractLobbyAggregate<SeatAssignm
     /* Event Appliers */
 
     @Apply
-    private void apply(SeatAssignmentsCreated event) {
+    /* package */ void apply(SeatAssignmentsCreated event) {
         final SeatAssignments.Builder state = getBuilder();
         state.setId(event.getAssignmentsId());
         final Map<Integer, SeatAssignment> assignments = state.getMutableAssignments();
@@ -133,7 +133,7 @@ public class SeatAssignmentsAggregate extends AbstractLobbyAggregate<SeatAssignm
     }
 
     @Apply
-    private void apply(SeatAssigned event) {
+    /* package */ void apply(SeatAssigned event) {
         final SeatAssignment assignment = event.getAssignment();
         final int position = assignment.getPosition()
                                        .getValue();
@@ -143,7 +143,7 @@ public class SeatAssignmentsAggregate extends AbstractLobbyAggregate<SeatAssignm
     }
 
     @Apply
-    private void apply(SeatUnassigned event) {
+    /* package */ void apply(SeatUnassigned event) {
         final Map<Integer, SeatAssignment> assignments = getBuilder().getMutableAssignments();
         final int position = event.getPosition()
                                   .getValue();
@@ -156,7 +156,7 @@ public class SeatAssignmentsAggregate extends AbstractLobbyAggregate<SeatAssignm
     }
 
     @Apply
-    private void apply(SeatAssignmentUpdated event) {
+    /* package */ void apply(SeatAssignmentUpdated event) {
         final SeatPosition seatPosition = event.getPosition();
         final SeatAssignment assignmentPrimary = getAssignment(seatPosition);
         final PersonName newName = event.getAttendee()
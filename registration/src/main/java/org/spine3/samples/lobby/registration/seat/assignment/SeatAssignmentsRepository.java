@@ -20,23 +20,70 @@
 
 package org.spine3.samples.lobby.registration.seat.assignment;
 
+import org.spine3.base.Command;
+import org.spine3.samples.lobby.registration.archive.ArchivedAggregates;
 import org.spine3.samples.lobby.registration.contracts.SeatAssignmentsId;
 import org.spine3.server.BoundedContext;
 import org.spine3.server.aggregate.AggregateRepository;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
 /**
  * The repository managing {@link SeatAssignmentsAggregate}s.
  *
+ * <p>Archived seat assignments are read-only: they are restored from the cold store on load and reject commands.
+ *
  * @author Alexander Litus
  */
 public class SeatAssignmentsRepository extends AggregateRepository<SeatAssignmentsId, SeatAssignmentsAggregate> {
 
+    @Nullable
+    private final ArchivedAggregates archivedAssignments;
+
     /**
      * Creates a new repository instance.
      *
      * @param boundedContext the bounded context to which this repository belongs
      */
     public SeatAssignmentsRepository(BoundedContext boundedContext) {
+        this(boundedContext, null);
+    }
+
+    /**
+     * Creates a new repository instance which serves archived seat assignments from the cold store.
+     *
+     * @param boundedContext      the bounded context to which this repository belongs
+     * @param archivedAssignments the seat assignments moved to the cold store, or {@code null} if none
+     */
+    public SeatAssignmentsRepository(BoundedContext boundedContext, @Nullable ArchivedAggregates archivedAssignments) {
         super(boundedContext);
+        this.archivedAssignments = archivedAssignments;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if the command is sent to archived seat assignments
+     */
+    @Override
+    public void dispatch(Command command) throws IllegalStateException {
+        if (archivedAssignments != null) {
+            archivedAssignments.checkNotArchived(command);
+        }
+        super.dispatch(command);
+    }
+
+    /**
+     * Loads seat assignments, restoring them from the cold store if they are archived.
+     */
+    @Nonnull
+    @Override
+    public SeatAssignmentsAggregate load(SeatAssignmentsId id) throws IllegalStateException {
+        final SeatAssignmentsAggregate result = super.load(id);
+        if (archivedAssignments != null) {
+            archivedAssignments.restore(result);
+        }
+        return result;
     }
 }
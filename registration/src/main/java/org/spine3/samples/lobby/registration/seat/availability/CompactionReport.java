@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.seat.availability;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The result of a {@link SeatsAvailabilityCompaction} run.
+ *
+ * @author Alexander Litus
+ */
+public class CompactionReport {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int conferenceCount;
+    private final long compactedEventCount;
+    private final long retainedEventCount;
+    private final long elapsedNanos;
+
+    /* package */ CompactionReport(int conferenceCount, long compactedEventCount, long retainedEventCount,
+                                   long elapsedNanos) {
+        this.conferenceCount = conferenceCount;
+        this.compactedEventCount = compactedEventCount;
+        this.retainedEventCount = retainedEventCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the number of compacted conferences, which is the number of added compacted events.
+     */
+    public int getConferenceCount() {
+        return conferenceCount;
+    }
+
+    /**
+     * Returns the number of events moved to the archive.
+     */
+    public long getCompactedEventCount() {
+        return compactedEventCount;
+    }
+
+    /**
+     * Returns the number of events left in the history as is.
+     */
+    public long getRetainedEventCount() {
+        return retainedEventCount;
+    }
+
+    /**
+     * Returns the duration of the compaction in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Compacted %d events of %d conferences in %.1f ms, %d events retained.",
+                             compactedEventCount, conferenceCount, elapsedNanos / NANOS_PER_MILLI,
+                             retainedEventCount);
+    }
+}
@@ -32,6 +32,7 @@ import java.util.List;
 import java.util.NoSuchElementException;
 
 import static com.google.common.collect.Lists.newLinkedList;
+import static org.spine3.samples.lobby.registration.util.Seats.findPendingReservation;
 import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
 
 /**
@@ -107,8 +108,7 @@ import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
     }
 
     private int findReservedSeatCount(SeatTypeId seatTypeId, ReservationId reservationId) {
-        final SeatQuantities quantities = state.getPendingReservations()
-                                               .get(reservationId.getUuid());
+        final SeatQuantities quantities = findPendingReservation(state, reservationId);
         final List<SeatQuantity> reservedSeats = (quantities != null) ?
                                                  quantities.getItemList() :
                                                  Collections.<SeatQuantity>emptyList();
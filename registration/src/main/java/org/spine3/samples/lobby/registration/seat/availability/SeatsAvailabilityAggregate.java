@@ -20,8 +20,12 @@
 
 package org.spine3.samples.lobby.registration.seat.availability;
 
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.spine3.base.CommandContext;
 import org.spine3.base.Event;
+import org.spine3.samples.lobby.common.ConferenceId;
 import org.spine3.samples.lobby.common.ImportEvents;
 import org.spine3.samples.lobby.common.ReservationId;
 import org.spine3.samples.lobby.common.SeatTypeId;
@@ -31,14 +35,19 @@ import org.spine3.samples.lobby.registration.util.Seats;
 import org.spine3.server.aggregate.Apply;
 import org.spine3.server.command.Assign;
 
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 import static com.google.common.collect.Lists.newLinkedList;
 import static org.spine3.samples.lobby.registration.seat.availability.SeatsAvailabilityValidator.validateCommand;
 import static org.spine3.samples.lobby.registration.seat.availability.SeatsAvailabilityValidator.validateState;
+import static org.spine3.samples.lobby.registration.util.Seats.findPendingReservation;
+import static org.spine3.samples.lobby.registration.util.Seats.getAddedSeats;
+import static org.spine3.samples.lobby.registration.util.Seats.getRemovedSeats;
 import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantities;
 import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
+import static org.spine3.samples.lobby.registration.util.Seats.putPendingReservation;
+import static org.spine3.samples.lobby.registration.util.Seats.removePendingReservation;
 
 /**
  * The aggregate which manages the availability of conference seats.
@@ -58,19 +67,109 @@ public class SeatsAvailabilityAggregate extends AbstractLobbyAggregate<SeatsAvai
         super(id);
     }
 
+    /**
+     * Reserves the requested seats.
+     *
+     * <p>The event carries the whole available seat list and the whole reservation, so that the seat types
+     * which are not requested keep their quantities when the event is applied.
+     *
+     * @see #reserveInOrder(Iterable)
+     */
     @Assign
     public SeatsReserved handle(MakeSeatReservation cmd, CommandContext context) {
         validateCommand(cmd);
+        final List<SeatsReserved> result = reserveInOrder(ImmutableList.of(cmd));
+        return result.get(0);
+    }
+
+    /**
+     * Reserves seats for the orders of a group registration in one operation.
+     *
+     * @see #reserveInOrder(Iterable)
+     */
+    @Assign
+    public List<SeatsReserved> handle(MakeGroupSeatReservation cmd, CommandContext context) {
+        validateCommand(cmd);
+        return reserveInOrder(cmd.getReservationList());
+    }
+
+    /**
+     * Reserves released seats for the waitlisted orders in one pass.
+     *
+     * <p>A reservation which is no longer pending (e.g. its order expired or was confirmed after the seats
+     * were promoted to it) is skipped, so that no seats are reserved for it.
+     *
+     * @throws IllegalStateException if none of the reservations is pending
+     * @see #reserveInOrder(Iterable)
+     */
+    @Assign
+    public List<WaitlistedSeatsReserved> handle(ReserveWaitlistedSeats cmd, CommandContext context) {
+        validateCommand(cmd);
+        final SeatsAvailability state = getState();
+        validateState(state, cmd);
+
+        final List<MakeSeatReservation> requests = newLinkedList();
+        for (WaitlistedReservation reservation : cmd.getReservationList()) {
+            final ReservationId reservationId = reservation.getReservationId();
+            if (findPendingReservation(state, reservationId) == null) {
+                log().warn("Skipping waitlisted seats of the reservation which is no longer pending, ID: {}",
+                           reservationId.getUuid());
+                continue;
+            }
+            final MakeSeatReservation request = MakeSeatReservation.newBuilder()
+                                                                   .setReservationId(reservationId)
+                                                                   .setConferenceId(cmd.getConferenceId())
+                                                                   .addAllSeat(reservation.getSeatList())
+                                                                   .build();
+            requests.add(request);
+        }
+        final ImmutableList.Builder<WaitlistedSeatsReserved> result = ImmutableList.builder();
+        for (SeatsReserved reserved : reserveInOrder(requests)) {
+            final WaitlistedSeatsReserved event =
+                    WaitlistedSeatsReserved.newBuilder()
+                                           .setReservationId(reserved.getReservationId())
+                                           .setConferenceId(reserved.getConferenceId())
+                                           .addAllReservedSeatUpdated(reserved.getReservedSeatUpdatedList())
+                                           .addAllAvailableSeatUpdated(reserved.getAvailableSeatUpdatedList())
+                                           .build();
+            result.add(event);
+        }
+        return result.build();
+    }
+
+    /**
+     * Makes the reservations one after another against the availability left by the previous ones.
+     *
+     * <p>Each event carries the whole available seat list and the whole reservation,
+     * since the events are applied one after another.
+     */
+    private List<SeatsReserved> reserveInOrder(Iterable<MakeSeatReservation> requests) {
+        final ImmutableList.Builder<SeatsReserved> result = ImmutableList.builder();
+        final SeatsAvailability.Builder state = getState().toBuilder();
+        for (MakeSeatReservation request : requests) {
+            final MakeSeatReservationCommandHandler handler = new MakeSeatReservationCommandHandler(state.build());
+            handler.handle(request);
 
-        final MakeSeatReservationCommandHandler handler = new MakeSeatReservationCommandHandler(getState());
-        handler.handle(cmd);
+            final ReservationId reservationId = request.getReservationId();
+            final SeatQuantities oldReservedSeats = findPendingReservation(state, reservationId);
+            final List<SeatQuantity> reservedSeats = merge(
+                    (oldReservedSeats != null) ? oldReservedSeats.getItemList() : Collections.<SeatQuantity>emptyList(),
+                    handler.getReservedSeatsUpdated());
+            final List<SeatQuantity> availableSeats = merge(state.getAvailableSeatList(),
+                                                            handler.getAvailableSeatsUpdated());
+            state.clearAvailableSeat()
+                 .addAllAvailableSeat(availableSeats);
+            putPendingReservation(state, reservationId, newSeatQuantities(reservedSeats));
 
-        final SeatsReserved.Builder reserved = SeatsReserved.newBuilder()
-                                                            .setReservationId(cmd.getReservationId())
-                                                            .setConferenceId(cmd.getConferenceId())
-                                                            .addAllReservedSeatUpdated(handler.getReservedSeatsUpdated())
-                                                            .addAllAvailableSeatUpdated(handler.getAvailableSeatsUpdated());
-        return reserved.build();
+            final SeatsReserved reserved = SeatsReserved.newBuilder()
+                                                        .setReservationId(request.getReservationId())
+                                                        .setConferenceId(request.getConferenceId())
+                                                        .addAllReservedSeatUpdated(reservedSeats)
+                                                        .addAllAvailableSeatUpdated(availableSeats)
+                                                        .build();
+            result.add(reserved);
+        }
+        return result.build();
     }
 
     @Assign
@@ -78,8 +177,13 @@ public class SeatsAvailabilityAggregate extends AbstractLobbyAggregate<SeatsAvai
         validateCommand(cmd);
         validateState(getState(), cmd);
 
+        // The aggregate ID has the UUID of the conference, see Seats#newSeatsAvailabilityId(ConferenceId).
+        final ConferenceId conferenceId = ConferenceId.newBuilder()
+                                                      .setUuid(getId().getUuid())
+                                                      .build();
         final SeatsReservationCommitted.Builder event = SeatsReservationCommitted.newBuilder()
-                                                                                 .setReservationId(cmd.getReservationId());
+                                                                                 .setReservationId(cmd.getReservationId())
+                                                                                 .setConferenceId(conferenceId);
         return event.build();
     }
 
@@ -90,10 +194,9 @@ public class SeatsAvailabilityAggregate extends AbstractLobbyAggregate<SeatsAvai
         validateState(state, cmd);
 
         final ReservationId reservationId = cmd.getReservationId();
-        final List<SeatQuantity> availableSeatsUpdated = newLinkedList(state.getAvailableSeatList());
-        final SeatQuantities unreservedSeats = state.getPendingReservations()
-                                                    .get(reservationId.getUuid());
-        availableSeatsUpdated.addAll(unreservedSeats.getItemList());
+        final SeatQuantities unreservedSeats = findPendingReservation(state, reservationId);
+        final List<SeatQuantity> availableSeatsUpdated = add(state.getAvailableSeatList(),
+                                                             unreservedSeats.getItemList());
 
         final SeatsReservationCancelled.Builder event = SeatsReservationCancelled.newBuilder()
                                                                                  .setReservationId(reservationId)
@@ -107,7 +210,11 @@ public class SeatsAvailabilityAggregate extends AbstractLobbyAggregate<SeatsAvai
         validateCommand(cmd);
 
         final AddedAvailableSeats.Builder event = AddedAvailableSeats.newBuilder()
-                                                                     .setQuantity(cmd.getQuantity());
+                                                                     .setConferenceId(cmd.getConferenceId())
+                                                                     .addAllSeat(cmd.getSeatList());
+        if (cmd.hasQuantity()) {
+            event.setQuantity(cmd.getQuantity());
+        }
         return event.build();
     }
 
@@ -117,7 +224,11 @@ public class SeatsAvailabilityAggregate extends AbstractLobbyAggregate<SeatsAvai
         validateState(getState(), cmd);
 
         final RemovedAvailableSeats.Builder event = RemovedAvailableSeats.newBuilder()
-                                                                         .setQuantity(cmd.getQuantity());
+                                                                         .setConferenceId(cmd.getConferenceId())
+                                                                         .addAllSeat(cmd.getSeatList());
+        if (cmd.hasQuantity()) {
+            event.setQuantity(cmd.getQuantity());
+        }
         return event.build();
     }
 
@@ -131,62 +242,112 @@ public class SeatsAvailabilityAggregate extends AbstractLobbyAggregate<SeatsAvai
     /* Event Appliers */
 
     @Apply
-    private void apply(SeatsReserved event) {
+    /* package */ void apply(SeatsReserved event) {
+        applyReservation(event.getReservationId(), event.getReservedSeatUpdatedList(),
+                         event.getAvailableSeatUpdatedList());
+    }
+
+    @Apply
+    /* package */ void apply(WaitlistedSeatsReserved event) {
+        applyReservation(event.getReservationId(), event.getReservedSeatUpdatedList(),
+                         event.getAvailableSeatUpdatedList());
+    }
+
+    private void applyReservation(ReservationId reservationId,
+                                  List<SeatQuantity> reservedSeats,
+                                  List<SeatQuantity> availableSeats) {
         final SeatsAvailability.Builder state = getBuilder();
         state.clearAvailableSeat();
-        state.addAllAvailableSeat(event.getAvailableSeatUpdatedList());
-        final Map<String, SeatQuantities> pendingReservations = state.getMutablePendingReservations();
-        final String reservationId = event.getReservationId()
-                                          .getUuid();
-        pendingReservations.put(reservationId, newSeatQuantities(event.getReservedSeatUpdatedList()));
+        state.addAllAvailableSeat(availableSeats);
+        putPendingReservation(state, reservationId, newSeatQuantities(reservedSeats));
+    }
+
+    @Apply
+    /* package */ void apply(SeatsReservationCommitted event) {
+        final SeatsAvailability.Builder state = getBuilder();
+        removePendingReservation(state, event.getReservationId());
     }
 
+    /**
+     * Replaces the state with the one folded from the compacted events.
+     */
     @Apply
-    private void apply(SeatsReservationCommitted event) {
+    /* package */ void apply(SeatsAvailabilityCompacted event) {
         final SeatsAvailability.Builder state = getBuilder();
-        final Map<String, SeatQuantities> pendingReservations = state.getMutablePendingReservations();
-        final String reservationId = event.getReservationId()
-                                          .getUuid();
-        pendingReservations.remove(reservationId);
+        state.clear();
+        state.mergeFrom(event.getState());
     }
 
     @Apply
-    private void apply(SeatsReservationCancelled event) {
+    /* package */ void apply(SeatsReservationCancelled event) {
         final SeatsAvailability.Builder state = getBuilder();
-        final Map<String, SeatQuantities> pendingReservations = state.getMutablePendingReservations();
-        final String reservationId = event.getReservationId()
-                                          .getUuid();
-        pendingReservations.remove(reservationId);
+        removePendingReservation(state, event.getReservationId());
         state.clearAvailableSeat();
         state.addAllAvailableSeat(event.getAvailableSeatUpdatedList());
     }
 
     @Apply
-    private void apply(AddedAvailableSeats event) {
+    /* package */ void apply(AddedAvailableSeats event) {
         final SeatsAvailability.Builder state = getBuilder();
-        final List<SeatQuantity> availableSeats = state.getAvailableSeatList();
-        final SeatQuantity addedQuantity = event.getQuantity();
-        final SeatTypeId seatTypeId = addedQuantity.getSeatTypeId();
-        final SeatQuantity existingOne = Seats.findById(availableSeats, seatTypeId, null);
-        if (existingOne != null) {
-            final int indexOfOldValue = availableSeats.indexOf(existingOne);
-            final int newQuantity = existingOne.getQuantity() + addedQuantity.getQuantity();
-            state.setAvailableSeat(indexOfOldValue, newSeatQuantity(seatTypeId, newQuantity));
-        } else {
-            state.addAvailableSeat(addedQuantity);
+        for (SeatQuantity addedQuantity : getAddedSeats(event)) {
+            final List<SeatQuantity> availableSeats = state.getAvailableSeatList();
+            final SeatTypeId seatTypeId = addedQuantity.getSeatTypeId();
+            final SeatQuantity existingOne = Seats.findById(availableSeats, seatTypeId, null);
+            if (existingOne != null) {
+                final int indexOfOldValue = availableSeats.indexOf(existingOne);
+                final int newQuantity = existingOne.getQuantity() + addedQuantity.getQuantity();
+                state.setAvailableSeat(indexOfOldValue, newSeatQuantity(seatTypeId, newQuantity));
+            } else {
+                state.addAvailableSeat(addedQuantity);
+            }
         }
     }
 
     @Apply
-    private void apply(RemovedAvailableSeats event) {
+    /* package */ void apply(RemovedAvailableSeats event) {
         final SeatsAvailability.Builder state = getBuilder();
-        final SeatQuantity removedQuantity = event.getQuantity();
-        final SeatTypeId seatTypeId = removedQuantity.getSeatTypeId();
-        final List<SeatQuantity> availableSeats = state.getAvailableSeatList();
-        final SeatQuantity existingOne = Seats.findById(availableSeats, seatTypeId);
-        final int indexOfOldValue = availableSeats.indexOf(existingOne);
-        final int newQuantity = calculateNewQuantity(removedQuantity, existingOne);
-        state.setAvailableSeat(indexOfOldValue, newSeatQuantity(seatTypeId, newQuantity));
+        for (SeatQuantity removedQuantity : getRemovedSeats(event)) {
+            final SeatTypeId seatTypeId = removedQuantity.getSeatTypeId();
+            final List<SeatQuantity> availableSeats = state.getAvailableSeatList();
+            final SeatQuantity existingOne = Seats.findById(availableSeats, seatTypeId);
+            final int indexOfOldValue = availableSeats.indexOf(existingOne);
+            final int newQuantity = calculateNewQuantity(removedQuantity, existingOne);
+            state.setAvailableSeat(indexOfOldValue, newSeatQuantity(seatTypeId, newQuantity));
+        }
+    }
+
+    /**
+     * Replaces the quantities of the seat types found in {@code updates}, keeping the others.
+     */
+    private static List<SeatQuantity> merge(Iterable<SeatQuantity> seats, Iterable<SeatQuantity> updates) {
+        final List<SeatQuantity> result = newLinkedList(seats);
+        for (SeatQuantity update : updates) {
+            final SeatQuantity existingOne = Seats.findById(result, update.getSeatTypeId(), null);
+            if (existingOne != null) {
+                result.set(result.indexOf(existingOne), update);
+            } else {
+                result.add(update);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the quantities of {@code additions} to the quantities of the same seat types in {@code seats}.
+     */
+    private static List<SeatQuantity> add(Iterable<SeatQuantity> seats, Iterable<SeatQuantity> additions) {
+        final List<SeatQuantity> result = newLinkedList(seats);
+        for (SeatQuantity addition : additions) {
+            final SeatTypeId seatTypeId = addition.getSeatTypeId();
+            final SeatQuantity existingOne = Seats.findById(result, seatTypeId, null);
+            if (existingOne != null) {
+                final int newQuantity = existingOne.getQuantity() + addition.getQuantity();
+                result.set(result.indexOf(existingOne), newSeatQuantity(seatTypeId, newQuantity));
+            } else {
+                result.add(addition);
+            }
+        }
+        return result;
     }
 
     private static int calculateNewQuantity(SeatQuantity removedQuantity, SeatQuantity existingOne) {
@@ -196,4 +357,14 @@ public class SeatsAvailabilityAggregate extends AbstractLobbyAggregate<SeatsAvai
         }
         return newQuantity;
     }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+        @SuppressWarnings("NonSerializableFieldInSerializableClass")
+        private final Logger value = LoggerFactory.getLogger(SeatsAvailabilityAggregate.class);
+    }
 }
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.seat.availability;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import io.grpc.stub.StreamObserver;
+import org.spine3.base.Event;
+import org.spine3.base.EventContext;
+import org.spine3.base.Events;
+import org.spine3.protobuf.AnyPacker;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.registration.archive.EventStreamArchive;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+import static com.google.common.collect.Maps.newHashMap;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatsAvailabilityId;
+
+/**
+ * Folds the seats availability history of finished conferences into one {@link SeatsAvailabilityCompacted} event
+ * per conference, keeping the original events in an {@link EventStreamArchive}.
+ *
+ * <p>The history is read once by the calling thread. The events of finished conferences are partitioned
+ * by conference across worker threads through bounded queues; the other events are passed to the retained
+ * history in the original order. A worker appends each event to the archived stream of its conference
+ * and applies events to the aggregate in batches, so the memory used does not depend on the length
+ * of the history. When the history ends, the compacted events are appended to the retained history,
+ * which replaces the hot history.
+ *
+ * <p>An event is routed to its conference by the {@code conference_id} field. Events written before the field
+ * was added have no conference, so they cannot be folded into the compacted event of their conference.
+ * The history is checked for such events before anything is archived or retained, and is not compacted
+ * if it has any, so that no event is left outside of the compacted state of its conference.
+ *
+ * <p>The archived streams are completed before the retained history. If a run fails, the archive may hold
+ * the events still present in the hot history; they are archived again as a new part by the next run.
+ *
+ * @author Alexander Litus
+ */
+public class SeatsAvailabilityCompaction {
+
+    private static final Set<Class<? extends Message>> EVENT_CLASSES =
+            ImmutableSet.<Class<? extends Message>>of(SeatsReserved.class,
+                                                      WaitlistedSeatsReserved.class,
+                                                      SeatsReservationCommitted.class,
+                                                      SeatsReservationCancelled.class,
+                                                      AddedAvailableSeats.class,
+                                                      RemovedAvailableSeats.class,
+                                                      SeatsAvailabilityCompacted.class);
+
+    private static final String CONFERENCE_ID_FIELD = "conference_id";
+
+    /**
+     * Marks the end of the history in a worker queue.
+     */
+    private static final Event END_OF_HISTORY = Event.getDefaultInstance();
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private final EventStreamArchive archive;
+    private final int parallelism;
+    private final int batchSize;
+    private final int queueCapacity;
+
+    private SeatsAvailabilityCompaction(Builder builder) {
+        this.archive = builder.archive;
+        this.parallelism = builder.parallelism;
+        this.batchSize = builder.batchSize;
+        this.queueCapacity = builder.queueCapacity;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Compacts the seats availability history of the finished conferences.
+     *
+     * @param history              all events of the bounded context in the chronological order
+     * @param finishedConferences  the conferences which history to compact
+     * @param now                  the time of the compacted events
+     * @param retainedHistory      receives the events which are not compacted, in the same order,
+     *                             followed by the compacted events
+     * @return the report on the compaction
+     * @throws IllegalStateException if the history has seats availability events with no conference,
+     *                               or cannot be compacted for another reason
+     */
+    public CompactionReport run(Iterable<Event> history,
+                                Set<ConferenceId> finishedConferences,
+                                Timestamp now,
+                                StreamObserver<Event> retainedHistory) {
+        final long startNanos = System.nanoTime();
+        checkRoutable(history);
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        final List<Worker> workers = newArrayListWithCapacity(parallelism);
+        long retainedEventCount = 0;
+        long compactedEventCount = 0;
+        final List<Event> compactedEvents = newArrayList();
+        try {
+            for (int i = 0; i < parallelism; i++) {
+                final Worker worker = new Worker(now);
+                worker.result = executor.submit(worker);
+                workers.add(worker);
+            }
+            for (Event event : history) {
+                final ConferenceId conferenceId = conferenceIdOf(event);
+                if (conferenceId != null && finishedConferences.contains(conferenceId)) {
+                    workers.get(partitionOf(conferenceId))
+                           .put(event);
+                    compactedEventCount++;
+                } else {
+                    retainedHistory.onNext(event);
+                    retainedEventCount++;
+                }
+            }
+            for (Worker worker : workers) {
+                worker.put(END_OF_HISTORY);
+            }
+            for (Worker worker : workers) {
+                compactedEvents.addAll(worker.getResult());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (Event event : compactedEvents) {
+            retainedHistory.onNext(event);
+        }
+        retainedHistory.onCompleted();
+        return new CompactionReport(compactedEvents.size(), compactedEventCount, retainedEventCount,
+                                    System.nanoTime() - startNanos);
+    }
+
+    private int partitionOf(ConferenceId conferenceId) {
+        return (conferenceId.hashCode() & Integer.MAX_VALUE) % parallelism;
+    }
+
+    /**
+     * Checks that each seats availability event of the history has a conference.
+     *
+     * @throws IllegalStateException if an event has no conference
+     */
+    private static void checkRoutable(Iterable<Event> history) {
+        for (Event event : history) {
+            final Message message = AnyPacker.unpack(event.getMessage());
+            if (EVENT_CLASSES.contains(message.getClass())) {
+                checkState(message.hasField(conferenceIdField(message)),
+                           "Cannot compact the history: the seats availability event has no conference, ID: %s",
+                           event.getContext()
+                                .getEventId()
+                                .getUuid());
+            }
+        }
+    }
+
+    /**
+     * Returns the conference of the seats availability event,
+     * or {@code null} if the event is not produced by a seats availability aggregate.
+     */
+    @Nullable
+    private static ConferenceId conferenceIdOf(Event event) {
+        final Message message = AnyPacker.unpack(event.getMessage());
+        if (!EVENT_CLASSES.contains(message.getClass())) {
+            return null;
+        }
+        return (ConferenceId) message.getField(conferenceIdField(message));
+    }
+
+    private static FieldDescriptor conferenceIdField(Message message) {
+        return message.getDescriptorForType()
+                      .findFieldByName(CONFERENCE_ID_FIELD);
+    }
+
+    /**
+     * Compacts the conferences of a partition.
+     */
+    private class Worker implements Callable<List<Event>> {
+
+        private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final Timestamp now;
+        private Future<List<Event>> result;
+
+        private Worker(Timestamp now) {
+            this.now = now;
+        }
+
+        /**
+         * Passes the event to the worker, waiting while its queue is full.
+         *
+         * @throws IllegalStateException if the worker failed
+         */
+        private void put(Event event) {
+            try {
+                while (!queue.offer(event, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (result.isDone()) {
+                        getResult();
+                        throw new IllegalStateException("The compaction worker stopped unexpectedly.");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+                throw new IllegalStateException("Interrupted while compacting.", e);
+            }
+        }
+
+        private List<Event> getResult() {
+            try {
+                return result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+                throw new IllegalStateException("Interrupted while compacting.", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Cannot compact the seats availability history.", e.getCause());
+            }
+        }
+
+        @Override
+        public List<Event> call() throws InterruptedException, IOException {
+            final Map<ConferenceId, ConferenceCompaction> compactions = newHashMap();
+            Event event = queue.take();
+            while (event != END_OF_HISTORY) {
+                final ConferenceId conferenceId = conferenceIdOf(event);
+                checkNotNull(conferenceId);
+                ConferenceCompaction compaction = compactions.get(conferenceId);
+                if (compaction == null) {
+                    compaction = new ConferenceCompaction(conferenceId);
+                    compactions.put(conferenceId, compaction);
+                }
+                compaction.add(event);
+                event = queue.take();
+            }
+            final List<Event> result = newArrayListWithCapacity(compactions.size());
+            for (ConferenceCompaction compaction : compactions.values()) {
+                result.add(compaction.finish(now));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Folds the events of a conference and archives them.
+     */
+    private class ConferenceCompaction {
+
+        private final ConferenceId conferenceId;
+        private final SeatsAvailabilityAggregate aggregate;
+        private final EventStreamArchive.Writer writer;
+        private final List<Event> batch = newArrayListWithCapacity(batchSize);
+        private Timestamp lastEventTime = Timestamp.getDefaultInstance();
+
+        private ConferenceCompaction(ConferenceId conferenceId) {
+            this.conferenceId = conferenceId;
+            final SeatsAvailabilityId id = newSeatsAvailabilityId(conferenceId);
+            this.aggregate = new SeatsAvailabilityAggregate(id);
+            this.writer = archive.openWriter(id);
+        }
+
+        private void add(Event event) {
+            writer.write(event);
+            batch.add(event);
+            lastEventTime = event.getContext()
+                                 .getTimestamp();
+            if (batch.size() == batchSize) {
+                applyBatch();
+            }
+        }
+
+        private void applyBatch() {
+            aggregate.replay(batch);
+            batch.clear();
+        }
+
+        private Event finish(Timestamp now) throws IOException {
+            applyBatch();
+            writer.close();
+            final SeatsAvailabilityCompacted compacted =
+                    SeatsAvailabilityCompacted.newBuilder()
+                                              .setConferenceId(conferenceId)
+                                              .setState(aggregate.getState())
+                                              .setEventCount(writer.getEventCount())
+                                              .setLastEventTime(lastEventTime)
+                                              .build();
+            final EventContext context = EventContext.newBuilder()
+                                                     .setEventId(Events.generateId())
+                                                     .setTimestamp(now)
+                                                     .build();
+            return Events.createEvent(compacted, context);
+        }
+    }
+
+    /**
+     * The builder of {@link SeatsAvailabilityCompaction} instances.
+     */
+    public static class Builder {
+
+        private static final int DEFAULT_BATCH_SIZE = 1024;
+        private static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+        private EventStreamArchive archive;
+        private int parallelism = Runtime.getRuntime()
+                                         .availableProcessors();
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the archive of the original events of compacted conferences.
+         */
+        public Builder setArchive(EventStreamArchive archive) {
+            this.archive = checkNotNull(archive);
+            return this;
+        }
+
+        /**
+         * Sets the number of worker threads compacting conferences.
+         */
+        public Builder setParallelism(int parallelism) {
+            checkArgument(parallelism > 0, "Parallelism must be positive.");
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Sets the number of events applied to an aggregate at once.
+         */
+        public Builder setBatchSize(int batchSize) {
+            checkArgument(batchSize > 0, "Batch size must be positive.");
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of events a worker queue holds before the reader of the history waits for the worker.
+         */
+        public Builder setQueueCapacity(int queueCapacity) {
+            checkArgument(queueCapacity > 0, "Queue capacity must be positive.");
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public SeatsAvailabilityCompaction build() {
+            checkNotNull(archive, "The archive must be set.");
+            return new SeatsAvailabilityCompaction(this);
+        }
+    }
+}
@@ -20,16 +20,22 @@
 
 package org.spine3.samples.lobby.registration.seat.availability;
 
+import org.spine3.base.Command;
+import org.spine3.samples.lobby.common.util.aggregate.OptimisticAggregateRepository;
+import org.spine3.samples.lobby.common.util.aggregate.RetryPolicy;
 import org.spine3.server.BoundedContext;
-import org.spine3.server.aggregate.AggregateRepository;
 
 /**
  * The repository for SeatsAvailability aggregates.
  *
+ * <p>All seat availability commands of a conference are handled by one aggregate, so concurrent commands
+ * are committed optimistically and retried on conflicts.
+ *
  * @author Alexander Litus
  * @see SeatsAvailabilityAggregate
  */
-public class SeatsAvailabilityRepository extends AggregateRepository<SeatsAvailabilityId, SeatsAvailabilityAggregate> {
+public class SeatsAvailabilityRepository
+        extends OptimisticAggregateRepository<SeatsAvailabilityId, SeatsAvailabilityAggregate> {
 
     /**
      * Creates a new repository instance.
@@ -39,4 +45,22 @@ public class SeatsAvailabilityRepository extends AggregateRepository<SeatsAvaila
     public SeatsAvailabilityRepository(BoundedContext boundedContext) {
         super(boundedContext);
     }
+
+    /**
+     * Creates a new repository instance which retries conflicting commands according to the given policy.
+     *
+     * @param boundedContext the bounded context to which this repository belongs
+     * @param retryPolicy    the policy of retrying conflicting commands
+     */
+    public SeatsAvailabilityRepository(BoundedContext boundedContext, RetryPolicy retryPolicy) {
+        super(boundedContext, retryPolicy);
+    }
+
+    /**
+     * Returns {@code true}, as the seat availability command handlers only produce events from the state.
+     */
+    @Override
+    protected boolean isRetrySafe(Command command) {
+        return true;
+    }
 }
@@ -27,9 +27,11 @@ import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
 import org.spine3.samples.lobby.registration.util.Seats;
 
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Sets.newHashSet;
 import static org.spine3.samples.lobby.registration.util.ValidationUtils.*;
 
 /**
@@ -49,6 +51,39 @@ import static org.spine3.samples.lobby.registration.util.ValidationUtils.*;
         checkSeats(cmd.getSeatList(), cmd);
     }
 
+    /* package */ static void validateCommand(MakeGroupSeatReservation cmd) {
+        checkConferenceId(cmd.hasConferenceId(), cmd);
+        checkMessageField(cmd.getReservationCount() > 0, "reservations", cmd);
+        for (MakeSeatReservation reservation : cmd.getReservationList()) {
+            validateCommand(reservation);
+            checkArgument(reservation.getConferenceId()
+                                     .equals(cmd.getConferenceId()),
+                          "The reservations of a group must be of the same conference: %s", cmd);
+        }
+    }
+
+    /* package */ static void validateCommand(ReserveWaitlistedSeats cmd) {
+        checkConferenceId(cmd.hasConferenceId(), cmd);
+        checkMessageField(cmd.getReservationCount() > 0, "reservations", cmd);
+        for (WaitlistedReservation reservation : cmd.getReservationList()) {
+            checkReservationId(reservation.hasReservationId(), reservation);
+            checkSeats(reservation.getSeatList(), reservation);
+        }
+    }
+
+    /**
+     * Checks that at least one of the waitlisted reservations is pending.
+     */
+    /* package */ static void validateState(SeatsAvailability state, ReserveWaitlistedSeats cmd) {
+        for (WaitlistedReservation reservation : cmd.getReservationList()) {
+            final ReservationId reservationId = reservation.getReservationId();
+            if (Seats.findPendingReservation(state, reservationId) != null) {
+                return;
+            }
+        }
+        throw new IllegalStateException("None of the waitlisted reservations is pending: " + cmd);
+    }
+
     /* package */ static void validateCommand(CommitSeatReservation cmd) {
         checkReservationId(cmd.hasReservationId(), cmd);
     }
@@ -67,11 +102,31 @@ import static org.spine3.samples.lobby.registration.util.ValidationUtils.*;
     }
 
     /* package */ static void validateCommand(AddSeats cmd) {
-        checkSeatQuantity(cmd.hasQuantity(), cmd.getQuantity(), cmd);
+        checkSeatQuantities(cmd.hasQuantity(), cmd.getQuantity(), cmd.getSeatList(), cmd);
     }
 
     /* package */ static void validateCommand(RemoveSeats cmd) {
-        checkSeatQuantity(cmd.hasQuantity(), cmd.getQuantity(), cmd);
+        checkSeatQuantities(cmd.hasQuantity(), cmd.getQuantity(), cmd.getSeatList(), cmd);
+    }
+
+    /**
+     * Checks the seat quantities of a command set as its {@code quantity}, its {@code seat} list or both.
+     *
+     * <p>Each seat type may be changed only once in a command.
+     */
+    private static void checkSeatQuantities(boolean hasQuantity, SeatQuantity quantity, List<SeatQuantity> seats,
+                                            Message cmd) {
+        if (seats.isEmpty()) {
+            checkSeatQuantity(hasQuantity, quantity, cmd);
+            return;
+        }
+        final Set<SeatTypeId> seatTypes = newHashSet();
+        for (SeatQuantity seat : Seats.allOf(hasQuantity, quantity, seats)) {
+            checkSeatQuantity(true, seat, cmd);
+            checkArgument(seatTypes.add(seat.getSeatTypeId()),
+                          "The seat type %s is changed more than once: %s", seat.getSeatTypeId()
+                                                                                .getUuid(), cmd);
+        }
     }
 
     /* package */ static void checkSeatQuantity(boolean hasQuantity, SeatQuantity quantity, Message cmd) {
@@ -82,16 +137,16 @@ import static org.spine3.samples.lobby.registration.util.ValidationUtils.*;
 
     /* package */ static void validateState(SeatsAvailability state, RemoveSeats cmd) {
         final List<SeatQuantity> availableSeats = state.getAvailableSeatList();
-        final SeatQuantity quantityToRemove = cmd.getQuantity();
-        final SeatTypeId id = quantityToRemove.getSeatTypeId();
-        final SeatQuantity existingOne = Seats.findById(availableSeats, id, null);
-        checkState(existingOne != null, "No such available seat, seat type ID: " + id.getUuid());
+        for (SeatQuantity quantityToRemove : Seats.allOf(cmd.hasQuantity(), cmd.getQuantity(), cmd.getSeatList())) {
+            final SeatTypeId id = quantityToRemove.getSeatTypeId();
+            final SeatQuantity existingOne = Seats.findById(availableSeats, id, null);
+            checkState(existingOne != null, "No such available seat, seat type ID: " + id.getUuid());
+        }
     }
 
     private static void checkExistPendingReservationsWithId(ReservationId reservationId, SeatsAvailability state) {
-        final String id = reservationId.getUuid();
-        final Map<String, SeatQuantities> pendingReservations = state.getPendingReservations();
-        checkState(pendingReservations.containsKey(id), "No such pending reservation with the ID: " + id);
+        final SeatQuantities reservation = Seats.findPendingReservation(state, reservationId);
+        checkState(reservation != null, "No such pending reservation with the ID: " + reservationId.getUuid());
     }
 
     /**
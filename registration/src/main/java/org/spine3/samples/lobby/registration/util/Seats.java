@@ -23,20 +23,31 @@ package org.spine3.samples.lobby.registration.util;
 import com.google.common.base.Predicate;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
-import org.spine3.base.Identifiers;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.ReservationId;
 import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.common.util.CompactId;
 import org.spine3.samples.lobby.registration.contracts.SeatAssignment;
 import org.spine3.samples.lobby.registration.contracts.SeatAssignmentsId;
 import org.spine3.samples.lobby.registration.contracts.SeatPosition;
 import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
+import org.spine3.samples.lobby.registration.seat.availability.AddedAvailableSeats;
+import org.spine3.samples.lobby.registration.seat.availability.PendingReservation;
+import org.spine3.samples.lobby.registration.seat.availability.PendingReservations;
+import org.spine3.samples.lobby.registration.seat.availability.RemovedAvailableSeats;
 import org.spine3.samples.lobby.registration.seat.availability.SeatQuantities;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailability;
 import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailabilityId;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailabilityOrBuilder;
 
 import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
 
 import static com.google.common.collect.Iterables.filter;
 import static com.google.common.collect.Iterables.find;
 import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newUuid;
 
 /**
  * The utility class for working with objects related to seats.
@@ -51,30 +62,163 @@ public class Seats {
     }
 
     /**
-     * Creates a new {@code SeatsAvailabilityId} with a random UUID value.
+     * Creates a new {@code SeatsAvailabilityId} with a time-ordered UUID value.
      */
     public static SeatsAvailabilityId newSeatsAvailabilityId() {
-        final String id = Identifiers.newUuid();
+        final String id = newUuid();
         return SeatsAvailabilityId.newBuilder()
                                   .setUuid(id)
                                   .build();
     }
 
     /**
-     * Creates a new {@code SeatAssignmentsId} with a random UUID value.
+     * Returns the ID of the seats availability aggregate of the conference.
+     *
+     * <p>The seats of a conference are managed by one aggregate, which ID has the UUID of the conference.
+     */
+    public static SeatsAvailabilityId newSeatsAvailabilityId(ConferenceId conferenceId) {
+        return SeatsAvailabilityId.newBuilder()
+                                  .setUuid(conferenceId.getUuid())
+                                  .build();
+    }
+
+    /**
+     * Creates a new {@code SeatAssignmentsId} with a time-ordered UUID value.
      */
     public static SeatAssignmentsId newSeatAssignmentsId() {
-        final String id = Identifiers.newUuid();
+        final String id = newUuid();
         return SeatAssignmentsId.newBuilder()
                                 .setUuid(id)
                                 .build();
     }
 
+    /**
+     * Returns the pending seats of the reservation, or {@code null} if the reservation is not pending.
+     *
+     * <p>A reservation with a UUID is looked up by the two halves of the UUID. The states saved before
+     * (and the reservations whose IDs are not UUIDs) hold reservations under the ID string,
+     * so a reservation not found by the UUID bits is looked up by the ID string.
+     */
+    @Nullable
+    public static SeatQuantities findPendingReservation(SeatsAvailabilityOrBuilder state, ReservationId id) {
+        final String uuid = id.getUuid();
+        final CompactId compactId = CompactId.tryParse(uuid);
+        if (compactId != null) {
+            final PendingReservations reservations = state.getUuidPendingReservationsMap()
+                                                          .get(compactId.getMostSignificantBits());
+            if (reservations != null) {
+                for (PendingReservation reservation : reservations.getReservationList()) {
+                    if (reservation.getLeastSigBits() == compactId.getLeastSignificantBits()) {
+                        return reservation.getSeats();
+                    }
+                }
+            }
+        }
+        final Map<String, SeatQuantities> byString = state.getPendingReservationsMap();
+        if (byString.isEmpty()) {
+            return null;
+        }
+        final SeatQuantities result = byString.get(uuid);
+        if (result != null || compactId == null) {
+            return result;
+        }
+        return byString.get(compactId.toCompactString());
+    }
+
+    /**
+     * Puts the pending seats of the reservation to the state, replacing the seats it held before.
+     */
+    public static void putPendingReservation(SeatsAvailability.Builder state, ReservationId id, SeatQuantities seats) {
+        final String uuid = id.getUuid();
+        final CompactId compactId = CompactId.tryParse(uuid);
+        if (compactId == null) {
+            state.putPendingReservations(uuid, seats);
+            return;
+        }
+        removeStringKeys(state, uuid, compactId);
+        final long leastSigBits = compactId.getLeastSignificantBits();
+        final PendingReservations.Builder reservations = withoutReservation(state, compactId);
+        reservations.addReservation(PendingReservation.newBuilder()
+                                                      .setLeastSigBits(leastSigBits)
+                                                      .setSeats(seats));
+        state.putUuidPendingReservations(compactId.getMostSignificantBits(), reservations.build());
+    }
+
+    /**
+     * Removes the reservation from the pending reservations of the state, if it is there.
+     */
+    public static void removePendingReservation(SeatsAvailability.Builder state, ReservationId id) {
+        final String uuid = id.getUuid();
+        final CompactId compactId = CompactId.tryParse(uuid);
+        if (compactId == null) {
+            state.removePendingReservations(uuid);
+            return;
+        }
+        removeStringKeys(state, uuid, compactId);
+        final long mostSigBits = compactId.getMostSignificantBits();
+        if (!state.getUuidPendingReservationsMap()
+                  .containsKey(mostSigBits)) {
+            return;
+        }
+        final PendingReservations.Builder reservations = withoutReservation(state, compactId);
+        if (reservations.getReservationCount() == 0) {
+            state.removeUuidPendingReservations(mostSigBits);
+        } else {
+            state.putUuidPendingReservations(mostSigBits, reservations.build());
+        }
+    }
+
+    /**
+     * Returns the seats of all pending reservations of the state.
+     */
+    public static List<SeatQuantities> getPendingReservations(SeatsAvailabilityOrBuilder state) {
+        final ImmutableList.Builder<SeatQuantities> result = ImmutableList.builder();
+        result.addAll(state.getPendingReservationsMap()
+                           .values());
+        for (PendingReservations reservations : state.getUuidPendingReservationsMap()
+                                                     .values()) {
+            for (PendingReservation reservation : reservations.getReservationList()) {
+                result.add(reservation.getSeats());
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * Removes the reservation kept under the UUID string or its compact form, as in the states saved before.
+     */
+    private static void removeStringKeys(SeatsAvailability.Builder state, String uuid, CompactId compactId) {
+        if (state.getPendingReservationsCount() == 0) {
+            return;
+        }
+        state.removePendingReservations(uuid);
+        state.removePendingReservations(compactId.toCompactString());
+    }
+
+    /**
+     * Returns the reservations sharing the most significant bits with the given UUID, except the one with the UUID.
+     */
+    private static PendingReservations.Builder withoutReservation(SeatsAvailabilityOrBuilder state,
+                                                                  CompactId compactId) {
+        final PendingReservations.Builder result = PendingReservations.newBuilder();
+        final PendingReservations existing = state.getUuidPendingReservationsMap()
+                                                  .get(compactId.getMostSignificantBits());
+        if (existing == null) {
+            return result;
+        }
+        for (PendingReservation reservation : existing.getReservationList()) {
+            if (reservation.getLeastSigBits() != compactId.getLeastSignificantBits()) {
+                result.addReservation(reservation);
+            }
+        }
+        return result;
+    }
+
     /**
      * Creates a new {@code SeatQuantity} instance with the given {@code quantity} and a random UUID.
      */
     public static SeatQuantity newSeatQuantity(int quantity) {
-        final String id = Identifiers.newUuid();
+        final String id = newUuid();
         final SeatQuantity result = newSeatQuantity(id, quantity);
         return result;
     }
@@ -152,6 +296,34 @@ public class Seats {
         return findById(seats, id, SeatQuantity.getDefaultInstance());
     }
 
+    /**
+     * Returns the seat quantities added by the event, set either as its {@code quantity} or its {@code seat} list.
+     */
+    public static List<SeatQuantity> getAddedSeats(AddedAvailableSeats event) {
+        return allOf(event.hasQuantity(), event.getQuantity(), event.getSeatList());
+    }
+
+    /**
+     * Returns the seat quantities removed by the event, set either as its {@code quantity} or its {@code seat} list.
+     */
+    public static List<SeatQuantity> getRemovedSeats(RemovedAvailableSeats event) {
+        return allOf(event.hasQuantity(), event.getQuantity(), event.getSeatList());
+    }
+
+    /**
+     * Returns the single quantity, if it is set, followed by the list of quantities.
+     */
+    public static List<SeatQuantity> allOf(boolean hasQuantity, SeatQuantity quantity, List<SeatQuantity> seats) {
+        if (!hasQuantity) {
+            return seats;
+        }
+        final List<SeatQuantity> result = ImmutableList.<SeatQuantity>builder()
+                                                       .add(quantity)
+                                                       .addAll(seats)
+                                                       .build();
+        return result;
+    }
+
     /**
      * Filters seat assignments items by the {@code seatTypeId}.
      *
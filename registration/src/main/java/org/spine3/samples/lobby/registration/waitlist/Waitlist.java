@@ -0,0 +1,377 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.waitlist;
+
+import com.google.common.base.Ticker;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spine3.base.Command;
+import org.spine3.base.CommandContext;
+import org.spine3.base.Commands;
+import org.spine3.base.EventContext;
+import org.spine3.base.Response;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.OrderId;
+import org.spine3.samples.lobby.common.ReservationId;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.registration.contracts.OrderConfirmed;
+import org.spine3.samples.lobby.registration.contracts.OrderExpired;
+import org.spine3.samples.lobby.registration.contracts.OrderPartiallyReserved;
+import org.spine3.samples.lobby.registration.contracts.OrderUpdated;
+import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
+import org.spine3.samples.lobby.registration.seat.availability.AddedAvailableSeats;
+import org.spine3.samples.lobby.registration.seat.availability.ReserveWaitlistedSeats;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsReservationCancelled;
+import org.spine3.samples.lobby.registration.seat.availability.WaitlistedReservation;
+import org.spine3.server.command.CommandBus;
+import org.spine3.server.event.EventSubscriber;
+import org.spine3.server.event.Subscribe;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Maps.newLinkedHashMap;
+import static org.spine3.samples.lobby.common.util.CommandContexts.newCommandContext;
+import static org.spine3.samples.lobby.registration.util.Seats.getAddedSeats;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatsAvailabilityId;
+
+/**
+ * The waitlist of orders awaiting seats which were unavailable when the orders were reserved.
+ *
+ * <p>An order joins the waitlist of each seat type it lacks when it is {@linkplain OrderPartiallyReserved partially
+ * reserved}, and leaves it when it is updated, expired or confirmed.
+ *
+ * <p>When seats of a conference are released by a {@linkplain SeatsReservationCancelled cancelled reservation}
+ * or {@linkplain AddedAvailableSeats added}, they are given to the waiting orders in the order of arrival
+ * and a single {@link ReserveWaitlistedSeats} command reserves them for all the promoted orders.
+ * An order given only a part of the seats it awaits keeps its place in the queue.
+ *
+ * <p>If the seats are taken by other reservations before the command is handled, the orders are partially reserved
+ * again and join the end of the queue.
+ *
+ * <p>The waitlist must be subscribed to the event bus of the bounded context. It is kept in memory,
+ * so the waiting orders are lost after a restart.
+ *
+ * @author Alexander Litus
+ */
+public class Waitlist extends EventSubscriber {
+
+    private final CommandBus commandBus;
+    private final Ticker ticker;
+    private final WaitlistMetrics metrics = new WaitlistMetrics();
+
+    private final Map<ConferenceId, Map<SeatTypeId, WaitlistQueue>> queues = newHashMap();
+    private final Map<OrderId, WaitingOrder> waitingOrders = newHashMap();
+
+    /**
+     * The version to assign to the next waiting order.
+     *
+     * <p>Versions are unique, so that entries of an order which waited before are never taken for the current ones.
+     */
+    private int nextVersion;
+
+    private final WaitlistQueue.EntryFilter liveEntries = new WaitlistQueue.EntryFilter() {
+        @Override
+        public boolean isLive(OrderId orderId, int version) {
+            final WaitingOrder waitingOrder = waitingOrders.get(orderId);
+            final boolean result = (waitingOrder != null) && (waitingOrder.version == version);
+            return result;
+        }
+    };
+
+    private final StreamObserver<Response> responseObserver = new StreamObserver<Response>() {
+        @Override
+        public void onNext(Response value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            log().error("Failed to reserve waitlisted seats.", t);
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    };
+
+    private Waitlist(Builder builder) {
+        this.commandBus = builder.commandBus;
+        this.ticker = builder.ticker;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Subscribe
+    public void on(OrderPartiallyReserved event, EventContext context) {
+        enqueue(event.getOrderId(), event.getConferenceId(), event.getWaitlistedSeatList());
+    }
+
+    @Subscribe
+    public void on(OrderUpdated event, EventContext context) {
+        // The seats are reserved again for the updated order.
+        cancel(event.getOrderId());
+    }
+
+    @Subscribe
+    public void on(OrderExpired event, EventContext context) {
+        cancel(event.getOrderId());
+    }
+
+    @Subscribe
+    public void on(OrderConfirmed event, EventContext context) {
+        cancel(event.getOrderId());
+    }
+
+    @Subscribe
+    public void on(SeatsReservationCancelled event, EventContext context) {
+        promoteAndPost(event.getConferenceId(), event.getAvailableSeatUpdatedList());
+    }
+
+    @Subscribe
+    public void on(AddedAvailableSeats event, EventContext context) {
+        promoteAndPost(event.getConferenceId(), getAddedSeats(event));
+    }
+
+    /**
+     * Returns the number of orders on the waitlist.
+     */
+    public synchronized int getWaitingOrderCount() {
+        return waitingOrders.size();
+    }
+
+    public WaitlistMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Puts the order on the waitlists of the seat types.
+     *
+     * <p>If the order already awaits exactly these seats, it keeps its place. Otherwise, it leaves the waitlist
+     * and joins the end of the queues.
+     */
+    /* package */ synchronized void enqueue(OrderId orderId, ConferenceId conferenceId, Iterable<SeatQuantity> seats) {
+        final Map<SeatTypeId, Integer> waitingSeats = newHashMap();
+        for (SeatQuantity seat : seats) {
+            if (seat.getQuantity() > 0) {
+                waitingSeats.put(seat.getSeatTypeId(), seat.getQuantity());
+            }
+        }
+        final WaitingOrder current = waitingOrders.get(orderId);
+        if (current != null && current.conferenceId.equals(conferenceId) && current.seats.equals(waitingSeats)) {
+            return;
+        }
+        cancel(orderId);
+        if (waitingSeats.isEmpty()) {
+            return;
+        }
+        final WaitingOrder waitingOrder = new WaitingOrder(nextVersion++, conferenceId, waitingSeats);
+        final long now = ticker.read();
+        for (Map.Entry<SeatTypeId, Integer> seat : waitingSeats.entrySet()) {
+            queueOf(conferenceId, seat.getKey()).add(orderId, waitingOrder.version, seat.getValue(), now);
+        }
+        waitingOrders.put(orderId, waitingOrder);
+    }
+
+    /**
+     * Removes the order from the waitlist.
+     */
+    /* package */ synchronized void cancel(OrderId orderId) {
+        final WaitingOrder waitingOrder = waitingOrders.remove(orderId);
+        if (waitingOrder == null) {
+            return;
+        }
+        final Map<SeatTypeId, WaitlistQueue> conferenceQueues = queues.get(waitingOrder.conferenceId);
+        for (SeatTypeId seatTypeId : waitingOrder.seats.keySet()) {
+            final WaitlistQueue queue = conferenceQueues.get(seatTypeId);
+            queue.markStale();
+            if (queue.needsCompaction()) {
+                queue.compact(liveEntries);
+            }
+        }
+    }
+
+    /**
+     * Gives the released seats to the waiting orders of the conference.
+     *
+     * @param conferenceId  the ID of the conference
+     * @param releasedSeats the quantities of seats available for the waiting orders
+     * @return the command reserving the seats for the promoted orders, or {@code null} if no order is promoted
+     */
+    @Nullable
+    /* package */ synchronized ReserveWaitlistedSeats promote(ConferenceId conferenceId,
+                                                             Iterable<SeatQuantity> releasedSeats) {
+        final Map<SeatTypeId, WaitlistQueue> conferenceQueues = queues.get(conferenceId);
+        if (conferenceQueues == null) {
+            return null;
+        }
+        final long now = ticker.read();
+        final Map<OrderId, WaitlistedReservation.Builder> reservations = newLinkedHashMap();
+        for (SeatQuantity releasedSeat : releasedSeats) {
+            final SeatTypeId seatTypeId = releasedSeat.getSeatTypeId();
+            final WaitlistQueue queue = conferenceQueues.get(seatTypeId);
+            int remainingCount = releasedSeat.getQuantity();
+            while (queue != null && remainingCount > 0 && !queue.isEmpty()) {
+                final OrderId orderId = queue.peekOrderId();
+                if (!liveEntries.isLive(orderId, queue.peekVersion())) {
+                    queue.removeHead(true);
+                    continue;
+                }
+                final int awaitedCount = queue.peekQuantity();
+                final int givenCount = Math.min(awaitedCount, remainingCount);
+                remainingCount -= givenCount;
+                metrics.onPromoted(givenCount, now - queue.peekEnqueuedNanos());
+                reservationOf(reservations, orderId).addSeat(newSeatQuantity(seatTypeId, givenCount));
+
+                final WaitingOrder waitingOrder = waitingOrders.get(orderId);
+                if (givenCount < awaitedCount) {
+                    queue.setHeadQuantity(awaitedCount - givenCount);
+                    waitingOrder.seats.put(seatTypeId, awaitedCount - givenCount);
+                } else {
+                    queue.removeHead(false);
+                    waitingOrder.seats.remove(seatTypeId);
+                    if (waitingOrder.seats.isEmpty()) {
+                        waitingOrders.remove(orderId);
+                    }
+                }
+            }
+        }
+        if (reservations.isEmpty()) {
+            return null;
+        }
+        metrics.onPass();
+        final ReserveWaitlistedSeats.Builder result =
+                ReserveWaitlistedSeats.newBuilder()
+                                      .setSeatsAvailabilityId(newSeatsAvailabilityId(conferenceId))
+                                      .setConferenceId(conferenceId);
+        for (WaitlistedReservation.Builder reservation : reservations.values()) {
+            result.addReservation(reservation);
+        }
+        return result.build();
+    }
+
+    private void promoteAndPost(ConferenceId conferenceId, Iterable<SeatQuantity> releasedSeats) {
+        final ReserveWaitlistedSeats message = promote(conferenceId, releasedSeats);
+        if (message == null) {
+            return;
+        }
+        final CommandContext context = newCommandContext();
+        final Command command = Commands.create(message, context);
+        commandBus.post(command, responseObserver);
+    }
+
+    private static WaitlistedReservation.Builder reservationOf(Map<OrderId, WaitlistedReservation.Builder> reservations,
+                                                               OrderId orderId) {
+        WaitlistedReservation.Builder result = reservations.get(orderId);
+        if (result == null) {
+            final ReservationId reservationId = ReservationId.newBuilder()
+                                                             .setUuid(orderId.getUuid())
+                                                             .build();
+            result = WaitlistedReservation.newBuilder()
+                                          .setReservationId(reservationId);
+            reservations.put(orderId, result);
+        }
+        return result;
+    }
+
+    private WaitlistQueue queueOf(ConferenceId conferenceId, SeatTypeId seatTypeId) {
+        Map<SeatTypeId, WaitlistQueue> conferenceQueues = queues.get(conferenceId);
+        if (conferenceQueues == null) {
+            conferenceQueues = newHashMap();
+            queues.put(conferenceId, conferenceQueues);
+        }
+        WaitlistQueue queue = conferenceQueues.get(seatTypeId);
+        if (queue == null) {
+            queue = new WaitlistQueue();
+            conferenceQueues.put(seatTypeId, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * An order on the waitlist.
+     */
+    private static class WaitingOrder {
+
+        private final int version;
+        private final ConferenceId conferenceId;
+
+        /**
+         * The quantities of seats the order still awaits, by seat type.
+         */
+        private final Map<SeatTypeId, Integer> seats;
+
+        private WaitingOrder(int version, ConferenceId conferenceId, Map<SeatTypeId, Integer> seats) {
+            this.version = version;
+            this.conferenceId = conferenceId;
+            this.seats = seats;
+        }
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+        @SuppressWarnings("NonSerializableFieldInSerializableClass")
+        private final Logger value = LoggerFactory.getLogger(Waitlist.class);
+    }
+
+    /**
+     * The builder of {@link Waitlist} instances.
+     */
+    public static class Builder {
+
+        private CommandBus commandBus;
+        private Ticker ticker = Ticker.systemTicker();
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the command bus to post {@link ReserveWaitlistedSeats} commands to.
+         */
+        public Builder setCommandBus(CommandBus commandBus) {
+            this.commandBus = checkNotNull(commandBus);
+            return this;
+        }
+
+        /**
+         * Sets the source of time for measuring promotion latency.
+         */
+        public Builder setTicker(Ticker ticker) {
+            this.ticker = checkNotNull(ticker);
+            return this;
+        }
+
+        public Waitlist build() {
+            checkState(commandBus != null, "Command bus must be set.");
+            return new Waitlist(this);
+        }
+    }
+}
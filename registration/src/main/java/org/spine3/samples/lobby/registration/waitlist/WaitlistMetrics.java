@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.waitlist;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The statistics of promotions of waitlisted orders.
+ *
+ * <p>The promotion latency is the time from an order joining the waitlist of a seat type till the released seats
+ * of the type are included in a {@code ReserveWaitlistedSeats} command for the order.
+ *
+ * <p>Is updated concurrently, so the values returned by different getters may be slightly inconsistent.
+ *
+ * @author Alexander Litus
+ */
+public class WaitlistMetrics {
+
+    private final AtomicLong passCount = new AtomicLong();
+    private final AtomicLong promotionCount = new AtomicLong();
+    private final AtomicLong promotedSeatCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    /* package */ WaitlistMetrics() {
+    }
+
+    /* package */ void onPass() {
+        passCount.incrementAndGet();
+    }
+
+    /* package */ void onPromoted(int seatCount, long latencyNanos) {
+        promotionCount.incrementAndGet();
+        promotedSeatCount.addAndGet(seatCount);
+        totalLatencyNanos.addAndGet(latencyNanos);
+        long max = maxLatencyNanos.get();
+        while (latencyNanos > max && !maxLatencyNanos.compareAndSet(max, latencyNanos)) {
+            max = maxLatencyNanos.get();
+        }
+    }
+
+    /**
+     * Returns the number of promotion passes which reserved seats for at least one order.
+     */
+    public long getPassCount() {
+        return passCount.get();
+    }
+
+    /**
+     * Returns the number of times released seats of a type were given to an order.
+     */
+    public long getPromotionCount() {
+        return promotionCount.get();
+    }
+
+    /**
+     * Returns the number of seats given to waitlisted orders.
+     */
+    public long getPromotedSeatCount() {
+        return promotedSeatCount.get();
+    }
+
+    /**
+     * Returns the total promotion latency, in nanoseconds.
+     */
+    public long getTotalLatencyNanos() {
+        return totalLatencyNanos.get();
+    }
+
+    /**
+     * Returns the average promotion latency, in nanoseconds.
+     */
+    public long getAverageLatencyNanos() {
+        final long count = promotionCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        final long result = totalLatencyNanos.get() / count;
+        return result;
+    }
+
+    /**
+     * Returns the longest promotion latency, in nanoseconds.
+     */
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.waitlist;
+
+import org.spine3.samples.lobby.common.OrderId;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * The FIFO queue of orders awaiting seats of one seat type.
+ *
+ * <p>Entries are kept in a ring buffer of parallel arrays, which grows by doubling. An entry takes 20 bytes
+ * in addition to the reference to the order ID, so hundreds of thousands of entries fit in a few megabytes.
+ *
+ * <p>An entry is identified by the order ID and the version of the order waiting. When the order leaves the waitlist
+ * or waits again, its entries become stale. Stale entries are skipped at the head of the queue and
+ * {@linkplain #compact(EntryFilter) removed} in bulk once they make up half of the queue.
+ *
+ * <p>Is not thread-safe.
+ *
+ * @author Alexander Litus
+ */
+/* package */ class WaitlistQueue {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private OrderId[] orderIds = new OrderId[INITIAL_CAPACITY];
+    private int[] versions = new int[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private long[] enqueuedNanos = new long[INITIAL_CAPACITY];
+
+    private int head;
+    private int size;
+    private int staleCount;
+
+    /* package */ void add(OrderId orderId, int version, int quantity, long nanos) {
+        if (size == orderIds.length) {
+            resize(orderIds.length * 2);
+        }
+        final int index = indexOf(size);
+        orderIds[index] = orderId;
+        versions[index] = version;
+        quantities[index] = quantity;
+        enqueuedNanos[index] = nanos;
+        size++;
+    }
+
+    /* package */ boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of entries, including the stale ones.
+     */
+    /* package */ int size() {
+        return size;
+    }
+
+    /* package */ int getStaleCount() {
+        return staleCount;
+    }
+
+    /* package */ OrderId peekOrderId() {
+        checkNotEmpty();
+        return orderIds[head];
+    }
+
+    /* package */ int peekVersion() {
+        checkNotEmpty();
+        return versions[head];
+    }
+
+    /* package */ int peekQuantity() {
+        checkNotEmpty();
+        return quantities[head];
+    }
+
+    /* package */ long peekEnqueuedNanos() {
+        checkNotEmpty();
+        return enqueuedNanos[head];
+    }
+
+    /**
+     * Sets the quantity of the head entry, which keeps its place in the queue.
+     */
+    /* package */ void setHeadQuantity(int quantity) {
+        checkNotEmpty();
+        quantities[head] = quantity;
+    }
+
+    /**
+     * Removes the head entry.
+     *
+     * @param isStale whether the entry is known to be stale
+     */
+    /* package */ void removeHead(boolean isStale) {
+        checkNotEmpty();
+        orderIds[head] = null;
+        head = indexOf(1);
+        size--;
+        if (isStale) {
+            staleCount--;
+        }
+    }
+
+    /**
+     * Records that one of the entries became stale.
+     */
+    /* package */ void markStale() {
+        staleCount++;
+    }
+
+    /**
+     * Returns {@code true} if stale entries make up at least half of the queue.
+     */
+    /* package */ boolean needsCompaction() {
+        final boolean result = staleCount > 0 && staleCount * 2 >= size;
+        return result;
+    }
+
+    /**
+     * Removes all stale entries keeping the order of the others.
+     */
+    /* package */ void compact(EntryFilter filter) {
+        int liveCount = 0;
+        for (int i = 0; i < size; i++) {
+            final int from = indexOf(i);
+            if (filter.isLive(orderIds[from], versions[from])) {
+                final int to = indexOf(liveCount);
+                orderIds[to] = orderIds[from];
+                versions[to] = versions[from];
+                quantities[to] = quantities[from];
+                enqueuedNanos[to] = enqueuedNanos[from];
+                liveCount++;
+            }
+        }
+        for (int i = liveCount; i < size; i++) {
+            orderIds[indexOf(i)] = null;
+        }
+        size = liveCount;
+        staleCount = 0;
+    }
+
+    private int indexOf(int offset) {
+        final int result = (head + offset) & (orderIds.length - 1);
+        return result;
+    }
+
+    private void resize(int capacity) {
+        final OrderId[] newOrderIds = new OrderId[capacity];
+        final int[] newVersions = new int[capacity];
+        final int[] newQuantities = new int[capacity];
+        final long[] newEnqueuedNanos = new long[capacity];
+        for (int i = 0; i < size; i++) {
+            final int index = indexOf(i);
+            newOrderIds[i] = orderIds[index];
+            newVersions[i] = versions[index];
+            newQuantities[i] = quantities[index];
+            newEnqueuedNanos[i] = enqueuedNanos[index];
+        }
+        orderIds = newOrderIds;
+        versions = newVersions;
+        quantities = newQuantities;
+        enqueuedNanos = newEnqueuedNanos;
+        head = 0;
+    }
+
+    private void checkNotEmpty() {
+        checkState(size > 0, "The waitlist queue is empty.");
+    }
+
+    /**
+     * Tells whether an entry is not stale.
+     */
+    /* package */ interface EntryFilter {
+
+        boolean isLive(OrderId orderId, int version);
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.admission;
+
+import org.junit.Test;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.OrderId;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Sets.newConcurrentHashSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newOrderId;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class WaitingRoomShould {
+
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final double ADMISSION_RATE = 10;
+
+    private final ConferenceId conferenceId = newConferenceId();
+    private final WaitingRoom waitingRoom = WaitingRoom.newBuilder()
+                                                       .setAdmissionRate(ADMISSION_RATE)
+                                                       .build();
+
+    @Test
+    public void issue_tickets_in_order_of_arrival() {
+        final AdmissionTicket first = waitingRoom.enter(conferenceId);
+        final AdmissionTicket second = waitingRoom.enter(conferenceId);
+
+        assertEquals(0, first.getNumber());
+        assertEquals(1, second.getNumber());
+        assertEquals(1, waitingRoom.getPosition(first));
+        assertEquals(2, waitingRoom.getPosition(second));
+    }
+
+    @Test
+    public void number_tickets_of_each_conference_separately() {
+        waitingRoom.enter(conferenceId);
+
+        final AdmissionTicket ticket = waitingRoom.enter(newConferenceId());
+
+        assertEquals(0, ticket.getNumber());
+    }
+
+    @Test
+    public void admit_registrants_in_order_at_configured_rate() {
+        final List<AdmissionTicket> tickets = enter(25);
+
+        waitingRoom.admitDue(ONE_SECOND);
+
+        assertTrue(waitingRoom.isAdmitted(tickets.get(9)));
+        assertFalse(waitingRoom.isAdmitted(tickets.get(10)));
+        assertEquals(0, waitingRoom.getPosition(tickets.get(9)));
+        assertEquals(1, waitingRoom.getPosition(tickets.get(10)));
+        assertEquals(15, waitingRoom.getWaitingCount(conferenceId));
+    }
+
+    @Test
+    public void accumulate_fractional_admissions_between_ticks() {
+        final List<AdmissionTicket> tickets = enter(2);
+
+        waitingRoom.admitDue(ONE_SECOND / 20);
+        assertFalse(waitingRoom.isAdmitted(tickets.get(0)));
+
+        waitingRoom.admitDue(ONE_SECOND / 20);
+        assertTrue(waitingRoom.isAdmitted(tickets.get(0)));
+    }
+
+    @Test
+    public void not_admit_more_registrants_than_waiting() {
+        enter(3);
+
+        waitingRoom.admitDue(ONE_SECOND);
+        final AdmissionTicket late = waitingRoom.enter(conferenceId);
+
+        assertFalse(waitingRoom.isAdmitted(late));
+        assertEquals(1, waitingRoom.getPosition(late));
+    }
+
+    @Test
+    public void use_admission_rate_of_conference() {
+        final List<AdmissionTicket> tickets = enter(3);
+        waitingRoom.setAdmissionRate(conferenceId, 1);
+
+        waitingRoom.admitDue(ONE_SECOND);
+
+        assertTrue(waitingRoom.isAdmitted(tickets.get(0)));
+        assertFalse(waitingRoom.isAdmitted(tickets.get(1)));
+    }
+
+    @Test
+    public void not_admit_forged_ticket() {
+        final List<AdmissionTicket> tickets = enter(20);
+        waitingRoom.admitDue(ONE_SECOND);
+        final AdmissionTicket forged = tickets.get(15)
+                                              .toBuilder()
+                                              .setNumber(0)
+                                              .build();
+
+        assertFalse(waitingRoom.isAdmitted(forged));
+    }
+
+    @Test
+    public void admit_same_order_with_ticket_again() {
+        final AdmissionTicket ticket = waitingRoom.enter(conferenceId);
+        waitingRoom.admitDue(ONE_SECOND);
+        final OrderId orderId = newOrderId();
+
+        assertTrue(waitingRoom.admit(ticket, orderId));
+        assertTrue(waitingRoom.admit(ticket, orderId));
+    }
+
+    @Test
+    public void not_admit_another_order_with_used_ticket() {
+        final AdmissionTicket ticket = waitingRoom.enter(conferenceId);
+        waitingRoom.admitDue(ONE_SECOND);
+        waitingRoom.admit(ticket, newOrderId());
+
+        assertFalse(waitingRoom.admit(ticket, newOrderId()));
+    }
+
+    @Test
+    public void not_bind_ticket_which_is_not_admitted() {
+        final List<AdmissionTicket> tickets = enter(11);
+        final AdmissionTicket ticket = tickets.get(10);
+
+        assertFalse(waitingRoom.admit(ticket, newOrderId()));
+        waitingRoom.admitDue(ONE_SECOND * 2);
+        assertTrue(waitingRoom.admit(ticket, newOrderId()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throw_exception_on_position_query_for_forged_ticket() {
+        final AdmissionTicket forged = waitingRoom.enter(conferenceId)
+                                                  .toBuilder()
+                                                  .setSignature(42)
+                                                  .build();
+
+        waitingRoom.getPosition(forged);
+    }
+
+    @Test
+    public void issue_unique_tickets_concurrently() throws Exception {
+        final int threadCount = 8;
+        final int ticketsPerThread = 10_000;
+        final Set<Long> numbers = newConcurrentHashSet();
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        final List<Future<?>> results = newArrayList();
+        for (int i = 0; i < threadCount; i++) {
+            results.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int j = 0; j < ticketsPerThread; j++) {
+                        numbers.add(waitingRoom.enter(conferenceId)
+                                               .getNumber());
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+
+        assertEquals(threadCount * ticketsPerThread, numbers.size());
+        assertEquals(threadCount * ticketsPerThread, waitingRoom.getWaitingCount(conferenceId));
+    }
+
+    private List<AdmissionTicket> enter(int count) {
+        final List<AdmissionTicket> result = newArrayList();
+        for (int i = 0; i < count; i++) {
+            result.add(waitingRoom.enter(conferenceId));
+        }
+        return result;
+    }
+}
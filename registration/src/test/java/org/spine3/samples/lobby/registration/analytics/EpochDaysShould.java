@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.analytics;
+
+import com.google.protobuf.Timestamp;
+import org.junit.Test;
+import org.spine3.time.LocalDate;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class EpochDaysShould {
+
+    @Test
+    public void convert_date_to_days_since_epoch() {
+        assertEquals(0, EpochDays.of(date(1970, 1, 1)));
+        assertEquals(17_045, EpochDays.of(date(2016, 9, 1)));
+        assertEquals(-1, EpochDays.of(date(1969, 12, 31)));
+    }
+
+    @Test
+    public void convert_days_since_epoch_to_date() {
+        for (int day = -1000; day < 30_000; day++) {
+            assertEquals(day, EpochDays.of(EpochDays.toDate(day)));
+        }
+        assertEquals(date(2016, 2, 29), EpochDays.toDate(EpochDays.of(date(2016, 2, 29))));
+    }
+
+    @Test
+    public void convert_timestamp_to_day_rounding_down() {
+        assertEquals(0, EpochDays.of(seconds(86_399)));
+        assertEquals(1, EpochDays.of(seconds(86_400)));
+        assertEquals(-1, EpochDays.of(seconds(-1)));
+    }
+
+    private static Timestamp seconds(long seconds) {
+        return Timestamp.newBuilder()
+                        .setSeconds(seconds)
+                        .build();
+    }
+
+    private static LocalDate date(int year, int month, int day) {
+        return LocalDate.newBuilder()
+                        .setYear(year)
+                        .setMonthValue(month)
+                        .setDay(day)
+                        .build();
+    }
+}
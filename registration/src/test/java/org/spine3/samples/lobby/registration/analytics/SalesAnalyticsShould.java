@@ -0,0 +1,252 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.analytics;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import org.junit.Test;
+import org.spine3.base.Event;
+import org.spine3.base.EventContext;
+import org.spine3.money.Money;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.OrderId;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.registration.contracts.OrderConfirmed;
+import org.spine3.samples.lobby.registration.contracts.OrderExpired;
+import org.spine3.samples.lobby.registration.contracts.OrderPlaced;
+import org.spine3.samples.lobby.registration.contracts.OrderTotalsCalculated;
+import org.spine3.samples.lobby.registration.contracts.SeatOrderLine;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsReserved;
+import org.spine3.time.LocalDate;
+
+import java.util.List;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newOrderId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newEvent;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class SalesAnalyticsShould {
+
+    private static final EventContext CONTEXT = EventContext.getDefaultInstance();
+
+    private static final LocalDate FIRST_DAY = date(2016, 9, 1);
+    private static final LocalDate SECOND_DAY = date(2016, 9, 2);
+
+    private final SalesAnalytics analytics = new SalesAnalytics();
+    private final ConferenceId conferenceId = newConferenceId();
+    private final SeatTypeId seatTypeId = newSeatTypeId();
+
+    @Test
+    public void count_priced_order_on_day_it_is_placed() {
+        final OrderId orderId = newOrderId();
+
+        analytics.on(orderPlaced(orderId, SECOND_DAY), CONTEXT);
+        analytics.on(totalsCalculated(orderId, 3, 300), CONTEXT);
+
+        final SalesSeries series = series();
+        assertEquals(ImmutableList.of(0L, 3L), series.getSeatsSoldList());
+        assertEquals(ImmutableList.of(0L, 300L), series.getRevenueList());
+        assertEquals(ImmutableList.of(0L, 0L), series.getSeatsConfirmedList());
+    }
+
+    @Test
+    public void replace_order_lines_when_totals_are_recalculated() {
+        final OrderId orderId = newOrderId();
+        analytics.on(orderPlaced(orderId, FIRST_DAY), CONTEXT);
+        analytics.on(totalsCalculated(orderId, 3, 300), CONTEXT);
+
+        analytics.on(totalsCalculated(orderId, 2, 200), CONTEXT);
+
+        final SalesSeries series = series();
+        assertEquals(ImmutableList.of(2L, 0L), series.getSeatsSoldList());
+        assertEquals(ImmutableList.of(200L, 0L), series.getRevenueList());
+    }
+
+    @Test
+    public void split_discounted_total_between_seat_types() {
+        final OrderId orderId = newOrderId();
+        final SeatOrderLine otherLine = SeatOrderLine.newBuilder()
+                                                     .setSeatTypeId(newSeatTypeId())
+                                                     .setQuantity(1)
+                                                     .setLineTotal(Money.newBuilder()
+                                                                        .setAmount(100))
+                                                     .build();
+        final OrderTotalsCalculated discounted = totalsCalculated(orderId, 3, 300).toBuilder()
+                                                                                   .addOrderLine(otherLine)
+                                                                                   .setTotal(Money.newBuilder()
+                                                                                                  .setAmount(300))
+                                                                                   .setDiscount(Money.newBuilder()
+                                                                                                     .setAmount(100))
+                                                                                   .build();
+        analytics.on(orderPlaced(orderId, FIRST_DAY), CONTEXT);
+
+        analytics.on(discounted, CONTEXT);
+
+        final SalesSeries series = series();
+        assertEquals(ImmutableList.of(3L, 0L), series.getSeatsSoldList());
+        assertEquals(ImmutableList.of(225L, 0L), series.getRevenueList());
+    }
+
+    @Test
+    public void count_no_revenue_for_free_order() {
+        final OrderId orderId = newOrderId();
+        final OrderTotalsCalculated free = totalsCalculated(orderId, 3, 300).toBuilder()
+                                                                             .setIsFreeOfCharge(true)
+                                                                             .build();
+        analytics.on(orderPlaced(orderId, FIRST_DAY), CONTEXT);
+
+        analytics.on(free, CONTEXT);
+
+        final SalesSeries series = series();
+        assertEquals(ImmutableList.of(3L, 0L), series.getSeatsSoldList());
+        assertEquals(ImmutableList.of(0L, 0L), series.getRevenueList());
+    }
+
+    @Test
+    public void retract_sales_when_order_expires() {
+        final OrderId expiredOrderId = newOrderId();
+        final OrderId orderId = newOrderId();
+        analytics.on(orderPlaced(expiredOrderId, FIRST_DAY), CONTEXT);
+        analytics.on(totalsCalculated(expiredOrderId, 3, 300), CONTEXT);
+        analytics.on(orderPlaced(orderId, FIRST_DAY), CONTEXT);
+        analytics.on(totalsCalculated(orderId, 1, 100), CONTEXT);
+
+        analytics.on(orderExpired(expiredOrderId), CONTEXT);
+
+        final SalesSeries series = series();
+        assertEquals(ImmutableList.of(1L, 0L), series.getSeatsSoldList());
+        assertEquals(ImmutableList.of(100L, 0L), series.getRevenueList());
+        assertEquals(1, analytics.getOpenOrderCount());
+    }
+
+    @Test
+    public void count_confirmed_order_and_stop_tracking_it() {
+        final OrderId orderId = newOrderId();
+        analytics.on(orderPlaced(orderId, FIRST_DAY), CONTEXT);
+        analytics.on(totalsCalculated(orderId, 3, 300), CONTEXT);
+
+        analytics.on(orderConfirmed(orderId), CONTEXT);
+        analytics.on(orderExpired(orderId), CONTEXT);
+
+        final SalesSeries series = series();
+        assertEquals(ImmutableList.of(3L, 0L), series.getSeatsSoldList());
+        assertEquals(ImmutableList.of(3L, 0L), series.getSeatsConfirmedList());
+        assertEquals(ImmutableList.of(300L, 0L), series.getRevenueConfirmedList());
+        assertEquals(0, analytics.getOpenOrderCount());
+    }
+
+    @Test
+    public void rebuild_counters_from_history() {
+        final OrderId orderId = newOrderId();
+        final OrderId expiredOrderId = newOrderId();
+        analytics.on(orderPlaced(newOrderId(), FIRST_DAY), CONTEXT);
+        final List<Event> history = newArrayList(
+                event(orderPlaced(orderId, FIRST_DAY)),
+                event(SeatsReserved.getDefaultInstance()),
+                event(totalsCalculated(orderId, 2, 200)),
+                event(orderPlaced(expiredOrderId, SECOND_DAY)),
+                event(totalsCalculated(expiredOrderId, 5, 500)),
+                event(orderConfirmed(orderId)),
+                event(orderExpired(expiredOrderId)));
+
+        final long appliedCount = analytics.rebuild(history);
+
+        assertEquals(6, appliedCount);
+        final SalesSeries series = series();
+        assertEquals(ImmutableList.of(2L, 0L), series.getSeatsSoldList());
+        assertEquals(ImmutableList.of(2L, 0L), series.getSeatsConfirmedList());
+        assertEquals(0, analytics.getOpenOrderCount());
+    }
+
+    @Test
+    public void return_empty_series_for_unknown_seat_type() {
+        final SalesSeries series = analytics.getSeries(conferenceId, newSeatTypeId(), FIRST_DAY, SECOND_DAY);
+
+        assertEquals(ImmutableList.of(0L, 0L), series.getSeatsSoldList());
+        assertEquals(FIRST_DAY, series.getFirstDay());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void not_return_series_ending_before_it_starts() {
+        analytics.getSeries(conferenceId, seatTypeId, SECOND_DAY, FIRST_DAY);
+    }
+
+    private SalesSeries series() {
+        return analytics.getSeries(conferenceId, seatTypeId, FIRST_DAY, SECOND_DAY);
+    }
+
+    private OrderPlaced orderPlaced(OrderId orderId, LocalDate day) {
+        final long seconds = EpochDays.of(day) * 24L * 60 * 60 + 12 * 60 * 60;
+        return OrderPlaced.newBuilder()
+                          .setOrderId(orderId)
+                          .setConferenceId(conferenceId)
+                          .setPlacedTime(Timestamp.newBuilder()
+                                                  .setSeconds(seconds))
+                          .build();
+    }
+
+    private OrderTotalsCalculated totalsCalculated(OrderId orderId, int quantity, long amount) {
+        final SeatOrderLine line = SeatOrderLine.newBuilder()
+                                                .setSeatTypeId(seatTypeId)
+                                                .setQuantity(quantity)
+                                                .setLineTotal(Money.newBuilder()
+                                                                   .setAmount(amount))
+                                                .build();
+        return OrderTotalsCalculated.newBuilder()
+                                    .setOrderId(orderId)
+                                    .addOrderLine(line)
+                                    .setTotal(Money.newBuilder()
+                                                   .setAmount(amount))
+                                    .build();
+    }
+
+    private static OrderConfirmed orderConfirmed(OrderId orderId) {
+        return OrderConfirmed.newBuilder()
+                             .setOrderId(orderId)
+                             .build();
+    }
+
+    private static OrderExpired orderExpired(OrderId orderId) {
+        return OrderExpired.newBuilder()
+                           .setOrderId(orderId)
+                           .build();
+    }
+
+    private static Event event(Message message) {
+        return newEvent(message);
+    }
+
+    private static LocalDate date(int year, int month, int day) {
+        return LocalDate.newBuilder()
+                        .setYear(year)
+                        .setMonthValue(month)
+                        .setDay(day)
+                        .build();
+    }
+}
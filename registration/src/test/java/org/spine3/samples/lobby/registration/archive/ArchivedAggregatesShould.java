@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.archive;
+
+import com.google.protobuf.Message;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.spine3.base.Command;
+import org.spine3.base.Commands;
+import org.spine3.protobuf.AnyPacker;
+import org.spine3.samples.lobby.common.OrderId;
+import org.spine3.samples.lobby.registration.contracts.OrderConfirmed;
+import org.spine3.samples.lobby.registration.contracts.OrderPlaced;
+import org.spine3.samples.lobby.registration.order.ConfirmOrder;
+import org.spine3.samples.lobby.registration.order.OrderAggregate;
+
+import java.io.IOException;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.samples.lobby.common.util.CommandContexts.newCommandContext;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newOrderId;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newEvent;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings("InstanceMethodNamingConvention")
+public class ArchivedAggregatesShould {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final OrderId archivedOrderId = newOrderId();
+    private ArchivedAggregates archivedAggregates;
+
+    @Before
+    public void setUpTest() throws IOException {
+        final ColdStore coldStore = new ColdStore(folder.newFolder()
+                                                        .toPath());
+        final OrderPlaced placed = OrderPlaced.newBuilder()
+                                              .setOrderId(archivedOrderId)
+                                              .setConferenceId(newConferenceId())
+                                              .build();
+        final OrderConfirmed confirmed = OrderConfirmed.newBuilder()
+                                                       .setOrderId(archivedOrderId)
+                                                       .build();
+        final ArchivedEntity entity = ArchivedEntity.newBuilder()
+                                                    .setId(AnyPacker.pack(archivedOrderId))
+                                                    .addEvent(newEvent(placed))
+                                                    .addEvent(newEvent(confirmed))
+                                                    .build();
+        coldStore.write(singletonList(entity));
+        archivedAggregates = new ArchivedAggregates(coldStore);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void reject_command_to_archived_aggregate() {
+        archivedAggregates.checkNotArchived(confirmOrder(archivedOrderId));
+    }
+
+    @Test
+    public void accept_command_to_aggregate_which_is_not_archived() {
+        archivedAggregates.checkNotArchived(confirmOrder(newOrderId()));
+    }
+
+    @Test
+    public void restore_archived_aggregate_missing_in_hot_storage() {
+        final OrderAggregate order = new OrderAggregate(archivedOrderId);
+
+        final boolean isRestored = archivedAggregates.restore(order);
+
+        assertTrue(isRestored);
+        assertEquals(archivedOrderId, order.getState()
+                                           .getId());
+        assertTrue(order.getState()
+                        .getIsConfirmed());
+    }
+
+    @Test
+    public void not_restore_aggregate_which_is_not_archived() {
+        final OrderAggregate order = new OrderAggregate(newOrderId());
+
+        assertFalse(archivedAggregates.restore(order));
+        assertEquals(0, order.getVersion());
+    }
+
+    private static Command confirmOrder(OrderId orderId) {
+        final Message message = ConfirmOrder.newBuilder()
+                                            .setOrderId(orderId)
+                                            .build();
+        return Commands.create(message, newCommandContext());
+    }
+}
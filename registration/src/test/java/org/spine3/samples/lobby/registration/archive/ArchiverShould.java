@@ -0,0 +1,227 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.archive;
+
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import io.grpc.stub.StreamObserver;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.spine3.base.Event;
+import org.spine3.protobuf.AnyPacker;
+import org.spine3.samples.lobby.common.OrderId;
+import org.spine3.samples.lobby.registration.contracts.OrderConfirmed;
+import org.spine3.samples.lobby.registration.contracts.OrderPlaced;
+import org.spine3.samples.lobby.registration.contracts.SeatAssigned;
+import org.spine3.samples.lobby.registration.contracts.SeatAssignment;
+import org.spine3.samples.lobby.registration.contracts.SeatAssignmentsCreated;
+import org.spine3.samples.lobby.registration.contracts.SeatAssignmentsId;
+import org.spine3.samples.lobby.registration.contracts.SeatPosition;
+import org.spine3.samples.lobby.registration.order.Order;
+import org.spine3.samples.lobby.registration.seat.assignment.SeatAssignments;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.protobuf.util.TimeUtil.getCurrentTime;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newOrderId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newUuid;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newEvent;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newPersonalInfo;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class ArchiverShould {
+
+    private static final int RETENTION_DAYS = 30;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Timestamp now = getCurrentTime();
+    private final List<Event> history = newArrayList();
+
+    @Test
+    public void move_orders_completed_before_retention_period_to_cold_store() throws IOException {
+        final OrderId oldOrder = addConfirmedOrder(40);
+        final OrderId recentOrder = addConfirmedOrder(10);
+        final ColdStore coldStore = newColdStore();
+
+        final RecordingObserver retained = new RecordingObserver();
+        final ArchiveReport report = newArchiver(coldStore).run(history, now, retained);
+
+        assertTrue(retained.isCompleted);
+        assertEquals(history.subList(2, 4), retained.events);
+        final ArchivedEntity archived = coldStore.read(oldOrder);
+        assertNotNull(archived);
+        assertEquals(2, archived.getEventCount());
+        final Order state = AnyPacker.unpack(archived.getState());
+        assertEquals(oldOrder, state.getId());
+        assertFalse(coldStore.contains(recentOrder));
+
+        assertEquals(1, report.getOrderCount());
+        assertEquals(2, report.getArchivedEventCount());
+        assertEquals(2, report.getHotEventCount());
+    }
+
+    @Test
+    public void move_fully_assigned_seat_assignments_of_archived_order() throws IOException {
+        final OrderId order = addConfirmedOrder(60);
+        final SeatAssignmentsId assigned = addSeatAssignments(order, 50, true);
+        final SeatAssignmentsId notAssigned = addSeatAssignments(order, 50, false);
+        final ColdStore coldStore = newColdStore();
+
+        final RecordingObserver retained = new RecordingObserver();
+        final ArchiveReport report = newArchiver(coldStore).run(history, now, retained);
+
+        final ArchivedEntity archived = coldStore.read(assigned);
+        assertNotNull(archived);
+        final SeatAssignments state = AnyPacker.unpack(archived.getState());
+        assertEquals(assigned, state.getId());
+        assertFalse(coldStore.contains(notAssigned));
+        assertEquals(1, report.getSeatAssignmentsCount());
+        assertEquals(1, retained.events.size());
+    }
+
+    @Test
+    public void delete_archived_streams_from_hot_storage() throws IOException {
+        final OrderId oldOrder = addConfirmedOrder(40);
+        addConfirmedOrder(10);
+        final List<Message> deletedIds = newArrayList();
+        final HotStorage hotStorage = new HotStorage() {
+            @Override
+            public void delete(Message entityId) {
+                deletedIds.add(entityId);
+            }
+        };
+        final Archiver archiver = Archiver.newBuilder()
+                                          .setColdStore(newColdStore())
+                                          .setHotStorage(hotStorage)
+                                          .setRetention(RETENTION_DAYS, TimeUnit.DAYS)
+                                          .build();
+
+        archiver.run(history, now, new RecordingObserver());
+
+        assertEquals(singletonList(oldOrder), deletedIds);
+    }
+
+    private OrderId addConfirmedOrder(int daysAgo) {
+        final OrderId orderId = newOrderId();
+        final OrderPlaced placed = OrderPlaced.newBuilder()
+                                              .setOrderId(orderId)
+                                              .setConferenceId(newConferenceId())
+                                              .build();
+        final OrderConfirmed confirmed = OrderConfirmed.newBuilder()
+                                                       .setOrderId(orderId)
+                                                       .build();
+        history.add(newEventAt(placed, daysAgo));
+        history.add(newEventAt(confirmed, daysAgo));
+        return orderId;
+    }
+
+    /**
+     * Adds the events of seat assignments with one seat, assigned to an attendee if {@code isAssigned}.
+     */
+    private SeatAssignmentsId addSeatAssignments(OrderId orderId, int daysAgo, boolean isAssigned) {
+        final SeatAssignmentsId id = SeatAssignmentsId.newBuilder()
+                                                      .setUuid(newUuid())
+                                                      .build();
+        final SeatAssignment seat = SeatAssignment.newBuilder()
+                                                  .setSeatTypeId(newSeatTypeId())
+                                                  .setPosition(SeatPosition.newBuilder()
+                                                                           .setValue(1))
+                                                  .build();
+        final SeatAssignmentsCreated created = SeatAssignmentsCreated.newBuilder()
+                                                                     .setAssignmentsId(id)
+                                                                     .setOrderId(orderId)
+                                                                     .addAssignment(seat)
+                                                                     .build();
+        history.add(newEventAt(created, daysAgo));
+        if (isAssigned) {
+            final SeatAssigned assigned =
+                    SeatAssigned.newBuilder()
+                                .setAssignmentsId(id)
+                                .setAssignment(seat.toBuilder()
+                                                   .setAttendee(newPersonalInfo("Sam", "Doe", "sam@example.com")))
+                                .build();
+            history.add(newEventAt(assigned, daysAgo));
+        }
+        return id;
+    }
+
+    private Event newEventAt(Message message, int daysAgo) {
+        final Event event = newEvent(message);
+        final Timestamp time = Timestamp.newBuilder()
+                                        .setSeconds(now.getSeconds() - TimeUnit.DAYS.toSeconds(daysAgo))
+                                        .build();
+        final Event result = event.toBuilder()
+                                  .setContext(event.getContext()
+                                                   .toBuilder()
+                                                   .setTimestamp(time))
+                                  .build();
+        return result;
+    }
+
+    private ColdStore newColdStore() throws IOException {
+        return new ColdStore(folder.newFolder()
+                                   .toPath());
+    }
+
+    private static Archiver newArchiver(ColdStore coldStore) {
+        return Archiver.newBuilder()
+                       .setColdStore(coldStore)
+                       .setRetention(RETENTION_DAYS, TimeUnit.DAYS)
+                       .build();
+    }
+
+    private static class RecordingObserver implements StreamObserver<Event> {
+
+        private final List<Event> events = newArrayList();
+        private boolean isCompleted;
+
+        @Override
+        public void onNext(Event value) {
+            events.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            throw new AssertionError(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            isCompleted = true;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.archive;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.spine3.base.Event;
+import org.spine3.protobuf.AnyPacker;
+import org.spine3.samples.lobby.common.OrderId;
+import org.spine3.samples.lobby.registration.contracts.OrderConfirmed;
+import org.spine3.samples.lobby.registration.contracts.OrderPlaced;
+import org.spine3.samples.lobby.registration.order.Order;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newOrderId;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newEvent;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class ColdStoreShould {
+
+    private static final int ENTITY_COUNT = 2_000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void return_null_if_entity_is_not_archived() throws IOException {
+        final ColdStore store = new ColdStore(folder.newFolder()
+                                                    .toPath());
+
+        assertNull(store.read(newOrderId()));
+        assertFalse(store.contains(newOrderId()));
+    }
+
+    @Test
+    public void read_entities_of_several_blocks_after_restart() throws IOException {
+        final Path directory = folder.newFolder()
+                                     .toPath();
+        final List<ArchivedEntity> entities = newArchivedOrders(ENTITY_COUNT);
+        new ColdStore(directory).write(entities);
+
+        final ColdStore store = new ColdStore(directory);
+
+        assertEquals(ENTITY_COUNT, store.getEntityCount());
+        assertEquals(1, store.getSegmentCount());
+        for (ArchivedEntity entity : ImmutableList.of(entities.get(0), entities.get(ENTITY_COUNT / 2),
+                                                      entities.get(ENTITY_COUNT - 1))) {
+            final OrderId id = AnyPacker.unpack(entity.getId());
+            assertTrue(store.contains(id));
+            assertEquals(entity, store.read(id));
+        }
+    }
+
+    @Test
+    public void read_entity_from_latest_segment() throws IOException {
+        final ColdStore store = new ColdStore(folder.newFolder()
+                                                    .toPath());
+        final ArchivedEntity first = newArchivedOrder(newOrderId());
+        final OrderId id = AnyPacker.unpack(first.getId());
+        final ArchivedEntity second = newArchivedOrder(id).toBuilder()
+                                                          .addEvent(newEvent(newOrderConfirmed(id)))
+                                                          .build();
+        store.write(ImmutableList.of(first));
+        store.write(ImmutableList.of(second));
+
+        assertEquals(2, store.getSegmentCount());
+        assertEquals(second, store.read(id));
+    }
+
+    @Test
+    public void compress_entities() throws IOException {
+        final ColdStore store = new ColdStore(folder.newFolder()
+                                                    .toPath());
+        final List<ArchivedEntity> entities = newArchivedOrders(ENTITY_COUNT);
+        long serializedSize = 0;
+        for (ArchivedEntity entity : entities) {
+            serializedSize += entity.getSerializedSize();
+        }
+
+        store.write(entities);
+
+        assertTrue(store.getSizeInBytes() < serializedSize);
+    }
+
+    private static List<ArchivedEntity> newArchivedOrders(int count) {
+        final List<ArchivedEntity> result = newArrayList();
+        for (int i = 0; i < count; i++) {
+            result.add(newArchivedOrder(newOrderId()));
+        }
+        return result;
+    }
+
+    private static ArchivedEntity newArchivedOrder(OrderId id) {
+        final OrderPlaced placed = OrderPlaced.newBuilder()
+                                              .setOrderId(id)
+                                              .setConferenceId(newConferenceId())
+                                              .build();
+        final Order state = Order.newBuilder()
+                                 .setId(id)
+                                 .setConferenceId(placed.getConferenceId())
+                                 .build();
+        final Event event = newEvent(placed);
+        final ArchivedEntity result = ArchivedEntity.newBuilder()
+                                                    .setId(AnyPacker.pack(id))
+                                                    .setState(AnyPacker.pack(state))
+                                                    .addEvent(event)
+                                                    .setCompletedTime(event.getContext()
+                                                                           .getTimestamp())
+                                                    .build();
+        return result;
+    }
+
+    private static OrderConfirmed newOrderConfirmed(OrderId id) {
+        return OrderConfirmed.newBuilder()
+                             .setOrderId(id)
+                             .build();
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.bundle;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.spine3.base.CommandContext;
+import org.spine3.base.Commands;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.ReservationId;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
+import org.spine3.samples.lobby.registration.seat.availability.AddSeats;
+import org.spine3.samples.lobby.registration.seat.availability.SeatQuantities;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailability;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailabilityRepository;
+import org.spine3.server.BoundedContext;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.samples.lobby.common.util.CommandContexts.newCommandContext;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newReservationId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newBoundedContext;
+import static org.spine3.samples.lobby.registration.util.Seats.findById;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatsAvailabilityId;
+import static org.spine3.samples.lobby.registration.util.Seats.findPendingReservation;
+import static org.spine3.samples.lobby.registration.util.Seats.getPendingReservations;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class BundleReservationSagaShould {
+
+    private static final int MAIN_SEAT_COUNT = 200;
+    private static final int WORKSHOP_SEAT_COUNT = 100;
+    private static final int CLIENT_THREAD_COUNT = 8;
+    private static final int BUNDLES_PER_THREAD = 40;
+    private static final long EXPIRATION_MILLIS = 50;
+
+    private final ConferenceId mainConference = newConferenceId();
+    private final ConferenceId workshop = newConferenceId();
+    private final SeatTypeId mainSeatType = newSeatTypeId();
+    private final SeatTypeId workshopSeatType = newSeatTypeId();
+
+    private final BundleReservationStore store = new InMemoryBundleReservationStore();
+    private BoundedContext boundedContext;
+    private SeatsAvailabilityRepository repository;
+    private BundleReservationSaga saga;
+
+    @Before
+    public void setUpTest() {
+        boundedContext = newBoundedContext();
+        repository = new SeatsAvailabilityRepository(boundedContext);
+        boundedContext.register(repository);
+        addSeats(mainConference, mainSeatType, MAIN_SEAT_COUNT);
+        addSeats(workshop, workshopSeatType, WORKSHOP_SEAT_COUNT);
+        saga = newSaga(TimeUnit.MINUTES.toMillis(15));
+    }
+
+    @After
+    public void tearDownTest() {
+        saga.close();
+    }
+
+    @Test
+    public void reserve_seats_in_all_conferences_of_bundle() {
+        final ReservationId reservationId = newReservationId();
+
+        final BundleOutcome outcome = saga.reserve(reservationId, newBundle(2, 2));
+
+        assertEquals(BundleOutcome.RESERVED, outcome);
+        assertEquals(2, getReservedCount(mainConference, mainSeatType, reservationId));
+        assertEquals(2, getReservedCount(workshop, workshopSeatType, reservationId));
+        assertEquals(MAIN_SEAT_COUNT - 2, getAvailableCount(mainConference, mainSeatType));
+        assertEquals(WORKSHOP_SEAT_COUNT - 2, getAvailableCount(workshop, workshopSeatType));
+    }
+
+    @Test
+    public void cancel_reservations_if_conference_has_not_enough_seats() {
+        final ReservationId reservationId = newReservationId();
+
+        final BundleOutcome outcome = saga.reserve(reservationId, newBundle(2, WORKSHOP_SEAT_COUNT + 1));
+
+        assertEquals(BundleOutcome.COMPENSATED, outcome);
+        assertNotReserved(reservationId);
+        assertEquals(1, saga.getMetrics()
+                            .getCompensatedLatency()
+                            .getCount());
+    }
+
+    @Test
+    public void cancel_reservations_if_conference_rejects_command() {
+        final ReservationId reservationId = newReservationId();
+        final Map<ConferenceId, List<SeatQuantity>> bundle =
+                ImmutableMap.of(mainConference, seats(mainSeatType, 2),
+                                workshop, seats(newSeatTypeId(), 2));
+
+        final BundleOutcome outcome = saga.reserve(reservationId, bundle);
+
+        assertEquals(BundleOutcome.COMPENSATED, outcome);
+        assertNotReserved(reservationId);
+    }
+
+    @Test
+    public void commit_reservations_of_confirmed_bundle() {
+        final ReservationId reservationId = newReservationId();
+        saga.reserve(reservationId, newBundle(2, 2));
+
+        saga.confirm(reservationId);
+
+        assertTrue(getPendingReservations(getState(mainConference)).isEmpty());
+        assertTrue(getPendingReservations(getState(workshop)).isEmpty());
+        assertEquals(MAIN_SEAT_COUNT - 2, getAvailableCount(mainConference, mainSeatType));
+        assertEquals(WORKSHOP_SEAT_COUNT - 2, getAvailableCount(workshop, workshopSeatType));
+        assertNull(store.read(reservationId));
+    }
+
+    @Test
+    public void release_seats_of_bundle_not_confirmed_in_time() throws InterruptedException {
+        saga.close();
+        saga = newSaga(EXPIRATION_MILLIS);
+        final ReservationId reservationId = newReservationId();
+        saga.reserve(reservationId, newBundle(2, 2));
+
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (store.read(reservationId) != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(EXPIRATION_MILLIS);
+        }
+
+        assertNotReserved(reservationId);
+        assertNull(store.read(reservationId));
+        assertEquals(1, saga.getMetrics()
+                            .getExpiredCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void not_confirm_bundle_which_is_not_reserved() {
+        final ReservationId reservationId = newReservationId();
+        saga.reserve(reservationId, newBundle(2, WORKSHOP_SEAT_COUNT + 1));
+
+        saga.confirm(reservationId);
+    }
+
+    @Test
+    public void cancel_bundle_left_reserving_on_recovery() {
+        final ReservationId reservationId = newReservationId();
+        saga.reserve(reservationId, newBundle(2, 2));
+        saga.close();
+        final BundleReservation interrupted = store.read(reservationId);
+        assertNotNull(interrupted);
+        store.write(interrupted.toBuilder()
+                               .setStatus(BundleReservation.Status.RESERVING)
+                               .build());
+
+        saga = newSaga(TimeUnit.MINUTES.toMillis(15));
+        saga.recover();
+
+        assertNotReserved(reservationId);
+        assertNull(store.read(reservationId));
+    }
+
+    @Test
+    public void never_leave_bundle_partially_reserved_under_contention() throws Exception {
+        final ExecutorService clients = Executors.newFixedThreadPool(CLIENT_THREAD_COUNT);
+        final List<Future<List<ReservationId>>> results = newArrayList();
+        for (int i = 0; i < CLIENT_THREAD_COUNT; i++) {
+            results.add(clients.submit(new Callable<List<ReservationId>>() {
+                @Override
+                public List<ReservationId> call() {
+                    final List<ReservationId> reserved = newArrayList();
+                    for (int j = 0; j < BUNDLES_PER_THREAD; j++) {
+                        final ReservationId reservationId = newReservationId();
+                        if (saga.reserve(reservationId, newBundle(1, 1)) == BundleOutcome.RESERVED) {
+                            reserved.add(reservationId);
+                        }
+                    }
+                    return reserved;
+                }
+            }));
+        }
+        final List<ReservationId> reserved = newArrayList();
+        for (Future<List<ReservationId>> result : results) {
+            reserved.addAll(result.get());
+        }
+        clients.shutdown();
+        clients.awaitTermination(1, TimeUnit.MINUTES);
+        final BundleMetrics metrics = saga.getMetrics();
+
+        assertEquals(WORKSHOP_SEAT_COUNT, reserved.size());
+        assertEquals(0, getAvailableCount(workshop, workshopSeatType));
+        assertEquals(MAIN_SEAT_COUNT - WORKSHOP_SEAT_COUNT, getAvailableCount(mainConference, mainSeatType));
+        assertEquals(WORKSHOP_SEAT_COUNT, getPendingReservations(getState(mainConference)).size());
+        assertEquals(WORKSHOP_SEAT_COUNT, getPendingReservations(getState(workshop)).size());
+        assertEquals(0, metrics.getFailedCompensationCount());
+    }
+
+    private BundleReservationSaga newSaga(long expirationMillis) {
+        return BundleReservationSaga.newBuilder()
+                                    .setCommandBus(boundedContext.getCommandBus())
+                                    .setRepository(repository)
+                                    .setStore(store)
+                                    .setExpiration(expirationMillis, TimeUnit.MILLISECONDS)
+                                    .setParallelism(4)
+                                    .build();
+    }
+
+    private void assertNotReserved(ReservationId reservationId) {
+        assertTrue(getPendingReservations(getState(mainConference)).isEmpty());
+        assertTrue(getPendingReservations(getState(workshop)).isEmpty());
+        assertEquals(MAIN_SEAT_COUNT, getAvailableCount(mainConference, mainSeatType));
+        assertEquals(WORKSHOP_SEAT_COUNT, getAvailableCount(workshop, workshopSeatType));
+        assertEquals(0, getReservedCount(mainConference, mainSeatType, reservationId));
+    }
+
+    private Map<ConferenceId, List<SeatQuantity>> newBundle(int mainSeats, int workshopSeats) {
+        return ImmutableMap.of(mainConference, seats(mainSeatType, mainSeats),
+                               workshop, seats(workshopSeatType, workshopSeats));
+    }
+
+    private static List<SeatQuantity> seats(SeatTypeId seatTypeId, int quantity) {
+        return Collections.singletonList(newSeatQuantity(seatTypeId, quantity));
+    }
+
+    private int getAvailableCount(ConferenceId conferenceId, SeatTypeId seatTypeId) {
+        return findById(getState(conferenceId).getAvailableSeatList(), seatTypeId).getQuantity();
+    }
+
+    private int getReservedCount(ConferenceId conferenceId, SeatTypeId seatTypeId, ReservationId reservationId) {
+        final SeatQuantities reservation = findPendingReservation(getState(conferenceId), reservationId);
+        if (reservation == null) {
+            return 0;
+        }
+        return findById(reservation.getItemList(), seatTypeId).getQuantity();
+    }
+
+    private SeatsAvailability getState(ConferenceId conferenceId) {
+        return repository.load(newSeatsAvailabilityId(conferenceId))
+                         .getState();
+    }
+
+    private void addSeats(ConferenceId conferenceId, SeatTypeId seatTypeId, int quantity) {
+        final AddSeats message = AddSeats.newBuilder()
+                                         .setSeatsAvailabilityId(newSeatsAvailabilityId(conferenceId))
+                                         .setConferenceId(conferenceId)
+                                         .setQuantity(newSeatQuantity(seatTypeId, quantity))
+                                         .build();
+        dispatch(message);
+    }
+
+    private void dispatch(Message message) {
+        final CommandContext context = newCommandContext();
+        repository.dispatch(Commands.create(message, context));
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.catalog;
+
+import org.junit.Test;
+import org.spine3.base.Event;
+import org.spine3.base.EventContext;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.ConferenceSlug;
+import org.spine3.samples.lobby.conference.contracts.Conference;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsReserved;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceCreated;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferencePublished;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceUnpublished;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceUpdated;
+import org.spine3.time.LocalDate;
+
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newEvent;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class ConferenceCatalogShould {
+
+    private static final EventContext CONTEXT = EventContext.getDefaultInstance();
+
+    private final ConferenceCatalog catalog = new ConferenceCatalog();
+
+    @Test
+    public void find_conference_by_slug() {
+        final Conference conference = create("devcon", date(2016, 5, 10), date(2016, 5, 12), true);
+
+        assertEquals(conference, catalog.findBySlug("devcon"));
+        assertNull(catalog.findBySlug("unknown"));
+    }
+
+    @Test
+    public void find_conference_by_new_slug_after_update() {
+        final Conference conference = create("devcon", date(2016, 5, 10), date(2016, 5, 12), true);
+        final Conference updated = conference.toBuilder()
+                                             .setSlug(slug("devcon-2016"))
+                                             .build();
+
+        catalog.on(ConferenceUpdated.newBuilder()
+                                    .setConference(updated)
+                                    .build(), CONTEXT);
+
+        assertNull(catalog.findBySlug("devcon"));
+        assertEquals(updated, catalog.findBySlug("devcon-2016"));
+        assertEquals(1, catalog.size());
+    }
+
+    @Test
+    public void find_conferences_running_in_date_range_ordered_by_start_date() {
+        final Conference june = create("june", date(2016, 6, 1), date(2016, 6, 3), true);
+        final Conference may = create("may", date(2016, 5, 30), date(2016, 6, 1), true);
+        create("april", date(2016, 4, 1), date(2016, 4, 2), true);
+        final Conference longRunning = create("long-running", date(2016, 1, 1), date(2016, 12, 31), true);
+
+        final CatalogPage page = catalog.find(CatalogQuery.newBuilder()
+                                                          .setRunningFrom(date(2016, 6, 1))
+                                                          .setRunningTo(date(2016, 6, 2))
+                                                          .build());
+
+        assertEquals(asList(longRunning, may, june), page.getConferenceList());
+        assertFalse(page.getHasNextPage());
+    }
+
+    @Test
+    public void find_conferences_running_on_single_day() {
+        create("may", date(2016, 5, 30), date(2016, 6, 1), true);
+        final Conference june = create("june", date(2016, 6, 2), date(2016, 6, 3), true);
+
+        final CatalogPage page = catalog.find(CatalogQuery.newBuilder()
+                                                          .setRunningFrom(date(2016, 6, 3))
+                                                          .build());
+
+        assertEquals(asList(june), page.getConferenceList());
+    }
+
+    @Test
+    public void find_conferences_running_until_day_if_range_has_no_start() {
+        final Conference april = create("april", date(2016, 4, 1), date(2016, 4, 2), true);
+        final Conference may = create("may", date(2016, 5, 30), date(2016, 6, 1), true);
+        create("june", date(2016, 6, 2), date(2016, 6, 3), true);
+
+        final CatalogPage page = catalog.find(CatalogQuery.newBuilder()
+                                                          .setRunningTo(date(2016, 6, 1))
+                                                          .build());
+
+        assertEquals(asList(april, may), page.getConferenceList());
+    }
+
+    @Test
+    public void find_only_published_conferences() {
+        final Conference published = create("published", date(2016, 5, 1), date(2016, 5, 2), true);
+        create("draft", date(2016, 5, 1), date(2016, 5, 2), false);
+
+        final CatalogPage page = catalog.find(CatalogQuery.newBuilder()
+                                                          .setPublishedOnly(true)
+                                                          .build());
+
+        assertEquals(asList(published), page.getConferenceList());
+    }
+
+    @Test
+    public void update_publication_status() {
+        final Conference conference = create("devcon", date(2016, 5, 10), date(2016, 5, 12), false);
+        final CatalogQuery query = CatalogQuery.newBuilder()
+                                               .setPublishedOnly(true)
+                                               .setRunningFrom(date(2016, 5, 11))
+                                               .build();
+
+        catalog.on(ConferencePublished.newBuilder()
+                                      .setConferenceId(conference.getId())
+                                      .build(), CONTEXT);
+        final List<Conference> afterPublishing = catalog.find(query)
+                                                        .getConferenceList();
+        catalog.on(ConferenceUnpublished.newBuilder()
+                                        .setConferenceId(conference.getId())
+                                        .build(), CONTEXT);
+        final List<Conference> afterUnpublishing = catalog.find(query)
+                                                          .getConferenceList();
+
+        assertEquals(1, afterPublishing.size());
+        assertTrue(afterPublishing.get(0)
+                                  .getIsPublished());
+        assertTrue(afterUnpublishing.isEmpty());
+    }
+
+    @Test
+    public void return_conferences_by_pages() {
+        final Conference first = create("first", date(2016, 5, 1), date(2016, 5, 1), true);
+        final Conference second = create("second", date(2016, 5, 2), date(2016, 5, 2), true);
+        final Conference third = create("third", date(2016, 5, 3), date(2016, 5, 3), true);
+        final CatalogQuery firstPageQuery = CatalogQuery.newBuilder()
+                                                        .setPageSize(2)
+                                                        .build();
+
+        final CatalogPage firstPage = catalog.find(firstPageQuery);
+        final CatalogPage secondPage = catalog.find(firstPageQuery.toBuilder()
+                                                                  .setPageOffset(firstPage.getNextPageOffset())
+                                                                  .build());
+
+        assertEquals(asList(first, second), firstPage.getConferenceList());
+        assertTrue(firstPage.getHasNextPage());
+        assertEquals(asList(third), secondPage.getConferenceList());
+        assertFalse(secondPage.getHasNextPage());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void not_accept_too_large_page() {
+        catalog.find(CatalogQuery.newBuilder()
+                                 .setPageSize(ConferenceCatalog.MAX_PAGE_SIZE + 1)
+                                 .build());
+    }
+
+    @Test
+    public void fill_catalog_from_history() {
+        final Conference conference = Conference.newBuilder()
+                                                .setId(newConferenceId())
+                                                .setSlug(slug("devcon"))
+                                                .setStartDate(date(2016, 5, 10))
+                                                .setEndDate(date(2016, 5, 12))
+                                                .build();
+        final List<Event> history = asList(newEvent(ConferenceCreated.newBuilder()
+                                                                     .setConference(conference)
+                                                                     .build()),
+                                           newEvent(SeatsReserved.getDefaultInstance()),
+                                           newEvent(ConferencePublished.newBuilder()
+                                                                       .setConferenceId(conference.getId())
+                                                                       .build()));
+
+        final long appliedCount = catalog.replay(history);
+
+        assertEquals(2, appliedCount);
+        final CatalogPage page = catalog.find(CatalogQuery.newBuilder()
+                                                          .setPublishedOnly(true)
+                                                          .build());
+        assertEquals(1, page.getConferenceCount());
+        assertEquals(conference.getId(), page.getConference(0)
+                                             .getId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void not_accept_date_range_ending_before_it_starts() {
+        catalog.find(CatalogQuery.newBuilder()
+                                 .setRunningFrom(date(2016, 5, 2))
+                                 .setRunningTo(date(2016, 5, 1))
+                                 .build());
+    }
+
+    private Conference create(String slug, LocalDate startDate, LocalDate endDate, boolean isPublished) {
+        final ConferenceId id = newConferenceId();
+        final Conference conference = Conference.newBuilder()
+                                                .setId(id)
+                                                .setName(slug)
+                                                .setSlug(slug(slug))
+                                                .setStartDate(startDate)
+                                                .setEndDate(endDate)
+                                                .setIsPublished(isPublished)
+                                                .build();
+        catalog.on(ConferenceCreated.newBuilder()
+                                    .setConference(conference)
+                                    .build(), CONTEXT);
+        return conference;
+    }
+
+    private static ConferenceSlug slug(String value) {
+        return ConferenceSlug.newBuilder()
+                             .setValue(value)
+                             .build();
+    }
+
+    private static LocalDate date(int year, int month, int day) {
+        return LocalDate.newBuilder()
+                        .setYear(year)
+                        .setMonthValue(month)
+                        .setDay(day)
+                        .build();
+    }
+}
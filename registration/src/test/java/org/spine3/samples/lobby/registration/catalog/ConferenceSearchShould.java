@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.catalog;
+
+import org.junit.Test;
+import org.spine3.base.Event;
+import org.spine3.base.EventContext;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.conference.contracts.Conference;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsReserved;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceCreated;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceUpdated;
+
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newEvent;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class ConferenceSearchShould {
+
+    private static final EventContext CONTEXT = EventContext.getDefaultInstance();
+
+    private final ConferenceSearch search = new ConferenceSearch();
+
+    @Test
+    public void find_conferences_having_all_words_of_query() {
+        final Conference javaConference = create("Java Conference", "All about Java and the JVM.", "Kyiv");
+        create("Python Conference", "All about Python.", "Kyiv");
+
+        final List<ConferenceId> found = search.search("kyiv java", 10);
+
+        assertEquals(singletonList(javaConference.getId()), found);
+    }
+
+    @Test
+    public void find_conferences_by_prefix() {
+        final Conference javaConference = create("JavaOne", "", "San Francisco");
+        final Conference jsConference = create("JSConf", "", "Berlin");
+        create("PyCon", "", "Montreal");
+
+        final List<ConferenceId> found = search.search("j*", 10);
+
+        assertEquals(2, found.size());
+        assertTrue(found.containsAll(asList(javaConference.getId(), jsConference.getId())));
+    }
+
+    @Test
+    public void match_words_ignoring_case_and_diacritical_marks() {
+        final Conference conference = create("Devoxx", "", "Z\u00fcrich");
+
+        assertEquals(singletonList(conference.getId()), search.search("ZURICH", 10));
+    }
+
+    @Test
+    public void rank_conferences_by_term_frequency() {
+        final Conference onceMentioned = create("Cloud Days", "Cloud computing.", "London");
+        final Conference oftenMentioned = create("Cloud Summit", "Cloud native cloud computing in the cloud.", "Paris");
+
+        final List<ConferenceId> found = search.search("cloud", 10);
+
+        assertEquals(asList(oftenMentioned.getId(), onceMentioned.getId()), found);
+    }
+
+    @Test
+    public void return_not_more_conferences_than_limit() {
+        for (int i = 0; i < 5; i++) {
+            create("Conference " + i, "", "");
+        }
+
+        assertEquals(3, search.search("conference", 3)
+                              .size());
+    }
+
+    @Test
+    public void find_conference_by_new_words_after_update() {
+        final Conference conference = create("Java Conference", "", "Kyiv");
+
+        update(conference.toBuilder()
+                         .setLocation("Lviv")
+                         .build());
+
+        assertTrue(search.search("kyiv", 10)
+                         .isEmpty());
+        assertEquals(singletonList(conference.getId()), search.search("lviv", 10));
+    }
+
+    @Test
+    public void find_conferences_after_many_updates() {
+        final Conference first = create("First", "", "");
+        final Conference second = create("Second", "", "");
+        for (int i = 0; i < 3000; i++) {
+            update(first.toBuilder()
+                        .setDescription("Revision " + i)
+                        .build());
+        }
+
+        assertEquals(singletonList(first.getId()), search.search("revision 2999", 10));
+        assertEquals(singletonList(second.getId()), search.search("second", 10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void not_accept_non_positive_limit() {
+        search.search("java", 0);
+    }
+
+    @Test
+    public void index_conferences_from_history() {
+        final Conference conference = Conference.newBuilder()
+                                                .setId(newConferenceId())
+                                                .setName("Java Conference")
+                                                .build();
+        final Conference renamed = conference.toBuilder()
+                                             .setName("Kotlin Conference")
+                                             .build();
+        final List<Event> history = asList(newEvent(ConferenceCreated.newBuilder()
+                                                                     .setConference(conference)
+                                                                     .build()),
+                                           newEvent(SeatsReserved.getDefaultInstance()),
+                                           newEvent(ConferenceUpdated.newBuilder()
+                                                                     .setConference(renamed)
+                                                                     .build()));
+
+        final long appliedCount = search.replay(history);
+
+        assertEquals(2, appliedCount);
+        assertTrue(search.search("java", 10)
+                         .isEmpty());
+        assertEquals(singletonList(conference.getId()), search.search("kotlin", 10));
+    }
+
+    private Conference create(String name, String description, String location) {
+        final Conference conference = Conference.newBuilder()
+                                                .setId(newConferenceId())
+                                                .setName(name)
+                                                .setDescription(description)
+                                                .setLocation(location)
+                                                .build();
+        search.on(ConferenceCreated.newBuilder()
+                                   .setConference(conference)
+                                   .build(), CONTEXT);
+        return conference;
+    }
+
+    private void update(Conference conference) {
+        search.on(ConferenceUpdated.newBuilder()
+                                   .setConference(conference)
+                                   .build(), CONTEXT);
+    }
+}
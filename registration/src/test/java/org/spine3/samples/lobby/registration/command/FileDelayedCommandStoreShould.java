@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.command;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.spine3.base.Command;
+import org.spine3.base.CommandContext;
+import org.spine3.base.Commands;
+import org.spine3.samples.lobby.registration.procman.ExpireRegistrationProcess;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static com.google.protobuf.util.TimeUtil.getCurrentTime;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.base.Commands.create;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings("InstanceMethodNamingConvention")
+public class FileDelayedCommandStoreShould {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void read_nothing_if_no_commands_written() throws IOException {
+        final DelayedCommandStore store = newStore();
+
+        assertTrue(Iterables.isEmpty(store.readAll()));
+    }
+
+    @Test
+    public void read_written_commands_after_restart() throws IOException {
+        final Path directory = folder.newFolder()
+                                     .toPath();
+        final DelayedCommand command = newDelayedCommand();
+
+        new FileDelayedCommandStore(directory).write(command);
+
+        assertEquals(ImmutableList.of(command), ImmutableList.copyOf(new FileDelayedCommandStore(directory).readAll()));
+    }
+
+    @Test
+    public void remove_command() throws IOException {
+        final DelayedCommandStore store = newStore();
+        final DelayedCommand removed = newDelayedCommand();
+        final DelayedCommand kept = newDelayedCommand();
+        store.write(removed);
+        store.write(kept);
+
+        store.remove(removed.getCommand()
+                            .getContext()
+                            .getCommandId());
+
+        assertEquals(ImmutableList.of(kept), ImmutableList.copyOf(store.readAll()));
+    }
+
+    private DelayedCommandStore newStore() throws IOException {
+        return new FileDelayedCommandStore(folder.newFolder()
+                                                 .toPath());
+    }
+
+    private static DelayedCommand newDelayedCommand() {
+        final CommandContext context = CommandContext.newBuilder()
+                                                     .setCommandId(Commands.generateId())
+                                                     .build();
+        final Command command = create(ExpireRegistrationProcess.getDefaultInstance(), context);
+        return DelayedCommand.newBuilder()
+                             .setCommand(command)
+                             .setDueTime(getCurrentTime())
+                             .build();
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.command;
+
+import com.google.common.collect.Iterables;
+import com.google.protobuf.Duration;
+import com.google.protobuf.Message;
+import io.grpc.stub.StreamObserver;
+import org.junit.Test;
+import org.spine3.base.Command;
+import org.spine3.base.CommandContext;
+import org.spine3.base.Commands;
+import org.spine3.base.Response;
+import org.spine3.samples.lobby.registration.procman.ExpireRegistrationProcess;
+import org.spine3.samples.lobby.registration.seat.availability.CancelSeatReservation;
+import org.spine3.samples.lobby.registration.seat.availability.MakeSeatReservation;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailabilityId;
+
+import static com.google.protobuf.util.TimeUtil.createDurationFromMillis;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.base.Commands.create;
+import static org.spine3.samples.lobby.common.util.IdFactory.newReservationId;
+import static org.spine3.samples.lobby.registration.command.CommandLane.HIGH_PRIORITY;
+import static org.spine3.samples.lobby.registration.command.CommandLane.NORMAL;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newCommandBus;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatsAvailabilityId;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class PriorityCommandDispatcherShould {
+
+    private static final int MAX_BURST = 2;
+    private static final long DELAY_MILLIS = 50;
+
+    private final PriorityCommandDispatcher dispatcher = PriorityCommandDispatcher.newBuilder()
+                                                                                  .setCommandBus(newCommandBus())
+                                                                                  .setMaxHighPriorityBurst(MAX_BURST)
+                                                                                  .build();
+
+    @Test
+    public void dispatch_capacity_releasing_commands_through_high_priority_lane() {
+        assertEquals(HIGH_PRIORITY, dispatcher.getLane(command(CancelSeatReservation.getDefaultInstance())));
+        assertEquals(HIGH_PRIORITY, dispatcher.getLane(command(ExpireRegistrationProcess.getDefaultInstance())));
+        assertEquals(NORMAL, dispatcher.getLane(command(MakeSeatReservation.getDefaultInstance())));
+    }
+
+    @Test
+    public void dispatch_high_priority_command_before_normal_commands() {
+        final Command reserve = post(MakeSeatReservation.getDefaultInstance());
+        final Command cancel = post(CancelSeatReservation.getDefaultInstance());
+
+        assertEquals(cancel, dispatcher.dispatchNext());
+        assertEquals(reserve, dispatcher.dispatchNext());
+    }
+
+    @Test
+    public void dispatch_normal_command_after_max_high_priority_burst() {
+        final Command reserve = post(MakeSeatReservation.getDefaultInstance());
+        for (int i = 0; i < MAX_BURST + 1; i++) {
+            post(CancelSeatReservation.getDefaultInstance());
+        }
+
+        for (int i = 0; i < MAX_BURST; i++) {
+            assertEquals(HIGH_PRIORITY, dispatcher.getLane(dispatcher.dispatchNext()));
+        }
+        assertEquals(reserve, dispatcher.dispatchNext());
+        assertEquals(HIGH_PRIORITY, dispatcher.getLane(dispatcher.dispatchNext()));
+    }
+
+    @Test
+    public void record_queue_time_per_lane() {
+        post(MakeSeatReservation.getDefaultInstance());
+        post(CancelSeatReservation.getDefaultInstance());
+        dispatcher.dispatchNext();
+
+        final LaneMetrics high = dispatcher.getMetrics(HIGH_PRIORITY);
+        final LaneMetrics normal = dispatcher.getMetrics(NORMAL);
+        assertEquals(1, high.getDispatchedCount());
+        assertEquals(0, high.getWaitingCount());
+        assertEquals(high.getTotalQueueTimeNanos(), high.getMaxQueueTimeNanos());
+        assertEquals(high.getTotalQueueTimeNanos(), high.getAverageQueueTimeNanos());
+        assertEquals(0, normal.getDispatchedCount());
+        assertEquals(1, normal.getWaitingCount());
+    }
+
+    @Test
+    public void dispatch_all_queued_commands_when_closed() throws InterruptedException {
+        final int count = 100;
+        dispatcher.start();
+        for (int i = 0; i < count; i++) {
+            post(MakeSeatReservation.getDefaultInstance());
+        }
+
+        dispatcher.close();
+
+        assertEquals(count, dispatcher.getMetrics(NORMAL)
+                                      .getDispatchedCount());
+        assertEquals(0, dispatcher.getMetrics(NORMAL)
+                                  .getWaitingCount());
+    }
+
+    @Test
+    public void queue_delayed_command_to_its_lane_when_delay_passes() throws InterruptedException {
+        post(delayedCommand(DELAY_MILLIS));
+        final LaneMetrics high = dispatcher.getMetrics(HIGH_PRIORITY);
+        assertEquals(0, high.getWaitingCount());
+
+        final long deadline = System.currentTimeMillis() + DELAY_MILLIS * 100;
+        while (high.getWaitingCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(DELAY_MILLIS);
+        }
+
+        assertEquals(1, high.getWaitingCount());
+        final Command dispatched = dispatcher.dispatchNext();
+        assertFalse(dispatched.getContext()
+                              .hasSchedule());
+    }
+
+    @Test
+    public void keep_delayed_command_in_store_until_posted() throws InterruptedException {
+        final DelayedCommandStore store = new InMemoryDelayedCommandStore();
+        final PriorityCommandDispatcher dispatcher = newDispatcher(store);
+        dispatcher.start();
+
+        dispatcher.post(delayedCommand(DELAY_MILLIS * 1_000), newObserver());
+        dispatcher.close();
+
+        assertEquals(1, Iterables.size(store.readAll()));
+        assertEquals(0, dispatcher.getMetrics(HIGH_PRIORITY)
+                                  .getDispatchedCount());
+    }
+
+    @Test
+    public void rearm_stored_delayed_commands_on_start() throws InterruptedException {
+        final DelayedCommandStore store = new InMemoryDelayedCommandStore();
+        final PriorityCommandDispatcher closed = newDispatcher(store);
+        closed.post(delayedCommand(DELAY_MILLIS), newObserver());
+        closed.close();
+        final PriorityCommandDispatcher restarted = newDispatcher(store);
+
+        restarted.start();
+        final LaneMetrics high = restarted.getMetrics(HIGH_PRIORITY);
+        final long deadline = System.currentTimeMillis() + DELAY_MILLIS * 100;
+        while (high.getDispatchedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(DELAY_MILLIS);
+        }
+        restarted.close();
+
+        assertEquals(1, high.getDispatchedCount());
+        assertTrue(Iterables.isEmpty(store.readAll()));
+    }
+
+    @Test
+    public void post_commands_with_same_target_by_same_worker() {
+        final PriorityCommandDispatcher dispatcher = PriorityCommandDispatcher.newBuilder()
+                                                                              .setCommandBus(newCommandBus())
+                                                                              .setWorkerCount(4)
+                                                                              .build();
+        final SeatsAvailabilityId target = newSeatsAvailabilityId();
+        final Command reserve = command(MakeSeatReservation.newBuilder()
+                                                           .setSeatsAvailabilityId(target)
+                                                           .setReservationId(newReservationId())
+                                                           .build());
+        final Command cancel = command(CancelSeatReservation.newBuilder()
+                                                            .setSeatsAvailabilityId(target)
+                                                            .setReservationId(newReservationId())
+                                                            .build());
+
+        assertEquals(dispatcher.getWorkerIndex(reserve), dispatcher.getWorkerIndex(cancel));
+    }
+
+    private static PriorityCommandDispatcher newDispatcher(DelayedCommandStore store) {
+        return PriorityCommandDispatcher.newBuilder()
+                                        .setCommandBus(newCommandBus())
+                                        .setDelayedCommandStore(store)
+                                        .build();
+    }
+
+    private static Command delayedCommand(long delayMillis) {
+        final Duration delay = createDurationFromMillis(delayMillis);
+        final CommandContext.Schedule schedule = CommandContext.Schedule.newBuilder()
+                                                                        .setDelay(delay)
+                                                                        .build();
+        final CommandContext context = CommandContext.newBuilder()
+                                                     .setCommandId(Commands.generateId())
+                                                     .setSchedule(schedule)
+                                                     .build();
+        return create(ExpireRegistrationProcess.getDefaultInstance(), context);
+    }
+
+    private Command post(Message message) {
+        final Command command = command(message);
+        post(command);
+        return command;
+    }
+
+    private void post(Command command) {
+        dispatcher.post(command, newObserver());
+    }
+
+    private static StreamObserver<Response> newObserver() {
+        return new StreamObserver<Response>() {
+            @Override
+            public void onNext(Response value) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        };
+    }
+
+    private static Command command(Message message) {
+        return create(message, CommandContext.getDefaultInstance());
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.conference;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.spine3.base.Event;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.SeatType;
+import org.spine3.samples.lobby.conference.contracts.Conference;
+import org.spine3.samples.lobby.registration.projection.CheckpointStore;
+import org.spine3.samples.lobby.registration.projection.InMemoryCheckpointStore;
+import org.spine3.samples.lobby.registration.projection.ProjectionCheckpoint;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceCreated;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferencePublished;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceUnpublished;
+import org.spine3.samples.sample.lobby.conference.contracts.SeatTypeCreated;
+import org.spine3.samples.sample.lobby.conference.contracts.SeatTypeUpdated;
+import org.spine3.server.BoundedContext;
+import org.spine3.server.event.EventStore;
+import org.spine3.server.storage.memory.InMemoryStorageFactory;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newBoundedContext;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newEvent;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class ConferenceCatchUpShould {
+
+    private static final int CONFERENCE_COUNT = 8;
+    private static final int SEAT_TYPE_UPDATE_COUNT = 10;
+    private static final int SMALL_BATCH_SIZE = 7;
+
+    private final BoundedContext boundedContext = newBoundedContext();
+    private final CheckpointStore checkpointStore = new InMemoryCheckpointStore();
+    private final List<ConferenceId> conferenceIds = newConferenceIds();
+    private final List<Event> history = newHistory(conferenceIds);
+    private ConferenceProjectionRepository repository;
+
+    @Before
+    public void setUpTest() {
+        repository = new ConferenceProjectionRepository(boundedContext);
+        repository.initStorage(InMemoryStorageFactory.getInstance());
+    }
+
+    @After
+    public void tearDownTest() throws Exception {
+        boundedContext.close();
+    }
+
+    @Test
+    public void apply_history_to_projections() {
+        final long count = newCatchUp(1).run(history);
+
+        assertEquals(history.size(), count);
+        assertProjectionsUpToDate();
+    }
+
+    @Test
+    public void apply_history_in_parallel_preserving_order_of_conference_events() {
+        final long count = newCatchUp(4).run(history);
+
+        assertEquals(history.size(), count);
+        assertProjectionsUpToDate();
+    }
+
+    @Test
+    public void write_checkpoint_of_last_processed_event() {
+        newCatchUp(2).run(history);
+
+        final ProjectionCheckpoint checkpoint = checkpointStore.read(ConferenceProjectionRepository.class.getName());
+        assertNotNull(checkpoint);
+        final Event lastEvent = history.get(history.size() - 1);
+        assertEquals(lastEvent.getContext()
+                              .getEventId(), checkpoint.getEventId());
+        assertEquals(history.size(), checkpoint.getEventCount());
+    }
+
+    @Test
+    public void resume_from_last_checkpoint() {
+        final int processedCount = history.size() / 2;
+        newCatchUp(1).run(history.subList(0, processedCount));
+
+        final long count = newCatchUp(4).run(history);
+
+        assertEquals(history.size() - processedCount, count);
+        assertProjectionsUpToDate();
+    }
+
+    @Test
+    public void skip_all_events_if_already_caught_up() {
+        newCatchUp(1).run(history);
+
+        final long count = newCatchUp(1).run(history);
+
+        assertEquals(0, count);
+    }
+
+    @Test
+    public void catch_up_with_event_store_and_write_checkpoint_of_live_events_on_flush() {
+        final EventStore eventStore = newEventStore(history);
+
+        final long count = repository.catchUp(eventStore, checkpointStore, 2);
+        final Event liveEvent = newLiveEvent();
+        repository.dispatch(liveEvent);
+        repository.flushCheckpoint();
+
+        assertEquals(history.size(), count);
+        final ProjectionCheckpoint checkpoint = checkpointStore.read(repository.getCheckpointName());
+        assertNotNull(checkpoint);
+        assertEquals(liveEvent.getContext()
+                              .getEventId(), checkpoint.getEventId());
+        assertEquals(history.size() + 1, checkpoint.getEventCount());
+    }
+
+    @Test
+    public void write_checkpoint_of_live_events_once_per_interval() {
+        repository.catchUp(newEventStore(history), checkpointStore, 1);
+        final Event firstLiveEvent = newLiveEvent();
+        repository.dispatch(firstLiveEvent);
+
+        final ProjectionCheckpoint afterFirst = checkpointStore.read(repository.getCheckpointName());
+        assertNotNull(afterFirst);
+        assertEquals(history.size(), afterFirst.getEventCount());
+
+        Event lastLiveEvent = firstLiveEvent;
+        for (int i = 1; i < ConferenceProjectionRepository.CHECKPOINT_EVENT_INTERVAL; i++) {
+            lastLiveEvent = newLiveEvent();
+            repository.dispatch(lastLiveEvent);
+        }
+        final ProjectionCheckpoint afterInterval = checkpointStore.read(repository.getCheckpointName());
+        assertNotNull(afterInterval);
+        // The checkpoint may also be written earlier on a slow host, once the time interval passes.
+        assertTrue(afterInterval.getEventCount() > history.size());
+        repository.flushCheckpoint();
+        final ProjectionCheckpoint flushed = checkpointStore.read(repository.getCheckpointName());
+        assertNotNull(flushed);
+        assertEquals(lastLiveEvent.getContext()
+                                  .getEventId(), flushed.getEventId());
+    }
+
+    @Test
+    public void catch_up_with_events_stored_since_checkpoint() {
+        final int processedCount = history.size() / 2;
+        newCatchUp(1).run(history.subList(0, processedCount));
+
+        final long count = newCatchUp(2).run(newEventStore(history));
+
+        assertEquals(history.size() - processedCount, count);
+        assertProjectionsUpToDate();
+    }
+
+    private static EventStore newEventStore(Iterable<Event> events) {
+        final EventStore result = EventStore.newBuilder()
+                                            .setStreamExecutor(MoreExecutors.directExecutor())
+                                            .setStorage(InMemoryStorageFactory.getInstance()
+                                                                              .createEventStorage())
+                                            .build();
+        for (Event event : events) {
+            result.append(event);
+        }
+        return result;
+    }
+
+    private Event newLiveEvent() {
+        return newEvent(ConferenceUnpublished.newBuilder()
+                                             .setConferenceId(conferenceIds.get(0))
+                                             .build());
+    }
+
+    private ConferenceCatchUp newCatchUp(int parallelism) {
+        return ConferenceCatchUp.newBuilder()
+                                .setRepository(repository)
+                                .setCheckpointStore(checkpointStore)
+                                .setParallelism(parallelism)
+                                .setBatchSize(SMALL_BATCH_SIZE)
+                                .build();
+    }
+
+    private void assertProjectionsUpToDate() {
+        for (ConferenceId id : conferenceIds) {
+            final Conference state = repository.load(id)
+                                               .getState();
+            assertEquals(id, state.getId());
+            assertTrue(state.getIsPublished());
+            final SeatType seatType = state.getSeatType(0);
+            assertEquals(SEAT_TYPE_UPDATE_COUNT, seatType.getQuantityTotal());
+        }
+    }
+
+    private static List<ConferenceId> newConferenceIds() {
+        final ImmutableList.Builder<ConferenceId> result = ImmutableList.builder();
+        for (int i = 0; i < CONFERENCE_COUNT; i++) {
+            result.add(newConferenceId());
+        }
+        return result.build();
+    }
+
+    /**
+     * Creates the history in which the events of different conferences are interleaved.
+     */
+    private static List<Event> newHistory(List<ConferenceId> ids) {
+        final ImmutableList.Builder<Event> result = ImmutableList.builder();
+        final List<SeatType> seatTypes = newSeatTypes(ids);
+        for (ConferenceId id : ids) {
+            final Conference conference = Given.conference()
+                                               .toBuilder()
+                                               .setId(id)
+                                               .build();
+            result.add(newEvent(ConferenceCreated.newBuilder()
+                                              .setConference(conference)
+                                              .build()));
+        }
+        for (SeatType seatType : seatTypes) {
+            result.add(newEvent(SeatTypeCreated.newBuilder()
+                                            .setSeatType(seatType)
+                                            .build()));
+        }
+        for (int quantity = 1; quantity <= SEAT_TYPE_UPDATE_COUNT; quantity++) {
+            for (SeatType seatType : seatTypes) {
+                final SeatType updated = seatType.toBuilder()
+                                                 .setQuantityTotal(quantity)
+                                                 .build();
+                result.add(newEvent(SeatTypeUpdated.newBuilder()
+                                                .setSeatType(updated)
+                                                .build()));
+            }
+        }
+        for (ConferenceId id : ids) {
+            result.add(newEvent(ConferencePublished.newBuilder()
+                                                .setConferenceId(id)
+                                                .build()));
+        }
+        return result.build();
+    }
+
+    private static List<SeatType> newSeatTypes(List<ConferenceId> ids) {
+        final ImmutableList.Builder<SeatType> result = ImmutableList.builder();
+        for (ConferenceId id : ids) {
+            final SeatType seatType = SeatType.newBuilder()
+                                              .setId(newSeatTypeId())
+                                              .setConferenceId(id)
+                                              .setQuantityTotal(SEAT_TYPE_UPDATE_COUNT * 2)
+                                              .build();
+            result.add(seatType);
+        }
+        return result.build();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.conference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.SeatType;
+import org.spine3.samples.lobby.conference.contracts.Conference;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailability;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailabilityRepository;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceCreated;
+import org.spine3.samples.sample.lobby.conference.contracts.SeatTypeCreated;
+import org.spine3.samples.sample.lobby.conference.contracts.SeatTypeUpdated;
+import org.spine3.server.BoundedContext;
+import org.spine3.server.storage.memory.InMemoryStorageFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newBoundedContext;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newEvent;
+import static org.spine3.samples.lobby.registration.util.Seats.findById;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatsAvailabilityId;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class ConferenceProjectionRepositoryShould {
+
+    private static final int SEAT_TYPE_COUNT = 20;
+
+    private final BoundedContext boundedContext = newBoundedContext();
+    private final ConferenceId conferenceId = newConferenceId();
+    private final SeatAdjustments seatAdjustments = SeatAdjustments.newBuilder()
+                                                                   .setCommandBus(boundedContext.getCommandBus())
+                                                                   .setWindow(1, TimeUnit.MINUTES)
+                                                                   .build();
+    private SeatsAvailabilityRepository seatsAvailabilityRepository;
+    private ConferenceProjectionRepository repository;
+
+    @Before
+    public void setUpTest() {
+        seatsAvailabilityRepository = new SeatsAvailabilityRepository(boundedContext);
+        boundedContext.register(seatsAvailabilityRepository);
+        repository = new ConferenceProjectionRepository(boundedContext, seatAdjustments);
+        repository.initStorage(InMemoryStorageFactory.getInstance());
+        final Conference conference = Given.conference()
+                                           .toBuilder()
+                                           .setId(conferenceId)
+                                           .build();
+        repository.dispatch(newEvent(ConferenceCreated.newBuilder()
+                                                      .setConference(conference)
+                                                      .build()));
+    }
+
+    @After
+    public void tearDownTest() throws Exception {
+        seatAdjustments.close();
+        boundedContext.close();
+    }
+
+    @Test
+    public void coalesce_seat_types_created_for_conference_into_one_command() {
+        final List<SeatType> seatTypes = newArrayList();
+        for (int i = 0; i < SEAT_TYPE_COUNT; i++) {
+            final SeatType seatType = newSeatType(10);
+            seatTypes.add(seatType);
+            repository.dispatch(newEvent(SeatTypeCreated.newBuilder()
+                                                        .setSeatType(seatType)
+                                                        .build()));
+        }
+
+        seatAdjustments.close();
+
+        assertEquals(1, seatsAvailabilityRepository.getCommitStats()
+                                                   .getCommandCount());
+        assertEquals(SEAT_TYPE_COUNT, getSeatsAvailability().getAvailableSeatCount());
+        for (SeatType seatType : seatTypes) {
+            assertEquals(10, getAvailableCount(seatType));
+        }
+        assertEquals(SEAT_TYPE_COUNT, repository.load(conferenceId)
+                                                .getState()
+                                                .getSeatTypeCount());
+    }
+
+    @Test
+    public void coalesce_creation_and_updates_of_seat_type_into_one_command() {
+        final SeatType created = newSeatType(10);
+        repository.dispatch(newEvent(SeatTypeCreated.newBuilder()
+                                                    .setSeatType(created)
+                                                    .build()));
+        final SeatType grown = created.toBuilder()
+                                      .setQuantityTotal(15)
+                                      .build();
+        repository.dispatch(newEvent(SeatTypeUpdated.newBuilder()
+                                                    .setSeatType(grown)
+                                                    .build()));
+        final SeatType shrunk = created.toBuilder()
+                                       .setQuantityTotal(12)
+                                       .build();
+        repository.dispatch(newEvent(SeatTypeUpdated.newBuilder()
+                                                    .setSeatType(shrunk)
+                                                    .build()));
+
+        seatAdjustments.flush();
+
+        assertEquals(1, seatsAvailabilityRepository.getCommitStats()
+                                                   .getCommandCount());
+        assertEquals(12, getAvailableCount(shrunk));
+    }
+
+    private SeatType newSeatType(int quantity) {
+        return SeatType.newBuilder()
+                       .setConferenceId(conferenceId)
+                       .setId(newSeatTypeId())
+                       .setDescription("seat type")
+                       .setQuantityTotal(quantity)
+                       .build();
+    }
+
+    private int getAvailableCount(SeatType seatType) {
+        return findById(getSeatsAvailability().getAvailableSeatList(), seatType.getId()).getQuantity();
+    }
+
+    private SeatsAvailability getSeatsAvailability() {
+        return seatsAvailabilityRepository.load(newSeatsAvailabilityId(conferenceId))
+                                          .getState();
+    }
+}
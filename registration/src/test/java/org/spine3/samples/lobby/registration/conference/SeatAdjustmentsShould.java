@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.conference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailability;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailabilityRepository;
+import org.spine3.server.BoundedContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newBoundedContext;
+import static org.spine3.samples.lobby.registration.util.Seats.findById;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatsAvailabilityId;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class SeatAdjustmentsShould {
+
+    private static final int SEAT_TYPE_COUNT = 300;
+
+    private final BoundedContext boundedContext = newBoundedContext();
+    private final ConferenceId conferenceId = newConferenceId();
+    private SeatsAvailabilityRepository repository;
+
+    @Before
+    public void setUpTest() {
+        repository = new SeatsAvailabilityRepository(boundedContext);
+        boundedContext.register(repository);
+    }
+
+    @After
+    public void tearDownTest() throws Exception {
+        boundedContext.close();
+    }
+
+    @Test
+    public void coalesce_changes_of_conference_into_one_command() {
+        final SeatAdjustments adjustments = newAdjustments(1, TimeUnit.MINUTES);
+        final List<SeatTypeId> seatTypes = newArrayList();
+        for (int i = 0; i < SEAT_TYPE_COUNT; i++) {
+            final SeatTypeId seatTypeId = newSeatTypeId();
+            seatTypes.add(seatTypeId);
+            adjustments.adjust(conferenceId, seatTypeId, 10);
+        }
+
+        adjustments.flush();
+
+        assertEquals(1, repository.getCommitStats()
+                                  .getCommandCount());
+        assertEquals(SEAT_TYPE_COUNT, getState().getAvailableSeatCount());
+        for (SeatTypeId seatTypeId : seatTypes) {
+            assertEquals(10, getAvailableCount(seatTypeId));
+        }
+    }
+
+    @Test
+    public void sum_changes_of_same_seat_type() {
+        final SeatAdjustments adjustments = newAdjustments(1, TimeUnit.MINUTES);
+        final SeatTypeId seatTypeId = newSeatTypeId();
+
+        adjustments.adjust(conferenceId, seatTypeId, 10);
+        adjustments.adjust(conferenceId, seatTypeId, 5);
+        adjustments.adjust(conferenceId, seatTypeId, -3);
+        adjustments.flush();
+
+        assertEquals(1, repository.getCommitStats()
+                                  .getCommandCount());
+        assertEquals(12, getAvailableCount(seatTypeId));
+    }
+
+    @Test
+    public void add_and_remove_seats_of_different_seat_types_in_two_commands() {
+        final SeatAdjustments adjustments = newAdjustments(1, TimeUnit.MINUTES);
+        final SeatTypeId shrunk = newSeatTypeId();
+        final SeatTypeId grown = newSeatTypeId();
+        adjustments.adjust(conferenceId, shrunk, 10);
+        adjustments.adjust(conferenceId, grown, 10);
+        adjustments.flush();
+
+        adjustments.adjust(conferenceId, shrunk, -4);
+        adjustments.adjust(conferenceId, grown, 6);
+        adjustments.flush();
+
+        assertEquals(3, repository.getCommitStats()
+                                  .getCommandCount());
+        assertEquals(6, getAvailableCount(shrunk));
+        assertEquals(16, getAvailableCount(grown));
+    }
+
+    @Test
+    public void post_each_change_at_once_with_zero_window() {
+        final SeatAdjustments adjustments = newAdjustments(0, TimeUnit.MILLISECONDS);
+        final SeatTypeId seatTypeId = newSeatTypeId();
+
+        adjustments.adjust(conferenceId, seatTypeId, 10);
+        adjustments.adjust(conferenceId, seatTypeId, -3);
+
+        assertEquals(2, repository.getCommitStats()
+                                  .getCommandCount());
+        assertEquals(7, getAvailableCount(seatTypeId));
+    }
+
+    @Test
+    public void post_pending_changes_on_close() {
+        final SeatAdjustments adjustments = newAdjustments(1, TimeUnit.MINUTES);
+        final SeatTypeId seatTypeId = newSeatTypeId();
+        adjustments.adjust(conferenceId, seatTypeId, 10);
+        adjustments.adjust(conferenceId, seatTypeId, 5);
+
+        adjustments.close();
+
+        assertEquals(1, repository.getCommitStats()
+                                  .getCommandCount());
+        assertEquals(15, getAvailableCount(seatTypeId));
+    }
+
+    @Test
+    public void post_each_change_at_once_after_close() {
+        final SeatAdjustments adjustments = newAdjustments(1, TimeUnit.MINUTES);
+        final SeatTypeId seatTypeId = newSeatTypeId();
+        adjustments.close();
+
+        adjustments.adjust(conferenceId, seatTypeId, 10);
+
+        assertEquals(1, repository.getCommitStats()
+                                  .getCommandCount());
+        assertEquals(10, getAvailableCount(seatTypeId));
+    }
+
+    private SeatAdjustments newAdjustments(long window, TimeUnit unit) {
+        return SeatAdjustments.newBuilder()
+                              .setCommandBus(boundedContext.getCommandBus())
+                              .setWindow(window, unit)
+                              .build();
+    }
+
+    private int getAvailableCount(SeatTypeId seatTypeId) {
+        return findById(getState().getAvailableSeatList(), seatTypeId).getQuantity();
+    }
+
+    private SeatsAvailability getState() {
+        return repository.load(newSeatsAvailabilityId(conferenceId))
+                         .getState();
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.export;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.Timestamp;
+import org.junit.Test;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.registration.contracts.SeatAssignment;
+import org.spine3.samples.lobby.registration.contracts.SeatOrderLine;
+import org.spine3.samples.lobby.registration.export.OrderBookExport.OrderColumn;
+import org.spine3.samples.lobby.registration.export.OrderBookExport.OrderLineColumn;
+import org.spine3.samples.lobby.registration.export.OrderBookExport.SeatAssignmentColumn;
+import org.spine3.samples.lobby.registration.order.Order;
+import org.spine3.samples.lobby.registration.seat.assignment.SeatAssignments;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.money.Currency.USD;
+import static org.spine3.money.MoneyUtil.newMoney;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newOrderId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+import static org.spine3.samples.lobby.registration.export.OrderBookExport.CONFIRMED_FLAG;
+import static org.spine3.samples.lobby.registration.export.OrderBookExport.EXPIRED_FLAG;
+import static org.spine3.samples.lobby.registration.export.OrderBookExport.ORDERS_TABLE;
+import static org.spine3.samples.lobby.registration.export.OrderBookExport.ORDER_LINES_TABLE;
+import static org.spine3.samples.lobby.registration.export.OrderBookExport.SEAT_ASSIGNMENTS_TABLE;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newPersonalInfo;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatAssignmentsId;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class OrderBookExportShould {
+
+    private static final long START_SECONDS = 1_472_688_000L;
+
+    private final ByteArrayOutputStream file = new ByteArrayOutputStream();
+    private final ConferenceId conferenceId = newConferenceId();
+    private final SeatTypeId seatTypeId = newSeatTypeId();
+
+    @Test
+    public void export_orders_and_lines_across_stripes() throws IOException, DataFormatException {
+        final List<Order> orders = newArrayList();
+        for (int i = 0; i < 7; i++) {
+            orders.add(order(i, (i % 2 == 0) ? 1 : 2));
+        }
+        final OrderBookExport export = newExport(3);
+        for (Order order : orders) {
+            export.add(order);
+        }
+        export.close();
+
+        final OrderBookReader reader = OrderBookReader.read(file.toByteArray());
+        assertEquals(7, reader.getFooterRowCount(ORDERS_TABLE));
+        assertEquals(10, reader.getFooterRowCount(ORDER_LINES_TABLE));
+        assertEquals(0, reader.getFooterRowCount(SEAT_ASSIGNMENTS_TABLE));
+        assertEquals(3 + 4, reader.getStripeCount());
+
+        final List<Object> ids = reader.column(ORDERS_TABLE, OrderColumn.ORDER_ID.ordinal());
+        final List<Object> placedTimes = reader.column(ORDERS_TABLE, OrderColumn.PLACED_TIME.ordinal());
+        final List<Object> totals = reader.column(ORDERS_TABLE, OrderColumn.TOTAL.ordinal());
+        final List<Object> statuses = reader.column(ORDERS_TABLE, OrderColumn.STATUS.ordinal());
+        final List<Object> emails = reader.column(ORDERS_TABLE, OrderColumn.REGISTRANT_EMAIL.ordinal());
+        for (int i = 0; i < orders.size(); i++) {
+            final Order order = orders.get(i);
+            assertEquals(order.getId()
+                              .getUuid(), ids.get(i));
+            assertEquals(conferenceId.getUuid(), reader.column(ORDERS_TABLE, OrderColumn.CONFERENCE_ID.ordinal())
+                                                       .get(i));
+            assertEquals(OrderBookExport.toMicros(order.getPlacedTime()), placedTimes.get(i));
+            assertEquals(order.getPrice()
+                              .getAmount(), totals.get(i));
+            assertEquals((long) ((i % 3 == 0) ? CONFIRMED_FLAG : EXPIRED_FLAG), statuses.get(i));
+            assertEquals("registrant" + i + "@example.com", emails.get(i));
+        }
+        final List<Object> orderRows = reader.column(ORDER_LINES_TABLE, OrderLineColumn.ORDER_ROW.ordinal());
+        assertEquals(ImmutableList.<Object>of(0L, 1L, 1L, 2L, 3L, 3L, 4L, 5L, 5L, 6L), orderRows);
+        final List<Object> seatTypeIds = reader.column(ORDER_LINES_TABLE, OrderLineColumn.SEAT_TYPE_ID.ordinal());
+        assertEquals(seatTypeId.getUuid(), seatTypeIds.get(9));
+    }
+
+    @Test
+    public void export_seat_assignments_in_order_of_positions() throws IOException, DataFormatException {
+        final SeatAssignments assignments = SeatAssignments.newBuilder()
+                                                           .setId(newSeatAssignmentsId())
+                                                           .putAssignments(2, assignment("second"))
+                                                           .putAssignments(1, assignment("first"))
+                                                           .putAssignments(3, assignment("third"))
+                                                           .build();
+        final OrderBookExport export = newExport(2);
+        export.add(assignments);
+        export.close();
+
+        final OrderBookReader reader = OrderBookReader.read(file.toByteArray());
+        assertEquals(3, reader.getFooterRowCount(SEAT_ASSIGNMENTS_TABLE));
+        assertEquals(ImmutableList.<Object>of(1L, 2L, 3L),
+                     reader.column(SEAT_ASSIGNMENTS_TABLE, SeatAssignmentColumn.POSITION.ordinal()));
+        assertEquals(ImmutableList.<Object>of("first", "second", "third"),
+                     reader.column(SEAT_ASSIGNMENTS_TABLE, SeatAssignmentColumn.ATTENDEE_GIVEN_NAME.ordinal()));
+        assertEquals(assignments.getId()
+                                .getUuid(),
+                     reader.column(SEAT_ASSIGNMENTS_TABLE, SeatAssignmentColumn.ASSIGNMENTS_ID.ordinal())
+                           .get(2));
+    }
+
+    @Test
+    public void write_empty_export() throws IOException, DataFormatException {
+        newExport(3).close();
+
+        final OrderBookReader reader = OrderBookReader.read(file.toByteArray());
+        assertEquals(0, reader.getFooterRowCount(ORDERS_TABLE));
+        assertEquals(0, reader.getStripeCount());
+    }
+
+    @Test
+    public void compress_repetitive_orders() throws IOException {
+        final int count = 1000;
+        long protobufSize = 0;
+        final OrderBookExport export = newExport(256);
+        for (int i = 0; i < count; i++) {
+            final Order order = order(i, 1);
+            protobufSize += order.getSerializedSize();
+            export.add(order);
+        }
+        export.close();
+
+        assertEquals(count, export.getOrderCount());
+        assertTrue(file.size() < protobufSize / 2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void not_accept_orders_after_close() throws IOException {
+        final OrderBookExport export = newExport(3);
+        export.close();
+        export.add(order(0, 1));
+    }
+
+    private OrderBookExport newExport(int rowsPerStripe) {
+        return OrderBookExport.newBuilder()
+                              .setChannel(Channels.newChannel(file))
+                              .setRowsPerStripe(rowsPerStripe)
+                              .build();
+    }
+
+    private Order order(int number, int lineCount) {
+        final Order.Builder result = Order.newBuilder()
+                                          .setId(newOrderId())
+                                          .setConferenceId(conferenceId)
+                                          .setIsConfirmed(number % 3 == 0)
+                                          .setIsExpired(number % 3 != 0)
+                                          .setPrice(newMoney(100 * lineCount, USD))
+                                          .setRegistrant(newPersonalInfo("Registrant", "Number " + number,
+                                                                         "registrant" + number + "@example.com"))
+                                          .setPlacedTime(Timestamp.newBuilder()
+                                                                  .setSeconds(START_SECONDS + number * 60)
+                                                                  .setNanos(number * 1_000));
+        for (int i = 0; i < lineCount; i++) {
+            result.addOrderLine(SeatOrderLine.newBuilder()
+                                             .setSeatTypeId(seatTypeId)
+                                             .setQuantity(1)
+                                             .setUnitPrice(newMoney(100, USD))
+                                             .setLineTotal(newMoney(100, USD)));
+        }
+        return result.build();
+    }
+
+    private SeatAssignment assignment(String attendeeName) {
+        return SeatAssignment.newBuilder()
+                             .setSeatTypeId(seatTypeId)
+                             .setAttendee(newPersonalInfo(attendeeName, "Attendee", attendeeName + "@example.com"))
+                             .build();
+    }
+}
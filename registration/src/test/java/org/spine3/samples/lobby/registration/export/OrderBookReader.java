@@ -0,0 +1,198 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.export;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+
+/**
+ * Reads the file written by {@link OrderBookExport} into memory.
+ *
+ * @author Alexander Litus
+ */
+/* package */ class OrderBookReader {
+
+    private final byte[] bytes;
+    private int position;
+
+    private final Map<Integer, List<List<Object>>> tables = newHashMap();
+    private final Map<Integer, Long> footerRowCounts = newHashMap();
+    private int stripeCount;
+
+    /* package */ OrderBookReader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /* package */ static OrderBookReader read(byte[] bytes) throws DataFormatException {
+        final OrderBookReader reader = new OrderBookReader(bytes);
+        reader.readAll();
+        return reader;
+    }
+
+    /**
+     * Returns the values of the column of the table, either strings or longs.
+     */
+    /* package */ List<Object> column(int tableId, int columnIndex) {
+        final List<List<Object>> table = tables.get(tableId);
+        if (table == null) {
+            return newArrayList();
+        }
+        return table.get(columnIndex);
+    }
+
+    /* package */ long getFooterRowCount(int tableId) {
+        return footerRowCounts.get(tableId);
+    }
+
+    /* package */ int getStripeCount() {
+        return stripeCount;
+    }
+
+    private void readAll() throws DataFormatException {
+        checkMagic();
+        checkState(bytes[position++] == OrderBookExport.FORMAT_VERSION);
+        int tableId = bytes[position++];
+        while (tableId != OrderBookExport.END_OF_STRIPES) {
+            readStripe(tableId);
+            stripeCount++;
+            tableId = bytes[position++];
+        }
+        footerRowCounts.put(OrderBookExport.ORDERS_TABLE, readVarint());
+        footerRowCounts.put(OrderBookExport.ORDER_LINES_TABLE, readVarint());
+        footerRowCounts.put(OrderBookExport.SEAT_ASSIGNMENTS_TABLE, readVarint());
+        checkMagic();
+        checkState(position == bytes.length, "Unexpected trailing bytes.");
+    }
+
+    private void readStripe(int tableId) throws DataFormatException {
+        final int rowCount = (int) readVarint();
+        final int columnCount = (int) readVarint();
+        List<List<Object>> table = tables.get(tableId);
+        if (table == null) {
+            table = newArrayList();
+            for (int i = 0; i < columnCount; i++) {
+                table.add(newArrayList());
+            }
+            tables.put(tableId, table);
+        }
+        for (int i = 0; i < columnCount; i++) {
+            final ColumnEncoding encoding = ColumnEncoding.forId(bytes[position++]);
+            final int rawSize = (int) readVarint();
+            final int deflatedSize = (int) readVarint();
+            final byte[] raw = inflate(deflatedSize, rawSize);
+            position += deflatedSize;
+            final OrderBookReader column = new OrderBookReader(raw);
+            table.get(i)
+                 .addAll(column.readValues(encoding, rowCount));
+            checkState(column.position == raw.length, "Unread column bytes.");
+        }
+    }
+
+    private List<Object> readValues(ColumnEncoding encoding, int rowCount) {
+        final List<Object> result = newArrayList();
+        switch (encoding) {
+            case STRING:
+                for (int i = 0; i < rowCount; i++) {
+                    result.add(readString());
+                }
+                break;
+            case DICTIONARY:
+                final int dictionarySize = (int) readVarint();
+                final String[] dictionary = new String[dictionarySize];
+                for (int i = 0; i < dictionarySize; i++) {
+                    dictionary[i] = readString();
+                }
+                for (int i = 0; i < rowCount; i++) {
+                    result.add(dictionary[(int) readVarint()]);
+                }
+                break;
+            case VARINT:
+                for (int i = 0; i < rowCount; i++) {
+                    result.add(readZigZag());
+                }
+                break;
+            case DELTA:
+                long previous = 0;
+                for (int i = 0; i < rowCount; i++) {
+                    previous += readZigZag();
+                    result.add(previous);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown encoding: " + encoding);
+        }
+        return result;
+    }
+
+    private byte[] inflate(int deflatedSize, int rawSize) throws DataFormatException {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, position, deflatedSize);
+            final byte[] result = new byte[rawSize];
+            int size = 0;
+            while (size < rawSize) {
+                size += inflater.inflate(result, size, rawSize - size);
+            }
+            checkState(inflater.finished(), "Column size mismatch.");
+            return result;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private void checkMagic() {
+        final byte[] magic = Arrays.copyOfRange(bytes, position, position + OrderBookExport.MAGIC.length);
+        checkState(Arrays.equals(OrderBookExport.MAGIC, magic), "Invalid magic bytes.");
+        position += magic.length;
+    }
+
+    private String readString() {
+        final int length = (int) readVarint();
+        final String result = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return result;
+    }
+
+    private long readZigZag() {
+        final long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readVarint() {
+        long result = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = bytes[position++];
+            result |= (long) (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return result;
+    }
+}
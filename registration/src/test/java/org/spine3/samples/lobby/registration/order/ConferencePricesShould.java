@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.order;
+
+import com.google.protobuf.Timestamp;
+import org.junit.Test;
+import org.spine3.money.Money;
+import org.spine3.samples.lobby.common.PriceTier;
+import org.spine3.samples.lobby.common.SeatType;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.conference.contracts.Conference;
+
+import java.util.Map;
+
+import static com.google.protobuf.util.TimeUtil.createTimestampFromMillis;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.money.Currency.USD;
+import static org.spine3.money.MoneyUtil.newMoney;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class ConferencePricesShould {
+
+    private static final Money BASE_PRICE = newMoney(100, USD);
+    private static final Money EARLY_BIRD_PRICE = newMoney(80, USD);
+    private static final Money WORKSHOP_PRICE = newMoney(50, USD);
+
+    private static final int CONFERENCE_VERSION = 3;
+
+    private static final long EARLY_BIRD_FROM = 1_000;
+
+    private final SeatTypeId mainSeatTypeId = newSeatTypeId();
+    private final SeatTypeId workshopSeatTypeId = newSeatTypeId();
+
+    private final Conference conference = Conference.newBuilder()
+                                                    .addSeatType(SeatType.newBuilder()
+                                                                         .setId(mainSeatTypeId)
+                                                                         .setPrice(BASE_PRICE)
+                                                                         .addPriceTier(earlyBirdTier()))
+                                                    .addSeatType(SeatType.newBuilder()
+                                                                         .setId(workshopSeatTypeId)
+                                                                         .setPrice(WORKSHOP_PRICE))
+                                                    .build();
+
+    private final ConferencePrices prices = ConferencePrices.compile(conference, CONFERENCE_VERSION);
+
+    @Test
+    public void return_unit_prices_in_effect_at_time() {
+        final Map<SeatTypeId, Money> before = prices.getUnitPrices(EARLY_BIRD_FROM - 1);
+        final Map<SeatTypeId, Money> after = prices.getUnitPrices(EARLY_BIRD_FROM);
+
+        assertEquals(BASE_PRICE, before.get(mainSeatTypeId));
+        assertEquals(WORKSHOP_PRICE, before.get(workshopSeatTypeId));
+        assertEquals(EARLY_BIRD_PRICE, after.get(mainSeatTypeId));
+        assertEquals(WORKSHOP_PRICE, after.get(workshopSeatTypeId));
+    }
+
+    @Test
+    public void return_same_map_while_prices_do_not_change() {
+        final Map<SeatTypeId, Money> first = prices.getUnitPrices(EARLY_BIRD_FROM);
+        final Map<SeatTypeId, Money> second = prices.getUnitPrices(EARLY_BIRD_FROM + 10_000);
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void return_new_map_when_prices_change() {
+        final Map<SeatTypeId, Money> before = prices.getUnitPrices(EARLY_BIRD_FROM - 1);
+        final Map<SeatTypeId, Money> after = prices.getUnitPrices(EARLY_BIRD_FROM);
+
+        assertNotSame(before, after);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void return_immutable_map() {
+        prices.getUnitPrices(EARLY_BIRD_FROM)
+              .put(mainSeatTypeId, BASE_PRICE);
+    }
+
+    @Test
+    public void detect_that_conference_changed() {
+        assertTrue(prices.isCompiledAt(CONFERENCE_VERSION));
+        assertFalse(prices.isCompiledAt(CONFERENCE_VERSION + 1));
+    }
+
+    private static PriceTier earlyBirdTier() {
+        final Timestamp effectiveFrom = createTimestampFromMillis(EARLY_BIRD_FROM);
+        return PriceTier.newBuilder()
+                        .setEffectiveFrom(effectiveFrom)
+                        .setPrice(EARLY_BIRD_PRICE)
+                        .build();
+    }
+}
@@ -21,12 +21,17 @@
 package org.spine3.samples.lobby.registration.order;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.protobuf.Timestamp;
 import com.google.protobuf.util.TimeUtil;
 import org.spine3.base.CommandContext;
 import org.spine3.money.Money;
 import org.spine3.samples.lobby.common.ConferenceId;
 import org.spine3.samples.lobby.common.OrderId;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.registration.admission.AdmissionControl;
+import org.spine3.samples.lobby.registration.admission.AdmissionTicket;
+import org.spine3.samples.lobby.registration.contracts.GroupRegistrationId;
 import org.spine3.samples.lobby.registration.contracts.OrderConfirmed;
 import org.spine3.samples.lobby.registration.contracts.OrderExpired;
 import org.spine3.samples.lobby.registration.contracts.OrderPartiallyReserved;
@@ -38,11 +43,15 @@ import org.spine3.samples.lobby.registration.contracts.OrderTotalsCalculated;
 import org.spine3.samples.lobby.registration.contracts.OrderUpdated;
 import org.spine3.samples.lobby.registration.contracts.SeatOrderLine;
 import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
+import org.spine3.samples.lobby.registration.promotion.PromotionRule;
+import org.spine3.samples.lobby.registration.promotion.PromotionService;
 
 import java.util.List;
+import java.util.Map;
 
 import static com.google.common.collect.Lists.newArrayList;
-import static java.util.Collections.singletonList;
+import static com.google.common.collect.Maps.newHashMap;
+import static org.spine3.base.Identifiers.newUuid;
 import static org.spine3.money.Currency.USD;
 import static org.spine3.money.MoneyUtil.newMoney;
 import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
@@ -62,10 +71,15 @@ import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
     private static final List<SeatQuantity> SEATS = ImmutableList.of(newSeatQuantity(5), newSeatQuantity(10));
 
     private final OrderAggregate aggregate;
+    private final PricingServiceStub pricingService = new PricingServiceStub();
 
     /* package */ Given() {
         aggregate = new OrderAggregate(ORDER_ID);
-        aggregate.setOrderPricingService(new PricingServiceStub());
+        aggregate.setOrderPricingService(pricingService);
+    }
+
+    /* package */ PricingServiceStub pricingService() {
+        return pricingService;
     }
 
     /* package */ OrderAggregate newOrder() {
@@ -86,6 +100,69 @@ import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
         return aggregate;
     }
 
+    /**
+     * Returns a placed order whose seats are already priced.
+     */
+    /* package */ OrderAggregate pricedOrder() {
+        return pricedOrder("");
+    }
+
+    /**
+     * Returns a placed order whose seats are already priced with the given promo code requested.
+     */
+    /* package */ OrderAggregate pricedOrder(String requestedPromoCode) {
+        final Order.Builder state = orderState(SEATS).toBuilder()
+                                                     .setRequestedPromoCode(requestedPromoCode);
+        for (SeatQuantity seat : SEATS) {
+            state.addOrderLine(orderLine(seat));
+        }
+        aggregate.incrementAggregateState(state.build());
+        return aggregate;
+    }
+
+    /**
+     * Returns a placed order whose prices are locked in as of the given time until the given expiration.
+     */
+    /* package */ OrderAggregate placedOrder(Timestamp placedTime, Timestamp priceLockExpiration) {
+        final Order state = orderState(SEATS).toBuilder()
+                                             .setPlacedTime(placedTime)
+                                             .setPriceLockExpiration(priceLockExpiration)
+                                             .build();
+        aggregate.incrementAggregateState(state);
+        return aggregate;
+    }
+
+    /* package */ static SeatOrderLine orderLine(SeatQuantity seat) {
+        final int unitPrice = 10;
+        final SeatOrderLine result = SeatOrderLine.newBuilder()
+                                                  .setSeatTypeId(seat.getSeatTypeId())
+                                                  .setQuantity(seat.getQuantity())
+                                                  .setUnitPrice(newMoney(unitPrice, USD))
+                                                  .setLineTotal(newMoney(unitPrice * seat.getQuantity(), USD))
+                                                  .build();
+        return result;
+    }
+
+    /**
+     * Returns the total of the seats priced at the {@linkplain #orderLine(SeatQuantity) unit price} of the tests.
+     */
+    /* package */ static OrderTotal orderTotal(Iterable<SeatQuantity> seats) {
+        final OrderTotal.Builder result = OrderTotal.newBuilder();
+        long totalAmount = 0;
+        for (SeatQuantity seat : seats) {
+            final SeatOrderLine line = orderLine(seat);
+            result.addOrderLine(line);
+            totalAmount += line.getLineTotal()
+                               .getAmount();
+        }
+        result.setTotalPrice(newMoney(totalAmount, USD));
+        return result.build();
+    }
+
+    /* package */ static OrderTotal orderTotal() {
+        return orderTotal(SEATS);
+    }
+
     /* package */ OrderAggregate completelyReservedOrder(Iterable<SeatQuantity> reservedSeats) {
         final List<SeatQuantity> requestedSeats = newArrayList(reservedSeats);
         final Order state = orderState(reservedSeats);
@@ -98,6 +175,21 @@ import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
         return aggregate;
     }
 
+    /**
+     * Returns a priced order which awaits more seats of the first type on the waitlist.
+     */
+    /* package */ OrderAggregate waitlistedOrder(int waitlistedQuantity) {
+        final SeatQuantity firstSeat = SEATS.get(0);
+        final Order.Builder state = orderState(SEATS).toBuilder()
+                                                     .addWaitlistedSeat(newSeatQuantity(firstSeat.getSeatTypeId(),
+                                                                                        waitlistedQuantity));
+        for (SeatQuantity seat : SEATS) {
+            state.addOrderLine(orderLine(seat));
+        }
+        aggregate.incrementAggregateState(state.build());
+        return aggregate;
+    }
+
     /* package */ OrderAggregate partiallyReservedOrder(Iterable<SeatQuantity> reservedSeats) {
         final List<SeatQuantity> requestedSeats = newArrayList(reservedSeats);
         final int partlyReservedSeatIndex = 0;
@@ -126,21 +218,90 @@ import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
 
     /* package */ static class PricingServiceStub implements OrderPricingService {
 
-        /* package */ static final Money TOTAL_PRICE = newMoney(100, USD);
-        private static final SeatOrderLine ORDER_LINE = SeatOrderLine.newBuilder()
-                                                                     .setQuantity(10)
-                                                                     .setUnitPrice(newMoney(10, USD))
-                                                                     .setLineTotal(TOTAL_PRICE)
-                                                                     .build();
-        /* package */ static final List<SeatOrderLine> ORDER_LINES = singletonList(ORDER_LINE);
+        private final Map<SeatTypeId, Money> unitPrices = newHashMap();
+        private int unitPriceRequestCount;
+        private Timestamp pricingTime;
+
+        private PricingServiceStub() {
+            for (SeatQuantity seat : SEATS) {
+                unitPrices.put(seat.getSeatTypeId(), orderLine(seat).getUnitPrice());
+            }
+        }
 
         @Override
-        public OrderTotal calculateTotalOrderPrice(ConferenceId conferenceId, Iterable<SeatQuantity> seats) {
-            final OrderTotal.Builder result = OrderTotal.newBuilder()
-                                                        .setTotalPrice(TOTAL_PRICE)
-                                                        .addAllOrderLine(ORDER_LINES);
+        public OrderTotal calculateTotalOrderPrice(ConferenceId conferenceId,
+                                                   Iterable<SeatQuantity> seats,
+                                                   Timestamp pricingTime) {
+            return OrderPricingServiceImpl.calculateTotalOrderPrice(conferenceId, seats,
+                                                                    getUnitPrices(conferenceId, pricingTime));
+        }
+
+        @Override
+        public List<OrderTotal> calculateTotalOrderPrices(ConferenceId conferenceId,
+                                                          List<? extends Iterable<SeatQuantity>> orders,
+                                                          Timestamp pricingTime) {
+            final ImmutableList.Builder<OrderTotal> result = ImmutableList.builder();
+            for (Iterable<SeatQuantity> seats : orders) {
+                result.add(calculateTotalOrderPrice(conferenceId, seats, pricingTime));
+            }
             return result.build();
         }
+
+        @Override
+        public Map<SeatTypeId, Money> getUnitPrices(ConferenceId conferenceId, Timestamp pricingTime) {
+            unitPriceRequestCount++;
+            this.pricingTime = pricingTime;
+            return ImmutableMap.copyOf(unitPrices);
+        }
+
+        /**
+         * Sets the unit price of the seat type returned by the service.
+         */
+        /* package */ void setUnitPrice(SeatTypeId seatTypeId, Money unitPrice) {
+            unitPrices.put(seatTypeId, unitPrice);
+        }
+
+        /**
+         * Returns how many times the unit prices were requested from the service.
+         */
+        /* package */ int getUnitPriceRequestCount() {
+            return unitPriceRequestCount;
+        }
+
+        /**
+         * Returns the pricing time passed to the service last time.
+         */
+        /* package */ Timestamp getPricingTime() {
+            return pricingTime;
+        }
+    }
+
+    /**
+     * Creates a promotion service with the promo code giving a discount in percent for the conference of the order.
+     */
+    /* package */ static PromotionService newPromotionService(String code, int percentOff) {
+        final PromotionRule rule = PromotionRule.newBuilder()
+                                                .setCode(code)
+                                                .setConferenceId(CONFERENCE_ID)
+                                                .setPercentOff(percentOff)
+                                                .build();
+        return PromotionService.newBuilder()
+                               .addRule(rule)
+                               .build();
+    }
+
+    /* package */ static class AdmissionControlStub implements AdmissionControl {
+
+        private final boolean isAdmitted;
+
+        /* package */ AdmissionControlStub(boolean isAdmitted) {
+            this.isAdmitted = isAdmitted;
+        }
+
+        @Override
+        public boolean admit(AdmissionTicket ticket, OrderId orderId) {
+            return isAdmitted;
+        }
     }
 
     /**
@@ -187,6 +348,51 @@ import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
             return REGISTER_TO_CONFERENCE;
         }
 
+        /**
+         * Returns a command which changes the quantity of the last seat type of the order.
+         */
+        /* package */ static RegisterToConference registerToConferenceWithChangedQuantity() {
+            final int lastIndex = SEATS.size() - 1;
+            final SeatQuantity lastSeat = SEATS.get(lastIndex);
+            final SeatQuantity changedSeat = lastSeat.toBuilder()
+                                                     .setQuantity(lastSeat.getQuantity() + 1)
+                                                     .build();
+            return REGISTER_TO_CONFERENCE.toBuilder()
+                                         .setSeat(lastIndex, changedSeat)
+                                         .build();
+        }
+
+        /* package */ static RegisterToConference registerToConferenceWithPromoCode(String promoCode) {
+            return REGISTER_TO_CONFERENCE.toBuilder()
+                                         .setPromoCode(promoCode)
+                                         .build();
+        }
+
+        /* package */ static RegisterToConference registerToConferenceWithTicket() {
+            final AdmissionTicket ticket = AdmissionTicket.newBuilder()
+                                                          .setConferenceId(CONFERENCE_ID)
+                                                          .setNumber(0)
+                                                          .build();
+            return REGISTER_TO_CONFERENCE.toBuilder()
+                                         .setAdmissionTicket(ticket)
+                                         .build();
+        }
+
+        /* package */ static PlaceGroupOrder placeGroupOrder() {
+            final GroupRegistrationId groupId = GroupRegistrationId.newBuilder()
+                                                                   .setUuid(newUuid())
+                                                                   .build();
+            final OrderTotal total = orderTotal(SEATS);
+            return PlaceGroupOrder.newBuilder()
+                                  .setOrderId(ORDER_ID)
+                                  .setConferenceId(CONFERENCE_ID)
+                                  .addAllSeat(SEATS)
+                                  .setGroupRegistrationId(groupId)
+                                  .setTotal(total)
+                                  .setPlacedTime(TimeUtil.getCurrentTime())
+                                  .build();
+        }
+
         /* package */ static MarkSeatsAsReserved markSeatsAsReserved() {
             return MARK_SEATS_AS_RESERVED;
         }
@@ -239,7 +445,8 @@ import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
             final OrderPartiallyReserved.Builder result = OrderPartiallyReserved.newBuilder()
                                                                                 .setOrderId(ORDER_ID)
                                                                                 .addSeat(newSeatQuantity(64))
-                                                                                .addSeat(newSeatQuantity(128));
+                                                                                .addSeat(newSeatQuantity(128))
+                                                                                .addWaitlistedSeat(newSeatQuantity(32));
             return result.build();
         }
 
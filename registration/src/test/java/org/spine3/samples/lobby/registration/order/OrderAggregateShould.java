@@ -21,23 +21,38 @@
 package org.spine3.samples.lobby.registration.order;
 
 import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
 import org.junit.Before;
 import org.junit.Test;
+import org.spine3.money.Money;
+import org.spine3.protobuf.Durations;
 import org.spine3.samples.lobby.registration.contracts.OrderConfirmed;
 import org.spine3.samples.lobby.registration.contracts.OrderExpired;
 import org.spine3.samples.lobby.registration.contracts.OrderPartiallyReserved;
 import org.spine3.samples.lobby.registration.contracts.OrderPlaced;
 import org.spine3.samples.lobby.registration.contracts.OrderRegistrantAssigned;
 import org.spine3.samples.lobby.registration.contracts.OrderReservationCompleted;
+import org.spine3.samples.lobby.registration.contracts.OrderTotal;
 import org.spine3.samples.lobby.registration.contracts.OrderTotalsCalculated;
 import org.spine3.samples.lobby.registration.contracts.OrderUpdated;
+import org.spine3.samples.lobby.registration.contracts.SeatOrderLine;
 import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
 import org.spine3.samples.lobby.registration.util.EventImporter;
 
 import java.util.List;
 
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.protobuf.util.TimeUtil.add;
+import static com.google.protobuf.util.TimeUtil.getCurrentTime;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.spine3.money.Currency.USD;
+import static org.spine3.money.MoneyUtil.newMoney;
+import static org.spine3.protobuf.Timestamps.isLaterThan;
+import static org.spine3.protobuf.Timestamps.secondsAgo;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
 
 /**
  * @author Alexander Litus
@@ -80,6 +95,133 @@ public class OrderAggregateShould {
         Assert.eventIsValid(calculatedEvent);
     }
 
+    @Test
+    public void handle_RegisterToConference_command_and_not_calculate_totals_if_seats_are_not_changed() {
+        final OrderAggregate aggregate = given.pricedOrder();
+        final RegisterToConference cmd = Given.Command.registerToConference();
+
+        final List<Message> events = aggregate.handle(cmd, Given.Command.context());
+
+        assertEquals(1, events.size());
+        assertTrue(events.get(0) instanceof OrderUpdated);
+    }
+
+    @Test
+    public void handle_RegisterToConference_command_and_price_only_changed_seats() {
+        final OrderAggregate aggregate = given.pricedOrder();
+        final RegisterToConference cmd = Given.Command.registerToConferenceWithChangedQuantity();
+        final SeatQuantity unchangedSeat = cmd.getSeat(0);
+        final SeatQuantity changedSeat = cmd.getSeat(1);
+
+        final List<Message> events = aggregate.handle(cmd, Given.Command.context());
+
+        final OrderTotalsCalculated calculatedEvent = (OrderTotalsCalculated) events.get(1);
+        final List<SeatOrderLine> expectedLines = asList(Given.orderLine(unchangedSeat), Given.orderLine(changedSeat));
+        assertEquals(expectedLines, calculatedEvent.getOrderLineList());
+        assertEquals(Given.orderTotal(cmd.getSeatList())
+                          .getTotalPrice(), calculatedEvent.getTotal());
+    }
+
+    @Test
+    public void handle_RegisterToConference_command_and_request_unit_prices_once() {
+        final OrderAggregate aggregate = given.pricedOrder();
+        final RegisterToConference cmd = Given.Command.registerToConferenceWithChangedQuantity();
+
+        aggregate.handle(cmd, Given.Command.context());
+
+        assertEquals(1, given.pricingService()
+                             .getUnitPriceRequestCount());
+    }
+
+    @Test
+    public void handle_RegisterToConference_command_and_reprice_unchanged_seats_if_their_unit_price_changed() {
+        final OrderAggregate aggregate = given.pricedOrder();
+        final RegisterToConference cmd = Given.Command.registerToConference();
+        final SeatQuantity repricedSeat = cmd.getSeat(0);
+        final Money newUnitPrice = newMoney(20, USD);
+        given.pricingService()
+             .setUnitPrice(repricedSeat.getSeatTypeId(), newUnitPrice);
+
+        final List<Message> events = aggregate.handle(cmd, Given.Command.context());
+
+        assertEquals(2, events.size());
+        final OrderTotalsCalculated calculatedEvent = (OrderTotalsCalculated) events.get(1);
+        final SeatOrderLine repricedLine = calculatedEvent.getOrderLine(1);
+        assertEquals(repricedSeat.getSeatTypeId(), repricedLine.getSeatTypeId());
+        assertEquals(newUnitPrice, repricedLine.getUnitPrice());
+        assertEquals(newUnitPrice.getAmount() * repricedSeat.getQuantity(), repricedLine.getLineTotal()
+                                                                                     .getAmount());
+    }
+
+    @Test
+    public void handle_RegisterToConference_command_and_price_seats_as_of_placement_time_while_price_is_locked() {
+        final Timestamp placedTime = secondsAgo(60);
+        final OrderAggregate aggregate = given.placedOrder(placedTime, add(getCurrentTime(), Durations.ofMinutes(10)));
+
+        aggregate.handle(Given.Command.registerToConference(), Given.Command.context());
+
+        assertEquals(placedTime, given.pricingService()
+                                      .getPricingTime());
+    }
+
+    @Test
+    public void handle_RegisterToConference_command_and_price_seats_as_of_current_time_if_price_lock_expired() {
+        final Timestamp placedTime = secondsAgo(60);
+        final OrderAggregate aggregate = given.placedOrder(placedTime, secondsAgo(1));
+
+        aggregate.handle(Given.Command.registerToConference(), Given.Command.context());
+
+        assertTrue(isLaterThan(given.pricingService()
+                                    .getPricingTime(), placedTime));
+    }
+
+    @Test
+    public void handle_RegisterToConference_command_and_apply_promo_code() {
+        final OrderAggregate aggregate = given.newOrder();
+        aggregate.setPromotionService(Given.newPromotionService("EARLY", 10));
+        final RegisterToConference cmd = Given.Command.registerToConferenceWithPromoCode("early");
+
+        final List<Message> events = aggregate.handle(cmd, Given.Command.context());
+
+        final OrderTotalsCalculated calculatedEvent = (OrderTotalsCalculated) events.get(1);
+        final long fullPrice = Given.orderTotal()
+                                    .getTotalPrice()
+                                    .getAmount();
+        assertEquals("EARLY", calculatedEvent.getPromoCode());
+        assertEquals("EARLY", calculatedEvent.getRequestedPromoCode());
+        assertEquals(fullPrice / 10, calculatedEvent.getDiscount()
+                                                    .getAmount());
+        assertEquals(fullPrice - fullPrice / 10, calculatedEvent.getTotal()
+                                                                .getAmount());
+    }
+
+    @Test
+    public void handle_RegisterToConference_command_and_ignore_unknown_promo_code() {
+        final OrderAggregate aggregate = given.newOrder();
+        aggregate.setPromotionService(Given.newPromotionService("EARLY", 10));
+        final RegisterToConference cmd = Given.Command.registerToConferenceWithPromoCode("LATE");
+
+        final List<Message> events = aggregate.handle(cmd, Given.Command.context());
+
+        final OrderTotalsCalculated calculatedEvent = (OrderTotalsCalculated) events.get(1);
+        Assert.eventIsValid(calculatedEvent);
+        assertTrue(calculatedEvent.getPromoCode()
+                                  .isEmpty());
+        assertEquals("LATE", calculatedEvent.getRequestedPromoCode());
+    }
+
+    @Test
+    public void handle_RegisterToConference_command_and_not_reprice_if_same_unknown_promo_code_is_requested() {
+        final OrderAggregate aggregate = given.pricedOrder("LATE");
+        aggregate.setPromotionService(Given.newPromotionService("EARLY", 10));
+        final RegisterToConference cmd = Given.Command.registerToConferenceWithPromoCode("late");
+
+        final List<Message> events = aggregate.handle(cmd, Given.Command.context());
+
+        assertEquals(1, events.size());
+        assertTrue(events.get(0) instanceof OrderUpdated);
+    }
+
     @Test(expected = IllegalStateException.class)
     public void handle_RegisterToConference_command_and_throw_exception_if_order_is_confirmed() {
         final OrderAggregate aggregate = given.confirmedOrder();
@@ -94,6 +236,58 @@ public class OrderAggregateShould {
         aggregate.handle(cmd, Given.Command.context());
     }
 
+    @Test
+    public void handle_RegisterToConference_command_and_place_order_if_registrant_is_admitted() {
+        final OrderAggregate aggregate = given.newOrder();
+        aggregate.setAdmissionControl(new Given.AdmissionControlStub(true));
+        final RegisterToConference cmd = Given.Command.registerToConferenceWithTicket();
+
+        final List<Message> events = aggregate.handle(cmd, Given.Command.context());
+
+        final OrderPlaced placedEvent = (OrderPlaced) events.get(0);
+        Assert.eventIsValid(placedEvent, cmd);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void handle_RegisterToConference_command_and_throw_exception_if_registrant_is_not_admitted() {
+        final OrderAggregate aggregate = given.newOrder();
+        aggregate.setAdmissionControl(new Given.AdmissionControlStub(false));
+        final RegisterToConference cmd = Given.Command.registerToConferenceWithTicket();
+
+        aggregate.handle(cmd, Given.Command.context());
+    }
+
+    @Test
+    public void handle_PlaceGroupOrder_command_and_generate_correct_events() {
+        final OrderAggregate aggregate = given.newOrder();
+        final PlaceGroupOrder cmd = Given.Command.placeGroupOrder();
+
+        final List<Message> events = aggregate.handle(cmd, Given.Command.context());
+
+        assertEquals(2, events.size());
+        final OrderPlaced placedEvent = (OrderPlaced) events.get(0);
+        assertEquals(cmd.getOrderId(), placedEvent.getOrderId());
+        assertEquals(cmd.getSeatList(), placedEvent.getSeatList());
+        assertEquals(cmd.getGroupRegistrationId(), placedEvent.getGroupRegistrationId());
+        assertEquals(cmd.getPlacedTime(), placedEvent.getPlacedTime());
+        final OrderTotalsCalculated calculatedEvent = (OrderTotalsCalculated) events.get(1);
+        Assert.eventIsValid(calculatedEvent);
+        assertEquals(0, given.pricingService()
+                             .getUnitPriceRequestCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void handle_PlaceGroupOrder_command_and_throw_exception_if_order_is_already_placed() {
+        final OrderAggregate aggregate = given.placedOrder();
+        aggregate.handle(Given.Command.placeGroupOrder(), Given.Command.context());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void handle_PlaceGroupOrder_command_and_throw_exception_if_it_is_empty() {
+        final OrderAggregate aggregate = given.newOrder();
+        aggregate.handle(PlaceGroupOrder.getDefaultInstance(), Given.Command.context());
+    }
+
     @Test
     public void handle_MarkSeatsAsReserved_command_and_generate_correct_events_if_order_is_completely_reserved() {
         final MarkSeatsAsReserved cmd = Given.Command.markSeatsAsReserved();
@@ -120,6 +314,49 @@ public class OrderAggregateShould {
         Assert.eventIsValid(calculatedEvent);
     }
 
+    @Test
+    public void handle_MarkSeatsAsReserved_command_and_waitlist_unreserved_seats() {
+        final MarkSeatsAsReserved cmd = Given.Command.markSeatsAsReserved();
+        final OrderAggregate aggregate = given.partiallyReservedOrder(cmd.getSeatList());
+        final SeatQuantity partlyReservedSeat = cmd.getSeat(0);
+
+        final List<Message> events = aggregate.handle(cmd, Given.Command.context());
+
+        final OrderPartiallyReserved reservedEvent = (OrderPartiallyReserved) events.get(0);
+        assertEquals(aggregate.getState()
+                              .getConferenceId(), reservedEvent.getConferenceId());
+        final SeatQuantity expectedWaitlistedSeat = newSeatQuantity(partlyReservedSeat.getSeatTypeId(), 5);
+        assertEquals(singletonList(expectedWaitlistedSeat), reservedEvent.getWaitlistedSeatList());
+    }
+
+    @Test
+    public void handle_MarkSeatsAsReserved_command_and_complete_reservation_if_waitlisted_seats_are_reserved() {
+        final int waitlistedQuantity = 3;
+        final OrderAggregate aggregate = given.waitlistedOrder(waitlistedQuantity);
+        final List<SeatQuantity> seats = newArrayList(aggregate.getState()
+                                                               .getSeatList());
+        final SeatQuantity firstSeat = seats.get(0);
+        final SeatQuantity promotedSeat = newSeatQuantity(firstSeat.getSeatTypeId(),
+                                                          firstSeat.getQuantity() + waitlistedQuantity);
+        seats.set(0, promotedSeat);
+        final MarkSeatsAsReserved cmd = Given.Command.markSeatsAsReserved()
+                                                     .toBuilder()
+                                                     .clearSeat()
+                                                     .addAllSeat(seats)
+                                                     .build();
+
+        final List<Message> events = aggregate.handle(cmd, Given.Command.context());
+
+        assertEquals(2, events.size());
+        final OrderReservationCompleted completedEvent = (OrderReservationCompleted) events.get(0);
+        Assert.eventIsValid(completedEvent, cmd);
+        final OrderTotalsCalculated calculatedEvent = (OrderTotalsCalculated) events.get(1);
+        assertTrue(calculatedEvent.getOrderLineList()
+                                  .contains(Given.orderLine(promotedSeat)));
+        assertEquals(Given.orderTotal(seats)
+                          .getTotalPrice(), calculatedEvent.getTotal());
+    }
+
     @Test(expected = IllegalStateException.class)
     public void handle_MarkSeatsAsReserved_command_and_throw_exception_if_order_is_confirmed() {
         final OrderAggregate aggregate = given.confirmedOrder();
@@ -234,6 +471,8 @@ public class OrderAggregateShould {
 
         assertEquals(event.getSeatList(), aggregate.getState()
                                                    .getSeatList());
+        assertEquals(event.getWaitlistedSeatList(), aggregate.getState()
+                                                             .getWaitlistedSeatList());
     }
 
     @Test
@@ -267,6 +506,8 @@ public class OrderAggregateShould {
 
         assertEquals(event.getTotal(), aggregate.getState()
                                                 .getPrice());
+        assertEquals(event.getOrderLineList(), aggregate.getState()
+                                                        .getOrderLineList());
     }
 
     @Test
@@ -306,8 +547,9 @@ public class OrderAggregateShould {
 
         private static void eventIsValid(OrderTotalsCalculated event) {
             assertEquals(Given.ORDER_ID, event.getOrderId());
-            assertEquals(Given.PricingServiceStub.ORDER_LINES, event.getOrderLineList());
-            assertEquals(Given.PricingServiceStub.TOTAL_PRICE, event.getTotal());
+            final OrderTotal expectedTotal = Given.orderTotal();
+            assertEquals(expectedTotal.getOrderLineList(), event.getOrderLineList());
+            assertEquals(expectedTotal.getTotalPrice(), event.getTotal());
         }
 
         private static void eventIsValid(OrderReservationCompleted event, MarkSeatsAsReserved cmd) {
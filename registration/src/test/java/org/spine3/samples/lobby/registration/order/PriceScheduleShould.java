@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.order;
+
+import com.google.protobuf.Timestamp;
+import org.junit.Test;
+import org.spine3.money.Money;
+import org.spine3.samples.lobby.common.PriceTier;
+import org.spine3.samples.lobby.common.SeatType;
+
+import static com.google.protobuf.util.TimeUtil.createTimestampFromMillis;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.money.Currency.USD;
+import static org.spine3.money.MoneyUtil.newMoney;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class PriceScheduleShould {
+
+    private static final Money BASE_PRICE = newMoney(100, USD);
+    private static final Money EARLY_BIRD_PRICE = newMoney(80, USD);
+    private static final Money LATE_PRICE = newMoney(120, USD);
+
+    private static final int CONFERENCE_VERSION = 3;
+
+    private static final long EARLY_BIRD_FROM = 1_000;
+    private static final long LATE_FROM = 5_000;
+
+    // tiers are intentionally not sorted
+    private final SeatType seatType = SeatType.newBuilder()
+                                              .setId(newSeatTypeId())
+                                              .setPrice(BASE_PRICE)
+                                              .addPriceTier(tier(LATE_FROM, LATE_PRICE))
+                                              .addPriceTier(tier(EARLY_BIRD_FROM, EARLY_BIRD_PRICE))
+                                              .build();
+    private final PriceSchedule schedule = PriceSchedule.compile(seatType, CONFERENCE_VERSION);
+
+    @Test
+    public void return_base_price_before_first_tier() {
+        assertEquals(BASE_PRICE, schedule.getPrice(EARLY_BIRD_FROM - 1));
+    }
+
+    @Test
+    public void return_tier_price_from_its_effective_time() {
+        assertEquals(EARLY_BIRD_PRICE, schedule.getPrice(EARLY_BIRD_FROM));
+        assertEquals(EARLY_BIRD_PRICE, schedule.getPrice(LATE_FROM - 1));
+        assertEquals(LATE_PRICE, schedule.getPrice(LATE_FROM));
+        assertEquals(LATE_PRICE, schedule.getPrice(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void return_base_price_if_no_tiers() {
+        final SeatType flatSeatType = seatType.toBuilder()
+                                              .clearPriceTier()
+                                              .build();
+        final PriceSchedule flat = PriceSchedule.compile(flatSeatType, CONFERENCE_VERSION);
+
+        assertEquals(BASE_PRICE, flat.getPrice(LATE_FROM));
+    }
+
+    @Test
+    public void return_time_range_of_price_in_effect() {
+        assertEquals(Long.MIN_VALUE, schedule.getPriceEffectiveFrom(EARLY_BIRD_FROM - 1));
+        assertEquals(EARLY_BIRD_FROM, schedule.getNextPriceChange(EARLY_BIRD_FROM - 1));
+
+        assertEquals(EARLY_BIRD_FROM, schedule.getPriceEffectiveFrom(EARLY_BIRD_FROM));
+        assertEquals(LATE_FROM, schedule.getNextPriceChange(LATE_FROM - 1));
+
+        assertEquals(LATE_FROM, schedule.getPriceEffectiveFrom(LATE_FROM));
+        assertEquals(Long.MAX_VALUE, schedule.getNextPriceChange(LATE_FROM));
+    }
+
+    @Test
+    public void detect_that_conference_changed() {
+        assertTrue(schedule.isCompiledAt(CONFERENCE_VERSION));
+        assertFalse(schedule.isCompiledAt(CONFERENCE_VERSION + 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void not_compile_tiers_taking_effect_at_same_time() {
+        PriceSchedule.compile(seatType.toBuilder()
+                                      .addPriceTier(tier(LATE_FROM, BASE_PRICE))
+                                      .build(), CONFERENCE_VERSION);
+    }
+
+    private static PriceTier tier(long effectiveFromMillis, Money price) {
+        final Timestamp effectiveFrom = createTimestampFromMillis(effectiveFromMillis);
+        return PriceTier.newBuilder()
+                        .setEffectiveFrom(effectiveFrom)
+                        .setPrice(price)
+                        .build();
+    }
+}
@@ -32,6 +32,7 @@ import org.spine3.samples.lobby.common.ConferenceId;
 import org.spine3.samples.lobby.common.OrderId;
 import org.spine3.samples.lobby.common.ReservationId;
 import org.spine3.samples.lobby.payment.contracts.PaymentCompleted;
+import org.spine3.samples.lobby.registration.contracts.GroupRegistrationId;
 import org.spine3.samples.lobby.registration.contracts.OrderConfirmed;
 import org.spine3.samples.lobby.registration.contracts.OrderPlaced;
 import org.spine3.samples.lobby.registration.contracts.OrderUpdated;
@@ -43,6 +44,7 @@ import org.spine3.samples.lobby.registration.seat.availability.CancelSeatReserva
 import org.spine3.samples.lobby.registration.seat.availability.CommitSeatReservation;
 import org.spine3.samples.lobby.registration.seat.availability.MakeSeatReservation;
 import org.spine3.samples.lobby.registration.seat.availability.SeatsReserved;
+import org.spine3.samples.lobby.registration.seat.availability.WaitlistedSeatsReserved;
 import org.spine3.server.BoundedContext;
 import org.spine3.server.command.Assign;
 import org.spine3.server.command.CommandBus;
@@ -205,6 +207,15 @@ import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
             return builder.build();
         }
 
+        /* package */ static OrderPlaced groupOrderPlaced() {
+            final GroupRegistrationId groupId = GroupRegistrationId.newBuilder()
+                                                                   .setUuid(newUuid())
+                                                                   .build();
+            return orderPlaced().toBuilder()
+                                .setGroupRegistrationId(groupId)
+                                .build();
+        }
+
         /* package */ static OrderUpdated orderUpdated() {
             final OrderUpdated.Builder builder = OrderUpdated.newBuilder()
                                                              .setOrderId(ORDER_ID)
@@ -220,6 +231,14 @@ import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
             return builder.build();
         }
 
+        /* package */ static WaitlistedSeatsReserved waitlistedSeatsReserved() {
+            final WaitlistedSeatsReserved.Builder builder = WaitlistedSeatsReserved.newBuilder()
+                                                                                   .setReservationId(RESERVATION_ID)
+                                                                                   .setConferenceId(CONFERENCE_ID)
+                                                                                   .addAllReservedSeatUpdated(SEATS);
+            return builder.build();
+        }
+
         /* package */ static PaymentCompleted paymentCompleted() {
             final PaymentCompleted.Builder builder = PaymentCompleted.newBuilder()
                                                                      .setOrderId(ORDER_ID);
@@ -41,6 +41,7 @@ import org.spine3.samples.lobby.registration.seat.availability.CancelSeatReserva
 import org.spine3.samples.lobby.registration.seat.availability.CommitSeatReservation;
 import org.spine3.samples.lobby.registration.seat.availability.MakeSeatReservation;
 import org.spine3.samples.lobby.registration.seat.availability.SeatsReserved;
+import org.spine3.samples.lobby.registration.seat.availability.WaitlistedSeatsReserved;
 import org.spine3.samples.lobby.registration.util.MessagePacker;
 import org.spine3.server.procman.CommandRouted;
 
@@ -109,6 +110,19 @@ public class RegistrationProcessManagerShould {
         assertEquals(event.getOrderId(), cmd.getOrderId());
     }
 
+    @Test
+    public void handle_OrderPlaced_event_of_group_registration_and_not_reserve_seats()
+            throws IllegalProcessStateFailure {
+        processManager = given.processManager(NOT_STARTED);
+        final OrderPlaced event = Given.Event.groupOrderPlaced();
+
+        processManager.on(event, Given.Event.CONTEXT);
+
+        assertStateUpdated(AWAITING_RESERVATION_CONFIRMATION, event);
+        final ExpireRegistrationProcess cmd = assertCommandSent(ExpireRegistrationProcess.class);
+        assertEquals(processManager.getId(), cmd.getProcessManagerId());
+    }
+
     @Test(expected = IllegalProcessStateFailure.class)
     public void throw_exception_if_handle_OrderPlaced_event_in_inappropriate_state() throws IllegalProcessStateFailure {
         processManager = given.processManager(AWAITING_RESERVATION_CONFIRMATION);
@@ -180,6 +194,38 @@ public class RegistrationProcessManagerShould {
         processManager.on(event, Given.Event.CONTEXT);
     }
 
+    @Test(expected = IllegalProcessStateFailure.class)
+    public void throw_exception_if_handle_SeatsReserved_event_after_reservation_is_confirmed()
+            throws IllegalProcessStateFailure {
+        processManager = given.processManager(RESERVATION_CONFIRMED);
+        final SeatsReserved event = Given.Event.seatsReserved();
+
+        processManager.on(event, Given.Event.CONTEXT);
+    }
+
+    @Test
+    public void handle_WaitlistedSeatsReserved_event_after_reservation_is_confirmed_and_mark_seats_as_reserved()
+            throws IllegalProcessStateFailure {
+        processManager = given.processManager(RESERVATION_CONFIRMED);
+        final WaitlistedSeatsReserved event = Given.Event.waitlistedSeatsReserved();
+
+        processManager.on(event, Given.Event.CONTEXT);
+
+        final MarkSeatsAsReserved cmd = assertCommandSent(MarkSeatsAsReserved.class);
+        assertEquals(processManager.getState()
+                                   .getOrderId(), cmd.getOrderId());
+        assertEquals(event.getReservedSeatUpdatedList(), cmd.getSeatList());
+    }
+
+    @Test(expected = IllegalProcessStateFailure.class)
+    public void throw_exception_if_handle_WaitlistedSeatsReserved_event_while_awaiting_reservation_confirmation()
+            throws IllegalProcessStateFailure {
+        processManager = given.processManager(AWAITING_RESERVATION_CONFIRMATION);
+        final WaitlistedSeatsReserved event = Given.Event.waitlistedSeatsReserved();
+
+        processManager.on(event, Given.Event.CONTEXT);
+    }
+
     @Test
     public void handle_PaymentCompleted_event_then_update_state_and_confirm_order() throws IllegalProcessStateFailure {
         processManager = given.processManager(RESERVATION_CONFIRMED);
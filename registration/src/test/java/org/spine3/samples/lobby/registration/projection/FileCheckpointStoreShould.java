@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.projection;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.spine3.base.EventId;
+import org.spine3.base.Events;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static com.google.protobuf.util.TimeUtil.getCurrentTime;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings("InstanceMethodNamingConvention")
+public class FileCheckpointStoreShould {
+
+    private static final String REPOSITORY = "org.spine3.samples.Repository";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void return_null_if_no_checkpoint_written() throws IOException {
+        final CheckpointStore store = newStore();
+
+        assertNull(store.read(REPOSITORY));
+    }
+
+    @Test
+    public void read_written_checkpoint_after_restart() throws IOException {
+        final Path directory = folder.newFolder()
+                                     .toPath();
+        final ProjectionCheckpoint checkpoint = newCheckpoint(42);
+
+        new FileCheckpointStore(directory).write(checkpoint);
+
+        assertEquals(checkpoint, new FileCheckpointStore(directory).read(REPOSITORY));
+    }
+
+    @Test
+    public void replace_previous_checkpoint() throws IOException {
+        final CheckpointStore store = newStore();
+        store.write(newCheckpoint(1));
+        final ProjectionCheckpoint latest = newCheckpoint(2);
+
+        store.write(latest);
+
+        assertEquals(latest, store.read(REPOSITORY));
+    }
+
+    private CheckpointStore newStore() throws IOException {
+        return new FileCheckpointStore(folder.newFolder()
+                                             .toPath());
+    }
+
+    private static ProjectionCheckpoint newCheckpoint(long eventCount) {
+        final EventId eventId = Events.generateId();
+        return ProjectionCheckpoint.newBuilder()
+                                   .setRepository(REPOSITORY)
+                                   .setTimestamp(getCurrentTime())
+                                   .setEventId(eventId)
+                                   .setEventCount(eventCount)
+                                   .build();
+    }
+}
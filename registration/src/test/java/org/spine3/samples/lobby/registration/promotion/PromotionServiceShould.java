@@ -0,0 +1,317 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.promotion;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.spine3.base.Event;
+import org.spine3.base.EventContext;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.OrderId;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.registration.contracts.OrderConfirmed;
+import org.spine3.samples.lobby.registration.contracts.OrderExpired;
+import org.spine3.samples.lobby.registration.contracts.OrderTotalsCalculated;
+import org.spine3.samples.lobby.registration.contracts.SeatOrderLine;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.money.Currency.USD;
+import static org.spine3.money.MoneyUtil.newMoney;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newOrderId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newEvent;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class PromotionServiceShould {
+
+    private static final String CAPPED_CODE = "EARLY2";
+    private static final String UNLIMITED_CODE = "FRIENDS";
+    private static final String HOT_CODE = "FIRST500";
+    private static final int HOT_CODE_CAP = 500;
+    private static final int THREAD_COUNT = 64;
+    private static final int ORDERS_PER_THREAD = 100;
+
+    private final ConferenceId conferenceId = newConferenceId();
+    private final SeatTypeId workshopSeat = newSeatTypeId();
+    private final PromotionService service = PromotionService.newBuilder()
+                                                             .addRule(PromotionRule.newBuilder()
+                                                                                   .setCode(CAPPED_CODE)
+                                                                                   .setConferenceId(conferenceId)
+                                                                                   .setPercentOff(10)
+                                                                                   .setUsageCap(2)
+                                                                                   .build())
+                                                             .addRule(PromotionRule.newBuilder()
+                                                                                   .setCode(UNLIMITED_CODE)
+                                                                                   .setConferenceId(conferenceId)
+                                                                                   .setAmountOffPerSeat(newMoney(15, USD))
+                                                                                   .addSeatTypeId(workshopSeat)
+                                                                                   .build())
+                                                             .build();
+
+    @Test
+    public void find_promotion_by_code_ignoring_case() {
+        final Promotion promotion = service.find(conferenceId, "early2");
+
+        assertEquals(CAPPED_CODE, promotion.getCode());
+    }
+
+    @Test
+    public void not_find_promotion_of_other_conference() {
+        assertNull(service.find(newConferenceId(), CAPPED_CODE));
+    }
+
+    @Test
+    public void not_take_more_redemptions_for_same_order() {
+        final OrderId orderId = newOrderId();
+
+        redeem(orderId, CAPPED_CODE);
+        final Promotion promotion = redeem(orderId, CAPPED_CODE);
+
+        assertEquals(1, promotion.getRedeemedCount());
+    }
+
+    @Test
+    public void take_redemption_when_code_is_applied() {
+        final Promotion promotion = service.apply(newOrderId(), conferenceId, CAPPED_CODE);
+
+        assertEquals(1, promotion.getRedeemedCount());
+    }
+
+    @Test
+    public void not_apply_code_over_usage_cap() {
+        redeem(newOrderId(), CAPPED_CODE);
+        redeem(newOrderId(), CAPPED_CODE);
+
+        assertNull(service.apply(newOrderId(), conferenceId, CAPPED_CODE));
+        assertEquals(2, service.find(conferenceId, CAPPED_CODE)
+                               .getRedeemedCount());
+    }
+
+    @Test
+    public void apply_code_redeemed_by_order_if_usage_cap_is_reached() {
+        final OrderId orderId = newOrderId();
+        redeem(orderId, CAPPED_CODE);
+        redeem(newOrderId(), CAPPED_CODE);
+
+        assertNotNull(service.apply(orderId, conferenceId, CAPPED_CODE));
+    }
+
+    @Test
+    public void not_apply_code_over_usage_cap_to_orders_priced_concurrently() throws InterruptedException {
+        final PromotionService hotCodeService = PromotionService.newBuilder()
+                                                                .addRule(PromotionRule.newBuilder()
+                                                                                      .setCode(HOT_CODE)
+                                                                                      .setConferenceId(conferenceId)
+                                                                                      .setPercentOff(5)
+                                                                                      .setUsageCap(HOT_CODE_CAP)
+                                                                                      .build())
+                                                                .build();
+        final AtomicInteger applied = new AtomicInteger();
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    awaitQuietly(startSignal);
+                    for (int order = 0; order < ORDERS_PER_THREAD; order++) {
+                        if (hotCodeService.apply(newOrderId(), conferenceId, HOT_CODE) != null) {
+                            applied.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        startSignal.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(HOT_CODE_CAP, applied.get());
+        assertEquals(HOT_CODE_CAP, hotCodeService.find(conferenceId, HOT_CODE)
+                                                 .getRedeemedCount());
+    }
+
+    @Test
+    public void not_take_more_redemptions_when_applied_code_is_published() {
+        final OrderId orderId = newOrderId();
+        final Promotion promotion = redeem(orderId, CAPPED_CODE);
+
+        service.on(totalsCalculated(orderId, CAPPED_CODE), EventContext.getDefaultInstance());
+
+        assertEquals(1, promotion.getRedeemedCount());
+    }
+
+    @Test
+    public void take_redemption_when_order_totals_are_calculated() {
+        service.on(totalsCalculated(newOrderId(), CAPPED_CODE), EventContext.getDefaultInstance());
+
+        assertEquals(1, service.find(conferenceId, CAPPED_CODE)
+                               .getRedeemedCount());
+    }
+
+    @Test
+    public void release_redemption_when_order_is_priced_without_code() {
+        final OrderId orderId = newOrderId();
+        final Promotion promotion = redeem(orderId, CAPPED_CODE);
+
+        service.on(totalsCalculated(orderId, ""), EventContext.getDefaultInstance());
+
+        assertEquals(0, promotion.getRedeemedCount());
+    }
+
+    @Test
+    public void replay_redemptions_from_event_history() {
+        final OrderId expiredOrderId = newOrderId();
+        final List<Event> history = ImmutableList.of(newEvent(totalsCalculated(newOrderId(), CAPPED_CODE)),
+                                                     newEvent(totalsCalculated(expiredOrderId, CAPPED_CODE)),
+                                                     newEvent(OrderExpired.newBuilder()
+                                                                          .setOrderId(expiredOrderId)
+                                                                          .build()));
+
+        final long count = service.replay(history);
+
+        assertEquals(history.size(), count);
+        assertEquals(1, service.find(conferenceId, CAPPED_CODE)
+                               .getRedeemedCount());
+        assertNotNull(service.apply(newOrderId(), conferenceId, CAPPED_CODE));
+        assertNull(service.apply(newOrderId(), conferenceId, CAPPED_CODE));
+    }
+
+    @Test
+    public void release_redemption_when_order_expires() {
+        final OrderId orderId = newOrderId();
+        final Promotion promotion = redeem(orderId, CAPPED_CODE);
+
+        service.on(OrderExpired.newBuilder()
+                               .setOrderId(orderId)
+                               .build(), EventContext.getDefaultInstance());
+
+        assertEquals(0, promotion.getRedeemedCount());
+    }
+
+    @Test
+    public void keep_redemption_when_order_is_confirmed() {
+        final OrderId orderId = newOrderId();
+        final Promotion promotion = redeem(orderId, CAPPED_CODE);
+
+        service.on(OrderConfirmed.newBuilder()
+                                 .setOrderId(orderId)
+                                 .build(), EventContext.getDefaultInstance());
+        service.release(orderId);
+
+        assertEquals(1, promotion.getRedeemedCount());
+    }
+
+    @Test
+    public void release_redemption_when_order_changes_code() {
+        final OrderId orderId = newOrderId();
+        final Promotion capped = redeem(orderId, CAPPED_CODE);
+
+        redeem(orderId, UNLIMITED_CODE);
+
+        assertEquals(0, capped.getRedeemedCount());
+    }
+
+    @Test
+    public void calculate_percent_discount() {
+        final Promotion promotion = service.find(conferenceId, CAPPED_CODE);
+
+        final long discount = promotion.getDiscount(asList(line(newSeatTypeId(), 2, 100), line(workshopSeat, 1, 50)));
+
+        assertEquals(25, discount);
+    }
+
+    @Test
+    public void calculate_per_seat_discount_for_applicable_seat_types() {
+        final Promotion promotion = service.find(conferenceId, UNLIMITED_CODE);
+
+        final long discount = promotion.getDiscount(asList(line(newSeatTypeId(), 2, 100), line(workshopSeat, 3, 20)));
+
+        assertEquals(45, discount);
+    }
+
+    @Test
+    public void not_give_per_seat_discount_greater_than_line_total() {
+        final Promotion promotion = service.find(conferenceId, UNLIMITED_CODE);
+
+        final long discount = promotion.getDiscount(asList(line(workshopSeat, 2, 10)));
+
+        assertEquals(20, discount);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void not_accept_rule_without_discount() {
+        PromotionService.newBuilder()
+                        .addRule(PromotionRule.newBuilder()
+                                              .setCode("NOTHING")
+                                              .setConferenceId(conferenceId)
+                                              .build());
+    }
+
+    /**
+     * Applies the code to the order and returns the promotion of the code.
+     */
+    private Promotion redeem(OrderId orderId, String code) {
+        service.apply(orderId, conferenceId, code);
+        return service.find(conferenceId, code);
+    }
+
+    private OrderTotalsCalculated totalsCalculated(OrderId orderId, String code) {
+        return OrderTotalsCalculated.newBuilder()
+                                    .setOrderId(orderId)
+                                    .setConferenceId(conferenceId)
+                                    .setPromoCode(code)
+                                    .build();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+        }
+    }
+
+    private static SeatOrderLine line(SeatTypeId seatTypeId, int quantity, long unitPrice) {
+        return SeatOrderLine.newBuilder()
+                            .setSeatTypeId(seatTypeId)
+                            .setQuantity(quantity)
+                            .setUnitPrice(newMoney(unitPrice, USD))
+                            .setLineTotal(newMoney(unitPrice * quantity, USD))
+                            .build();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.promotion;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link RedemptionCounter} under contention of many threads on a single hot promo code.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class RedemptionCounterShould {
+
+    private static final int THREAD_COUNT = 64;
+    private static final int ATTEMPTS_PER_THREAD = 20_000;
+    private static final int CAP = 500;
+
+    @Test
+    public void not_redeem_more_than_cap() {
+        final RedemptionCounter counter = new RedemptionCounter(3, 2);
+
+        assertTrue(counter.tryRedeem());
+        assertTrue(counter.tryRedeem());
+        assertTrue(counter.tryRedeem());
+        assertFalse(counter.tryRedeem());
+        assertEquals(3, counter.getRedeemedCount());
+    }
+
+    @Test
+    public void grant_released_redemption_again() {
+        final RedemptionCounter counter = new RedemptionCounter(1, 4);
+        counter.tryRedeem();
+
+        counter.release();
+
+        assertTrue(counter.tryRedeem());
+    }
+
+    @Test
+    public void not_redeem_more_than_cap_under_contention() throws InterruptedException {
+        final RedemptionCounter counter = new RedemptionCounter(CAP);
+
+        final int granted = redeemConcurrently(counter, false);
+
+        assertEquals(CAP, granted);
+        assertEquals(CAP, counter.getRedeemedCount());
+    }
+
+    @Test
+    public void keep_count_consistent_with_concurrent_releases() throws InterruptedException {
+        final RedemptionCounter counter = new RedemptionCounter(CAP);
+
+        final int held = redeemConcurrently(counter, true);
+
+        assertEquals(held, counter.getRedeemedCount());
+        assertTrue(held <= CAP);
+    }
+
+    @Test
+    public void not_redeem_more_than_cap_of_single_stripe_under_contention() throws InterruptedException {
+        final RedemptionCounter counter = new RedemptionCounter(CAP, 1);
+
+        final int granted = redeemConcurrently(counter, false);
+
+        assertEquals(CAP, granted);
+        assertEquals(CAP, counter.getRedeemedCount());
+    }
+
+    /**
+     * Redeems the code from {@link #THREAD_COUNT} threads started at once.
+     *
+     * @param releaseHalf whether every other granted redemption is released right away
+     * @return the number of redemptions granted and not released
+     */
+    private static int redeemConcurrently(final RedemptionCounter counter, final boolean releaseHalf)
+            throws InterruptedException {
+        final AtomicInteger held = new AtomicInteger();
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    awaitQuietly(startSignal);
+                    for (int attempt = 0; attempt < ATTEMPTS_PER_THREAD; attempt++) {
+                        if (!counter.tryRedeem()) {
+                            continue;
+                        }
+                        if (releaseHalf && attempt % 2 == 0) {
+                            counter.release();
+                        } else {
+                            held.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        startSignal.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        return held.get();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.replay;
+
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import org.junit.Test;
+import org.spine3.base.Command;
+import org.spine3.base.CommandContext;
+import org.spine3.base.Commands;
+import org.spine3.samples.lobby.registration.seat.availability.CancelSeatReservation;
+import org.spine3.samples.lobby.registration.seat.availability.MakeSeatReservation;
+import org.spine3.server.BoundedContext;
+import org.spine3.server.command.Assign;
+import org.spine3.server.command.CommandHandler;
+import org.spine3.server.event.EventBus;
+import org.spine3.server.procman.CommandRouted;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.samples.lobby.common.util.CommandContexts.newCommandContext;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newBoundedContext;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class CommandReplayShould {
+
+    private static final long START_SECONDS = 1_472_688_000L;
+
+    private static final String MAKE_RESERVATION = MakeSeatReservation.getDescriptor()
+                                                                      .getFullName();
+    private static final String CANCEL_RESERVATION = CancelSeatReservation.getDescriptor()
+                                                                          .getFullName();
+
+    private final BoundedContext boundedContext = newBoundedContext();
+    private final ByteArrayOutputStream logBytes = new ByteArrayOutputStream();
+
+    public CommandReplayShould() {
+        boundedContext.getCommandBus()
+                      .register(new StubCommandHandler(boundedContext.getEventBus()));
+    }
+
+    @Test
+    public void replay_all_logged_commands_and_report_per_command_type() throws IOException, InterruptedException {
+        try (CommandLogWriter log = new CommandLogWriter(logBytes)) {
+            for (int i = 0; i < 30; i++) {
+                log.append(command(MakeSeatReservation.getDefaultInstance(), i));
+            }
+            for (int i = 0; i < 20; i++) {
+                log.append(command(CancelSeatReservation.getDefaultInstance(), 30 + i));
+            }
+        }
+
+        final ReplayReport report = replay(CommandReplay.MAX_SPEED);
+
+        assertEquals(50, report.getCommandCount());
+        assertEquals(2, report.getStats()
+                              .size());
+        final CommandTypeStats reservations = report.getStats(MAKE_RESERVATION);
+        assertEquals(30, reservations.getCount());
+        assertEquals(0, reservations.getErrorCount());
+        assertEquals(20, report.getStats(CANCEL_RESERVATION)
+                               .getCount());
+        assertTrue(reservations.getLatency()
+                               .getMaxNanos() >= reservations.getServiceTime()
+                                                             .getMaxNanos());
+        assertTrue(report.getThroughput() > 0);
+        assertTrue(report.toString()
+                         .contains(MAKE_RESERVATION));
+    }
+
+    @Test
+    public void preserve_relative_timing_of_commands_sped_up() throws IOException, InterruptedException {
+        try (CommandLogWriter log = new CommandLogWriter(logBytes)) {
+            log.append(command(MakeSeatReservation.getDefaultInstance(), 0));
+            log.append(command(MakeSeatReservation.getDefaultInstance(), 2));
+        }
+
+        final ReplayReport report = replay(10);
+
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(report.getElapsedNanos());
+        assertTrue(elapsedMillis >= 200);
+        assertTrue(elapsedMillis < 2_000);
+    }
+
+    @Test
+    public void report_nothing_for_empty_log() throws IOException, InterruptedException {
+        final ReplayReport report = replay(1);
+
+        assertEquals(0, report.getCommandCount());
+        assertTrue(report.getStats()
+                         .isEmpty());
+    }
+
+    private ReplayReport replay(double speedup) throws IOException, InterruptedException {
+        final CommandReplay replay = CommandReplay.newBuilder()
+                                                  .setCommandBus(boundedContext.getCommandBus())
+                                                  .setSpeedup(speedup)
+                                                  .setParallelism(4)
+                                                  .build();
+        try (CommandLogReader log = new CommandLogReader(new ByteArrayInputStream(logBytes.toByteArray()))) {
+            return replay.replay(log);
+        }
+    }
+
+    private static Command command(Message message, long secondsFromStart) {
+        final CommandContext context = newCommandContext();
+        final Timestamp recordedAt = Timestamp.newBuilder()
+                                              .setSeconds(START_SECONDS + secondsFromStart)
+                                              .build();
+        return Commands.create(message, context.toBuilder()
+                                               .setTimestamp(recordedAt)
+                                               .build());
+    }
+
+    private static class StubCommandHandler extends CommandHandler {
+
+        private StubCommandHandler(EventBus eventBus) {
+            super(StubCommandHandler.class.getSimpleName(), eventBus);
+        }
+
+        @Assign
+        public CommandRouted handle(MakeSeatReservation cmd, CommandContext context) {
+            return CommandRouted.getDefaultInstance();
+        }
+
+        @Assign
+        public CommandRouted handle(CancelSeatReservation cmd, CommandContext context) {
+            return CommandRouted.getDefaultInstance();
+        }
+    }
+}
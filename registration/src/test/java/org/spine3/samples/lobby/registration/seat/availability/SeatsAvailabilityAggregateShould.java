@@ -22,6 +22,8 @@ package org.spine3.samples.lobby.registration.seat.availability;
 
 import org.junit.Test;
 import org.spine3.base.CommandContext;
+import org.spine3.samples.lobby.common.ReservationId;
+import org.spine3.samples.lobby.common.SeatTypeId;
 import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
 import org.spine3.samples.lobby.registration.seat.availability.testcase.AddSeatsCmdHandling;
 import org.spine3.samples.lobby.registration.seat.availability.testcase.AddedAvailableSeatsEventApplying;
@@ -29,10 +31,12 @@ import org.spine3.samples.lobby.registration.seat.availability.testcase.CancelSe
 import org.spine3.samples.lobby.registration.seat.availability.testcase.CommitSeatReservationCmdHandling;
 import org.spine3.samples.lobby.registration.seat.availability.testcase.EnoughSeatsAndExistPendingReservations;
 import org.spine3.samples.lobby.registration.seat.availability.testcase.EnoughSeatsAndNoPendingReservations;
+import org.spine3.samples.lobby.registration.seat.availability.testcase.MakeGroupSeatReservationCmdHandling;
 import org.spine3.samples.lobby.registration.seat.availability.testcase.MakeSeatReservationCmdHandling;
 import org.spine3.samples.lobby.registration.seat.availability.testcase.NotEnoughSeatsAndNoPendingReservations;
 import org.spine3.samples.lobby.registration.seat.availability.testcase.RemoveSeatsCmdHandling;
 import org.spine3.samples.lobby.registration.seat.availability.testcase.RemovedAvailableSeatsEventApplying;
+import org.spine3.samples.lobby.registration.seat.availability.testcase.ReserveWaitlistedSeatsCmdHandling;
 import org.spine3.samples.lobby.registration.seat.availability.testcase.SeatsReservationCancelledEventApplying;
 import org.spine3.samples.lobby.registration.seat.availability.testcase.SeatsReservationCommittedEventApplying;
 import org.spine3.samples.lobby.registration.seat.availability.testcase.SeatsReservedEventApplying;
@@ -40,11 +44,19 @@ import org.spine3.samples.lobby.registration.seat.availability.testcase.TestCase
 import org.spine3.samples.lobby.registration.util.EventImporter;
 
 import java.util.List;
-import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newReservationId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+import static org.spine3.samples.lobby.registration.util.Seats.findPendingReservation;
+import static org.spine3.samples.lobby.registration.util.Seats.getPendingReservations;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantities;
 import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
+import static org.spine3.samples.lobby.registration.util.Seats.putPendingReservation;
+import static org.spine3.samples.lobby.registration.util.Seats.removePendingReservation;
 
 /**
  * @author Alexander Litus
@@ -55,6 +67,9 @@ public class SeatsAvailabilityAggregateShould {
 
     private static final CommandContext CMD_CONTEXT = CommandContext.getDefaultInstance();
 
+    private static final int OLD_SNAPSHOT_AVAILABLE = 10;
+    private static final int OLD_SNAPSHOT_RESERVED = 3;
+
     private final SeatsAvailabilityAggregate defaultAggregate = new TestCase().givenAggregate();
 
     /**
@@ -205,6 +220,99 @@ public class SeatsAvailabilityAggregateShould {
         aggregate.handle(cmd, context);
     }
 
+    /**
+     * Tests of states restored from snapshots saved before the pending reservation keys became compact.
+     */
+
+    @Test
+    public void commit_reservation_kept_under_uuid_in_old_snapshot() {
+        final ReservationId reservationId = newReservationId();
+        final SeatsAvailabilityAggregate aggregate = givenOldSnapshot(reservationId);
+        final CommitSeatReservation cmd = CommitSeatReservation.newBuilder()
+                                                               .setReservationId(reservationId)
+                                                               .build();
+
+        final SeatsReservationCommitted event = aggregate.handle(cmd, CMD_CONTEXT);
+        EventImporter.apply(aggregate, event, CMD_CONTEXT);
+
+        assertTrue(getPendingReservations(aggregate.getState()).isEmpty());
+    }
+
+    @Test
+    public void cancel_reservation_kept_under_uuid_in_old_snapshot() {
+        final ReservationId reservationId = newReservationId();
+        final SeatsAvailabilityAggregate aggregate = givenOldSnapshot(reservationId);
+        final CancelSeatReservation cmd = CancelSeatReservation.newBuilder()
+                                                               .setReservationId(reservationId)
+                                                               .setConferenceId(newConferenceId())
+                                                               .build();
+
+        final SeatsReservationCancelled event = aggregate.handle(cmd, CMD_CONTEXT);
+
+        assertEquals(OLD_SNAPSHOT_AVAILABLE + OLD_SNAPSHOT_RESERVED, event.getAvailableSeatUpdated(0)
+                                                                          .getQuantity());
+    }
+
+    @Test
+    public void move_reservation_kept_under_uuid_in_old_snapshot_to_uuid_bits_key_on_update() {
+        final ReservationId reservationId = newReservationId();
+        final SeatsAvailabilityAggregate aggregate = givenOldSnapshot(reservationId);
+        final SeatQuantity reserved = aggregate.getState()
+                                               .getPendingReservations()
+                                               .get(reservationId.getUuid())
+                                               .getItem(0);
+        final MakeSeatReservation cmd = MakeSeatReservation.newBuilder()
+                                                           .setReservationId(reservationId)
+                                                           .setConferenceId(newConferenceId())
+                                                           .addSeat(newSeatQuantity(reserved.getSeatTypeId(), 1))
+                                                           .build();
+
+        final SeatsReserved event = aggregate.handle(cmd, CMD_CONTEXT);
+        EventImporter.apply(aggregate, event, CMD_CONTEXT);
+
+        final SeatsAvailability state = aggregate.getState();
+        assertTrue(state.getPendingReservationsMap()
+                        .isEmpty());
+        assertEquals(1, getPendingReservations(state).size());
+        assertEquals(OLD_SNAPSHOT_RESERVED + 1, findPendingReservation(state, reservationId).getItem(0)
+                                                                                           .getQuantity());
+    }
+
+    @Test
+    public void keep_pending_reservations_whose_uuids_share_most_significant_bits() {
+        final ReservationId first = ReservationId.newBuilder()
+                                                 .setUuid("00000000-0000-7000-8000-000000000001")
+                                                 .build();
+        final ReservationId second = ReservationId.newBuilder()
+                                                  .setUuid("00000000-0000-7000-8000-000000000002")
+                                                  .build();
+        final SeatsAvailability.Builder state = SeatsAvailability.newBuilder();
+        putPendingReservation(state, first, newSeatQuantities(newSeatQuantity(1)));
+        putPendingReservation(state, second, newSeatQuantities(newSeatQuantity(2)));
+
+        removePendingReservation(state, first);
+
+        assertNull(findPendingReservation(state, first));
+        assertEquals(2, findPendingReservation(state, second).getItem(0)
+                                                             .getQuantity());
+        assertEquals(1, getPendingReservations(state).size());
+    }
+
+    /**
+     * Returns an aggregate with the state of a snapshot which keeps the reservation under its 36-char UUID.
+     */
+    private static SeatsAvailabilityAggregate givenOldSnapshot(ReservationId reservationId) {
+        final SeatTypeId seatTypeId = newSeatTypeId();
+        final SeatQuantity available = newSeatQuantity(seatTypeId, OLD_SNAPSHOT_AVAILABLE);
+        final SeatsAvailability.Builder state = SeatsAvailability.newBuilder()
+                                                                 .addAvailableSeat(available);
+        state.getMutablePendingReservations()
+             .put(reservationId.getUuid(), newSeatQuantities(newSeatQuantity(seatTypeId, OLD_SNAPSHOT_RESERVED)));
+        final SeatsAvailabilityAggregate aggregate = new TestCase().givenAggregate();
+        aggregate.incrementAggregateState(state.build());
+        return aggregate;
+    }
+
     /**
      * CancelSeatReservation command handling tests.
      */
@@ -237,6 +345,78 @@ public class SeatsAvailabilityAggregateShould {
         aggregate.handle(cmd, context);
     }
 
+    /**
+     * ReserveWaitlistedSeats command handling tests.
+     */
+
+    @Test
+    public void handle_ReserveWaitlistedSeats_command_and_reserve_seats_in_order_of_reservations() {
+        final ReserveWaitlistedSeatsCmdHandling testCase = new ReserveWaitlistedSeatsCmdHandling();
+        final SeatsAvailabilityAggregate aggregate = testCase.givenAggregate();
+        final ReserveWaitlistedSeats cmd = testCase.givenCommand();
+        final CommandContext context = testCase.givenCommandContext();
+
+        final List<WaitlistedSeatsReserved> events = aggregate.handle(cmd, context);
+
+        testCase.validateResult(events, cmd);
+    }
+
+    @Test
+    public void handle_ReserveWaitlistedSeats_command_and_skip_reservation_which_is_not_pending() {
+        final ReserveWaitlistedSeatsCmdHandling testCase = new ReserveWaitlistedSeatsCmdHandling();
+        final SeatsAvailabilityAggregate aggregate = testCase.givenAggregate();
+        final ReserveWaitlistedSeats cmd = testCase.givenCommandWithNotPendingReservation();
+
+        final List<WaitlistedSeatsReserved> events = aggregate.handle(cmd, testCase.givenCommandContext());
+
+        testCase.validateResult(events, testCase.givenCommand());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void handle_ReserveWaitlistedSeats_command_and_throw_exception_if_no_reservation_is_pending() {
+        final ReserveWaitlistedSeatsCmdHandling testCase = new ReserveWaitlistedSeatsCmdHandling();
+        final SeatsAvailabilityAggregate aggregate = testCase.givenAggregate();
+        final ReserveWaitlistedSeats cmd = testCase.givenCommandWithoutPendingReservations();
+
+        aggregate.handle(cmd, testCase.givenCommandContext());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void handle_ReserveWaitlistedSeats_command_and_throw_exception_if_it_is_empty() {
+        final ReserveWaitlistedSeats cmd = ReserveWaitlistedSeats.getDefaultInstance();
+        defaultAggregate.handle(cmd, CMD_CONTEXT);
+    }
+
+    /**
+     * MakeGroupSeatReservation command handling tests.
+     */
+
+    @Test
+    public void handle_MakeGroupSeatReservation_command_and_reserve_seats_in_order_of_reservations() {
+        final MakeGroupSeatReservationCmdHandling testCase = new MakeGroupSeatReservationCmdHandling();
+        final SeatsAvailabilityAggregate aggregate = testCase.givenAggregate();
+        final MakeGroupSeatReservation cmd = testCase.givenCommand();
+        final CommandContext context = testCase.givenCommandContext();
+
+        final List<SeatsReserved> events = aggregate.handle(cmd, context);
+
+        testCase.validateResult(events, cmd);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void handle_MakeGroupSeatReservation_command_and_throw_exception_if_reservation_is_for_another_conference() {
+        final MakeGroupSeatReservationCmdHandling testCase = new MakeGroupSeatReservationCmdHandling();
+        final MakeGroupSeatReservation cmd = testCase.givenCommandWithReservationForAnotherConference();
+        testCase.givenAggregate()
+                .handle(cmd, CMD_CONTEXT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void handle_MakeGroupSeatReservation_command_and_throw_exception_if_it_is_empty() {
+        final MakeGroupSeatReservation cmd = MakeGroupSeatReservation.getDefaultInstance();
+        defaultAggregate.handle(cmd, CMD_CONTEXT);
+    }
+
     /**
      * AddSeats command handling tests.
      */
@@ -300,15 +480,12 @@ public class SeatsAvailabilityAggregateShould {
         final SeatsReservedEventApplying testCase = new SeatsReservedEventApplying();
         final SeatsAvailabilityAggregate aggregate = testCase.givenAggregate();
         final SeatsReserved event = testCase.givenEvent();
-        final String reservationId = event.getReservationId()
-                                          .getUuid();
 
         EventImporter.apply(aggregate, event, CMD_CONTEXT);
 
         final SeatsAvailability state = aggregate.getState();
         assertEquals(event.getAvailableSeatUpdatedList(), state.getAvailableSeatList());
-        final SeatQuantities reservedSeats = state.getPendingReservations()
-                                                  .get(reservationId);
+        final SeatQuantities reservedSeats = findPendingReservation(state, event.getReservationId());
         assertEquals(event.getReservedSeatUpdatedList(), reservedSeats.getItemList());
     }
 
@@ -320,8 +497,7 @@ public class SeatsAvailabilityAggregateShould {
 
         EventImporter.apply(aggregate, event, CMD_CONTEXT);
 
-        final Map<String, SeatQuantities> pendingReservations = aggregate.getState()
-                                                                         .getPendingReservations();
+        final List<SeatQuantities> pendingReservations = getPendingReservations(aggregate.getState());
         assertEquals(0, pendingReservations.size());
     }
 
@@ -334,7 +510,7 @@ public class SeatsAvailabilityAggregateShould {
         EventImporter.apply(aggregate, event, CMD_CONTEXT);
 
         final SeatsAvailability state = aggregate.getState();
-        final Map<String, SeatQuantities> pendingReservations = state.getPendingReservations();
+        final List<SeatQuantities> pendingReservations = getPendingReservations(state);
         assertEquals(0, pendingReservations.size());
 
         final List<SeatQuantity> availableSeatsExpected = event.getAvailableSeatUpdatedList();
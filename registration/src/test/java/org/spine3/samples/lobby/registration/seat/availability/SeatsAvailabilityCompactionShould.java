@@ -0,0 +1,269 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.seat.availability;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import io.grpc.stub.StreamObserver;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.spine3.base.Event;
+import org.spine3.base.EventContext;
+import org.spine3.base.Events;
+import org.spine3.protobuf.AnyPacker;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.ReservationId;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.registration.archive.EventStreamArchive;
+
+import java.io.IOException;
+import java.util.List;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.protobuf.util.TimeUtil.getCurrentTime;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newReservationId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatsAvailabilityId;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class SeatsAvailabilityCompactionShould {
+
+    private static final int SEAT_COUNT = 100;
+    private static final int RESERVATION_COUNT = 30;
+    private static final int BATCH_SIZE = 7;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Timestamp now = getCurrentTime();
+    private final List<Event> history = newArrayList();
+    private final ConferenceId finished = newConferenceId();
+    private final ConferenceId active = newConferenceId();
+    private EventStreamArchive archive;
+
+    @Before
+    public void setUpTest() throws IOException {
+        archive = new EventStreamArchive(folder.newFolder()
+                                               .toPath());
+        final SeatTypeId finishedSeatType = newSeatTypeId();
+        final SeatTypeId activeSeatType = newSeatTypeId();
+        addSeats(finished, finishedSeatType);
+        addSeats(active, activeSeatType);
+        for (int i = 0; i < RESERVATION_COUNT; i++) {
+            addReservation(finished, finishedSeatType, i, i % 3 == 0);
+            addReservation(active, activeSeatType, i, false);
+        }
+    }
+
+    @Test
+    public void fold_history_of_finished_conference_into_one_event_with_replayed_state() {
+        final RecordingObserver retained = new RecordingObserver();
+
+        final CompactionReport report = newCompaction().run(history, ImmutableSet.of(finished), now, retained);
+
+        final List<Event> compacted = retained.eventsOf(finished);
+        assertEquals(1, compacted.size());
+        final SeatsAvailabilityCompacted event = AnyPacker.unpack(compacted.get(0)
+                                                                           .getMessage());
+        assertEquals(replay(eventsOf(finished)).getState(), event.getState());
+        assertEquals(eventsOf(finished).size(), event.getEventCount());
+        assertEquals(1, report.getConferenceCount());
+        assertEquals(eventsOf(finished).size(), report.getCompactedEventCount());
+    }
+
+    @Test
+    public void restore_aggregate_from_compacted_event() {
+        final RecordingObserver retained = new RecordingObserver();
+
+        newCompaction().run(history, ImmutableSet.of(finished), now, retained);
+
+        assertEquals(replay(eventsOf(finished)).getState(),
+                     replay(retained.eventsOf(finished)).getState());
+    }
+
+    @Test
+    public void archive_original_events_of_finished_conference() {
+        newCompaction().run(history, ImmutableSet.of(finished), now, new RecordingObserver());
+
+        final SeatsAvailabilityId id = newSeatsAvailabilityId(finished);
+        assertTrue(archive.contains(id));
+        final RecordingObserver archived = new RecordingObserver();
+        archive.read(id, archived);
+        assertEquals(eventsOf(finished), archived.events);
+        assertFalse(archive.contains(newSeatsAvailabilityId(active)));
+    }
+
+    @Test
+    public void retain_events_of_other_conferences_in_order() {
+        final RecordingObserver retained = new RecordingObserver();
+
+        final CompactionReport report = newCompaction().run(history, ImmutableSet.of(finished), now, retained);
+
+        assertEquals(eventsOf(active), retained.eventsOf(active));
+        assertEquals(eventsOf(active).size(), report.getRetainedEventCount());
+        assertTrue(retained.isCompleted);
+    }
+
+    @Test
+    public void compact_already_compacted_history() {
+        final RecordingObserver firstRun = new RecordingObserver();
+        newCompaction().run(history, ImmutableSet.of(finished), now, firstRun);
+        final RecordingObserver secondRun = new RecordingObserver();
+
+        newCompaction().run(firstRun.events, ImmutableSet.of(finished), now, secondRun);
+
+        assertEquals(replay(eventsOf(finished)).getState(),
+                     replay(secondRun.eventsOf(finished)).getState());
+        assertEquals(1, secondRun.eventsOf(finished)
+                                 .size());
+    }
+
+    @Test
+    public void refuse_to_compact_history_with_event_of_no_conference() {
+        final SeatsReserved legacyEvent = SeatsReserved.newBuilder()
+                                                       .setReservationId(newReservationId())
+                                                       .build();
+        history.add(newEvent(legacyEvent));
+        final RecordingObserver retained = new RecordingObserver();
+
+        try {
+            newCompaction().run(history, ImmutableSet.of(finished), now, retained);
+            fail("The history with unroutable events must not be compacted.");
+        } catch (IllegalStateException ignored) {
+        }
+
+        assertTrue(retained.events.isEmpty());
+        assertFalse(archive.contains(newSeatsAvailabilityId(finished)));
+    }
+
+    private SeatsAvailabilityCompaction newCompaction() {
+        return SeatsAvailabilityCompaction.newBuilder()
+                                          .setArchive(archive)
+                                          .setParallelism(2)
+                                          .setBatchSize(BATCH_SIZE)
+                                          .setQueueCapacity(BATCH_SIZE)
+                                          .build();
+    }
+
+    private List<Event> eventsOf(ConferenceId conferenceId) {
+        return filter(history, conferenceId);
+    }
+
+    private static SeatsAvailabilityAggregate replay(List<Event> events) {
+        final SeatsAvailabilityAggregate aggregate = new SeatsAvailabilityAggregate(newSeatsAvailabilityId());
+        aggregate.replay(events);
+        return aggregate;
+    }
+
+    private void addSeats(ConferenceId conferenceId, SeatTypeId seatType) {
+        final AddedAvailableSeats added = AddedAvailableSeats.newBuilder()
+                                                             .setConferenceId(conferenceId)
+                                                             .setQuantity(newSeatQuantity(seatType, SEAT_COUNT))
+                                                             .build();
+        history.add(newEvent(added));
+    }
+
+    private void addReservation(ConferenceId conferenceId, SeatTypeId seatType, int index, boolean cancel) {
+        final ReservationId reservationId = newReservationId();
+        final SeatsReserved reserved = SeatsReserved.newBuilder()
+                                                    .setConferenceId(conferenceId)
+                                                    .setReservationId(reservationId)
+                                                    .addReservedSeatUpdated(newSeatQuantity(seatType, 1))
+                                                    .addAvailableSeatUpdated(newSeatQuantity(seatType,
+                                                                                             SEAT_COUNT - index - 1))
+                                                    .build();
+        history.add(newEvent(reserved));
+        if (cancel) {
+            final SeatsReservationCancelled cancelled = SeatsReservationCancelled.newBuilder()
+                                                                                 .setConferenceId(conferenceId)
+                                                                                 .setReservationId(reservationId)
+                                                                                 .addAvailableSeatUpdated(
+                                                                                         newSeatQuantity(seatType,
+                                                                                                         SEAT_COUNT))
+                                                                                 .build();
+            history.add(newEvent(cancelled));
+        } else {
+            final SeatsReservationCommitted committed = SeatsReservationCommitted.newBuilder()
+                                                                                 .setConferenceId(conferenceId)
+                                                                                 .setReservationId(reservationId)
+                                                                                 .build();
+            history.add(newEvent(committed));
+        }
+    }
+
+    private static List<Event> filter(List<Event> events, ConferenceId conferenceId) {
+        final List<Event> result = newArrayList();
+        for (Event event : events) {
+            final Message message = AnyPacker.unpack(event.getMessage());
+            final Object field = message.getField(message.getDescriptorForType()
+                                                         .findFieldByName("conference_id"));
+            if (conferenceId.equals(field)) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    private Event newEvent(Message message) {
+        final EventContext context = EventContext.newBuilder()
+                                                 .setEventId(Events.generateId())
+                                                 .setTimestamp(now)
+                                                 .build();
+        return Events.createEvent(message, context);
+    }
+
+    private static class RecordingObserver implements StreamObserver<Event> {
+
+        private final List<Event> events = newArrayList();
+        private boolean isCompleted;
+
+        private List<Event> eventsOf(ConferenceId conferenceId) {
+            return filter(events, conferenceId);
+        }
+
+        @Override
+        public void onNext(Event value) {
+            events.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            throw new AssertionError(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            isCompleted = true;
+        }
+    }
+}
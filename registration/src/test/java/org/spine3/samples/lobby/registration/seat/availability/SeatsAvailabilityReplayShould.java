@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.seat.availability;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.Message;
+import org.junit.Test;
+import org.spine3.base.Event;
+import org.spine3.base.EventContext;
+import org.spine3.base.Events;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.ReservationId;
+import org.spine3.samples.lobby.common.util.aggregate.AbstractLobbyAggregate;
+import org.spine3.samples.lobby.common.util.dispatch.MessageDispatcher;
+import org.spine3.samples.lobby.common.util.dispatch.MessageDispatchers;
+import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newReservationId;
+import static org.spine3.samples.lobby.registration.util.Seats.getPendingReservations;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatsAvailabilityId;
+
+/**
+ * Tests and benchmarks the replay of {@link SeatsAvailabilityAggregate} events
+ * with the generated and reflective dispatchers.
+ *
+ * <p>The benchmark compares the best of several rounds, so that a single GC pause does not fail it.
+ * The number of reservations can be raised with the {@code lobby.stress.replayReservations} system property.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class SeatsAvailabilityReplayShould {
+
+    private static final int RESERVATION_COUNT = Integer.getInteger("lobby.stress.replayReservations", 50_000);
+    private static final int BENCHMARK_ROUNDS = 5;
+
+    /**
+     * How much slower than the reflective one the generated dispatch may be, to tolerate the noise of shared CI hosts.
+     */
+    private static final double TOLERANCE = 1.25;
+
+    private static final List<Event> HISTORY = newHistory(RESERVATION_COUNT);
+
+    @Test
+    public void have_generated_dispatcher() {
+        assertTrue(MessageDispatchers.isGenerated(SeatsAvailabilityAggregate.class));
+    }
+
+    @Test
+    public void replay_events_to_same_state_with_generated_and_reflective_dispatch() {
+        final SeatsAvailabilityAggregate generated = replay(generatedDispatcher());
+        final SeatsAvailabilityAggregate reflective = replay(reflectiveDispatcher());
+
+        assertEquals(reflective.getState(), generated.getState());
+        assertTrue(getPendingReservations(generated.getState()).isEmpty());
+    }
+
+    @Test
+    public void replay_events_with_generated_dispatch_not_slower_than_reflective_dispatch() {
+        final MessageDispatcher<AbstractLobbyAggregate<SeatsAvailabilityId, SeatsAvailability,
+                SeatsAvailability.Builder>> generated = generatedDispatcher();
+        final MessageDispatcher<AbstractLobbyAggregate<SeatsAvailabilityId, SeatsAvailability,
+                SeatsAvailability.Builder>> reflective = reflectiveDispatcher();
+        // Warm up.
+        replay(generated);
+        replay(reflective);
+
+        long generatedNanos = Long.MAX_VALUE;
+        long reflectiveNanos = Long.MAX_VALUE;
+        for (int i = 0; i < BENCHMARK_ROUNDS; i++) {
+            generatedNanos = Math.min(generatedNanos, measure(generated));
+            reflectiveNanos = Math.min(reflectiveNanos, measure(reflective));
+        }
+        assertTrue("Replay of " + HISTORY.size() + " events took " + generatedNanos +
+                   " ns with generated dispatch and " + reflectiveNanos + " ns with reflective dispatch.",
+                   generatedNanos <= reflectiveNanos * TOLERANCE);
+    }
+
+    private static long measure(MessageDispatcher<AbstractLobbyAggregate<SeatsAvailabilityId, SeatsAvailability,
+            SeatsAvailability.Builder>> dispatcher) {
+        final long start = System.nanoTime();
+        replay(dispatcher);
+        return System.nanoTime() - start;
+    }
+
+    private static SeatsAvailabilityAggregate replay(MessageDispatcher<AbstractLobbyAggregate<SeatsAvailabilityId,
+            SeatsAvailability, SeatsAvailability.Builder>> dispatcher) {
+        final SeatsAvailabilityAggregate aggregate = new SeatsAvailabilityAggregate(newSeatsAvailabilityId());
+        aggregate.replay(HISTORY, dispatcher);
+        return aggregate;
+    }
+
+    private static MessageDispatcher<AbstractLobbyAggregate<SeatsAvailabilityId, SeatsAvailability,
+            SeatsAvailability.Builder>> generatedDispatcher() {
+        return MessageDispatchers.forClass(SeatsAvailabilityAggregate.class);
+    }
+
+    private static MessageDispatcher<AbstractLobbyAggregate<SeatsAvailabilityId, SeatsAvailability,
+            SeatsAvailability.Builder>> reflectiveDispatcher() {
+        return MessageDispatchers.reflective(SeatsAvailabilityAggregate.class);
+    }
+
+    /**
+     * Creates the history of reserving seats and committing each reservation.
+     */
+    private static List<Event> newHistory(int reservationCount) {
+        final ConferenceId conferenceId = newConferenceId();
+        final SeatQuantity seat = newSeatQuantity(reservationCount);
+        final ImmutableList.Builder<Event> result = ImmutableList.builder();
+        for (int i = 0; i < reservationCount; i++) {
+            final ReservationId reservationId = newReservationId();
+            final SeatsReserved reserved = SeatsReserved.newBuilder()
+                                                        .setConferenceId(conferenceId)
+                                                        .setReservationId(reservationId)
+                                                        .addReservedSeatUpdated(newSeatQuantity(seat.getSeatTypeId(), 1))
+                                                        .addAvailableSeatUpdated(newSeatQuantity(seat.getSeatTypeId(),
+                                                                                                 reservationCount - i))
+                                                        .build();
+            final SeatsReservationCommitted committed = SeatsReservationCommitted.newBuilder()
+                                                                                 .setReservationId(reservationId)
+                                                                                 .build();
+            result.add(newEvent(reserved));
+            result.add(newEvent(committed));
+        }
+        return result.build();
+    }
+
+    private static Event newEvent(Message message) {
+        return Events.createEvent(message, EventContext.getDefaultInstance());
+    }
+}
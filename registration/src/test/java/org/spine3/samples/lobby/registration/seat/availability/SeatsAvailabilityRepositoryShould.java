@@ -0,0 +1,274 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.seat.availability;
+
+import com.google.protobuf.Message;
+import org.junit.Test;
+import org.spine3.base.Command;
+import org.spine3.base.CommandContext;
+import org.spine3.base.Commands;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.common.util.aggregate.CommitStats;
+import org.spine3.samples.lobby.common.util.aggregate.RetryPolicy;
+import org.spine3.samples.lobby.common.util.aggregate.VersionConflictException;
+import org.spine3.server.BoundedContext;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+import static org.spine3.samples.lobby.common.util.CommandContexts.newCommandContext;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newBoundedContext;
+import static org.spine3.samples.lobby.registration.util.Seats.findById;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatsAvailabilityId;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class SeatsAvailabilityRepositoryShould {
+
+    private static final int COMMANDS_PER_THREAD = 500;
+    private static final int MAX_THREAD_COUNT = 8;
+    private static final int BENCHMARK_ROUNDS = 3;
+
+    /**
+     * The minimal share of each added thread in the speedup of commands to different aggregates,
+     * low enough to tolerate the noise of shared CI hosts.
+     */
+    private static final double MIN_SPEEDUP_PER_THREAD = 0.25;
+
+    private final ConferenceId conferenceId = newConferenceId();
+    private final SeatTypeId seatTypeId = newSeatTypeId();
+
+    @Test
+    public void retry_command_conflicting_with_concurrent_command() {
+        final InterleavingRepository repository = newRepository(RetryPolicy.getDefault());
+        repository.dispatch(addSeats(conferenceId, 10));
+
+        repository.interleave(addSeats(conferenceId, 5));
+        repository.dispatch(addSeats(conferenceId, 3));
+
+        assertEquals(18, getAvailableCount(repository));
+        final CommitStats stats = repository.getCommitStats();
+        assertEquals(3, stats.getCommandCount());
+        assertEquals(1, stats.getConflictCount());
+        assertEquals(1, stats.getCommandCount(1));
+        assertEquals(0, stats.getExhaustedCount());
+    }
+
+    @Test
+    public void fail_command_conflicting_on_each_attempt() {
+        final RetryPolicy noRetries = RetryPolicy.newBuilder()
+                                                 .setMaxAttempts(1)
+                                                 .build();
+        final InterleavingRepository repository = newRepository(noRetries);
+        repository.dispatch(addSeats(conferenceId, 10));
+
+        repository.interleave(addSeats(conferenceId, 5));
+        try {
+            repository.dispatch(addSeats(conferenceId, 3));
+            fail("The conflicting command must not be committed.");
+        } catch (VersionConflictException ignored) {
+        }
+
+        assertEquals(15, getAvailableCount(repository));
+        assertEquals(1, repository.getCommitStats()
+                                  .getExhaustedCount());
+    }
+
+    @Test
+    public void not_retry_conflicting_command_unsafe_to_retry() {
+        final InterleavingRepository repository = newRepository(RetryPolicy.getDefault());
+        repository.setRetrySafe(false);
+        repository.dispatch(addSeats(conferenceId, 10));
+
+        repository.interleave(addSeats(conferenceId, 5));
+        try {
+            repository.dispatch(addSeats(conferenceId, 3));
+            fail("The command unsafe to retry must not be handled again.");
+        } catch (VersionConflictException ignored) {
+        }
+
+        assertEquals(15, getAvailableCount(repository));
+        final CommitStats stats = repository.getCommitStats();
+        assertEquals(1, stats.getConflictCount());
+        assertEquals(1, stats.getExhaustedCount());
+    }
+
+    @Test
+    public void commit_concurrent_commands_to_different_aggregates_without_conflicts() throws Exception {
+        final SeatsAvailabilityRepository repository = newRepository(RetryPolicy.getDefault());
+        final int threadCount = getThreadCount();
+
+        dispatchConcurrently(repository, threadCount);
+
+        final CommitStats stats = repository.getCommitStats();
+        assertEquals(threadCount * COMMANDS_PER_THREAD, stats.getCommandCount());
+        assertEquals(0, stats.getConflictCount());
+    }
+
+    @Test
+    public void scale_throughput_of_commands_to_different_aggregates_with_threads() throws Exception {
+        final int threadCount = getThreadCount();
+        assumeTrue(Runtime.getRuntime()
+                          .availableProcessors() >= threadCount);
+        final SeatsAvailabilityRepository repository = newRepository(RetryPolicy.getDefault());
+        // Warm up.
+        dispatchConcurrently(repository, threadCount);
+
+        double singleThreaded = 0;
+        double multiThreaded = 0;
+        for (int i = 0; i < BENCHMARK_ROUNDS; i++) {
+            singleThreaded = Math.max(singleThreaded, measureThroughput(repository, 1));
+            multiThreaded = Math.max(multiThreaded, measureThroughput(repository, threadCount));
+        }
+        final double minSpeedup = 1 + (threadCount - 1) * MIN_SPEEDUP_PER_THREAD;
+        assertTrue("Committed " + singleThreaded + " commands/s with one thread and " + multiThreaded +
+                   " commands/s with " + threadCount + " threads.",
+                   multiThreaded >= singleThreaded * minSpeedup);
+        assertEquals(0, repository.getCommitStats()
+                                  .getConflictCount());
+    }
+
+    /**
+     * Returns the number of commands per second dispatched from the given number of threads.
+     */
+    private double measureThroughput(SeatsAvailabilityRepository repository, int threadCount) throws Exception {
+        final long start = System.nanoTime();
+        dispatchConcurrently(repository, threadCount);
+        final long elapsedNanos = System.nanoTime() - start;
+        return threadCount * COMMANDS_PER_THREAD * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    private static int getThreadCount() {
+        return Math.min(MAX_THREAD_COUNT, Math.max(2, Runtime.getRuntime()
+                                                             .availableProcessors()));
+    }
+
+    /**
+     * Dispatches commands from the given number of threads, each thread to the aggregate of its own conference.
+     */
+    private void dispatchConcurrently(final SeatsAvailabilityRepository repository, int threadCount)
+            throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        final List<Future<?>> results = newArrayList();
+        for (int i = 0; i < threadCount; i++) {
+            results.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    final ConferenceId ownConference = newConferenceId();
+                    for (int j = 0; j < COMMANDS_PER_THREAD; j++) {
+                        repository.dispatch(addSeats(ownConference, 1));
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private int getAvailableCount(SeatsAvailabilityRepository repository) {
+        final SeatsAvailability state = repository.load(newSeatsAvailabilityId(conferenceId))
+                                                  .getState();
+        return findById(state.getAvailableSeatList(), seatTypeId).getQuantity();
+    }
+
+    private Command addSeats(ConferenceId conference, int quantity) {
+        final AddSeats message = AddSeats.newBuilder()
+                                         .setSeatsAvailabilityId(newSeatsAvailabilityId(conference))
+                                         .setConferenceId(conference)
+                                         .setQuantity(newSeatQuantity(seatTypeId, quantity))
+                                         .build();
+        return newCommand(message);
+    }
+
+    private static Command newCommand(Message message) {
+        final CommandContext context = newCommandContext();
+        return Commands.create(message, context);
+    }
+
+    private static InterleavingRepository newRepository(RetryPolicy retryPolicy) {
+        final BoundedContext boundedContext = newBoundedContext();
+        final InterleavingRepository result = new InterleavingRepository(boundedContext, retryPolicy);
+        boundedContext.register(result);
+        return result;
+    }
+
+    /**
+     * Dispatches a given command right after the next aggregate is loaded,
+     * so that the command being dispatched is handled against a stale state.
+     */
+    private static class InterleavingRepository extends SeatsAvailabilityRepository {
+
+        @Nullable
+        private Command interleavedCommand;
+
+        private boolean retrySafe = true;
+
+        private InterleavingRepository(BoundedContext boundedContext, RetryPolicy retryPolicy) {
+            super(boundedContext, retryPolicy);
+        }
+
+        private void interleave(Command command) {
+            this.interleavedCommand = command;
+        }
+
+        private void setRetrySafe(boolean retrySafe) {
+            this.retrySafe = retrySafe;
+        }
+
+        @Override
+        protected boolean isRetrySafe(Command command) {
+            return retrySafe;
+        }
+
+        @Nonnull
+        @Override
+        public SeatsAvailabilityAggregate load(SeatsAvailabilityId id) throws IllegalStateException {
+            final SeatsAvailabilityAggregate result = super.load(id);
+            final Command command = interleavedCommand;
+            if (command != null) {
+                interleavedCommand = null;
+                dispatch(command);
+            }
+            return result;
+        }
+    }
+}
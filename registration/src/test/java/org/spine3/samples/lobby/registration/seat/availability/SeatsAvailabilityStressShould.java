@@ -0,0 +1,429 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.seat.availability;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.Message;
+import io.grpc.stub.StreamObserver;
+import org.junit.Test;
+import org.spine3.base.Command;
+import org.spine3.base.CommandContext;
+import org.spine3.base.Commands;
+import org.spine3.base.Event;
+import org.spine3.base.EventContext;
+import org.spine3.base.Events;
+import org.spine3.base.Response;
+import org.spine3.protobuf.AnyPacker;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.ReservationId;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
+import org.spine3.server.BoundedContext;
+import org.spine3.server.command.CommandBus;
+import org.spine3.server.event.EventSubscriber;
+import org.spine3.server.event.Subscribe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.collect.Maps.newHashMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.samples.lobby.common.util.CommandContexts.newCommandContext;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newReservationId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newBoundedContext;
+import static org.spine3.samples.lobby.registration.util.Seats.findById;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatsAvailabilityId;
+import static org.spine3.samples.lobby.registration.util.Seats.findPendingReservation;
+import static org.spine3.samples.lobby.registration.util.Seats.getPendingReservations;
+
+/**
+ * Stresses the seats availability of one conference with concurrent commands posted through a bounded context,
+ * then validates the final state against the event history.
+ *
+ * <p>The history is checked for events produced against a stale state, and the final state
+ * for conservation of seats: for each seat type, the available and pending seats add up to the added seats
+ * without the removed and committed ones.
+ *
+ * <p>Runs for {@value #DEFAULT_DURATION_SECONDS} seconds with {@value #DEFAULT_THREAD_COUNT} threads by default.
+ * To run it as a soak, set the {@code lobby.stress.durationSeconds} and {@code lobby.stress.threads}
+ * system properties, e.g. {@code -Dlobby.stress.durationSeconds=3600}.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class SeatsAvailabilityStressShould {
+
+    private static final long DEFAULT_DURATION_SECONDS = 2;
+    private static final int DEFAULT_THREAD_COUNT = 8;
+
+    private static final long DURATION_SECONDS = Long.getLong("lobby.stress.durationSeconds",
+                                                              DEFAULT_DURATION_SECONDS);
+    private static final int THREAD_COUNT = Integer.getInteger("lobby.stress.threads", DEFAULT_THREAD_COUNT);
+
+    private static final int INITIAL_SEAT_COUNT = 500;
+
+    private final BoundedContext boundedContext = newBoundedContext();
+    private final SeatsAvailabilityRepository repository = new SeatsAvailabilityRepository(boundedContext);
+    private final EventHistory history = new EventHistory();
+
+    private final ConferenceId conferenceId = newConferenceId();
+    private final SeatsAvailabilityId availabilityId = newSeatsAvailabilityId(conferenceId);
+    private final List<SeatTypeId> seatTypeIds = ImmutableList.of(newSeatTypeId(), newSeatTypeId());
+
+    /**
+     * The reservations which can be cancelled or committed.
+     */
+    private final Queue<ReservationId> pendingReservations = new ConcurrentLinkedQueue<>();
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+
+    public SeatsAvailabilityStressShould() {
+        boundedContext.register(repository);
+        boundedContext.getEventBus()
+                      .subscribe(history);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    @Test
+    public void conserve_seats_under_concurrent_commands_to_one_conference() throws InterruptedException {
+        for (SeatTypeId seatTypeId : seatTypeIds) {
+            perform(Operation.ADD, seatTypeId, INITIAL_SEAT_COUNT);
+        }
+
+        runWorkers();
+
+        final SeatsAvailability state = repository.load(availabilityId)
+                                                  .getState();
+        final HistoryCheck check = new HistoryCheck(availabilityId, history.getEvents());
+
+        assertTrue(stats.get(Operation.RESERVE).handled.get() > 0);
+        assertEquals(0, check.getStaleEventCount());
+        assertEquals(check.getState(), state);
+        for (SeatTypeId seatTypeId : seatTypeIds) {
+            final int available = findById(state.getAvailableSeatList(), seatTypeId).getQuantity();
+            assertTrue(available >= 0);
+            assertEquals(check.getExpectedUnsoldCount(seatTypeId), available + pendingCount(state, seatTypeId));
+        }
+    }
+
+    private void runWorkers() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        final long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    while (System.nanoTime() < deadlineNanos) {
+                        performRandomOperation();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(DURATION_SECONDS + 60, TimeUnit.SECONDS));
+    }
+
+    private void performRandomOperation() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final SeatTypeId seatTypeId = seatTypeIds.get(random.nextInt(seatTypeIds.size()));
+        final int choice = random.nextInt(100);
+        final Operation operation;
+        if (choice < 50) {
+            operation = Operation.RESERVE;
+        } else if (choice < 70) {
+            operation = Operation.CANCEL;
+        } else if (choice < 90) {
+            operation = Operation.COMMIT;
+        } else if (choice < 95) {
+            operation = Operation.REMOVE;
+        } else {
+            operation = Operation.ADD;
+        }
+        perform(operation, seatTypeId, 1 + random.nextInt(4));
+    }
+
+    private void perform(Operation operation, SeatTypeId seatTypeId, int quantity) {
+        final Message message;
+        ReservationId reservationId = null;
+        switch (operation) {
+            case RESERVE:
+                reservationId = newReservationId();
+                message = MakeSeatReservation.newBuilder()
+                                             .setSeatsAvailabilityId(availabilityId)
+                                             .setReservationId(reservationId)
+                                             .setConferenceId(conferenceId)
+                                             .addSeat(newSeatQuantity(seatTypeId, quantity))
+                                             .build();
+                break;
+            case CANCEL:
+                reservationId = pendingReservations.poll();
+                if (reservationId == null) {
+                    return;
+                }
+                message = CancelSeatReservation.newBuilder()
+                                               .setSeatsAvailabilityId(availabilityId)
+                                               .setReservationId(reservationId)
+                                               .setConferenceId(conferenceId)
+                                               .build();
+                break;
+            case COMMIT:
+                reservationId = pendingReservations.poll();
+                if (reservationId == null) {
+                    return;
+                }
+                message = CommitSeatReservation.newBuilder()
+                                               .setSeatsAvailabilityId(availabilityId)
+                                               .setReservationId(reservationId)
+                                               .build();
+                break;
+            case ADD:
+                message = AddSeats.newBuilder()
+                                  .setSeatsAvailabilityId(availabilityId)
+                                  .setConferenceId(conferenceId)
+                                  .setQuantity(newSeatQuantity(seatTypeId, quantity))
+                                  .build();
+                break;
+            case REMOVE:
+                message = RemoveSeats.newBuilder()
+                                     .setSeatsAvailabilityId(availabilityId)
+                                     .setConferenceId(conferenceId)
+                                     .setQuantity(newSeatQuantity(seatTypeId, quantity))
+                                     .build();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+        final boolean isHandled = post(message);
+        stats.get(operation)
+             .onPerformed(isHandled);
+        if (isHandled && operation == Operation.RESERVE) {
+            pendingReservations.add(reservationId);
+        }
+    }
+
+    /**
+     * Posts the command and returns {@code true} if it is handled without an error.
+     */
+    private boolean post(Message message) {
+        final CommandContext context = newCommandContext();
+        final Command command = Commands.create(message, context);
+        final OutcomeObserver outcome = new OutcomeObserver();
+        final CommandBus commandBus = boundedContext.getCommandBus();
+        commandBus.post(command, outcome);
+        return !outcome.isError;
+    }
+
+    private static int pendingCount(SeatsAvailability state, SeatTypeId seatTypeId) {
+        int result = 0;
+        for (SeatQuantities reservation : getPendingReservations(state)) {
+            result += findById(reservation.getItemList(), seatTypeId).getQuantity();
+        }
+        return result;
+    }
+
+    private enum Operation {
+        RESERVE,
+        CANCEL,
+        COMMIT,
+        ADD,
+        REMOVE
+    }
+
+    private static class OperationStats {
+
+        private final AtomicLong handled = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        private void onPerformed(boolean isHandled) {
+            if (isHandled) {
+                handled.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+        }
+    }
+
+    private static class OutcomeObserver implements StreamObserver<Response> {
+
+        private volatile boolean isError;
+
+        @Override
+        public void onNext(Response value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            isError = true;
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+
+    /**
+     * Records the events of seats availability aggregates in the order of posting.
+     */
+    private static class EventHistory extends EventSubscriber {
+
+        private final List<Event> events = Collections.synchronizedList(new ArrayList<Event>());
+
+        @Subscribe
+        public void on(SeatsReserved event, EventContext context) {
+            record(event, context);
+        }
+
+        @Subscribe
+        public void on(SeatsReservationCommitted event, EventContext context) {
+            record(event, context);
+        }
+
+        @Subscribe
+        public void on(SeatsReservationCancelled event, EventContext context) {
+            record(event, context);
+        }
+
+        @Subscribe
+        public void on(AddedAvailableSeats event, EventContext context) {
+            record(event, context);
+        }
+
+        @Subscribe
+        public void on(RemovedAvailableSeats event, EventContext context) {
+            record(event, context);
+        }
+
+        private void record(Message event, EventContext context) {
+            events.add(Events.createEvent(event, context));
+        }
+
+        private List<Event> getEvents() {
+            synchronized (events) {
+                return ImmutableList.copyOf(events);
+            }
+        }
+    }
+
+    /**
+     * Replays the event history, counting the stale events, i.e. the events which do not follow
+     * from the state produced by the events before them.
+     */
+    private static class HistoryCheck {
+
+        private final SeatsAvailabilityAggregate aggregate;
+        private final Map<SeatTypeId, Long> unsoldCounts = newHashMap();
+        private int staleEventCount;
+
+        private HistoryCheck(SeatsAvailabilityId id, Iterable<Event> events) {
+            this.aggregate = new SeatsAvailabilityAggregate(id);
+            for (Event event : events) {
+                check(AnyPacker.<Message>unpack(event.getMessage()));
+                aggregate.replay(ImmutableList.of(event));
+            }
+        }
+
+        private void check(Message event) {
+            final SeatsAvailability state = aggregate.getState();
+            if (event instanceof SeatsReserved) {
+                final SeatsReserved reserved = (SeatsReserved) event;
+                final List<SeatQuantity> oldReservation = reservationOf(state, reserved.getReservationId());
+                for (SeatQuantity available : state.getAvailableSeatList()) {
+                    final SeatTypeId seatTypeId = available.getSeatTypeId();
+                    final int reservedDelta = findById(reserved.getReservedSeatUpdatedList(), seatTypeId).getQuantity()
+                            - findById(oldReservation, seatTypeId).getQuantity();
+                    final int expected = available.getQuantity() - reservedDelta;
+                    checkQuantity(expected, reserved.getAvailableSeatUpdatedList(), seatTypeId);
+                }
+            } else if (event instanceof SeatsReservationCancelled) {
+                final SeatsReservationCancelled cancelled = (SeatsReservationCancelled) event;
+                final List<SeatQuantity> reservation = reservationOf(state, cancelled.getReservationId());
+                for (SeatQuantity available : state.getAvailableSeatList()) {
+                    final SeatTypeId seatTypeId = available.getSeatTypeId();
+                    final int expected = available.getQuantity() + findById(reservation, seatTypeId).getQuantity();
+                    checkQuantity(expected, cancelled.getAvailableSeatUpdatedList(), seatTypeId);
+                }
+            } else if (event instanceof SeatsReservationCommitted) {
+                final SeatsReservationCommitted committed = (SeatsReservationCommitted) event;
+                for (SeatQuantity seat : reservationOf(state, committed.getReservationId())) {
+                    addUnsold(seat.getSeatTypeId(), -seat.getQuantity());
+                }
+            } else if (event instanceof AddedAvailableSeats) {
+                final SeatQuantity quantity = ((AddedAvailableSeats) event).getQuantity();
+                addUnsold(quantity.getSeatTypeId(), quantity.getQuantity());
+            } else if (event instanceof RemovedAvailableSeats) {
+                final SeatQuantity quantity = ((RemovedAvailableSeats) event).getQuantity();
+                final int available = findById(state.getAvailableSeatList(), quantity.getSeatTypeId()).getQuantity();
+                addUnsold(quantity.getSeatTypeId(), -Math.min(available, quantity.getQuantity()));
+            }
+        }
+
+        private List<SeatQuantity> reservationOf(SeatsAvailability state, ReservationId reservationId) {
+            final SeatQuantities reservation = findPendingReservation(state, reservationId);
+            if (reservation == null) {
+                return Collections.emptyList();
+            }
+            return reservation.getItemList();
+        }
+
+        private void checkQuantity(int expected, List<SeatQuantity> actualSeats, SeatTypeId seatTypeId) {
+            final int actual = findById(actualSeats, seatTypeId).getQuantity();
+            if (actual != expected || actual < 0) {
+                staleEventCount++;
+            }
+        }
+
+        private void addUnsold(SeatTypeId seatTypeId, long delta) {
+            final Long count = unsoldCounts.get(seatTypeId);
+            unsoldCounts.put(seatTypeId, ((count == null) ? 0 : count) + delta);
+        }
+
+        private int getStaleEventCount() {
+            return staleEventCount;
+        }
+
+        private SeatsAvailability getState() {
+            return aggregate.getState();
+        }
+
+        /**
+         * Returns the number of seats added and neither removed nor sold, i.e. available or pending.
+         */
+        private long getExpectedUnsoldCount(SeatTypeId seatTypeId) {
+            final Long result = unsoldCounts.get(seatTypeId);
+            return (result == null) ? 0 : result;
+        }
+    }
+}
@@ -65,5 +65,6 @@ public class AddSeatsCmdHandling extends TestCase {
         final SeatQuantity quantityToAdd = cmd.getQuantity();
         final SeatQuantity quantityAdded = event.getQuantity();
         assertEquals(quantityToAdd, quantityAdded);
+        assertEquals(cmd.getConferenceId(), event.getConferenceId());
     }
 }
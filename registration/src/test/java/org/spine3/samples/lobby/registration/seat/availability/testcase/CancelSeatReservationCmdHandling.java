@@ -20,7 +20,6 @@
 
 package org.spine3.samples.lobby.registration.seat.availability.testcase;
 
-import com.google.common.collect.ImmutableMap;
 import org.spine3.base.CommandContext;
 import org.spine3.samples.lobby.common.ReservationId;
 import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
@@ -37,6 +36,7 @@ import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
 import static org.spine3.samples.lobby.common.util.IdFactory.newReservationId;
 import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantities;
 import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
+import static org.spine3.samples.lobby.registration.util.Seats.putPendingReservation;
 
 /**
  * @author Alexander Litus
@@ -67,19 +67,13 @@ public abstract class CancelSeatReservationCmdHandling extends TestCase {
         private static final SeatQuantities TMP_RESERVED_SEATS = newSeatQuantities(
                 newSeatQuantity(10), newSeatQuantity(20));
 
-        private static final ImmutableMap<String, SeatQuantities> PENDING_RESERVATIONS =
-                ImmutableMap.<String, SeatQuantities>builder()
-                        .put(RESERVATION_ID.getUuid(), TMP_RESERVED_SEATS)
-                        .build();
-
         @Override
         public SeatsAvailabilityAggregate givenAggregate() {
             final SeatsAvailabilityAggregate aggregate = super.givenAggregate();
-            final SeatsAvailability state = aggregate.getState()
-                                                     .toBuilder()
-                                                     .putAllPendingReservations(PENDING_RESERVATIONS)
-                                                     .build();
-            aggregate.incrementAggregateState(state);
+            final SeatsAvailability.Builder state = aggregate.getState()
+                                                             .toBuilder();
+            putPendingReservation(state, RESERVATION_ID, TMP_RESERVED_SEATS);
+            aggregate.incrementAggregateState(state.build());
             return aggregate;
         }
 
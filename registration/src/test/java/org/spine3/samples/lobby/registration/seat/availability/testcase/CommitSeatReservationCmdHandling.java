@@ -20,7 +20,6 @@
 
 package org.spine3.samples.lobby.registration.seat.availability.testcase;
 
-import com.google.common.collect.ImmutableMap;
 import org.spine3.base.CommandContext;
 import org.spine3.samples.lobby.common.ReservationId;
 import org.spine3.samples.lobby.registration.seat.availability.CommitSeatReservation;
@@ -33,6 +32,7 @@ import static org.junit.Assert.assertEquals;
 import static org.spine3.samples.lobby.common.util.IdFactory.newReservationId;
 import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantities;
 import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
+import static org.spine3.samples.lobby.registration.util.Seats.putPendingReservation;
 
 /**
  * @author Alexander Litus
@@ -60,19 +60,15 @@ public abstract class CommitSeatReservationCmdHandling extends TestCase {
 
     public static class ExistsPendingReservation extends CommitSeatReservationCmdHandling {
 
-        private static final ImmutableMap<String, SeatQuantities> PENDING_RESERVATIONS =
-                ImmutableMap.<String, SeatQuantities>builder()
-                        .put(RESERVATION_ID.getUuid(), newSeatQuantities(newSeatQuantity(20)))
-                        .build();
+        private static final SeatQuantities TMP_RESERVED_SEATS = newSeatQuantities(newSeatQuantity(20));
 
         @Override
         public SeatsAvailabilityAggregate givenAggregate() {
             final SeatsAvailabilityAggregate aggregate = super.givenAggregate();
-            final SeatsAvailability state = aggregate.getState()
-                                                     .toBuilder()
-                                                     .putAllPendingReservations(PENDING_RESERVATIONS)
-                                                     .build();
-            aggregate.incrementAggregateState(state);
+            final SeatsAvailability.Builder state = aggregate.getState()
+                                                             .toBuilder();
+            putPendingReservation(state, RESERVATION_ID, TMP_RESERVED_SEATS);
+            aggregate.incrementAggregateState(state.build());
             return aggregate;
         }
     }
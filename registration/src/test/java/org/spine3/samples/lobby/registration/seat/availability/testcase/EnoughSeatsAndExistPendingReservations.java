@@ -20,7 +20,6 @@
 
 package org.spine3.samples.lobby.registration.seat.availability.testcase;
 
-import com.google.common.collect.ImmutableMap;
 import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
 import org.spine3.samples.lobby.registration.seat.availability.SeatQuantities;
 import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailability;
@@ -42,23 +41,17 @@ public class EnoughSeatsAndExistPendingReservations extends MakeSeatReservationC
     private static final int EXPECTED_RESERVED_MAIN_SEAT_COUNT =
             Command.MAIN_SEAT_COUNT_REQUESTED + MAIN_SEATS_PENDING_COUNT;
 
-    private static final ImmutableMap<String, SeatQuantities> PENDING_RESERVATIONS =
-            ImmutableMap.<String, SeatQuantities>builder()
-                    .put(
-                            RESERVATION_ID.getUuid(),
-                            newSeatQuantities(newSeatQuantity(MAIN_SEAT_TYPE_ID, MAIN_SEATS_PENDING_COUNT))
-                    )
-                    .build();
+    private static final SeatQuantities PENDING_SEATS =
+            newSeatQuantities(newSeatQuantity(MAIN_SEAT_TYPE_ID, MAIN_SEATS_PENDING_COUNT));
 
     @Override
     public SeatsAvailabilityAggregate givenAggregate() {
         final SeatsAvailabilityAggregate aggregate = super.givenAggregate();
-        final SeatsAvailability state = aggregate.getState()
-                                                 .toBuilder()
-                                                 .addAllAvailableSeat(getAvailableSeats())
-                                                 .putAllPendingReservations(PENDING_RESERVATIONS)
-                                                 .build();
-        aggregate.incrementAggregateState(state);
+        final SeatsAvailability.Builder state = aggregate.getState()
+                                                         .toBuilder()
+                                                         .addAllAvailableSeat(getAvailableSeats());
+        putPendingReservation(state, RESERVATION_ID, PENDING_SEATS);
+        aggregate.incrementAggregateState(state.build());
         return aggregate;
     }
 
@@ -21,7 +21,6 @@
 package org.spine3.samples.lobby.registration.seat.availability.testcase;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
 import org.spine3.samples.lobby.common.ReservationId;
 import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
 import org.spine3.samples.lobby.registration.seat.availability.SeatQuantities;
@@ -33,6 +32,7 @@ import java.util.List;
 import static org.spine3.samples.lobby.common.util.IdFactory.newReservationId;
 import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantities;
 import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
+import static org.spine3.samples.lobby.registration.util.Seats.putPendingReservation;
 
 /**
  * @author Alexander Litus
@@ -45,10 +45,6 @@ public class ExistAvailableSeatsAndPendingReservations extends TestCase {
     private static final SeatQuantities RESERVED_SEATS = newSeatQuantities(
             newSeatQuantity(56), newSeatQuantity(38));
 
-    private static final ImmutableMap<String, SeatQuantities> PENDING_RESERVATIONS = ImmutableMap.<String, SeatQuantities>builder()
-            .put(RESERVATION_ID.getUuid(), RESERVED_SEATS)
-            .build();
-
     private static final List<SeatQuantity> AVAILABLE_SEATS = ImmutableList.of(
             newSeatQuantity(110),
             newSeatQuantity(220));
@@ -56,12 +52,11 @@ public class ExistAvailableSeatsAndPendingReservations extends TestCase {
     @Override
     public SeatsAvailabilityAggregate givenAggregate() {
         final SeatsAvailabilityAggregate aggregate = super.givenAggregate();
-        final SeatsAvailability state = aggregate.getState()
-                                                 .toBuilder()
-                                                 .addAllAvailableSeat(AVAILABLE_SEATS)
-                                                 .putAllPendingReservations(PENDING_RESERVATIONS)
-                                                 .build();
-        aggregate.incrementAggregateState(state);
+        final SeatsAvailability.Builder state = aggregate.getState()
+                                                         .toBuilder()
+                                                         .addAllAvailableSeat(AVAILABLE_SEATS);
+        putPendingReservation(state, RESERVATION_ID, RESERVED_SEATS);
+        aggregate.incrementAggregateState(state.build());
         return aggregate;
     }
 
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.seat.availability.testcase;
+
+import com.google.common.collect.ImmutableList;
+import org.spine3.base.CommandContext;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.ReservationId;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.registration.seat.availability.MakeGroupSeatReservation;
+import org.spine3.samples.lobby.registration.seat.availability.MakeSeatReservation;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailability;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailabilityAggregate;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsReserved;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newReservationId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
+
+/**
+ * Two reservations of a group request more seats of a type than available, so the first one gets all it requested,
+ * and the second one gets the rest.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings("MagicNumber")
+public class MakeGroupSeatReservationCmdHandling extends TestCase {
+
+    private static final ConferenceId CONFERENCE_ID = newConferenceId();
+    private static final SeatTypeId SEAT_TYPE_A = newSeatTypeId();
+    private static final SeatTypeId SEAT_TYPE_B = newSeatTypeId();
+
+    private static final ReservationId FIRST_RESERVATION_ID = newReservationId();
+    private static final ReservationId SECOND_RESERVATION_ID = newReservationId();
+
+    private static final MakeGroupSeatReservation MAKE_GROUP_SEAT_RESERVATION =
+            MakeGroupSeatReservation.newBuilder()
+                                    .setConferenceId(CONFERENCE_ID)
+                                    .addReservation(reservation(CONFERENCE_ID, FIRST_RESERVATION_ID, 3))
+                                    .addReservation(reservation(CONFERENCE_ID, SECOND_RESERVATION_ID, 4))
+                                    .build();
+
+    public MakeGroupSeatReservation givenCommand() {
+        return MAKE_GROUP_SEAT_RESERVATION;
+    }
+
+    /**
+     * Returns a command with a reservation for another conference.
+     */
+    public MakeGroupSeatReservation givenCommandWithReservationForAnotherConference() {
+        return MAKE_GROUP_SEAT_RESERVATION.toBuilder()
+                                          .addReservation(reservation(newConferenceId(), newReservationId(), 1))
+                                          .build();
+    }
+
+    public CommandContext givenCommandContext() {
+        return CommandContext.getDefaultInstance();
+    }
+
+    @Override
+    public SeatsAvailabilityAggregate givenAggregate() {
+        final SeatsAvailabilityAggregate aggregate = super.givenAggregate();
+        final SeatsAvailability state = aggregate.getState()
+                                                 .toBuilder()
+                                                 .addAvailableSeat(newSeatQuantity(SEAT_TYPE_A, 5))
+                                                 .addAvailableSeat(newSeatQuantity(SEAT_TYPE_B, 10))
+                                                 .build();
+        aggregate.incrementAggregateState(state);
+        return aggregate;
+    }
+
+    public void validateResult(List<SeatsReserved> events, MakeGroupSeatReservation cmd) {
+        assertEquals(2, events.size());
+
+        final SeatsReserved first = events.get(0);
+        assertEquals(FIRST_RESERVATION_ID, first.getReservationId());
+        assertEquals(cmd.getConferenceId(), first.getConferenceId());
+        assertEquals(ImmutableList.of(newSeatQuantity(SEAT_TYPE_A, 3)),
+                     first.getReservedSeatUpdatedList());
+        assertEquals(ImmutableList.of(newSeatQuantity(SEAT_TYPE_A, 2), newSeatQuantity(SEAT_TYPE_B, 10)),
+                     first.getAvailableSeatUpdatedList());
+
+        final SeatsReserved second = events.get(1);
+        assertEquals(SECOND_RESERVATION_ID, second.getReservationId());
+        assertEquals(ImmutableList.of(newSeatQuantity(SEAT_TYPE_A, 2)),
+                     second.getReservedSeatUpdatedList());
+        assertEquals(ImmutableList.of(newSeatQuantity(SEAT_TYPE_A, 0), newSeatQuantity(SEAT_TYPE_B, 10)),
+                     second.getAvailableSeatUpdatedList());
+    }
+
+    private static MakeSeatReservation reservation(ConferenceId conferenceId,
+                                                   ReservationId reservationId,
+                                                   int quantityOfTypeA) {
+        final MakeSeatReservation result = MakeSeatReservation.newBuilder()
+                                                              .setConferenceId(conferenceId)
+                                                              .setReservationId(reservationId)
+                                                              .addSeat(newSeatQuantity(SEAT_TYPE_A, quantityOfTypeA))
+                                                              .build();
+        return result;
+    }
+}
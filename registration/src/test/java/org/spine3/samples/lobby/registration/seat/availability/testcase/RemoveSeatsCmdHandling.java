@@ -71,6 +71,7 @@ public class RemoveSeatsCmdHandling extends TestCase {
 
     public void validateResult(RemovedAvailableSeats event, RemoveSeats cmd) {
         assertEquals(cmd.getQuantity(), event.getQuantity());
+        assertEquals(cmd.getConferenceId(), event.getConferenceId());
     }
 
     public static class EmptyState extends RemoveSeatsCmdHandling {
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.seat.availability.testcase;
+
+import com.google.common.collect.ImmutableList;
+import org.spine3.base.CommandContext;
+import org.spine3.samples.lobby.common.ReservationId;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.registration.seat.availability.ReserveWaitlistedSeats;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailability;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailabilityAggregate;
+import org.spine3.samples.lobby.registration.seat.availability.WaitlistedReservation;
+import org.spine3.samples.lobby.registration.seat.availability.WaitlistedSeatsReserved;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newReservationId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantities;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
+import static org.spine3.samples.lobby.registration.util.Seats.putPendingReservation;
+
+/**
+ * Two waitlisted reservations request more seats of a type than available, so the first one gets all it requested,
+ * and the second one gets the rest.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings("MagicNumber")
+public class ReserveWaitlistedSeatsCmdHandling extends TestCase {
+
+    private static final SeatTypeId SEAT_TYPE_A = newSeatTypeId();
+    private static final SeatTypeId SEAT_TYPE_B = newSeatTypeId();
+
+    private static final ReservationId FIRST_RESERVATION_ID = newReservationId();
+    private static final ReservationId SECOND_RESERVATION_ID = newReservationId();
+
+    private static final ReserveWaitlistedSeats RESERVE_WAITLISTED_SEATS =
+            ReserveWaitlistedSeats.newBuilder()
+                                  .setConferenceId(newConferenceId())
+                                  .addReservation(reservation(FIRST_RESERVATION_ID, 4))
+                                  .addReservation(reservation(SECOND_RESERVATION_ID, 4))
+                                  .build();
+
+    public ReserveWaitlistedSeats givenCommand() {
+        return RESERVE_WAITLISTED_SEATS;
+    }
+
+    public CommandContext givenCommandContext() {
+        return CommandContext.getDefaultInstance();
+    }
+
+    @Override
+    public SeatsAvailabilityAggregate givenAggregate() {
+        final SeatsAvailabilityAggregate aggregate = super.givenAggregate();
+        final SeatsAvailability.Builder state = aggregate.getState()
+                                                         .toBuilder()
+                                                         .addAvailableSeat(newSeatQuantity(SEAT_TYPE_A, 5))
+                                                         .addAvailableSeat(newSeatQuantity(SEAT_TYPE_B, 10));
+        putPendingReservation(state, FIRST_RESERVATION_ID, newSeatQuantities(newSeatQuantity(SEAT_TYPE_A, 2),
+                                                                             newSeatQuantity(SEAT_TYPE_B, 3)));
+        putPendingReservation(state, SECOND_RESERVATION_ID, newSeatQuantities(newSeatQuantity(SEAT_TYPE_A, 1)));
+        aggregate.incrementAggregateState(state.build());
+        return aggregate;
+    }
+
+    public void validateResult(List<WaitlistedSeatsReserved> events, ReserveWaitlistedSeats cmd) {
+        assertEquals(2, events.size());
+
+        final WaitlistedSeatsReserved first = events.get(0);
+        assertEquals(FIRST_RESERVATION_ID, first.getReservationId());
+        assertEquals(cmd.getConferenceId(), first.getConferenceId());
+        assertEquals(ImmutableList.of(newSeatQuantity(SEAT_TYPE_A, 6), newSeatQuantity(SEAT_TYPE_B, 3)),
+                     first.getReservedSeatUpdatedList());
+        assertEquals(ImmutableList.of(newSeatQuantity(SEAT_TYPE_A, 1), newSeatQuantity(SEAT_TYPE_B, 10)),
+                     first.getAvailableSeatUpdatedList());
+
+        final WaitlistedSeatsReserved second = events.get(1);
+        assertEquals(SECOND_RESERVATION_ID, second.getReservationId());
+        assertEquals(ImmutableList.of(newSeatQuantity(SEAT_TYPE_A, 2)),
+                     second.getReservedSeatUpdatedList());
+        assertEquals(ImmutableList.of(newSeatQuantity(SEAT_TYPE_A, 0), newSeatQuantity(SEAT_TYPE_B, 10)),
+                     second.getAvailableSeatUpdatedList());
+    }
+
+    /**
+     * Returns the command which also reserves seats for a reservation which is not pending.
+     */
+    public ReserveWaitlistedSeats givenCommandWithNotPendingReservation() {
+        return RESERVE_WAITLISTED_SEATS.toBuilder()
+                                       .addReservation(0, reservation(newReservationId(), 4))
+                                       .build();
+    }
+
+    /**
+     * Returns the command which reserves seats only for a reservation which is not pending.
+     */
+    public ReserveWaitlistedSeats givenCommandWithoutPendingReservations() {
+        return RESERVE_WAITLISTED_SEATS.toBuilder()
+                                       .clearReservation()
+                                       .addReservation(reservation(newReservationId(), 4))
+                                       .build();
+    }
+
+    private static WaitlistedReservation reservation(ReservationId reservationId, int quantityOfTypeA) {
+        final WaitlistedReservation result = WaitlistedReservation.newBuilder()
+                                                                  .setReservationId(reservationId)
+                                                                  .addSeat(newSeatQuantity(SEAT_TYPE_A, quantityOfTypeA))
+                                                                  .build();
+        return result;
+    }
+}
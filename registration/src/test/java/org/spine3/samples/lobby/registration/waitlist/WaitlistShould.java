@@ -0,0 +1,199 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.registration.waitlist;
+
+import com.google.common.base.Ticker;
+import org.junit.Test;
+import org.spine3.base.EventContext;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.OrderId;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.registration.contracts.OrderExpired;
+import org.spine3.samples.lobby.registration.contracts.OrderPartiallyReserved;
+import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
+import org.spine3.samples.lobby.registration.seat.availability.ReserveWaitlistedSeats;
+import org.spine3.samples.lobby.registration.seat.availability.WaitlistedReservation;
+
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newOrderId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+import static org.spine3.samples.lobby.registration.testdata.TestDataFactory.newCommandBus;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatQuantity;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class WaitlistShould {
+
+    private final ConferenceId conferenceId = newConferenceId();
+    private final SeatTypeId seatTypeId = newSeatTypeId();
+    private final FakeTicker ticker = new FakeTicker();
+    private final Waitlist waitlist = Waitlist.newBuilder()
+                                              .setCommandBus(newCommandBus())
+                                              .setTicker(ticker)
+                                              .build();
+
+    @Test
+    public void promote_waiting_orders_in_order_of_arrival_in_one_command() {
+        final OrderId first = waitFor(2);
+        final OrderId second = waitFor(3);
+        final OrderId third = waitFor(1);
+
+        final ReserveWaitlistedSeats cmd = release(5);
+
+        assertEquals(conferenceId, cmd.getConferenceId());
+        final List<WaitlistedReservation> reservations = cmd.getReservationList();
+        assertEquals(2, reservations.size());
+        assertReservation(first, 2, reservations.get(0));
+        assertReservation(second, 3, reservations.get(1));
+        assertEquals(1, waitlist.getWaitingOrderCount());
+        assertReservation(third, 1, release(1).getReservation(0));
+    }
+
+    @Test
+    public void keep_place_of_partially_promoted_order() {
+        final OrderId first = waitFor(4);
+        waitFor(1);
+
+        assertReservation(first, 3, release(3).getReservation(0));
+        // The order is partially reserved again with the rest of the seats.
+        waitlist.enqueue(first, conferenceId, singletonList(newSeatQuantity(seatTypeId, 1)));
+
+        assertReservation(first, 1, release(1).getReservation(0));
+    }
+
+    @Test
+    public void move_order_to_end_of_queue_if_it_waits_for_other_seats() {
+        final OrderId first = waitFor(2);
+        final OrderId second = waitFor(2);
+
+        waitlist.enqueue(first, conferenceId, singletonList(newSeatQuantity(seatTypeId, 3)));
+
+        assertReservation(second, 2, release(2).getReservation(0));
+        assertReservation(first, 3, release(3).getReservation(0));
+    }
+
+    @Test
+    public void skip_orders_which_left_waitlist() {
+        final OrderId expired = waitFor(2);
+        final OrderId waiting = waitFor(2);
+
+        waitlist.on(OrderExpired.newBuilder()
+                                .setOrderId(expired)
+                                .build(), EventContext.getDefaultInstance());
+
+        final ReserveWaitlistedSeats cmd = release(4);
+        assertEquals(1, cmd.getReservationCount());
+        assertReservation(waiting, 2, cmd.getReservation(0));
+    }
+
+    @Test
+    public void join_waitlist_when_order_is_partially_reserved() {
+        final OrderId orderId = newOrderId();
+        final OrderPartiallyReserved event = OrderPartiallyReserved.newBuilder()
+                                                                   .setOrderId(orderId)
+                                                                   .setConferenceId(conferenceId)
+                                                                   .addWaitlistedSeat(newSeatQuantity(seatTypeId, 2))
+                                                                   .build();
+
+        waitlist.on(event, EventContext.getDefaultInstance());
+
+        assertEquals(1, waitlist.getWaitingOrderCount());
+        assertReservation(orderId, 2, release(2).getReservation(0));
+    }
+
+    @Test
+    public void not_promote_if_no_orders_wait_for_released_seats() {
+        waitFor(2);
+
+        assertNull(waitlist.promote(conferenceId, singletonList(newSeatQuantity(newSeatTypeId(), 10))));
+        assertNull(waitlist.promote(newConferenceId(), singletonList(newSeatQuantity(seatTypeId, 10))));
+    }
+
+    @Test
+    public void hold_many_waiting_orders_and_drop_cancelled_ones() {
+        final int count = 200000;
+        final OrderId[] orderIds = new OrderId[count];
+        for (int i = 0; i < count; i++) {
+            orderIds[i] = waitFor(1);
+        }
+        for (int i = 0; i < count - 1; i++) {
+            waitlist.cancel(orderIds[i]);
+        }
+
+        assertEquals(1, waitlist.getWaitingOrderCount());
+        assertReservation(orderIds[count - 1], 1, release(1).getReservation(0));
+    }
+
+    @Test
+    public void record_promotion_latency() {
+        waitFor(1);
+        ticker.advance(100);
+        waitFor(1);
+        ticker.advance(50);
+
+        release(2);
+
+        final WaitlistMetrics metrics = waitlist.getMetrics();
+        assertEquals(1, metrics.getPassCount());
+        assertEquals(2, metrics.getPromotionCount());
+        assertEquals(2, metrics.getPromotedSeatCount());
+        assertEquals(150, metrics.getMaxLatencyNanos());
+        assertEquals(100, metrics.getAverageLatencyNanos());
+    }
+
+    private OrderId waitFor(int quantity) {
+        final OrderId orderId = newOrderId();
+        final SeatQuantity seat = newSeatQuantity(seatTypeId, quantity);
+        waitlist.enqueue(orderId, conferenceId, singletonList(seat));
+        return orderId;
+    }
+
+    private ReserveWaitlistedSeats release(int quantity) {
+        return waitlist.promote(conferenceId, singletonList(newSeatQuantity(seatTypeId, quantity)));
+    }
+
+    private void assertReservation(OrderId orderId, int quantity, WaitlistedReservation reservation) {
+        assertEquals(orderId.getUuid(), reservation.getReservationId()
+                                                   .getUuid());
+        assertEquals(singletonList(newSeatQuantity(seatTypeId, quantity)), reservation.getSeatList());
+    }
+
+    private static class FakeTicker extends Ticker {
+
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        private void advance(long delta) {
+            nanos += delta;
+        }
+    }
+}
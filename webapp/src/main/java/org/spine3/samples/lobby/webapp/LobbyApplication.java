@@ -0,0 +1,170 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.registration.RegistrationBoundedContext;
+import org.spine3.samples.lobby.registration.admission.WaitingRoom;
+import org.spine3.samples.lobby.registration.command.PriorityCommandDispatcher;
+import org.spine3.samples.lobby.registration.conference.ConferenceProjection;
+import org.spine3.samples.lobby.registration.conference.ConferenceProjectionRepository;
+import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailabilityAggregate;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsAvailabilityRepository;
+import org.spine3.samples.lobby.webapp.availability.AvailabilityBroadcaster;
+import org.spine3.samples.lobby.webapp.availability.AvailabilitySource;
+import org.spine3.samples.lobby.webapp.command.CommandGateway;
+import org.spine3.samples.lobby.webapp.conference.ConferenceResponseCache;
+import org.spine3.samples.lobby.webapp.conference.ConferenceSource;
+import org.spine3.server.BoundedContext;
+import org.spine3.server.storage.memory.InMemoryStorageFactory;
+
+import javax.annotation.Nullable;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import java.util.List;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static org.spine3.samples.lobby.registration.util.Seats.newSeatsAvailabilityId;
+
+/**
+ * Creates the registration bounded context and the services of the web application
+ * and sets them as servlet context attributes named by their class names.
+ *
+ * @author Alexander Litus
+ */
+public class LobbyApplication implements ServletContextListener {
+
+    /**
+     * The name of the context parameter holding the number of threads posting commands to the command bus.
+     *
+     * <p>If the parameter is not set, the number of available processors is used.
+     */
+    /* package */ static final String COMMAND_WORKER_COUNT_PARAMETER = "command-worker-count";
+
+    private RegistrationBoundedContext registration;
+    private AvailabilityBroadcaster availabilityBroadcaster;
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        final ServletContext servletContext = event.getServletContext();
+        final WaitingRoom waitingRoom = WaitingRoom.newBuilder()
+                                                   .build();
+        final RegistrationBoundedContext.Builder registrationBuilder =
+                RegistrationBoundedContext.newBuilder()
+                                          .setStorageFactory(InMemoryStorageFactory.getInstance())
+                                          .setWaitingRoom(waitingRoom);
+        final String commandWorkerCount = servletContext.getInitParameter(COMMAND_WORKER_COUNT_PARAMETER);
+        if (!isNullOrEmpty(commandWorkerCount)) {
+            registrationBuilder.setCommandWorkerCount(Integer.parseInt(commandWorkerCount.trim()));
+        }
+        registration = registrationBuilder.build();
+        final BoundedContext boundedContext = registration.getBoundedContext();
+        final PriorityCommandDispatcher commandDispatcher = registration.getCommandDispatcher();
+        final CommandGateway commandGateway = CommandGateway.newBuilder()
+                                                            .setDispatcher(commandDispatcher)
+                                                            .build();
+        final ConferenceResponseCache conferenceCache =
+                ConferenceResponseCache.newBuilder()
+                                       .setSource(new RepositorySource(registration.getConferenceRepository()))
+                                       .build();
+        boundedContext.getEventBus()
+                      .subscribe(conferenceCache);
+        final AvailabilitySource availabilitySource =
+                new RepositoryAvailabilitySource(registration.getConferenceRepository(),
+                                                 registration.getSeatsAvailabilityRepository());
+        availabilityBroadcaster = AvailabilityBroadcaster.newBuilder()
+                                                         .setSource(availabilitySource)
+                                                         .build();
+        boundedContext.getEventBus()
+                      .subscribe(availabilityBroadcaster);
+        availabilityBroadcaster.start();
+
+        servletContext.setAttribute(BoundedContext.class.getName(), boundedContext);
+        servletContext.setAttribute(CommandGateway.class.getName(), commandGateway);
+        servletContext.setAttribute(ConferenceResponseCache.class.getName(), conferenceCache);
+        servletContext.setAttribute(AvailabilityBroadcaster.class.getName(), availabilityBroadcaster);
+        servletContext.setAttribute(WaitingRoom.class.getName(), waitingRoom);
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        availabilityBroadcaster.close();
+        try {
+            registration.close();
+        } catch (Exception e) {
+            log().error("Failed to close the bounded context.", e);
+        }
+    }
+
+    private static class RepositorySource implements ConferenceSource {
+
+        private final ConferenceProjectionRepository repository;
+
+        private RepositorySource(ConferenceProjectionRepository repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public ConferenceProjection load(ConferenceId id) {
+            return repository.load(id);
+        }
+    }
+
+    private static class RepositoryAvailabilitySource implements AvailabilitySource {
+
+        private final ConferenceProjectionRepository conferenceRepository;
+        private final SeatsAvailabilityRepository seatsAvailabilityRepository;
+
+        private RepositoryAvailabilitySource(ConferenceProjectionRepository conferenceRepository,
+                                             SeatsAvailabilityRepository seatsAvailabilityRepository) {
+            this.conferenceRepository = conferenceRepository;
+            this.seatsAvailabilityRepository = seatsAvailabilityRepository;
+        }
+
+        @Nullable
+        @Override
+        public List<SeatQuantity> loadAvailableSeats(ConferenceId id) {
+            final boolean isKnown = conferenceRepository.load(id)
+                                                        .getVersion() > 0;
+            if (!isKnown) {
+                return null;
+            }
+            final SeatsAvailabilityAggregate seats = seatsAvailabilityRepository.load(newSeatsAvailabilityId(id));
+            final List<SeatQuantity> result = seats.getState()
+                                                   .getAvailableSeatList();
+            return result;
+        }
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+        @SuppressWarnings("NonSerializableFieldInSerializableClass")
+        private final Logger value = LoggerFactory.getLogger(LobbyApplication.class);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp.admission;
+
+import com.google.common.primitives.UnsignedLongs;
+import com.google.protobuf.util.JsonFormat;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.registration.admission.AdmissionTicket;
+import org.spine3.samples.lobby.registration.admission.WaitingRoom;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+/**
+ * Issues the tickets of the {@link WaitingRoom} and reports the positions of their holders in the queue.
+ *
+ * <p>{@code POST} with the {@code conference} parameter holding the conference ID issues a new ticket
+ * and responds with it as JSON. The ticket is then passed with the {@code RegisterToConference} command.
+ *
+ * <p>{@code GET} with the {@code conference}, {@code number} and {@code signature} parameters of a ticket
+ * responds with the position of its holder: {@code {"position": <N>}}, where {@code 0} means admitted.
+ *
+ * <p>Requires the {@link WaitingRoom} to be set as the servlet context attribute named by its class name.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings("serial") // The servlet is not serialized.
+public class WaitingRoomServlet extends HttpServlet {
+
+    /* package */ static final String CONFERENCE_PARAMETER = "conference";
+    /* package */ static final String NUMBER_PARAMETER = "number";
+    /* package */ static final String SIGNATURE_PARAMETER = "signature";
+
+    private static final String JSON_CONTENT_TYPE = "application/json";
+    private static final JsonFormat.Printer PRINTER = JsonFormat.printer();
+
+    private transient WaitingRoom waitingRoom;
+
+    @Override
+    public void init() throws ServletException {
+        waitingRoom = (WaitingRoom) getServletContext().getAttribute(WaitingRoom.class.getName());
+        if (waitingRoom == null) {
+            throw new ServletException("Waiting room is not set.");
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        final String conferenceUuid = request.getParameter(CONFERENCE_PARAMETER);
+        if (isNullOrEmpty(conferenceUuid)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Conference ID is required.");
+            return;
+        }
+        final ConferenceId conferenceId = ConferenceId.newBuilder()
+                                                      .setUuid(conferenceUuid)
+                                                      .build();
+        final AdmissionTicket ticket = waitingRoom.enter(conferenceId);
+        write(response, PRINTER.print(ticket));
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        final long position;
+        try {
+            final AdmissionTicket ticket = parseTicket(request);
+            position = waitingRoom.getPosition(ticket);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid admission ticket.");
+            return;
+        }
+        write(response, "{\"position\": " + position + '}');
+    }
+
+    /**
+     * Parses the ticket from the request parameters.
+     *
+     * @throws IllegalArgumentException if a parameter is missing or malformed
+     */
+    /* package */ static AdmissionTicket parseTicket(HttpServletRequest request) {
+        final String conferenceUuid = request.getParameter(CONFERENCE_PARAMETER);
+        final String number = request.getParameter(NUMBER_PARAMETER);
+        final String signature = request.getParameter(SIGNATURE_PARAMETER);
+        if (isNullOrEmpty(conferenceUuid) || isNullOrEmpty(number) || isNullOrEmpty(signature)) {
+            throw new IllegalArgumentException("Ticket parameters are required.");
+        }
+        final ConferenceId conferenceId = ConferenceId.newBuilder()
+                                                      .setUuid(conferenceUuid)
+                                                      .build();
+        final AdmissionTicket result = AdmissionTicket.newBuilder()
+                                                      .setConferenceId(conferenceId)
+                                                      .setNumber(Long.parseLong(number))
+                                                      .setSignature(UnsignedLongs.parseUnsignedLong(signature))
+                                                      .build();
+        return result;
+    }
+
+    private static void write(HttpServletResponse response, String json) throws IOException {
+        response.setContentType(JSON_CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.getWriter()
+                .write(json);
+    }
+}
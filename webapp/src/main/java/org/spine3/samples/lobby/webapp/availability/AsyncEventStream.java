@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp.availability;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+/**
+ * The stream of server-sent events over an asynchronous servlet response.
+ *
+ * <p>Uses the non-blocking output of Servlet 3.1: the events are written only while the output is ready,
+ * and the rest is written by the container thread {@linkplain #onWritePossible() notified} when the output
+ * is ready again. An idle stream does not hold any thread.
+ *
+ * <p>At most one event waits to be written; a newer event replaces it.
+ *
+ * @author Alexander Litus
+ */
+/* package */ class AsyncEventStream implements EventStream, WriteListener, AsyncListener {
+
+    private static final byte[] KEEP_ALIVE = ":\n\n".getBytes(UTF_8);
+
+    private final AsyncContext asyncContext;
+    private final ServletOutputStream output;
+    private final AtomicReference<byte[]> pending = new AtomicReference<>();
+
+    private volatile boolean isOpen = true;
+
+    /**
+     * Is {@code true} if the output was written to and not flushed yet.
+     *
+     * <p>Is guarded by {@code this}.
+     */
+    private boolean isFlushNeeded;
+
+    /* package */ AsyncEventStream(AsyncContext asyncContext) throws IOException {
+        this.asyncContext = asyncContext;
+        this.output = asyncContext.getResponse()
+                                  .getOutputStream();
+    }
+
+    /**
+     * Switches the output to the non-blocking mode.
+     */
+    /* package */ void start() {
+        asyncContext.addListener(this);
+        output.setWriteListener(this);
+    }
+
+    @Override
+    public void send(byte[] event) {
+        if (!isOpen) {
+            return;
+        }
+        pending.set(event);
+        writePending();
+    }
+
+    @Override
+    public void keepAlive() {
+        if (!isOpen) {
+            return;
+        }
+        if (pending.compareAndSet(null, KEEP_ALIVE)) {
+            writePending();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return isOpen;
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        write();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        close();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        isOpen = false;
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+        // Is not restarted.
+    }
+
+    private void writePending() {
+        try {
+            write();
+        } catch (IOException | IllegalStateException ignored) {
+            // The client is disconnected.
+            close();
+        }
+    }
+
+    private synchronized void write() throws IOException {
+        while (isOpen && output.isReady()) {
+            if (isFlushNeeded) {
+                isFlushNeeded = false;
+                output.flush();
+                continue;
+            }
+            final byte[] event = pending.getAndSet(null);
+            if (event == null) {
+                return;
+            }
+            output.write(event);
+            isFlushNeeded = true;
+        }
+    }
+
+    private void close() {
+        if (!isOpen) {
+            return;
+        }
+        isOpen = false;
+        try {
+            asyncContext.complete();
+        } catch (IllegalStateException ignored) {
+            // Is already completed.
+        }
+    }
+}
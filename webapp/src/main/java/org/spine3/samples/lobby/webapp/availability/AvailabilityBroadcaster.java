@@ -0,0 +1,476 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp.availability;
+
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spine3.base.EventContext;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
+import org.spine3.samples.lobby.registration.seat.availability.AddedAvailableSeats;
+import org.spine3.samples.lobby.registration.seat.availability.RemovedAvailableSeats;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsReservationCancelled;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsReserved;
+import org.spine3.samples.lobby.registration.seat.availability.WaitlistedSeatsReserved;
+import org.spine3.server.event.EventSubscriber;
+import org.spine3.server.event.Subscribe;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Maps.newConcurrentMap;
+import static com.google.common.collect.Maps.newLinkedHashMap;
+import static org.spine3.samples.lobby.registration.util.Seats.getAddedSeats;
+import static org.spine3.samples.lobby.registration.util.Seats.getRemovedSeats;
+
+/**
+ * Pushes the seat availability of conferences to subscribed {@linkplain EventStream event streams}.
+ *
+ * <p>The availability is derived from the seats availability events. A change marks the conference as changed;
+ * the changed conferences are pushed by a single scheduler thread once per push interval, so that a conference
+ * gets at most one push per interval regardless of the number of events. The streams do not block on sending,
+ * so the scheduler thread serves all subscribers.
+ *
+ * <p>The availability of a conference is tracked only while the conference has subscribers. It is
+ * {@linkplain AvailabilitySource loaded} on the first subscription, and dropped once all the streams
+ * subscribed to the conference are closed. A new subscriber receives the last pushed availability
+ * of the conference right away. Subscribing to an unknown conference is rejected.
+ *
+ * <p>An event dispatched while the availability of the conference is being loaded may be missed
+ * or counted twice. The next reservation event corrects it, as it carries the resulting quantities.
+ *
+ * <p>The broadcaster must be subscribed to the event bus of the registration bounded context.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings("UnusedParameters")
+public class AvailabilityBroadcaster extends EventSubscriber implements AutoCloseable {
+
+    private final ConcurrentMap<ConferenceId, ConferenceChannel> channels = newConcurrentMap();
+    private final Queue<ConferenceChannel> changedChannels = new ConcurrentLinkedQueue<>();
+    private final AvailabilitySource source;
+    private final long pushIntervalMillis;
+    private final long keepAliveIntervalMillis;
+
+    @Nullable
+    private ScheduledExecutorService scheduler;
+
+    private AvailabilityBroadcaster(Builder builder) {
+        this.source = builder.source;
+        this.pushIntervalMillis = builder.pushIntervalMillis;
+        this.keepAliveIntervalMillis = builder.keepAliveIntervalMillis;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Subscribe
+    public void on(SeatsReserved event, EventContext context) {
+        final ConferenceChannel channel = channels.get(event.getConferenceId());
+        if (channel == null) {
+            return;
+        }
+        channel.setAvailable(event.getAvailableSeatUpdatedList());
+        markChanged(channel);
+    }
+
+    @Subscribe
+    public void on(WaitlistedSeatsReserved event, EventContext context) {
+        final ConferenceChannel channel = channels.get(event.getConferenceId());
+        if (channel == null) {
+            return;
+        }
+        channel.setAvailable(event.getAvailableSeatUpdatedList());
+        markChanged(channel);
+    }
+
+    @Subscribe
+    public void on(SeatsReservationCancelled event, EventContext context) {
+        final ConferenceChannel channel = channels.get(event.getConferenceId());
+        if (channel == null) {
+            return;
+        }
+        channel.setAvailable(event.getAvailableSeatUpdatedList());
+        markChanged(channel);
+    }
+
+    @Subscribe
+    public void on(AddedAvailableSeats event, EventContext context) {
+        final ConferenceChannel channel = channels.get(event.getConferenceId());
+        if (channel == null) {
+            return;
+        }
+        for (SeatQuantity seats : getAddedSeats(event)) {
+            channel.add(seats);
+        }
+        markChanged(channel);
+    }
+
+    @Subscribe
+    public void on(RemovedAvailableSeats event, EventContext context) {
+        final ConferenceChannel channel = channels.get(event.getConferenceId());
+        if (channel == null) {
+            return;
+        }
+        for (SeatQuantity seats : getRemovedSeats(event)) {
+            channel.remove(seats);
+        }
+        markChanged(channel);
+    }
+
+    /**
+     * Subscribes the stream to the availability changes of the conference.
+     *
+     * <p>The stream is unsubscribed once it is closed.
+     *
+     * @throws IllegalArgumentException if the conference is unknown
+     */
+    public void subscribe(ConferenceId conferenceId, EventStream stream) {
+        checkNotNull(stream);
+        ConferenceChannel channel;
+        do {
+            channel = openChannel(conferenceId);
+        } while (!channel.addStream(stream));
+        stream.send(channel.lastEvent);
+    }
+
+    /**
+     * Returns {@code true} if the conference exists and can be subscribed to.
+     */
+    public boolean isKnown(ConferenceId conferenceId) {
+        final boolean result = channels.containsKey(conferenceId)
+                || source.loadAvailableSeats(conferenceId) != null;
+        return result;
+    }
+
+    /**
+     * Returns the number of open streams subscribed to the conference.
+     */
+    public int getStreamCount(ConferenceId conferenceId) {
+        final ConferenceChannel channel = channels.get(conferenceId);
+        if (channel == null) {
+            return 0;
+        }
+        int result = 0;
+        for (EventStream stream : channel.streams) {
+            if (stream.isOpen()) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Starts pushing changes in the background.
+     */
+    public synchronized void start() {
+        checkState(scheduler == null, "The broadcaster is already started.");
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pushChanges();
+                } catch (RuntimeException e) {
+                    log().error("Availability push failed.", e);
+                }
+            }
+        }, pushIntervalMillis, pushIntervalMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    keepAlive();
+                } catch (RuntimeException e) {
+                    log().error("Keeping availability streams alive failed.", e);
+                }
+            }
+        }, keepAliveIntervalMillis, keepAliveIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops pushing changes.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Pushes the availability of each conference changed since the last push to its streams.
+     *
+     * <p>Is called by the scheduler thread only.
+     */
+    /* package */ void pushChanges() {
+        // The conferences changed while pushing are pushed next time.
+        for (int count = changedChannels.size(); count > 0; count--) {
+            final ConferenceChannel channel = changedChannels.poll();
+            channel.isChanged.set(false);
+            final byte[] event = channel.toEvent();
+            channel.lastEvent = event;
+            for (EventStream stream : channel.streams) {
+                if (stream.isOpen()) {
+                    stream.send(event);
+                } else {
+                    channel.streams.remove(stream);
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps all streams alive, unsubscribes the closed ones and drops the conferences left without streams.
+     *
+     * <p>Is called by the scheduler thread only.
+     */
+    /* package */ void keepAlive() {
+        for (ConferenceChannel channel : channels.values()) {
+            for (EventStream stream : channel.streams) {
+                if (stream.isOpen()) {
+                    stream.keepAlive();
+                } else {
+                    channel.streams.remove(stream);
+                }
+            }
+            evictIfIdle(channel);
+        }
+    }
+
+    private void evictIfIdle(ConferenceChannel channel) {
+        synchronized (channel) {
+            if (channel.streams.isEmpty()) {
+                channel.isEvicted = true;
+                channels.remove(channel.conferenceId, channel);
+            }
+        }
+    }
+
+    private void markChanged(ConferenceChannel channel) {
+        if (channel.isChanged.compareAndSet(false, true)) {
+            changedChannels.add(channel);
+        }
+    }
+
+    private ConferenceChannel openChannel(ConferenceId conferenceId) {
+        final ConferenceChannel channel = channels.get(conferenceId);
+        if (channel != null) {
+            return channel;
+        }
+        final List<SeatQuantity> availableSeats = source.loadAvailableSeats(conferenceId);
+        checkArgument(availableSeats != null, "Unknown conference: %s", conferenceId.getUuid());
+        final ConferenceChannel created = new ConferenceChannel(conferenceId, availableSeats);
+        final ConferenceChannel existing = channels.putIfAbsent(conferenceId, created);
+        final ConferenceChannel result = (existing != null) ? existing : created;
+        return result;
+    }
+
+    /**
+     * The availability of a conference along with the streams subscribed to it.
+     */
+    private static class ConferenceChannel {
+
+        private static final String EVENT_PREFIX = "event: availability\ndata: ";
+        private static final String EVENT_SUFFIX = "\n\n";
+
+        private final ConferenceId conferenceId;
+        private final Set<EventStream> streams =
+                Collections.newSetFromMap(Maps.<EventStream, Boolean>newConcurrentMap());
+        private final AtomicBoolean isChanged = new AtomicBoolean();
+
+        /**
+         * The available seat quantities by seat types.
+         *
+         * <p>Is guarded by {@code this}.
+         */
+        private final Map<SeatTypeId, Integer> availableSeats = newLinkedHashMap();
+
+        private volatile byte[] lastEvent;
+
+        /**
+         * Is {@code true} once the channel is removed from the broadcaster and accepts no more streams.
+         *
+         * <p>Is guarded by {@code this}.
+         */
+        private boolean isEvicted;
+
+        private ConferenceChannel(ConferenceId conferenceId, Iterable<SeatQuantity> availableSeats) {
+            this.conferenceId = conferenceId;
+            setAvailable(availableSeats);
+            this.lastEvent = toEvent();
+        }
+
+        /**
+         * Adds the stream unless the channel is evicted.
+         *
+         * @return {@code true} if the stream is added
+         */
+        private synchronized boolean addStream(EventStream stream) {
+            if (isEvicted) {
+                return false;
+            }
+            streams.add(stream);
+            return true;
+        }
+
+        private synchronized void setAvailable(Iterable<SeatQuantity> seats) {
+            for (SeatQuantity seat : seats) {
+                availableSeats.put(seat.getSeatTypeId(), seat.getQuantity());
+            }
+        }
+
+        private synchronized void add(SeatQuantity seats) {
+            final Integer current = availableSeats.get(seats.getSeatTypeId());
+            final int quantity = (current == null) ? seats.getQuantity() : current + seats.getQuantity();
+            availableSeats.put(seats.getSeatTypeId(), quantity);
+        }
+
+        private synchronized void remove(SeatQuantity seats) {
+            final Integer current = availableSeats.get(seats.getSeatTypeId());
+            final int quantity = (current == null) ? 0 : Math.max(0, current - seats.getQuantity());
+            availableSeats.put(seats.getSeatTypeId(), quantity);
+        }
+
+        /**
+         * Encodes the availability as a server-sent event with a JSON object in the data.
+         */
+        private synchronized byte[] toEvent() {
+            final StringBuilder result = new StringBuilder(EVENT_PREFIX);
+            result.append("{\"conferenceId\":");
+            appendString(result, conferenceId.getUuid());
+            result.append(",\"seats\":[");
+            boolean isFirst = true;
+            for (Map.Entry<SeatTypeId, Integer> entry : availableSeats.entrySet()) {
+                if (!isFirst) {
+                    result.append(',');
+                }
+                isFirst = false;
+                result.append("{\"seatTypeId\":");
+                appendString(result, entry.getKey()
+                                          .getUuid());
+                result.append(",\"available\":")
+                      .append(entry.getValue())
+                      .append('}');
+            }
+            result.append("]}")
+                  .append(EVENT_SUFFIX);
+            return result.toString()
+                         .getBytes(UTF_8);
+        }
+
+        private static void appendString(StringBuilder builder, String value) {
+            builder.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    builder.append('\\')
+                           .append(c);
+                } else if (c < ' ') {
+                    builder.append(String.format("\\u%04x", (int) c));
+                } else {
+                    builder.append(c);
+                }
+            }
+            builder.append('"');
+        }
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+        @SuppressWarnings("NonSerializableFieldInSerializableClass")
+        private final Logger value = LoggerFactory.getLogger(AvailabilityBroadcaster.class);
+    }
+
+    /**
+     * The builder of {@link AvailabilityBroadcaster} instances.
+     */
+    public static class Builder {
+
+        private static final long DEFAULT_PUSH_INTERVAL_MILLIS = 1_000;
+        private static final long DEFAULT_KEEP_ALIVE_INTERVAL_MILLIS = 30_000;
+
+        private long pushIntervalMillis = DEFAULT_PUSH_INTERVAL_MILLIS;
+        private long keepAliveIntervalMillis = DEFAULT_KEEP_ALIVE_INTERVAL_MILLIS;
+        private AvailabilitySource source;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the source of the availability of conferences on the first subscription.
+         */
+        public Builder setSource(AvailabilitySource source) {
+            this.source = checkNotNull(source);
+            return this;
+        }
+
+        /**
+         * Sets the minimum interval between pushes of a conference.
+         */
+        public Builder setPushInterval(long interval, TimeUnit unit) {
+            this.pushIntervalMillis = toMillis(interval, unit);
+            return this;
+        }
+
+        /**
+         * Sets the interval of keeping idle streams alive.
+         */
+        public Builder setKeepAliveInterval(long interval, TimeUnit unit) {
+            this.keepAliveIntervalMillis = toMillis(interval, unit);
+            return this;
+        }
+
+        private static long toMillis(long interval, TimeUnit unit) {
+            checkNotNull(unit);
+            final long result = unit.toMillis(interval);
+            checkArgument(result > 0, "Interval must be at least one millisecond.");
+            return result;
+        }
+
+        public AvailabilityBroadcaster build() {
+            checkState(source != null, "Availability source must be set.");
+            return new AvailabilityBroadcaster(this);
+        }
+    }
+}
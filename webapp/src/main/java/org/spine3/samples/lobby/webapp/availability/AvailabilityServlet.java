@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp.availability;
+
+import org.spine3.samples.lobby.common.ConferenceId;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+/**
+ * Streams the seat availability changes of a conference to the client as server-sent events.
+ *
+ * <p>The conference is specified by the {@code conference} request parameter holding its ID.
+ * An unknown conference is responded with {@code 404 Not Found}.
+ * The response is kept open asynchronously and written without blocking, so an idle subscriber
+ * does not hold a container thread.
+ *
+ * <p>Requires the {@link AvailabilityBroadcaster} to be set as the servlet context attribute
+ * named by its class name.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings("serial") // The servlet is not serialized.
+public class AvailabilityServlet extends HttpServlet {
+
+    /* package */ static final String CONFERENCE_PARAMETER = "conference";
+
+    private static final String EVENT_STREAM_CONTENT_TYPE = "text/event-stream";
+
+    private transient AvailabilityBroadcaster broadcaster;
+
+    @Override
+    public void init() throws ServletException {
+        broadcaster = (AvailabilityBroadcaster) getServletContext().getAttribute(
+                AvailabilityBroadcaster.class.getName());
+        if (broadcaster == null) {
+            throw new ServletException("Availability broadcaster is not set.");
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        final String conferenceUuid = request.getParameter(CONFERENCE_PARAMETER);
+        if (isNullOrEmpty(conferenceUuid)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Conference ID is required.");
+            return;
+        }
+        final ConferenceId conferenceId = ConferenceId.newBuilder()
+                                                      .setUuid(conferenceUuid)
+                                                      .build();
+        if (!broadcaster.isKnown(conferenceId)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown conference.");
+            return;
+        }
+        response.setContentType(EVENT_STREAM_CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+
+        final AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(0);
+        final AsyncEventStream stream = new AsyncEventStream(asyncContext);
+        stream.start();
+        broadcaster.subscribe(conferenceId, stream);
+    }
+}
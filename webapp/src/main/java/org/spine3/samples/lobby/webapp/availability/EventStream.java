@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp.availability;
+
+/**
+ * The stream of server-sent events to a client.
+ *
+ * @author Alexander Litus
+ */
+public interface EventStream {
+
+    /**
+     * Sends the event to the client.
+     *
+     * <p>Does not block. If the previous event is not written yet, it is replaced by the new one,
+     * so a slow client receives only the latest event.
+     *
+     * @param event the encoded event
+     */
+    void send(byte[] event);
+
+    /**
+     * Sends a comment to the client, unless an event is waiting to be written,
+     * to keep the connection open and to detect a disconnected client.
+     */
+    void keepAlive();
+
+    /**
+     * Returns {@code false} if the stream is closed and no more events can be sent.
+     */
+    boolean isOpen();
+}
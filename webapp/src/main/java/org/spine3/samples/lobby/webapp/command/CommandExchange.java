@@ -0,0 +1,270 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp.command;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spine3.base.Command;
+import org.spine3.base.CommandContext;
+import org.spine3.base.Commands;
+import org.spine3.base.Response;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.spine3.samples.lobby.common.util.CommandContexts.newCommandContext;
+
+/**
+ * The exchange of a single command request with its response.
+ *
+ * <p>The request body is read without blocking. Once it is read, the command is posted through
+ * the {@link CommandGateway} slot acquired for the request, and the response is completed
+ * from the callback of the command bus, so no container thread waits for the command to be handled.
+ *
+ * @author Alexander Litus
+ */
+/* package */ class CommandExchange implements AsyncListener {
+
+    private static final String JSON_CONTENT_TYPE = "application/json";
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    private final AsyncContext asyncContext;
+    private final Message prototype;
+    private final CommandFormat format;
+    private final CommandGateway gateway;
+    private final int maxBodySize;
+    private final String retryAfterSeconds;
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    /**
+     * Is {@code true} until the gateway slot is passed to the posted command or released.
+     */
+    private final AtomicBoolean holdsSlot = new AtomicBoolean(true);
+    private final AtomicBoolean isResponded = new AtomicBoolean(false);
+
+    /* package */ CommandExchange(AsyncContext asyncContext,
+                                  Message prototype,
+                                  CommandFormat format,
+                                  CommandGateway gateway,
+                                  int maxBodySize,
+                                  String retryAfterSeconds) {
+        this.asyncContext = asyncContext;
+        this.prototype = prototype;
+        this.format = format;
+        this.gateway = gateway;
+        this.maxBodySize = maxBodySize;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Starts reading the request body.
+     */
+    /* package */ void start() throws IOException {
+        asyncContext.addListener(this);
+        asyncContext.getRequest()
+                    .getInputStream()
+                    .setReadListener(new BodyReader());
+    }
+
+    /**
+     * Releases the gateway slot and completes the exchange without a response.
+     */
+    /* package */ void abort() {
+        isResponded.set(true);
+        releaseSlot();
+        asyncContext.complete();
+    }
+
+    private void onBodyRead() {
+        final Message message;
+        try {
+            message = format.decode(body.toByteArray(), prototype);
+        } catch (InvalidProtocolBufferException e) {
+            respondWithError(HttpServletResponse.SC_BAD_REQUEST, "Invalid command: " + e.getMessage());
+            return;
+        }
+        final CommandContext context = newCommandContext();
+        final Command command = Commands.create(message, context);
+        if (holdsSlot.compareAndSet(true, false)) {
+            gateway.post(command, new ResponseWriter(command));
+        }
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        respondWithError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The command is not handled in time.");
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        log().warn("Command request failed.", event.getThrowable());
+        releaseSlot();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        releaseSlot();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+        // Is not restarted.
+    }
+
+    /**
+     * Releases the gateway slot if the command is not posted.
+     */
+    private void releaseSlot() {
+        if (holdsSlot.compareAndSet(true, false)) {
+            gateway.release();
+        }
+    }
+
+    private void respond(String commandId) {
+        if (!isResponded.compareAndSet(false, true)) {
+            return;
+        }
+        final HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        response.setContentType(JSON_CONTENT_TYPE);
+        final byte[] content = ("{\"commandId\":\"" + commandId + "\"}").getBytes(UTF_8);
+        response.setContentLength(content.length);
+        try {
+            response.getOutputStream()
+                    .write(content);
+        } catch (IOException e) {
+            log().warn("Failed to write the command response.", e);
+        } finally {
+            asyncContext.complete();
+        }
+    }
+
+    private void respondWithError(int status, String message) {
+        if (!isResponded.compareAndSet(false, true)) {
+            return;
+        }
+        releaseSlot();
+        final HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+        if (status == HttpServletResponse.SC_SERVICE_UNAVAILABLE) {
+            response.setHeader(CommandServlet.RETRY_AFTER_HEADER, retryAfterSeconds);
+        }
+        try {
+            response.sendError(status, message);
+        } catch (IOException e) {
+            log().warn("Failed to write the command error response.", e);
+        } finally {
+            asyncContext.complete();
+        }
+    }
+
+    /**
+     * Reads the request body as it arrives.
+     */
+    private class BodyReader implements ReadListener {
+
+        private final byte[] buffer = new byte[READ_BUFFER_SIZE];
+
+        @Override
+        public void onDataAvailable() throws IOException {
+            final ServletInputStream input = asyncContext.getRequest()
+                                                         .getInputStream();
+            while (input.isReady() && !input.isFinished()) {
+                final int count = input.read(buffer);
+                if (count < 0) {
+                    return;
+                }
+                if (body.size() + count > maxBodySize) {
+                    respondWithError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "The command is too large.");
+                    return;
+                }
+                body.write(buffer, 0, count);
+            }
+        }
+
+        @Override
+        public void onAllDataRead() {
+            if (!isResponded.get()) {
+                onBodyRead();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            log().warn("Failed to read the command request.", t);
+            respondWithError(HttpServletResponse.SC_BAD_REQUEST, "Failed to read the command.");
+        }
+    }
+
+    /**
+     * Completes the HTTP response once the command bus responds.
+     */
+    private class ResponseWriter implements StreamObserver<Response> {
+
+        private final Command command;
+
+        private ResponseWriter(Command command) {
+            this.command = command;
+        }
+
+        @Override
+        public void onNext(Response value) {
+            // The response is written on completion.
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            final int status = (t instanceof IllegalArgumentException)
+                               ? HttpServletResponse.SC_BAD_REQUEST
+                               : HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+            respondWithError(status, "The command is rejected: " + t.getMessage());
+        }
+
+        @Override
+        public void onCompleted() {
+            final String commandId = command.getContext()
+                                            .getCommandId()
+                                            .getUuid();
+            respond(commandId);
+        }
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+        @SuppressWarnings("NonSerializableFieldInSerializableClass")
+        private final Logger value = LoggerFactory.getLogger(CommandExchange.class);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp.command;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+
+import javax.annotation.Nullable;
+import java.util.Locale;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+/**
+ * The formats of command messages in HTTP request bodies.
+ *
+ * @author Alexander Litus
+ */
+/* package */ enum CommandFormat {
+
+    /**
+     * The proto3 JSON mapping of the command message.
+     */
+    JSON("application/json") {
+        @Override
+        /* package */ Message decode(byte[] body, Message prototype) throws InvalidProtocolBufferException {
+            final Message.Builder builder = prototype.newBuilderForType();
+            PARSER.merge(new String(body, UTF_8), builder);
+            return builder.build();
+        }
+    },
+
+    /**
+     * The binary protobuf encoding of the command message.
+     */
+    PROTOBUF("application/x-protobuf") {
+        @Override
+        /* package */ Message decode(byte[] body, Message prototype) throws InvalidProtocolBufferException {
+            final Message result = prototype.getParserForType()
+                                            .parseFrom(body);
+            return result;
+        }
+    };
+
+    private static final JsonFormat.Parser PARSER = JsonFormat.parser();
+
+    private final String contentType;
+
+    CommandFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * Decodes the command message of the type of the prototype from the request body.
+     *
+     * @throws InvalidProtocolBufferException if the body is not a valid message of the type
+     */
+    /* package */ abstract Message decode(byte[] body, Message prototype) throws InvalidProtocolBufferException;
+
+    /**
+     * Returns the format of the request body with the content type, ignoring its parameters.
+     *
+     * @return the format or {@code null} if the content type is not supported
+     */
+    @Nullable
+    /* package */ static CommandFormat forContentType(@Nullable String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        final int parametersStart = contentType.indexOf(';');
+        final String mediaType = (parametersStart < 0) ? contentType : contentType.substring(0, parametersStart);
+        final String normalized = mediaType.trim()
+                                           .toLowerCase(Locale.ROOT);
+        for (CommandFormat format : values()) {
+            if (format.contentType.equals(normalized)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
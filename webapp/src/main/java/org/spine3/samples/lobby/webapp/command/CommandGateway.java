@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp.command;
+
+import io.grpc.stub.StreamObserver;
+import org.spine3.base.Command;
+import org.spine3.base.Response;
+import org.spine3.samples.lobby.registration.command.PriorityCommandDispatcher;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Posts the commands received by the web application to a {@link PriorityCommandDispatcher},
+ * limiting the number of commands in flight.
+ *
+ * <p>A client {@linkplain #tryAcquire() acquires} a slot before receiving a command and either
+ * {@linkplain #post(Command, StreamObserver) posts} the command through the slot or {@linkplain #release() releases}
+ * the slot. A posted command holds its slot until the dispatcher calls back the response observer,
+ * so a flood of requests is rejected instead of queueing up without bound.
+ *
+ * @author Alexander Litus
+ */
+public class CommandGateway {
+
+    private final PriorityCommandDispatcher dispatcher;
+    private final int maxInFlight;
+    private final Semaphore slots;
+
+    private CommandGateway(Builder builder) {
+        this.dispatcher = builder.dispatcher;
+        this.maxInFlight = builder.maxInFlight;
+        this.slots = new Semaphore(maxInFlight);
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Acquires a slot for a command if the gateway is not saturated.
+     *
+     * @return {@code true} if the slot is acquired, {@code false} if the maximum number of commands is in flight
+     */
+    public boolean tryAcquire() {
+        return slots.tryAcquire();
+    }
+
+    /**
+     * Releases the slot acquired for a command which is not going to be posted.
+     */
+    public void release() {
+        slots.release();
+    }
+
+    /**
+     * Posts the command through the acquired slot.
+     *
+     * <p>The slot is released once the response observer is completed or receives an error.
+     *
+     * @param command          the command to post
+     * @param responseObserver the observer of the command bus response
+     */
+    public void post(Command command, StreamObserver<Response> responseObserver) {
+        checkNotNull(command);
+        checkNotNull(responseObserver);
+        dispatcher.post(command, new SlotReleasingObserver(responseObserver));
+    }
+
+    /**
+     * Returns the number of commands in flight.
+     */
+    public int getInFlightCount() {
+        return maxInFlight - slots.availablePermits();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Releases the slot of a command once the response to the command is completed.
+     */
+    private class SlotReleasingObserver implements StreamObserver<Response> {
+
+        private final StreamObserver<Response> delegate;
+        private final AtomicBoolean isReleased = new AtomicBoolean(false);
+
+        private SlotReleasingObserver(StreamObserver<Response> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onNext(Response value) {
+            delegate.onNext(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            try {
+                delegate.onError(t);
+            } finally {
+                releaseOnce();
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            try {
+                delegate.onCompleted();
+            } finally {
+                releaseOnce();
+            }
+        }
+
+        private void releaseOnce() {
+            if (isReleased.compareAndSet(false, true)) {
+                release();
+            }
+        }
+    }
+
+    /**
+     * The builder of {@link CommandGateway} instances.
+     */
+    public static class Builder {
+
+        private static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+        private PriorityCommandDispatcher dispatcher;
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+        private Builder() {
+        }
+
+        public Builder setDispatcher(PriorityCommandDispatcher dispatcher) {
+            this.dispatcher = checkNotNull(dispatcher);
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of commands acquired or posted, but not yet responded.
+         */
+        public Builder setMaxInFlight(int maxInFlight) {
+            checkArgument(maxInFlight > 0, "The in-flight limit must be positive.");
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        public CommandGateway build() {
+            checkNotNull(dispatcher, "Command dispatcher must be set.");
+            return new CommandGateway(this);
+        }
+    }
+}
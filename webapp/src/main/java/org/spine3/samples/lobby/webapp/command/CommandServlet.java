@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp.command;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.Message;
+import org.spine3.samples.lobby.registration.order.AssignRegistrantDetails;
+import org.spine3.samples.lobby.registration.order.RegisterToConference;
+import org.spine3.samples.lobby.registration.seat.assignment.AssignSeat;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+/**
+ * Receives registration commands over HTTP and posts them to the command bus.
+ *
+ * <p>The command type is specified by the request path:
+ * <ul>
+ *     <li>{@code /register-to-conference} for {@link RegisterToConference};
+ *     <li>{@code /assign-registrant-details} for {@link AssignRegistrantDetails};
+ *     <li>{@code /assign-seat} for {@link AssignSeat}.
+ * </ul>
+ *
+ * <p>The request body is a command message in the JSON ({@code application/json})
+ * or binary protobuf ({@code application/x-protobuf}) format. The response is
+ * {@code 202 Accepted} with the ID of the posted command once the command bus handles the command.
+ *
+ * <p>If the maximum number of commands is in flight, the request is rejected with
+ * {@code 503 Service Unavailable} and the {@code Retry-After} header.
+ *
+ * <p>Requires the {@link CommandGateway} to be set as the servlet context attribute named by its class name.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings("serial") // The servlet is not serialized.
+public class CommandServlet extends HttpServlet {
+
+    /* package */ static final String RETRY_AFTER_HEADER = "Retry-After";
+
+    /* package */ static final String RETRY_AFTER_PARAMETER = "retry-after-seconds";
+    /* package */ static final String TIMEOUT_PARAMETER = "timeout-seconds";
+    /* package */ static final String MAX_BODY_SIZE_PARAMETER = "max-body-size";
+
+    private static final String DEFAULT_RETRY_AFTER_SECONDS = "1";
+    private static final long DEFAULT_TIMEOUT_SECONDS = 30;
+    private static final int DEFAULT_MAX_BODY_SIZE = 64 * 1024;
+
+    private static final Map<String, Message> COMMAND_TYPES = ImmutableMap.<String, Message>of(
+            "/register-to-conference", RegisterToConference.getDefaultInstance(),
+            "/assign-registrant-details", AssignRegistrantDetails.getDefaultInstance(),
+            "/assign-seat", AssignSeat.getDefaultInstance());
+
+    private transient CommandGateway gateway;
+    private String retryAfterSeconds = DEFAULT_RETRY_AFTER_SECONDS;
+    private long timeoutMillis = TimeUnit.SECONDS.toMillis(DEFAULT_TIMEOUT_SECONDS);
+    private int maxBodySize = DEFAULT_MAX_BODY_SIZE;
+
+    @Override
+    public void init() throws ServletException {
+        gateway = (CommandGateway) getServletContext().getAttribute(CommandGateway.class.getName());
+        if (gateway == null) {
+            throw new ServletException("Command gateway is not set.");
+        }
+        final String retryAfter = getInitParameter(RETRY_AFTER_PARAMETER);
+        if (!isNullOrEmpty(retryAfter)) {
+            retryAfterSeconds = retryAfter;
+        }
+        final String timeout = getInitParameter(TIMEOUT_PARAMETER);
+        if (!isNullOrEmpty(timeout)) {
+            timeoutMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(timeout));
+        }
+        final String bodySize = getInitParameter(MAX_BODY_SIZE_PARAMETER);
+        if (!isNullOrEmpty(bodySize)) {
+            maxBodySize = Integer.parseInt(bodySize);
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        final Message prototype = COMMAND_TYPES.get(request.getPathInfo());
+        if (prototype == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown command.");
+            return;
+        }
+        final CommandFormat format = CommandFormat.forContentType(request.getContentType());
+        if (format == null) {
+            response.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE,
+                               "The command must be in JSON or protobuf format.");
+            return;
+        }
+        if (request.getContentLengthLong() > maxBodySize) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "The command is too large.");
+            return;
+        }
+        if (!gateway.tryAcquire()) {
+            response.setHeader(RETRY_AFTER_HEADER, retryAfterSeconds);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many commands in flight.");
+            return;
+        }
+
+        final AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(timeoutMillis);
+        final CommandExchange exchange = new CommandExchange(asyncContext, prototype, format, gateway,
+                                                             maxBodySize, retryAfterSeconds);
+        try {
+            exchange.start();
+        } catch (IOException | RuntimeException e) {
+            exchange.abort();
+            throw e;
+        }
+    }
+}
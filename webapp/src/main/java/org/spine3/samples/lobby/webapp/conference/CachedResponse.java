@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp.conference;
+
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The pre-serialized response to a conference read request.
+ *
+ * @author Alexander Litus
+ */
+public class CachedResponse {
+
+    /**
+     * The estimated memory taken by a response besides its body.
+     */
+    private static final int OVERHEAD_BYTES = 128;
+
+    private static final CachedResponse NOT_FOUND = new CachedResponse(null, new byte[0]);
+
+    @Nullable
+    private final String entityTag;
+    private final byte[] body;
+
+    private CachedResponse(@Nullable String entityTag, byte[] body) {
+        this.entityTag = entityTag;
+        this.body = body;
+    }
+
+    /**
+     * Creates a response to the request of a conference with the given version.
+     *
+     * @param version the version of the conference projection
+     * @param body    the serialized conference
+     */
+    /* package */ static CachedResponse of(int version, byte[] body) {
+        checkNotNull(body);
+        final String entityTag = '"' + String.valueOf(version) + '"';
+        return new CachedResponse(entityTag, body);
+    }
+
+    /**
+     * Returns the response to the request of a conference which does not exist.
+     */
+    /* package */ static CachedResponse notFound() {
+        return NOT_FOUND;
+    }
+
+    public boolean isFound() {
+        return entityTag != null;
+    }
+
+    /**
+     * Returns the strong entity tag of the response, quoted as in the {@code ETag} header.
+     */
+    @Nullable
+    public String getEntityTag() {
+        return entityTag;
+    }
+
+    /**
+     * Returns the serialized conference.
+     *
+     * <p>The returned array is shared by all requests and must not be modified.
+     */
+    @SuppressWarnings("ReturnOfCollectionOrArrayField") // To avoid copying per request.
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Returns the estimated number of bytes taken by the response in memory.
+     */
+    /* package */ int getWeight() {
+        return body.length + OVERHEAD_BYTES;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp.conference;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.util.JsonFormat;
+import org.spine3.base.EventContext;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.conference.contracts.Conference;
+import org.spine3.samples.lobby.registration.conference.ConferenceProjection;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceCreated;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferencePublished;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceUnpublished;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceUpdated;
+import org.spine3.samples.sample.lobby.conference.contracts.SeatTypeCreated;
+import org.spine3.samples.sample.lobby.conference.contracts.SeatTypeUpdated;
+import org.spine3.server.event.EventSubscriber;
+import org.spine3.server.event.Subscribe;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The cache of pre-serialized conference responses.
+ *
+ * <p>A response holds the JSON of the conference projection state and the entity tag derived from
+ * the projection version. Responses are evicted in the least-recently-used order once their total size
+ * exceeds {@linkplain Builder#setMaxBytes(long) the limit}, and are invalidated by the events changing the conference.
+ * A request for a cached conference neither loads the projection nor serializes it.
+ *
+ * <p>Responses to requests of non-existing conferences are not cached, so that requests of arbitrary IDs
+ * do not evict the responses of existing conferences.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings("UnusedParameters") // Event contexts are required by the subscriber methods.
+public class ConferenceResponseCache extends EventSubscriber {
+
+    private static final JsonFormat.Printer PRINTER = JsonFormat.printer();
+
+    private final ConferenceSource source;
+    private final Cache<ConferenceId, CachedResponse> responses;
+
+    /**
+     * The number of invalidations performed so far.
+     *
+     * <p>A response loaded while an invalidation happens may be stale, so it is not cached.
+     * Is guarded by {@code this}.
+     */
+    private long invalidationCount;
+
+    private ConferenceResponseCache(Builder builder) {
+        this.source = builder.source;
+        this.responses = CacheBuilder.newBuilder()
+                                     .maximumWeight(builder.maxBytes)
+                                     .weigher(new ResponseWeigher())
+                                     .build();
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the response to the request of the conference, loading it on a cache miss.
+     *
+     * <p>A response to the request of a non-existing conference is loaded each time.
+     */
+    public CachedResponse get(ConferenceId conferenceId) {
+        checkNotNull(conferenceId);
+        final CachedResponse cached = responses.getIfPresent(conferenceId);
+        if (cached != null) {
+            return cached;
+        }
+        final long invalidationsBeforeLoad = getInvalidationCount();
+        final CachedResponse loaded = load(conferenceId);
+        if (!loaded.isFound()) {
+            return loaded;
+        }
+        synchronized (this) {
+            if (invalidationCount == invalidationsBeforeLoad) {
+                responses.put(conferenceId, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns the number of cached responses.
+     */
+    public long size() {
+        return responses.size();
+    }
+
+    @Subscribe
+    public void on(ConferenceCreated event, EventContext context) {
+        invalidate(event.getConference()
+                        .getId());
+    }
+
+    @Subscribe
+    public void on(ConferenceUpdated event, EventContext context) {
+        invalidate(event.getConference()
+                        .getId());
+    }
+
+    @Subscribe
+    public void on(ConferencePublished event, EventContext context) {
+        invalidate(event.getConferenceId());
+    }
+
+    @Subscribe
+    public void on(ConferenceUnpublished event, EventContext context) {
+        invalidate(event.getConferenceId());
+    }
+
+    @Subscribe
+    public void on(SeatTypeCreated event, EventContext context) {
+        invalidate(event.getSeatType()
+                        .getConferenceId());
+    }
+
+    @Subscribe
+    public void on(SeatTypeUpdated event, EventContext context) {
+        invalidate(event.getSeatType()
+                        .getConferenceId());
+    }
+
+    private synchronized void invalidate(ConferenceId conferenceId) {
+        invalidationCount++;
+        responses.invalidate(conferenceId);
+    }
+
+    private synchronized long getInvalidationCount() {
+        return invalidationCount;
+    }
+
+    private CachedResponse load(ConferenceId conferenceId) {
+        final ConferenceProjection projection = source.load(conferenceId);
+        final int version = projection.getVersion();
+        if (version == 0) {
+            return CachedResponse.notFound();
+        }
+        final Conference conference = projection.getState();
+        final String json;
+        try {
+            json = PRINTER.print(conference);
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException("Failed to serialize conference: " + conference, e);
+        }
+        final CachedResponse result = CachedResponse.of(version, json.getBytes(UTF_8));
+        return result;
+    }
+
+    private static class ResponseWeigher implements Weigher<ConferenceId, CachedResponse> {
+
+        @Override
+        public int weigh(ConferenceId key, CachedResponse value) {
+            return value.getWeight();
+        }
+    }
+
+    /**
+     * The builder of {@link ConferenceResponseCache} instances.
+     */
+    public static class Builder {
+
+        private static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+        private ConferenceSource source;
+        private long maxBytes = DEFAULT_MAX_BYTES;
+
+        private Builder() {
+        }
+
+        public Builder setSource(ConferenceSource source) {
+            this.source = checkNotNull(source);
+            return this;
+        }
+
+        /**
+         * Sets the maximum total size of the cached responses in bytes.
+         */
+        public Builder setMaxBytes(long maxBytes) {
+            checkArgument(maxBytes > 0, "The cache size must be positive.");
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        public ConferenceResponseCache build() {
+            checkNotNull(source, "Conference source must be set.");
+            return new ConferenceResponseCache(this);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp.conference;
+
+import com.google.common.base.Splitter;
+import org.spine3.samples.lobby.common.ConferenceId;
+
+import javax.annotation.Nullable;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Serves the conference details from the {@link ConferenceResponseCache}.
+ *
+ * <p>The conference is specified by its ID in the request path: {@code /<conference ID>}.
+ *
+ * <p>Responses carry a strong {@code ETag} derived from the conference projection version.
+ * A request with a matching {@code If-None-Match} header is answered with {@code 304 Not Modified}.
+ *
+ * <p>Requires the {@link ConferenceResponseCache} to be set as the servlet context attribute
+ * named by its class name.
+ *
+ * @author Alexander Litus
+ */
+@SuppressWarnings("serial") // The servlet is not serialized.
+public class ConferenceServlet extends HttpServlet {
+
+    private static final String JSON_CONTENT_TYPE = "application/json";
+    private static final String ETAG_HEADER = "ETag";
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+    private static final String ANY_ENTITY_TAG = "*";
+    private static final String WEAK_TAG_PREFIX = "W/";
+
+    private static final Splitter ENTITY_TAG_SPLITTER = Splitter.on(',')
+                                                                .trimResults()
+                                                                .omitEmptyStrings();
+
+    private transient ConferenceResponseCache cache;
+
+    @Override
+    public void init() throws ServletException {
+        cache = (ConferenceResponseCache) getServletContext().getAttribute(ConferenceResponseCache.class.getName());
+        if (cache == null) {
+            throw new ServletException("Conference response cache is not set.");
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        final String pathInfo = request.getPathInfo();
+        if (pathInfo == null || pathInfo.length() <= 1) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Conference ID is required.");
+            return;
+        }
+        final ConferenceId conferenceId = ConferenceId.newBuilder()
+                                                      .setUuid(pathInfo.substring(1))
+                                                      .build();
+        final CachedResponse cached = cache.get(conferenceId);
+        if (!cached.isFound()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Conference not found.");
+            return;
+        }
+        final String entityTag = cached.getEntityTag();
+        response.setHeader(ETAG_HEADER, entityTag);
+        // Clients revalidate on each request, which is cheap with the cache.
+        response.setHeader("Cache-Control", "no-cache");
+        if (matches(request.getHeader(IF_NONE_MATCH_HEADER), entityTag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        final byte[] body = cached.getBody();
+        response.setContentType(JSON_CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        response.setContentLength(body.length);
+        response.getOutputStream()
+                .write(body);
+    }
+
+    /**
+     * Checks if the {@code If-None-Match} header matches the entity tag using the weak comparison.
+     */
+    /* package */ static boolean matches(@Nullable String ifNoneMatch, String entityTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ENTITY_TAG_SPLITTER.split(ifNoneMatch)) {
+            if (tag.equals(ANY_ENTITY_TAG)) {
+                return true;
+            }
+            final String opaqueTag = tag.startsWith(WEAK_TAG_PREFIX) ? tag.substring(WEAK_TAG_PREFIX.length()) : tag;
+            if (opaqueTag.equals(entityTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp.availability;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.spine3.base.EventContext;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.common.SeatTypeId;
+import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
+import org.spine3.samples.lobby.registration.seat.availability.AddedAvailableSeats;
+import org.spine3.samples.lobby.registration.seat.availability.RemovedAvailableSeats;
+import org.spine3.samples.lobby.registration.seat.availability.SeatsReserved;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class AvailabilityBroadcasterShould {
+
+    private static final EventContext CONTEXT = EventContext.getDefaultInstance();
+
+    private final SourceStub source = new SourceStub();
+    private final AvailabilityBroadcaster broadcaster = AvailabilityBroadcaster.newBuilder()
+                                                                               .setSource(source)
+                                                                               .build();
+    private final ConferenceId conferenceId = newConferenceId();
+    private final SeatTypeId seatTypeId = newSeatTypeId();
+
+    @Before
+    public void setUpTest() {
+        source.availability.put(conferenceId, asList(seats(10)));
+    }
+
+    @Test
+    public void push_changes_of_conference_once_per_interval() {
+        final RecordingStream stream = new RecordingStream();
+        broadcaster.subscribe(conferenceId, stream);
+
+        reserve(7);
+        reserve(5);
+        broadcaster.pushChanges();
+        broadcaster.pushChanges();
+
+        assertEquals(2, stream.events.size());
+        assertTrue(stream.lastEvent()
+                         .contains("\"available\":5"));
+    }
+
+    @Test
+    public void not_push_changes_of_other_conference() {
+        final ConferenceId otherConferenceId = newConferenceId();
+        source.availability.put(otherConferenceId, asList(seats(3)));
+        final RecordingStream stream = new RecordingStream();
+        broadcaster.subscribe(otherConferenceId, stream);
+
+        reserve(7);
+        broadcaster.pushChanges();
+
+        assertEquals(1, stream.events.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reject_subscription_to_unknown_conference() {
+        broadcaster.subscribe(newConferenceId(), new RecordingStream());
+    }
+
+    @Test
+    public void tell_whether_conference_is_known() {
+        assertTrue(broadcaster.isKnown(conferenceId));
+        assertFalse(broadcaster.isKnown(newConferenceId()));
+    }
+
+    @Test
+    public void apply_added_and_removed_seats_to_availability() {
+        final RecordingStream stream = new RecordingStream();
+        broadcaster.subscribe(conferenceId, stream);
+        reserve(10);
+
+        broadcaster.on(AddedAvailableSeats.newBuilder()
+                                          .setConferenceId(conferenceId)
+                                          .setQuantity(seats(5))
+                                          .build(), CONTEXT);
+        broadcaster.on(RemovedAvailableSeats.newBuilder()
+                                            .setConferenceId(conferenceId)
+                                            .setQuantity(seats(3))
+                                            .build(), CONTEXT);
+        broadcaster.pushChanges();
+
+        assertTrue(stream.lastEvent()
+                         .contains("\"available\":12"));
+    }
+
+    @Test
+    public void send_loaded_availability_to_first_stream() {
+        final RecordingStream stream = new RecordingStream();
+
+        broadcaster.subscribe(conferenceId, stream);
+
+        assertEquals(1, stream.events.size());
+        assertTrue(stream.lastEvent()
+                         .startsWith("event: availability\ndata: {\"conferenceId\":\"" + conferenceId.getUuid()));
+        assertTrue(stream.lastEvent()
+                         .contains("\"available\":10"));
+    }
+
+    @Test
+    public void send_last_pushed_availability_to_new_stream() {
+        broadcaster.subscribe(conferenceId, new RecordingStream());
+        reserve(7);
+        broadcaster.pushChanges();
+        final RecordingStream stream = new RecordingStream();
+
+        broadcaster.subscribe(conferenceId, stream);
+
+        assertEquals(1, stream.events.size());
+        assertTrue(stream.lastEvent()
+                         .contains("\"available\":7"));
+    }
+
+    @Test
+    public void ignore_changes_of_conference_without_streams() {
+        reserve(7);
+        final RecordingStream stream = new RecordingStream();
+
+        broadcaster.subscribe(conferenceId, stream);
+
+        assertTrue(stream.lastEvent()
+                         .contains("\"available\":10"));
+    }
+
+    @Test
+    public void reload_availability_after_all_streams_are_closed() {
+        final RecordingStream closedStream = new RecordingStream();
+        broadcaster.subscribe(conferenceId, closedStream);
+        closedStream.isOpen = false;
+        broadcaster.keepAlive();
+        source.availability.put(conferenceId, asList(seats(4)));
+        final RecordingStream stream = new RecordingStream();
+
+        broadcaster.subscribe(conferenceId, stream);
+
+        assertTrue(stream.lastEvent()
+                         .contains("\"available\":4"));
+    }
+
+    @Test
+    public void keep_streams_alive_and_unsubscribe_closed_ones() {
+        final RecordingStream openStream = new RecordingStream();
+        final RecordingStream closedStream = new RecordingStream();
+        broadcaster.subscribe(conferenceId, openStream);
+        broadcaster.subscribe(conferenceId, closedStream);
+        closedStream.isOpen = false;
+
+        broadcaster.keepAlive();
+
+        assertEquals(1, openStream.keepAliveCount);
+        assertEquals(0, closedStream.keepAliveCount);
+        assertEquals(1, broadcaster.getStreamCount(conferenceId));
+    }
+
+    private void reserve(int availableQuantity) {
+        broadcaster.on(SeatsReserved.newBuilder()
+                                    .setConferenceId(conferenceId)
+                                    .addAvailableSeatUpdated(seats(availableQuantity))
+                                    .build(), CONTEXT);
+    }
+
+    private SeatQuantity seats(int quantity) {
+        return SeatQuantity.newBuilder()
+                           .setSeatTypeId(seatTypeId)
+                           .setQuantity(quantity)
+                           .build();
+    }
+
+    private static class SourceStub implements AvailabilitySource {
+
+        private final Map<ConferenceId, List<SeatQuantity>> availability = newHashMap();
+
+        @Nullable
+        @Override
+        public List<SeatQuantity> loadAvailableSeats(ConferenceId id) {
+            return availability.get(id);
+        }
+    }
+
+    private static class RecordingStream implements EventStream {
+
+        private final List<String> events = newArrayList();
+        private int keepAliveCount;
+        private boolean isOpen = true;
+
+        @Override
+        public void send(byte[] event) {
+            events.add(new String(event, UTF_8));
+        }
+
+        @Override
+        public void keepAlive() {
+            keepAliveCount++;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return isOpen;
+        }
+
+        private String lastEvent() {
+            return events.get(events.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp.command;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import org.junit.Test;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.registration.order.RegisterToConference;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings("InstanceMethodNamingConvention")
+public class CommandFormatShould {
+
+    private final ConferenceId conferenceId = newConferenceId();
+    private final RegisterToConference command = RegisterToConference.newBuilder()
+                                                                     .setConferenceId(conferenceId)
+                                                                     .build();
+
+    @Test
+    public void be_resolved_by_content_type_ignoring_parameters_and_case() {
+        assertEquals(CommandFormat.JSON, CommandFormat.forContentType("Application/JSON; charset=UTF-8"));
+        assertEquals(CommandFormat.PROTOBUF, CommandFormat.forContentType("application/x-protobuf"));
+        assertNull(CommandFormat.forContentType("text/plain"));
+        assertNull(CommandFormat.forContentType(null));
+    }
+
+    @Test
+    public void decode_json_command() throws InvalidProtocolBufferException {
+        final String json = "{\"conferenceId\":{\"uuid\":\"" + conferenceId.getUuid() + "\"}}";
+
+        final Message result = CommandFormat.JSON.decode(json.getBytes(UTF_8),
+                                                         RegisterToConference.getDefaultInstance());
+
+        assertEquals(command, result);
+    }
+
+    @Test
+    public void decode_protobuf_command() throws InvalidProtocolBufferException {
+        final Message result = CommandFormat.PROTOBUF.decode(command.toByteArray(),
+                                                             RegisterToConference.getDefaultInstance());
+
+        assertEquals(command, result);
+    }
+
+    @Test(expected = InvalidProtocolBufferException.class)
+    public void fail_to_decode_invalid_json() throws InvalidProtocolBufferException {
+        CommandFormat.JSON.decode("{\"unknown\":1}".getBytes(UTF_8), RegisterToConference.getDefaultInstance());
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp.command;
+
+import io.grpc.stub.StreamObserver;
+import org.junit.After;
+import org.junit.Test;
+import org.spine3.base.Command;
+import org.spine3.base.CommandContext;
+import org.spine3.base.Commands;
+import org.spine3.base.Response;
+import org.spine3.samples.lobby.registration.RegistrationBoundedContext;
+import org.spine3.samples.lobby.registration.command.PriorityCommandDispatcher;
+import org.spine3.samples.lobby.registration.contracts.SeatQuantity;
+import org.spine3.samples.lobby.registration.order.RegisterToConference;
+import org.spine3.server.BoundedContext;
+import org.spine3.server.storage.memory.InMemoryStorageFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.samples.lobby.common.util.CommandContexts.newCommandContext;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newOrderId;
+import static org.spine3.samples.lobby.common.util.IdFactory.newSeatTypeId;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class CommandGatewayShould {
+
+    private static final int MAX_IN_FLIGHT = 16;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final BoundedContext boundedContext =
+            RegistrationBoundedContext.newInstance(InMemoryStorageFactory.getInstance())
+                                      .getBoundedContext();
+    private final PriorityCommandDispatcher dispatcher =
+            PriorityCommandDispatcher.newBuilder()
+                                     .setCommandBus(boundedContext.getCommandBus())
+                                     .setWorkerCount(4)
+                                     .build();
+    private final CommandGateway gateway = CommandGateway.newBuilder()
+                                                         .setDispatcher(dispatcher)
+                                                         .setMaxInFlight(MAX_IN_FLIGHT)
+                                                         .build();
+
+    @After
+    public void tearDown() throws Exception {
+        dispatcher.close();
+        boundedContext.close();
+    }
+
+    @Test
+    public void reject_slots_above_in_flight_limit() {
+        for (int i = 0; i < MAX_IN_FLIGHT; i++) {
+            assertTrue(gateway.tryAcquire());
+        }
+
+        assertFalse(gateway.tryAcquire());
+        assertEquals(MAX_IN_FLIGHT, gateway.getInFlightCount());
+
+        gateway.release();
+        assertTrue(gateway.tryAcquire());
+    }
+
+    @Test
+    public void release_slot_once_command_is_responded() throws InterruptedException {
+        dispatcher.start();
+        final Semaphore responses = new Semaphore(0);
+        assertTrue(gateway.tryAcquire());
+
+        gateway.post(newCommand(), new CountingObserver(responses));
+
+        assertTrue(responses.tryAcquire(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(0, gateway.getInFlightCount());
+    }
+
+    /**
+     * Posts commands from many client threads against a bounded context with in-memory storage.
+     */
+    @Test
+    public void keep_commands_in_flight_within_limit_under_load() throws InterruptedException {
+        final int clientCount = 32;
+        final int requestsPerClient = 200;
+        dispatcher.start();
+        final Semaphore responses = new Semaphore(0);
+        final AtomicInteger accepted = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final CountDownLatch clientsDone = new CountDownLatch(clientCount);
+        final ExecutorService clients = Executors.newFixedThreadPool(clientCount);
+        for (int i = 0; i < clientCount; i++) {
+            clients.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < requestsPerClient; j++) {
+                        if (gateway.tryAcquire()) {
+                            accepted.incrementAndGet();
+                            updateMax(maxInFlight, gateway.getInFlightCount());
+                            gateway.post(newCommand(), new CountingObserver(responses));
+                        } else {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                    clientsDone.countDown();
+                }
+            });
+        }
+
+        assertTrue(clientsDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        clients.shutdown();
+        assertTrue(responses.tryAcquire(accepted.get(), TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(clientCount * requestsPerClient, accepted.get() + rejected.get());
+        assertTrue(maxInFlight.get() <= MAX_IN_FLIGHT);
+        assertEquals(0, gateway.getInFlightCount());
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        int current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    private static Command newCommand() {
+        final RegisterToConference message = RegisterToConference.newBuilder()
+                                                                 .setOrderId(newOrderId())
+                                                                 .setConferenceId(newConferenceId())
+                                                                 .addSeat(SeatQuantity.newBuilder()
+                                                                                      .setSeatTypeId(newSeatTypeId())
+                                                                                      .setQuantity(1))
+                                                                 .build();
+        final CommandContext context = newCommandContext();
+        return Commands.create(message, context);
+    }
+
+    /**
+     * Counts the responses completed normally or with an error.
+     */
+    private static class CountingObserver implements StreamObserver<Response> {
+
+        private final Semaphore responses;
+
+        private CountingObserver(Semaphore responses) {
+            this.responses = responses;
+        }
+
+        @Override
+        public void onNext(Response value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            responses.release();
+        }
+
+        @Override
+        public void onCompleted() {
+            responses.release();
+        }
+    }
+}
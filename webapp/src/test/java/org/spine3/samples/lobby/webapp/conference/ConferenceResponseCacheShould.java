@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp.conference;
+
+import org.junit.Test;
+import org.spine3.base.EventContext;
+import org.spine3.samples.lobby.common.ConferenceId;
+import org.spine3.samples.lobby.conference.contracts.Conference;
+import org.spine3.samples.lobby.registration.conference.ConferenceProjection;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceCreated;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferencePublished;
+import org.spine3.samples.sample.lobby.conference.contracts.ConferenceUpdated;
+
+import java.util.Map;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.collect.Maps.newHashMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.spine3.samples.lobby.common.util.IdFactory.newConferenceId;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings({"InstanceMethodNamingConvention", "MagicNumber"})
+public class ConferenceResponseCacheShould {
+
+    private static final EventContext CONTEXT = EventContext.getDefaultInstance();
+
+    private final CountingSource source = new CountingSource();
+    private final ConferenceResponseCache cache = ConferenceResponseCache.newBuilder()
+                                                                         .setSource(source)
+                                                                         .build();
+    private final ConferenceId conferenceId = newConferenceId();
+
+    @Test
+    public void serve_cached_response_without_loading_projection() {
+        source.update(conference("Devoxx"));
+
+        final CachedResponse first = cache.get(conferenceId);
+        final CachedResponse second = cache.get(conferenceId);
+
+        assertSame(first, second);
+        assertEquals(1, source.loadCount);
+        assertEquals("\"1\"", first.getEntityTag());
+        assertTrue(new String(first.getBody(), UTF_8).contains("Devoxx"));
+    }
+
+    @Test
+    public void reload_response_with_new_entity_tag_on_conference_event() {
+        source.update(conference("Devoxx"));
+        final CachedResponse stale = cache.get(conferenceId);
+
+        source.update(conference("JavaOne"));
+        cache.on(ConferenceUpdated.newBuilder()
+                                  .setConference(conference("JavaOne"))
+                                  .build(), CONTEXT);
+        final CachedResponse fresh = cache.get(conferenceId);
+
+        assertEquals(2, source.loadCount);
+        assertNotEquals(stale.getEntityTag(), fresh.getEntityTag());
+        assertTrue(new String(fresh.getBody(), UTF_8).contains("JavaOne"));
+    }
+
+    @Test
+    public void not_cache_missing_conference() {
+        assertFalse(cache.get(conferenceId)
+                         .isFound());
+        assertFalse(cache.get(conferenceId)
+                         .isFound());
+        assertEquals(2, source.loadCount);
+        assertEquals(0, cache.size());
+
+        source.update(conference("Devoxx"));
+
+        assertTrue(cache.get(conferenceId)
+                        .isFound());
+    }
+
+    @Test
+    public void not_invalidate_other_conferences() {
+        source.update(conference("Devoxx"));
+        cache.get(conferenceId);
+
+        cache.on(ConferencePublished.newBuilder()
+                                    .setConferenceId(newConferenceId())
+                                    .build(), CONTEXT);
+        cache.get(conferenceId);
+
+        assertEquals(1, source.loadCount);
+    }
+
+    @Test
+    public void evict_responses_above_size_limit() {
+        final ConferenceResponseCache smallCache = ConferenceResponseCache.newBuilder()
+                                                                          .setSource(source)
+                                                                          .setMaxBytes(1024)
+                                                                          .build();
+        for (int i = 0; i < 100; i++) {
+            final ConferenceId id = newConferenceId();
+            source.update(Conference.newBuilder()
+                                    .setId(id)
+                                    .setName("Conference " + i)
+                                    .build());
+            smallCache.get(id);
+        }
+
+        assertTrue(smallCache.size() < 100);
+    }
+
+    private Conference conference(String name) {
+        return Conference.newBuilder()
+                         .setId(conferenceId)
+                         .setName(name)
+                         .build();
+    }
+
+    /**
+     * Creates projections of the stored conferences with a version incremented on each update.
+     */
+    private static class CountingSource implements ConferenceSource {
+
+        private final Map<ConferenceId, Conference> conferences = newHashMap();
+        private final Map<ConferenceId, Integer> versions = newHashMap();
+        private int loadCount;
+
+        private void update(Conference conference) {
+            final ConferenceId id = conference.getId();
+            conferences.put(id, conference);
+            final Integer version = versions.get(id);
+            versions.put(id, (version == null) ? 1 : version + 1);
+        }
+
+        @Override
+        public ConferenceProjection load(ConferenceId id) {
+            loadCount++;
+            final ConferenceProjection result = new ConferenceProjection(id);
+            final Conference conference = conferences.get(id);
+            if (conference == null) {
+                return result;
+            }
+            result.on(ConferenceCreated.newBuilder()
+                                       .setConference(conference)
+                                       .build(), CONTEXT);
+            for (int i = 1; i < versions.get(id); i++) {
+                result.on(ConferenceUpdated.newBuilder()
+                                           .setConference(conference)
+                                           .build(), CONTEXT);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018, TeamDev. All rights reserved.
+ *
+ * Redistribution and use in source and/or binary forms, with or without
+ * modification, must retain the above copyright notice and the following
+ * disclaimer.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.spine3.samples.lobby.webapp.conference;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Alexander Litus
+ */
+@SuppressWarnings("InstanceMethodNamingConvention")
+public class ConferenceServletShould {
+
+    private static final String ENTITY_TAG = "\"3\"";
+
+    @Test
+    public void match_entity_tag_in_list_of_if_none_match_header() {
+        assertTrue(ConferenceServlet.matches("\"1\", \"3\"", ENTITY_TAG));
+    }
+
+    @Test
+    public void match_weak_entity_tag_and_wildcard() {
+        assertTrue(ConferenceServlet.matches("W/\"3\"", ENTITY_TAG));
+        assertTrue(ConferenceServlet.matches("*", ENTITY_TAG));
+    }
+
+    @Test
+    public void not_match_other_or_missing_entity_tag() {
+        assertFalse(ConferenceServlet.matches("\"2\"", ENTITY_TAG));
+        assertFalse(ConferenceServlet.matches(null, ENTITY_TAG));
+    }
+}